@@ -0,0 +1,57 @@
+package com.invest.management.alert;
+
+import com.invest.management.analysis.ExpertTargetConvergenceEvent;
+import com.invest.management.analysis.UserAnalysis;
+import com.invest.management.analysis.UserAnalysisRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Пишет в ящик уведомлений пользователей, следящих за акцией, что цена приблизилась к экспертной цели
+ */
+@Component
+public class ExpertTargetAlertListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpertTargetAlertListener.class);
+
+    private final UserAnalysisRepository userAnalysisRepository;
+    private final PriceAlertRepository alertRepository;
+
+    public ExpertTargetAlertListener(UserAnalysisRepository userAnalysisRepository,
+                                     PriceAlertRepository alertRepository) {
+        this.userAnalysisRepository = userAnalysisRepository;
+        this.alertRepository = alertRepository;
+    }
+
+    @EventListener
+    public void onConvergence(ExpertTargetConvergenceEvent event) {
+        log.info("Цена {} приблизилась к экспертной цели: цена {}, цель {}, потенциал {}%",
+                event.secid(), event.marketPrice(), event.expertTarget(), event.forecastPercent());
+
+        if (event.secid() == null || event.marketPrice() == null || event.expertTarget() == null) {
+            return;
+        }
+
+        List<PriceAlert> alerts = new ArrayList<>();
+        for (UserAnalysis userAnalysis : userAnalysisRepository.findByStockAnalysisId(event.stockAnalysisId())) {
+            PriceAlert alert = new PriceAlert();
+            alert.setUser(userAnalysis.getUser());
+            alert.setUserAnalysis(userAnalysis);
+            alert.setSecid(event.secid());
+            alert.setLevelType(PriceAlert.LEVEL_EXPERT_TARGET);
+            alert.setDirection(event.forecastPercent().signum() >= 0 ? PriceAlert.DIRECTION_UP : PriceAlert.DIRECTION_DOWN);
+            alert.setLevelPrice(event.expertTarget());
+            alert.setPreviousPrice(event.marketPrice());
+            alert.setPrice(event.marketPrice());
+            alerts.add(alert);
+        }
+        if (!alerts.isEmpty()) {
+            alertRepository.saveAll(alerts);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.invest.management.alert;
+
+import com.invest.management.analysis.UserAnalysis;
+import com.invest.management.user.AppUser;
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * Уведомление о пересечении ценой уровня поддержки или сопротивления пользователя
+ */
+@Entity
+@Table(name = "price_alerts")
+public class PriceAlert {
+
+    public static final String LEVEL_SUPPORT = "SUPPORT";
+    public static final String LEVEL_RESISTANCE = "RESISTANCE";
+    public static final String LEVEL_EXPERT_TARGET = "EXPERT_TARGET";
+    public static final String DIRECTION_UP = "UP";
+    public static final String DIRECTION_DOWN = "DOWN";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id", nullable = false)
+    private AppUser user;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_analysis_id", nullable = false)
+    private UserAnalysis userAnalysis;
+
+    @Column(nullable = false, length = 20)
+    private String secid;
+
+    @Column(name = "level_type", nullable = false, length = 20)
+    private String levelType;
+
+    @Column(nullable = false, length = 10)
+    private String direction;
+
+    @Column(name = "level_price", nullable = false, precision = 18, scale = 4)
+    private BigDecimal levelPrice;
+
+    @Column(name = "previous_price", nullable = false, precision = 18, scale = 6)
+    private BigDecimal previousPrice;
+
+    @Column(nullable = false, precision = 18, scale = 6)
+    private BigDecimal price;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt;
+
+    @Column(name = "read_at")
+    private OffsetDateTime readAt;
+
+    @PrePersist
+    void prePersist() {
+        if (createdAt == null) {
+            createdAt = OffsetDateTime.now();
+        }
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public AppUser getUser() {
+        return user;
+    }
+
+    public void setUser(AppUser user) {
+        this.user = user;
+    }
+
+    public UserAnalysis getUserAnalysis() {
+        return userAnalysis;
+    }
+
+    public void setUserAnalysis(UserAnalysis userAnalysis) {
+        this.userAnalysis = userAnalysis;
+    }
+
+    public String getSecid() {
+        return secid;
+    }
+
+    public void setSecid(String secid) {
+        this.secid = secid;
+    }
+
+    public String getLevelType() {
+        return levelType;
+    }
+
+    public void setLevelType(String levelType) {
+        this.levelType = levelType;
+    }
+
+    public String getDirection() {
+        return direction;
+    }
+
+    public void setDirection(String direction) {
+        this.direction = direction;
+    }
+
+    public BigDecimal getLevelPrice() {
+        return levelPrice;
+    }
+
+    public void setLevelPrice(BigDecimal levelPrice) {
+        this.levelPrice = levelPrice;
+    }
+
+    public BigDecimal getPreviousPrice() {
+        return previousPrice;
+    }
+
+    public void setPreviousPrice(BigDecimal previousPrice) {
+        this.previousPrice = previousPrice;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    public OffsetDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public OffsetDateTime getReadAt() {
+        return readAt;
+    }
+
+    public void setReadAt(OffsetDateTime readAt) {
+        this.readAt = readAt;
+    }
+}
@@ -0,0 +1,226 @@
+package com.invest.management.alert;
+
+import com.invest.management.analysis.AnalysisDataVersion;
+import com.invest.management.analysis.UserAnalysisRepository;
+import com.invest.management.user.AppUserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Проверка пересечения ценой уровней поддержки/сопротивления пользователей
+ * Вызывается источниками котировок (MOEX, ALOR) после получения новых цен;
+ * для каждого пересеченного уровня в ящик уведомлений пользователя пишется {@link PriceAlert}.
+ * После уведомления уровень снимается с охраны: повторное пересечение (в том числе другим источником
+ * или при колебаниях цены около уровня) сообщается, только когда цена отошла от уровня
+ * на alert.price-level.rearm-percent и с прошлого уведомления прошло alert.price-level.cooldown-minutes.
+ * На охрану уровень возвращает цена того источника, по которому он сработал: отстающая цена ISS
+ * по другую сторону уровня не должна вызывать повторное уведомление
+ */
+@Service
+public class PriceAlertEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(PriceAlertEngine.class);
+
+    private final UserAnalysisRepository userAnalysisRepository;
+    private final AppUserRepository userRepository;
+    private final PriceAlertRepository alertRepository;
+    private final AnalysisDataVersion dataVersion;
+
+    /**
+     * Последняя цена, по которой проверялись уровни, по ключу secid:источник
+     * Отложенная цена ISS и цена ALOR могут расходиться, поэтому каждый источник
+     * сравнивается только со своей предыдущей ценой
+     */
+    private final Map<String, BigDecimal> lastPrices = new ConcurrentHashMap<>();
+
+    /**
+     * Сработавшие уровни по secid; ключ уровня - userAnalysisId:тип уровня
+     * Изменяется только под firedLock
+     */
+    private final Map<String, Map<String, FiredLevel>> firedBySecid = new HashMap<>();
+    private final ReentrantLock firedLock = new ReentrantLock();
+
+    /**
+     * На сколько процентов от уровня цена должна отойти, чтобы уровень снова сработал
+     */
+    @Value("${alert.price-level.rearm-percent:0.5}")
+    private double rearmPercent;
+
+    /**
+     * Минимальный интервал между уведомлениями по одному уровню (в минутах)
+     */
+    @Value("${alert.price-level.cooldown-minutes:60}")
+    private long cooldownMinutes;
+
+    private volatile PriceLevelIndex index;
+    /**
+     * Перестроение индекса читает уровни из БД, поэтому вместо synchronized используется
+     * ReentrantLock: ожидающий виртуальный поток освобождает поток платформы
+     */
+    private final ReentrantLock indexLock = new ReentrantLock();
+
+    public PriceAlertEngine(UserAnalysisRepository userAnalysisRepository,
+                            AppUserRepository userRepository,
+                            PriceAlertRepository alertRepository,
+                            AnalysisDataVersion dataVersion) {
+        this.userAnalysisRepository = userAnalysisRepository;
+        this.userRepository = userRepository;
+        this.alertRepository = alertRepository;
+        this.dataVersion = dataVersion;
+    }
+
+    /**
+     * Обрабатывает новые цены и сохраняет уведомления о пересеченных уровнях
+     * Уведомления сохраняются в отдельной транзакции: ошибка здесь не откатывает обновление цен
+     * @return количество созданных уведомлений
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int onPriceTicks(Collection<PriceTick> ticks) {
+        if (ticks.isEmpty()) {
+            return 0;
+        }
+
+        PriceLevelIndex levels = currentIndex();
+        List<PriceAlert> alerts = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        firedLock.lock();
+        try {
+            for (PriceTick tick : ticks) {
+                if (tick.secid() == null || tick.price() == null) {
+                    continue;
+                }
+                BigDecimal previous = lastPrices.put(tick.secid() + ":" + tick.source(), tick.price());
+                if (previous == null) {
+                    previous = tick.previousPrice();
+                }
+                double to = tick.price().doubleValue();
+                if (previous != null) {
+                    double from = previous.doubleValue();
+                    for (PriceLevelIndex.Hit hit : levels.crossed(tick.secid(), from, to)) {
+                        if (arm(tick.secid(), tick.source(), hit, now)) {
+                            alerts.add(toAlert(tick.secid(), hit, previous, tick.price(), to > from));
+                        }
+                    }
+                }
+                rearm(tick.secid(), tick.source(), to, now);
+            }
+        } finally {
+            firedLock.unlock();
+        }
+
+        if (!alerts.isEmpty()) {
+            alertRepository.saveAll(alerts);
+            log.info("Создано {} уведомлений о пересечении ценовых уровней", alerts.size());
+        }
+        return alerts.size();
+    }
+
+    /**
+     * Проверяет, что уровень на охране, и снимает его с охраны
+     * @return true, если по пересечению нужно уведомление
+     */
+    private boolean arm(String secid, String source, PriceLevelIndex.Hit hit, long now) {
+        Map<String, FiredLevel> fired = firedBySecid.computeIfAbsent(secid, k -> new HashMap<>());
+        String key = hit.userAnalysisId() + ":" + hit.levelType();
+        FiredLevel previous = fired.get(key);
+        // Уровень, измененный пользователем после уведомления, считается новым
+        if (previous != null && previous.level().compareTo(hit.level()) == 0
+                && !(previous.rearmed() && now - previous.firedAt() >= cooldownMinutes * 60_000)) {
+            return false;
+        }
+        fired.put(key, new FiredLevel(hit.level(), source, now, false));
+        return true;
+    }
+
+    /**
+     * Возвращает на охрану уровни, от которых цена отошла дальше полосы rearm-percent;
+     * записи, у которых прошел и интервал между уведомлениями, больше не нужны.
+     * Цена другого источника учитывается только после интервала между уведомлениями
+     * (на случай, если источник, по которому уровень сработал, перестал присылать цены)
+     */
+    private void rearm(String secid, String source, double price, long now) {
+        Map<String, FiredLevel> fired = firedBySecid.get(secid);
+        if (fired == null) {
+            return;
+        }
+        Iterator<Map.Entry<String, FiredLevel>> it = fired.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, FiredLevel> entry = it.next();
+            FiredLevel level = entry.getValue();
+            boolean cooledDown = now - level.firedAt() >= cooldownMinutes * 60_000;
+            boolean rearmed = level.rearmed()
+                || ((Objects.equals(level.source(), source) || cooledDown)
+                    && Math.abs(price - level.level().doubleValue()) >= Math.abs(level.level().doubleValue()) * rearmPercent / 100);
+            if (rearmed && cooledDown) {
+                it.remove();
+            } else if (rearmed && !level.rearmed()) {
+                entry.setValue(new FiredLevel(level.level(), level.source(), level.firedAt(), true));
+            }
+        }
+        if (fired.isEmpty()) {
+            firedBySecid.remove(secid);
+        }
+    }
+
+    private record FiredLevel(BigDecimal level, String source, long firedAt, boolean rearmed) {
+    }
+
+    private PriceAlert toAlert(String secid, PriceLevelIndex.Hit hit, BigDecimal previous, BigDecimal price, boolean up) {
+        PriceAlert alert = new PriceAlert();
+        alert.setUser(userRepository.getReferenceById(hit.userId()));
+        alert.setUserAnalysis(userAnalysisRepository.getReferenceById(hit.userAnalysisId()));
+        alert.setSecid(secid);
+        alert.setLevelType(hit.levelType());
+        alert.setDirection(up ? PriceAlert.DIRECTION_UP : PriceAlert.DIRECTION_DOWN);
+        alert.setLevelPrice(hit.level());
+        alert.setPreviousPrice(previous);
+        alert.setPrice(price);
+        return alert;
+    }
+
+    /**
+     * Строит индекс уровней заранее, чтобы первая проверка цен после запуска не ждала загрузки
+     * @return количество уровней в индексе
+     */
+    public int preload() {
+        return currentIndex().size();
+    }
+
+    /**
+     * Возвращает индекс уровней, перестраивая его, если уровни пользователей изменились
+     */
+    private PriceLevelIndex currentIndex() {
+        long version = dataVersion.currentLevels();
+        PriceLevelIndex current = index;
+        if (current != null && current.version() == version) {
+            return current;
+        }
+        indexLock.lock();
+        try {
+            current = index;
+            if (current == null || current.version() != version) {
+                current = PriceLevelIndex.build(version, userAnalysisRepository.findAllPriceLevels());
+                index = current;
+                log.debug("Индекс ценовых уровней перестроен: {} уровней", current.size());
+            }
+            return current;
+        } finally {
+            indexLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.invest.management.alert;
+
+import com.invest.management.user.AppUser;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public interface PriceAlertRepository extends JpaRepository<PriceAlert, Long> {
+
+    List<PriceAlert> findTop50ByUserOrderByCreatedAtDesc(AppUser user);
+
+    long countByUserAndReadAtIsNull(AppUser user);
+
+    @Modifying
+    @Query("UPDATE PriceAlert a SET a.readAt = :readAt WHERE a.user = :user AND a.readAt IS NULL")
+    int markAllRead(@Param("user") AppUser user, @Param("readAt") OffsetDateTime readAt);
+}
@@ -0,0 +1,36 @@
+package com.invest.management.alert;
+
+import com.invest.management.user.AppUser;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Ящик уведомлений пользователя о пересечении ценовых уровней
+ */
+@Service
+public class PriceAlertService {
+
+    private final PriceAlertRepository alertRepository;
+
+    public PriceAlertService(PriceAlertRepository alertRepository) {
+        this.alertRepository = alertRepository;
+    }
+
+    @Transactional(readOnly = true)
+    public List<PriceAlert> getRecentAlerts(AppUser user) {
+        return alertRepository.findTop50ByUserOrderByCreatedAtDesc(user);
+    }
+
+    @Transactional(readOnly = true)
+    public long countUnread(AppUser user) {
+        return alertRepository.countByUserAndReadAtIsNull(user);
+    }
+
+    @Transactional
+    public int markAllRead(AppUser user) {
+        return alertRepository.markAllRead(user, OffsetDateTime.now());
+    }
+}
@@ -0,0 +1,163 @@
+package com.invest.management.alert;
+
+import com.invest.management.analysis.UserPriceLevel;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Неизменяемый индекс уровней поддержки/сопротивления всех пользователей
+ * Для каждой бумаги уровни лежат в отсортированном массиве double, поэтому поиск
+ * пересеченных уровней при движении цены - два бинарных поиска и проход по k найденным: O(log n + k)
+ */
+final class PriceLevelIndex {
+
+    /**
+     * Пересеченный уровень
+     */
+    record Hit(long userAnalysisId, long userId, String levelType, BigDecimal level) {
+    }
+
+    private static final class SecidLevels {
+        private final double[] prices;
+        private final BigDecimal[] levels;
+        private final long[] userAnalysisIds;
+        private final long[] userIds;
+        private final String[] levelTypes;
+
+        private SecidLevels(int size) {
+            prices = new double[size];
+            levels = new BigDecimal[size];
+            userAnalysisIds = new long[size];
+            userIds = new long[size];
+            levelTypes = new String[size];
+        }
+    }
+
+    private record Entry(double price, BigDecimal level, long userAnalysisId, long userId, String levelType) {
+    }
+
+    private final long version;
+    private final Map<String, SecidLevels> levelsBySecid;
+    private final int size;
+
+    private PriceLevelIndex(long version, Map<String, SecidLevels> levelsBySecid, int size) {
+        this.version = version;
+        this.levelsBySecid = levelsBySecid;
+        this.size = size;
+    }
+
+    static PriceLevelIndex build(long version, List<UserPriceLevel> rows) {
+        Map<String, List<Entry>> entriesBySecid = new HashMap<>();
+        int size = 0;
+        for (UserPriceLevel row : rows) {
+            if (row.secid() == null) {
+                continue;
+            }
+            List<Entry> entries = entriesBySecid.computeIfAbsent(row.secid(), k -> new ArrayList<>());
+            if (row.support() != null) {
+                entries.add(new Entry(row.support().doubleValue(), row.support(),
+                        row.userAnalysisId(), row.userId(), PriceAlert.LEVEL_SUPPORT));
+                size++;
+            }
+            if (row.resistance() != null) {
+                entries.add(new Entry(row.resistance().doubleValue(), row.resistance(),
+                        row.userAnalysisId(), row.userId(), PriceAlert.LEVEL_RESISTANCE));
+                size++;
+            }
+        }
+
+        Map<String, SecidLevels> levelsBySecid = new HashMap<>(entriesBySecid.size() * 2);
+        for (Map.Entry<String, List<Entry>> secidEntries : entriesBySecid.entrySet()) {
+            List<Entry> entries = secidEntries.getValue();
+            entries.sort((a, b) -> Double.compare(a.price(), b.price()));
+            SecidLevels levels = new SecidLevels(entries.size());
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                levels.prices[i] = entry.price();
+                levels.levels[i] = entry.level();
+                levels.userAnalysisIds[i] = entry.userAnalysisId();
+                levels.userIds[i] = entry.userId();
+                levels.levelTypes[i] = entry.levelType();
+            }
+            levelsBySecid.put(secidEntries.getKey(), levels);
+        }
+        return new PriceLevelIndex(version, levelsBySecid, size);
+    }
+
+    long version() {
+        return version;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Находит уровни, пересеченные при движении цены от previous к current
+     * Рост: previous < уровень <= current; падение: current <= уровень < previous
+     */
+    List<Hit> crossed(String secid, double previous, double current) {
+        SecidLevels levels = levelsBySecid.get(secid);
+        if (levels == null || previous == current) {
+            return Collections.emptyList();
+        }
+
+        int from;
+        int to;
+        if (current > previous) {
+            from = upperBound(levels.prices, previous);
+            to = upperBound(levels.prices, current);
+        } else {
+            from = lowerBound(levels.prices, current);
+            to = lowerBound(levels.prices, previous);
+        }
+        if (from >= to) {
+            return Collections.emptyList();
+        }
+
+        List<Hit> hits = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            hits.add(new Hit(levels.userAnalysisIds[i], levels.userIds[i], levels.levelTypes[i], levels.levels[i]));
+        }
+        return hits;
+    }
+
+    /**
+     * Первый индекс с ценой >= value
+     */
+    private static int lowerBound(double[] prices, double value) {
+        int low = 0;
+        int high = prices.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prices[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Первый индекс с ценой > value
+     */
+    private static int upperBound(double[] prices, double value) {
+        int low = 0;
+        int high = prices.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prices[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
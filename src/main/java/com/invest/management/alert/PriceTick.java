@@ -0,0 +1,16 @@
+package com.invest.management.alert;
+
+import java.math.BigDecimal;
+
+/**
+ * Новая цена бумаги от источника котировок
+ * source - источник ({@link #SOURCE_MOEX}, {@link #SOURCE_ALOR}): последняя цена хранится
+ * отдельно по каждому источнику, чтобы расхождение отложенной цены ISS и цены ALOR
+ * не выглядело как движение цены
+ * previousPrice - цена, известная источнику до обновления (может быть null)
+ */
+public record PriceTick(String secid, String source, BigDecimal previousPrice, BigDecimal price) {
+
+    public static final String SOURCE_MOEX = "MOEX";
+    public static final String SOURCE_ALOR = "ALOR";
+}
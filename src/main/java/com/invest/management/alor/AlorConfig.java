@@ -1,5 +1,7 @@
 package com.invest.management.alor;
 
+import com.invest.management.replay.FixtureRecorder;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -11,7 +13,12 @@ import org.springframework.web.client.RestTemplate;
 public class AlorConfig {
 
     @Bean
-    public RestTemplate alorRestTemplate(RestTemplateBuilder builder) {
+    public RestTemplate alorRestTemplate(RestTemplateBuilder builder, ObjectProvider<FixtureRecorder> fixtureRecorder) {
+        FixtureRecorder recorder = fixtureRecorder.getIfAvailable();
+        if (recorder != null) {
+            // Запись ответов для воспроизведения стаб-сервером (replay.record.enabled)
+            builder = builder.additionalInterceptors(recorder.interceptor("alor"));
+        }
         return builder
                 .additionalInterceptors(alorApiInterceptor())
                 .build();
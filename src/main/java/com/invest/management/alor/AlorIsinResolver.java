@@ -1,13 +1,23 @@
 package com.invest.management.alor;
 
 import com.invest.management.alor.dto.AlorPosition;
+import com.invest.management.alor.dto.AlorTransaction;
+import com.invest.management.moex.MoexStock;
 import com.invest.management.moex.MoexStockRepository;
+import com.invest.management.moex.bond.Bond;
 import com.invest.management.moex.bond.BondRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 
 /**
  * Сервис для определения ISIN по позиции из ALOR API
@@ -114,6 +124,123 @@ public class AlorIsinResolver {
         return null;
     }
 
+    /**
+     * Инструмент, определенный для позиции ALOR: ISIN, тип и связи с MOEX справочниками
+     */
+    public record ResolvedInstrument(String isin, String securityType, MoexStock stock, Bond bond) {
+    }
+
+    /**
+     * Определяет инструменты сразу для всех позиций из ALOR API.
+     * Логика та же, что у {@link #resolveIsin} и {@link #determineSecurityType}, но вместо
+     * до четырех запросов на каждую позицию справочники загружаются одним проходом
+     * (не более четырех запросов на всю пачку) и поиск идет по in-memory индексу.
+     *
+     * @param positions позиции из ALOR API
+     * @return карта позиция -> инструмент; позиции без найденного ISIN в карту не попадают
+     */
+    public Map<AlorPosition, ResolvedInstrument> resolveAll(Collection<AlorPosition> positions) {
+        return resolveAll(positions, AlorPosition::getIsin, this::extractTicker);
+    }
+
+    /**
+     * Определяет инструменты сразу для всех сделок из ALOR API (аналогично {@link #resolveAll(Collection)})
+     *
+     * @param transactions сделки из ALOR API
+     * @return карта сделка -> инструмент; сделки без найденного ISIN в карту не попадают
+     */
+    public Map<AlorTransaction, ResolvedInstrument> resolveAllTransactions(Collection<AlorTransaction> transactions) {
+        return resolveAll(transactions, AlorTransaction::getIsin, transaction -> {
+            String symbol = transaction.getSymbol();
+            return symbol != null ? symbol.trim() : null;
+        });
+    }
+
+    private <T> Map<T, ResolvedInstrument> resolveAll(Collection<T> items,
+                                                      Function<T, String> isinOf,
+                                                      Function<T, String> tickerOf) {
+        Set<String> isins = new HashSet<>();
+        Set<String> tickers = new HashSet<>();
+        for (T item : items) {
+            String rawIsin = isinOf.apply(item);
+            if (hasText(rawIsin)) {
+                isins.add(rawIsin.trim());
+            }
+            String ticker = tickerOf.apply(item);
+            if (ticker != null && !ticker.isEmpty()) {
+                tickers.add(ticker);
+            }
+        }
+
+        Map<String, MoexStock> stocksByIsin = new HashMap<>();
+        Map<String, Bond> bondsByIsin = new HashMap<>();
+        Map<String, MoexStock> stocksBySecid = new HashMap<>();
+        Map<String, Bond> bondsBySecid = new HashMap<>();
+
+        if (!isins.isEmpty()) {
+            stockRepository.findByIsinIn(isins).forEach(stock -> stocksByIsin.putIfAbsent(stock.getIsin(), stock));
+            bondRepository.findByIsinIn(isins).forEach(bond -> bondsByIsin.putIfAbsent(bond.getIsin(), bond));
+        }
+        if (!tickers.isEmpty()) {
+            stockRepository.findBySecidIn(tickers).forEach(stock -> stocksBySecid.putIfAbsent(stock.getSecid(), stock));
+            bondRepository.findBySecidIn(tickers).forEach(bond -> bondsBySecid.putIfAbsent(bond.getSecid(), bond));
+        }
+
+        Map<T, ResolvedInstrument> result = new IdentityHashMap<>();
+        for (T item : items) {
+            String rawIsin = isinOf.apply(item);
+            String ticker = tickerOf.apply(item);
+            MoexStock tickerStock = ticker != null ? stocksBySecid.get(ticker) : null;
+            Bond tickerBond = ticker != null ? bondsBySecid.get(ticker) : null;
+
+            String isin = null;
+            if (hasText(rawIsin)) {
+                isin = rawIsin.trim();
+            } else if (tickerStock != null && hasText(tickerStock.getIsin())) {
+                isin = tickerStock.getIsin().trim();
+            } else if (tickerBond != null && hasText(tickerBond.getIsin())) {
+                isin = tickerBond.getIsin().trim();
+            }
+
+            if (isin == null) {
+                log.warn("ISIN не найден для тикера {}", ticker);
+                continue;
+            }
+
+            MoexStock stock = stocksByIsin.get(isin);
+            Bond bond = bondsByIsin.get(isin);
+            if (stock == null && tickerStock != null && isin.equals(tickerStock.getIsin())) {
+                stock = tickerStock;
+            }
+            if (bond == null && tickerBond != null && isin.equals(tickerBond.getIsin())) {
+                bond = tickerBond;
+            }
+
+            String securityType = null;
+            if (stock != null) {
+                securityType = "STOCK";
+            } else if (bond != null) {
+                securityType = "BOND";
+            } else if (tickerStock != null) {
+                securityType = "STOCK";
+            } else if (tickerBond != null) {
+                securityType = "BOND";
+            }
+
+            result.put(item, new ResolvedInstrument(isin, securityType,
+                    "STOCK".equals(securityType) ? stock : null,
+                    "BOND".equals(securityType) ? bond : null));
+        }
+
+        log.debug("Определено инструментов для {} из {} записей ALOR (ISIN: {}, тикеров: {})",
+                result.size(), items.size(), isins.size(), tickers.size());
+        return result;
+    }
+
+    private boolean hasText(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+
     /**
      * Извлекает тикер из symbol или brokerSymbol
      * Если brokerSymbol имеет формат "MOEX:SYMBOL", убирает префикс
@@ -1,11 +1,10 @@
 package com.invest.management.alor;
 
-import com.invest.management.alor.common.AlorApiClient;
+import com.invest.management.alor.common.AlorAsyncClient;
 import com.invest.management.alor.dto.AlorPosition;
-import com.invest.management.moex.MoexStockRepository;
-import com.invest.management.moex.bond.BondRepository;
 import com.invest.management.portfolio.Portfolio;
 import com.invest.management.portfolio.PortfolioPosition;
+import com.invest.management.portfolio.PortfolioPositionEvents;
 import com.invest.management.portfolio.PortfolioPositionRepository;
 import com.invest.management.user.AppUser;
 import org.slf4j.Logger;
@@ -16,9 +15,11 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -29,22 +30,19 @@ public class AlorPortfolioService {
 
     private static final Logger log = LoggerFactory.getLogger(AlorPortfolioService.class);
 
-    private final AlorApiClient alorApiClient;
+    private final AlorAsyncClient alorAsyncClient;
     private final AlorIsinResolver isinResolver;
     private final PortfolioPositionRepository positionRepository;
-    private final MoexStockRepository stockRepository;
-    private final BondRepository bondRepository;
+    private final PortfolioPositionEvents positionEvents;
 
-    public AlorPortfolioService(AlorApiClient alorApiClient,
+    public AlorPortfolioService(AlorAsyncClient alorAsyncClient,
                                 AlorIsinResolver isinResolver,
                                 PortfolioPositionRepository positionRepository,
-                                MoexStockRepository stockRepository,
-                                BondRepository bondRepository) {
-        this.alorApiClient = alorApiClient;
+                                PortfolioPositionEvents positionEvents) {
+        this.alorAsyncClient = alorAsyncClient;
         this.isinResolver = isinResolver;
         this.positionRepository = positionRepository;
-        this.stockRepository = stockRepository;
-        this.bondRepository = bondRepository;
+        this.positionEvents = positionEvents;
     }
 
     /**
@@ -100,6 +98,8 @@ public class AlorPortfolioService {
 
     /**
      * Синхронизирует позиции портфеля из ALOR API
+     * Число запросов к БД не зависит от количества позиций: существующие позиции и MOEX справочники
+     * загружаются пачкой, разница считается в памяти и применяется одним saveAll/deleteAllInBatch
      * 
      * @param portfolio портфель
      * @param user пользователь
@@ -120,7 +120,7 @@ public class AlorPortfolioService {
         SyncResult result = new SyncResult();
 
         // Получаем позиции из ALOR
-        List<AlorPosition> alorPositions = alorApiClient.getPositions(user, environment, alorPortfolioId, exchange);
+        List<AlorPosition> alorPositions = alorAsyncClient.getPositions(user, environment, alorPortfolioId, exchange).join();
         result.setTotalPositions(alorPositions.size());
 
         if (alorPositions.isEmpty()) {
@@ -128,30 +128,36 @@ public class AlorPortfolioService {
             return result;
         }
 
-        // Получаем существующие позиции портфеля
+        // Получаем существующие позиции портфеля одним запросом и индексируем по ISIN
         List<PortfolioPosition> existingPositions = positionRepository.findByPortfolio(portfolio);
-        Set<String> existingIsins = new HashSet<>();
+        Map<String, PortfolioPosition> positionsByIsin = new HashMap<>();
         for (PortfolioPosition existing : existingPositions) {
-            existingIsins.add(existing.getIsin());
+            positionsByIsin.put(existing.getIsin(), existing);
         }
 
-        // Множество ISIN, которые есть в ALOR (для удаления позиций, которых нет в ALOR)
-        Set<String> alorIsins = new HashSet<>();
-
-        // Обрабатываем каждую позицию из ALOR
+        // Валютные позиции учитываем как свободные средства, остальные определяем пачкой
+        List<AlorPosition> securityPositions = new ArrayList<>();
         for (AlorPosition alorPosition : alorPositions) {
-            // Пропускаем валютные позиции (обрабатываем отдельно для свободных средств)
             if (Boolean.TRUE.equals(alorPosition.getIsCurrency())) {
                 if ("RUB".equals(alorPosition.getSymbol()) && alorPosition.getQtyUnits() != null) {
                     result.setFreeCashRUB(result.getFreeCashRUB().add(alorPosition.getQtyUnits()));
                 }
                 result.setSkippedPositions(result.getSkippedPositions() + 1);
-                continue;
+            } else {
+                securityPositions.add(alorPosition);
             }
+        }
+
+        // Определяем ISIN, тип и связи с MOEX справочниками для всех позиций за один проход
+        Map<AlorPosition, AlorIsinResolver.ResolvedInstrument> instruments = isinResolver.resolveAll(securityPositions);
+
+        // Множество ISIN, которые есть в ALOR (для удаления позиций, которых нет в ALOR)
+        Set<String> alorIsins = new HashSet<>();
+        Map<String, PortfolioPosition> positionsToSave = new LinkedHashMap<>();
 
-            // Определяем ISIN
-            Optional<String> isinOpt = isinResolver.resolveIsin(alorPosition);
-            if (isinOpt.isEmpty()) {
+        for (AlorPosition alorPosition : securityPositions) {
+            AlorIsinResolver.ResolvedInstrument instrument = instruments.get(alorPosition);
+            if (instrument == null) {
                 String positionInfo = String.format("%s (%s)", 
                         alorPosition.getShortName() != null ? alorPosition.getShortName() : alorPosition.getSymbol(),
                         alorPosition.getSymbol());
@@ -161,35 +167,22 @@ public class AlorPortfolioService {
                 continue;
             }
 
-            String isin = isinOpt.get();
+            String isin = instrument.isin();
             alorIsins.add(isin);
 
             // Определяем тип инструмента
-            String securityType = isinResolver.determineSecurityType(alorPosition);
+            String securityType = instrument.securityType();
             if (securityType == null) {
                 securityType = "STOCK"; // По умолчанию, если не удалось определить
             }
 
-            // Находим или создаем позицию
-            Optional<PortfolioPosition> existingPositionOpt = positionRepository.findByPortfolioAndIsin(portfolio, isin);
-            PortfolioPosition position;
-            if (existingPositionOpt.isPresent()) {
-                position = existingPositionOpt.get();
-                log.debug("Обновление существующей позиции: ISIN={}, quantity={} -> {}", 
-                        isin, position.getQuantity(), alorPosition.getQtyUnits());
-            } else {
-                position = new PortfolioPosition();
-                position.setPortfolio(portfolio);
-                position.setIsin(isin);
-                log.debug("Создание новой позиции: ISIN={}, quantity={}", isin, alorPosition.getQtyUnits());
-            }
-
-            // Обновляем данные позиции
+            // Определяем количество до изменения позиции
+            BigDecimal quantity;
             if (alorPosition.getQtyUnits() != null) {
-                position.setQuantity(alorPosition.getQtyUnits());
+                quantity = alorPosition.getQtyUnits();
             } else if (alorPosition.getQty() != null && alorPosition.getLotSize() != null && alorPosition.getLotSize() > 0) {
                 // Если qtyUnits нет, вычисляем из qty * lotSize
-                position.setQuantity(alorPosition.getQty().multiply(BigDecimal.valueOf(alorPosition.getLotSize())));
+                quantity = alorPosition.getQty().multiply(BigDecimal.valueOf(alorPosition.getLotSize()));
             } else {
                 log.warn("Не удалось определить quantity для позиции ISIN={}", isin);
                 result.getProblematicPositions().add(String.format("%s (ISIN: %s) - не удалось определить количество", 
@@ -198,6 +191,21 @@ public class AlorPortfolioService {
                 continue;
             }
 
+            // Находим или создаем позицию (в памяти, без запроса к БД)
+            PortfolioPosition position = positionsByIsin.get(isin);
+            if (position != null) {
+                log.debug("Обновление существующей позиции: ISIN={}, quantity={} -> {}", 
+                        isin, position.getQuantity(), quantity);
+            } else {
+                position = new PortfolioPosition();
+                position.setPortfolio(portfolio);
+                position.setIsin(isin);
+                positionsByIsin.put(isin, position);
+                log.debug("Создание новой позиции: ISIN={}, quantity={}", isin, quantity);
+            }
+
+            position.setQuantity(quantity);
+
             // Обновляем среднюю цену покупки
             if (alorPosition.getAvgPrice() != null) {
                 position.setAveragePurchasePrice(alorPosition.getAvgPrice());
@@ -211,50 +219,39 @@ public class AlorPortfolioService {
                 position.setLastKnownPrice(currentPrice);
             }
 
-            // Обновляем тип инструмента
+            // Обновляем тип инструмента и связи с MOEX справочниками
             position.setSecurityType(securityType);
-            
-            // Устанавливаем связи с MOEX справочниками
-            setMoexRelations(position, isin, securityType);
+            if (instrument.stock() != null) {
+                position.setMoexStock(instrument.stock());
+            }
+            if (instrument.bond() != null) {
+                position.setMoexBond(instrument.bond());
+            }
 
-            // Сохраняем позицию
-            positionRepository.save(position);
+            positionsToSave.put(isin, position);
             result.setSuccessfulPositions(result.getSuccessfulPositions() + 1);
         }
 
-        // Удаляем позиции, которых нет в ALOR
-        Set<String> isinsToDelete = new HashSet<>(existingIsins);
-        isinsToDelete.removeAll(alorIsins);
-        for (String isinToDelete : isinsToDelete) {
-            Optional<PortfolioPosition> positionToDelete = positionRepository.findByPortfolioAndIsin(portfolio, isinToDelete);
-            if (positionToDelete.isPresent()) {
-                positionRepository.delete(positionToDelete.get());
-                log.debug("Удалена позиция, которой нет в ALOR: ISIN={}", isinToDelete);
+        // Сохраняем все изменения одной пачкой
+        positionRepository.saveAll(positionsToSave.values());
+        positionEvents.positionsChanged(portfolio);
+
+        // Удаляем позиции, которых нет в ALOR, одним запросом
+        List<PortfolioPosition> positionsToDelete = new ArrayList<>();
+        for (PortfolioPosition existing : existingPositions) {
+            if (!alorIsins.contains(existing.getIsin())) {
+                positionsToDelete.add(existing);
+                log.debug("Удалена позиция, которой нет в ALOR: ISIN={}", existing.getIsin());
             }
         }
+        if (!positionsToDelete.isEmpty()) {
+            positionRepository.deleteAllInBatch(positionsToDelete);
+        }
 
         log.info("Синхронизация завершена для портфеля {}: успешно={}, пропущено={}, проблемных={}, удалено={}, свободные средства RUB={}", 
                 portfolio.getId(), result.getSuccessfulPositions(), result.getSkippedPositions(), 
-                result.getProblematicPositions().size(), isinsToDelete.size(), result.getFreeCashRUB());
+                result.getProblematicPositions().size(), positionsToDelete.size(), result.getFreeCashRUB());
 
         return result;
     }
-
-    /**
-     * Устанавливает связи с MOEX справочниками на основе ISIN и типа инструмента
-     */
-    private void setMoexRelations(PortfolioPosition position, String isin, String securityType) {
-        if ("STOCK".equals(securityType)) {
-            Optional<com.invest.management.moex.MoexStock> stockOpt = stockRepository.findByIsin(isin);
-            if (stockOpt.isPresent()) {
-                position.setMoexStock(stockOpt.get());
-            }
-        } else if ("BOND".equals(securityType)) {
-            Optional<com.invest.management.moex.bond.Bond> bondOpt = bondRepository.findByIsin(isin);
-            if (bondOpt.isPresent()) {
-                position.setMoexBond(bondOpt.get());
-            }
-        }
-    }
 }
-
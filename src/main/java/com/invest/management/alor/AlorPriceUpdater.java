@@ -1,8 +1,12 @@
 package com.invest.management.alor;
 
+import com.invest.management.alert.PriceAlertEngine;
+import com.invest.management.alert.PriceTick;
 import com.invest.management.alor.common.AlorApiClient;
+import com.invest.management.alor.common.AlorAsyncClient;
 import com.invest.management.moex.MoexStockRepository;
 import com.invest.management.moex.bond.BondRepository;
+import com.invest.management.portfolio.PortfolioDataVersion;
 import com.invest.management.portfolio.PortfolioPosition;
 import com.invest.management.portfolio.PortfolioPositionRepository;
 import com.invest.management.user.AppUser;
@@ -15,6 +19,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -28,25 +33,34 @@ public class AlorPriceUpdater {
 
     private final AlorUserTokenRepository tokenRepository;
     private final AlorApiClient alorApiClient;
+    private final AlorAsyncClient alorAsyncClient;
     private final PortfolioPositionRepository positionRepository;
     private final MoexStockRepository stockRepository;
     private final BondRepository bondRepository;
+    private final PriceAlertEngine priceAlertEngine;
+    private final PortfolioDataVersion portfolioDataVersion;
 
     public AlorPriceUpdater(AlorUserTokenRepository tokenRepository,
                            AlorApiClient alorApiClient,
+                           AlorAsyncClient alorAsyncClient,
                            PortfolioPositionRepository positionRepository,
                            MoexStockRepository stockRepository,
-                           BondRepository bondRepository) {
+                           BondRepository bondRepository,
+                           PriceAlertEngine priceAlertEngine,
+                           PortfolioDataVersion portfolioDataVersion) {
         this.tokenRepository = tokenRepository;
         this.alorApiClient = alorApiClient;
+        this.alorAsyncClient = alorAsyncClient;
         this.positionRepository = positionRepository;
         this.stockRepository = stockRepository;
         this.bondRepository = bondRepository;
+        this.priceAlertEngine = priceAlertEngine;
+        this.portfolioDataVersion = portfolioDataVersion;
     }
 
     /**
      * Обновляет цены позиций из ALOR API для всех портфелей пользователей с токенами
-     * Использует API получения котировок по тикерам для оптимизации запросов
+     * Использует пакетный API котировок (несколько тикеров в одном запросе)
      * Запускается по расписанию, определенному в application.properties
      */
     @Scheduled(cron = "${alor.price-updater.cron:0 * * * * *}")
@@ -129,44 +143,53 @@ public class AlorPriceUpdater {
                 return;
             }
             String accessToken = accessTokenOpt.get();
-            log.info("✓ Access Token получен, будет использован для всех {} запросов к ALOR API", positionsByTicker.size());
+            log.info("✓ Access Token получен, будет использован для запросов котировок по {} тикерам", positionsByTicker.size());
 
-            // Получаем цены из ALOR API для каждого уникального тикера (кэширование)
-            Map<String, BigDecimal> pricesByTicker = new HashMap<>();
-            int apiRequests = 0;
-            int apiErrors = 0;
-
-            for (Map.Entry<String, List<PortfolioPosition>> entry : positionsByTicker.entrySet()) {
-                String tickerKey = entry.getKey();
+            // Группируем тикеры по бирже, чтобы запрашивать котировки пачками
+            Map<String, List<String>> symbolsByExchange = new HashMap<>();
+            for (String tickerKey : positionsByTicker.keySet()) {
                 String[] parts = tickerKey.split(":", 2);
                 if (parts.length != 2) {
                     continue;
                 }
-                String exchange = parts[0];
-                String symbol = parts[1];
+                symbolsByExchange.computeIfAbsent(parts[0], k -> new ArrayList<>()).add(parts[1]);
+            }
 
-                try {
-                    Optional<BigDecimal> priceOpt = alorApiClient.getQuoteBySymbol(
-                            accessToken, environment, exchange, symbol);
-                    
-                    apiRequests++;
-                    
-                    if (priceOpt.isPresent()) {
-                        pricesByTicker.put(tickerKey, priceOpt.get());
+            // Получаем цены из ALOR API пачками (один запрос на alor.api.quotes-batch-size тикеров);
+            // пачки всех бирж запрашиваются параллельно в пределах alor.api.async.max-concurrency
+            Map<String, CompletableFuture<Map<String, BigDecimal>>> quotesByExchange = new HashMap<>();
+            for (Map.Entry<String, List<String>> entry : symbolsByExchange.entrySet()) {
+                quotesByExchange.put(entry.getKey(), alorAsyncClient.getQuotesBySymbols(
+                        accessToken, environment, entry.getKey(), entry.getValue()));
+            }
+
+            Map<String, BigDecimal> pricesByTicker = new HashMap<>();
+            int apiRequests = 0;
+            int apiErrors = 0;
+
+            for (Map.Entry<String, List<String>> entry : symbolsByExchange.entrySet()) {
+                String exchange = entry.getKey();
+                List<String> symbols = entry.getValue();
+
+                Map<String, BigDecimal> quotes = quotesByExchange.get(exchange).join();
+                apiRequests += alorAsyncClient.countQuoteBatches(symbols);
+
+                for (String symbol : symbols) {
+                    BigDecimal price = quotes.get(symbol);
+                    if (price != null) {
+                        pricesByTicker.put(exchange + ":" + symbol, price);
                     } else {
                         apiErrors++;
                         log.warn("⚠ Не удалось получить цену из ALOR для {} ({})", symbol, exchange);
                     }
-                } catch (Exception e) {
-                    apiErrors++;
-                    log.error("Ошибка при получении цены из ALOR для {} ({}): {}", 
-                            symbol, exchange, e.getMessage(), e);
                 }
             }
 
             log.info("Выполнено {} запросов к ALOR API, получено {} цен, ошибок: {}", 
                     apiRequests, pricesByTicker.size(), apiErrors);
 
+            checkPriceAlerts(pricesByTicker);
+
             // Обновляем цены во всех позициях
             int totalUpdated = 0;
             int totalSkipped = 0;
@@ -185,11 +208,15 @@ public class AlorPriceUpdater {
                 String symbol = parts.length == 2 ? parts[1] : tickerKey;
 
                 for (PortfolioPosition position : positions) {
+                    // Котировки облигаций приходят в процентах от номинала, позиция хранит цену в рублях
+                    BigDecimal positionPrice = position.getMoexBond() != null
+                            ? position.getMoexBond().toAbsolutePrice(price)
+                            : price;
                     BigDecimal oldPrice = position.getLastKnownPrice();
                     
                     // Обновляем last_known_price, если цена изменилась
-                    if (oldPrice == null || !oldPrice.equals(price)) {
-                        position.setLastKnownPrice(price);
+                    if (oldPrice == null || oldPrice.compareTo(positionPrice) != 0) {
+                        position.setLastKnownPrice(positionPrice);
                         positionRepository.save(position);
                         totalUpdated++;
                         
@@ -200,19 +227,20 @@ public class AlorPriceUpdater {
 
                         if (oldPrice == null) {
                             log.info("✓ Обновлена цена для бумаги: {} (ISIN: {}, тикер: {}) в портфеле {}: установлена цена {} ₽", 
-                                    shortName, position.getIsin(), symbol, position.getPortfolio().getId(), price);
+                                    shortName, position.getIsin(), symbol, position.getPortfolio().getId(), positionPrice);
                         } else {
-                            BigDecimal priceChange = price.subtract(oldPrice);
+                            BigDecimal priceChange = positionPrice.subtract(oldPrice);
                             String changeSign = priceChange.compareTo(BigDecimal.ZERO) >= 0 ? "+" : "";
                             log.info("✓ Обновлена цена для бумаги: {} (ISIN: {}, тикер: {}) в портфеле {}: {} ₽ -> {} ₽ (изменение: {}{} ₽)", 
                                     shortName, position.getIsin(), symbol, position.getPortfolio().getId(), 
-                                    oldPrice, price, changeSign, priceChange);
+                                    oldPrice, positionPrice, changeSign, priceChange);
                         }
                     }
                 }
             }
 
             if (totalUpdated > 0) {
+                portfolioDataVersion.markChanged();
                 log.info("═══════════════════════════════════════════════════════════");
                 log.info("Обновление цен из ALOR завершено: обновлено позиций {}, пропущено {}, запросов к API: {}", 
                         totalUpdated, totalSkipped, apiRequests);
@@ -266,5 +294,22 @@ public class AlorPriceUpdater {
 
         return null;
     }
-}
 
+    /**
+     * Передает полученные котировки в проверку уровней поддержки/сопротивления пользователей
+     * Ошибка проверки не должна прерывать обновление цен позиций
+     */
+    private void checkPriceAlerts(Map<String, BigDecimal> pricesByTicker) {
+        try {
+            List<PriceTick> ticks = new ArrayList<>(pricesByTicker.size());
+            for (Map.Entry<String, BigDecimal> entry : pricesByTicker.entrySet()) {
+                String[] parts = entry.getKey().split(":", 2);
+                String symbol = parts.length == 2 ? parts[1] : entry.getKey();
+                ticks.add(new PriceTick(symbol, PriceTick.SOURCE_ALOR, null, entry.getValue()));
+            }
+            priceAlertEngine.onPriceTicks(ticks);
+        } catch (Exception e) {
+            log.error("Ошибка при проверке ценовых уровней пользователей", e);
+        }
+    }
+}
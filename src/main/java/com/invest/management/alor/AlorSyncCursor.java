@@ -0,0 +1,126 @@
+package com.invest.management.alor;
+
+import com.invest.management.portfolio.Portfolio;
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+
+/**
+ * Курсор инкрементальной синхронизации сделок и движений денежных средств из ALOR
+ * Хранит отметку последней загруженной записи, чтобы каждый запуск запрашивал только новые данные
+ */
+@Entity
+@Table(name = "alor_sync_cursors",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"portfolio_id"}))
+public class AlorSyncCursor {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "portfolio_id", nullable = false)
+    private Portfolio portfolio;
+
+    @Column(name = "environment", nullable = false, length = 20)
+    private String environment; // "test" или "production"
+
+    @Column(name = "alor_portfolio_id", nullable = false, length = 50)
+    private String alorPortfolioId;
+
+    @Column(name = "exchange", nullable = false, length = 20)
+    private String exchange;
+
+    @Column(name = "last_trade_date")
+    private LocalDate lastTradeDate;
+
+    @Column(name = "last_trade_id", length = 50)
+    private String lastTradeId;
+
+    @Column(name = "last_cash_date")
+    private LocalDate lastCashDate;
+
+    @Column(name = "last_synced_at")
+    private OffsetDateTime lastSyncedAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private OffsetDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    void prePersist() {
+        updatedAt = OffsetDateTime.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Portfolio getPortfolio() {
+        return portfolio;
+    }
+
+    public void setPortfolio(Portfolio portfolio) {
+        this.portfolio = portfolio;
+    }
+
+    public String getEnvironment() {
+        return environment;
+    }
+
+    public void setEnvironment(String environment) {
+        this.environment = environment;
+    }
+
+    public String getAlorPortfolioId() {
+        return alorPortfolioId;
+    }
+
+    public void setAlorPortfolioId(String alorPortfolioId) {
+        this.alorPortfolioId = alorPortfolioId;
+    }
+
+    public String getExchange() {
+        return exchange;
+    }
+
+    public void setExchange(String exchange) {
+        this.exchange = exchange;
+    }
+
+    public LocalDate getLastTradeDate() {
+        return lastTradeDate;
+    }
+
+    public void setLastTradeDate(LocalDate lastTradeDate) {
+        this.lastTradeDate = lastTradeDate;
+    }
+
+    public String getLastTradeId() {
+        return lastTradeId;
+    }
+
+    public void setLastTradeId(String lastTradeId) {
+        this.lastTradeId = lastTradeId;
+    }
+
+    public LocalDate getLastCashDate() {
+        return lastCashDate;
+    }
+
+    public void setLastCashDate(LocalDate lastCashDate) {
+        this.lastCashDate = lastCashDate;
+    }
+
+    public OffsetDateTime getLastSyncedAt() {
+        return lastSyncedAt;
+    }
+
+    public void setLastSyncedAt(OffsetDateTime lastSyncedAt) {
+        this.lastSyncedAt = lastSyncedAt;
+    }
+
+    public OffsetDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
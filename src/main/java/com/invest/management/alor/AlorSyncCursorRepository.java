@@ -0,0 +1,16 @@
+package com.invest.management.alor;
+
+import com.invest.management.portfolio.Portfolio;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface AlorSyncCursorRepository extends JpaRepository<AlorSyncCursor, Long> {
+
+    Optional<AlorSyncCursor> findByPortfolio(Portfolio portfolio);
+
+    @Query("SELECT c.id FROM AlorSyncCursor c")
+    List<Long> findAllIds();
+}
@@ -0,0 +1,369 @@
+package com.invest.management.alor;
+
+import com.invest.management.alor.common.AlorAsyncClient;
+import com.invest.management.alor.dto.AlorCashMovement;
+import com.invest.management.alor.dto.AlorTransaction;
+import com.invest.management.portfolio.BrokerReport;
+import com.invest.management.portfolio.BrokerReportRepository;
+import com.invest.management.portfolio.Portfolio;
+import com.invest.management.portfolio.PortfolioCashBalanceService;
+import com.invest.management.portfolio.PortfolioCashMovement;
+import com.invest.management.portfolio.PortfolioCashMovementRepository;
+import com.invest.management.portfolio.PortfolioTransaction;
+import com.invest.management.portfolio.PortfolioTransactionRepository;
+import com.invest.management.user.AppUser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Сервис инкрементальной синхронизации сделок и движений денежных средств из ALOR API
+ * Для каждого портфеля хранится курсор ({@link AlorSyncCursor}) с датой и номером последней
+ * загруженной сделки, поэтому каждый запуск запрашивает у ALOR только новые записи
+ */
+@Service
+public class AlorTransactionSyncService {
+
+    private static final Logger log = LoggerFactory.getLogger(AlorTransactionSyncService.class);
+
+    private final AlorAsyncClient alorAsyncClient;
+    private final AlorIsinResolver isinResolver;
+    private final AlorSyncCursorRepository cursorRepository;
+    private final PortfolioTransactionRepository transactionRepository;
+    private final PortfolioCashMovementRepository cashMovementRepository;
+    private final PortfolioCashBalanceService cashBalanceService;
+    private final BrokerReportRepository reportRepository;
+
+    /**
+     * Глубина первой загрузки (в днях), если для портфеля еще нет курсора
+     */
+    @Value("${alor.transaction-sync.initial-days:365}")
+    private int initialDays;
+
+    public AlorTransactionSyncService(AlorAsyncClient alorAsyncClient,
+                                      AlorIsinResolver isinResolver,
+                                      AlorSyncCursorRepository cursorRepository,
+                                      PortfolioTransactionRepository transactionRepository,
+                                      PortfolioCashMovementRepository cashMovementRepository,
+                                      PortfolioCashBalanceService cashBalanceService,
+                                      BrokerReportRepository reportRepository) {
+        this.alorAsyncClient = alorAsyncClient;
+        this.isinResolver = isinResolver;
+        this.cursorRepository = cursorRepository;
+        this.transactionRepository = transactionRepository;
+        this.cashMovementRepository = cashMovementRepository;
+        this.cashBalanceService = cashBalanceService;
+        this.reportRepository = reportRepository;
+    }
+
+    /**
+     * Результат синхронизации сделок и движений денежных средств
+     */
+    public record TransactionSyncResult(int newTransactions, int skippedTransactions, int newCashMovements) {
+    }
+
+    /**
+     * Регистрирует портфель для периодической синхронизации (создает или обновляет курсор)
+     * Дата последней загрузки при этом не сбрасывается
+     */
+    @Transactional
+    public AlorSyncCursor registerPortfolio(Portfolio portfolio, String environment,
+                                            String alorPortfolioId, String exchange) {
+        AlorSyncCursor cursor = cursorRepository.findByPortfolio(portfolio).orElseGet(() -> {
+            AlorSyncCursor created = new AlorSyncCursor();
+            created.setPortfolio(portfolio);
+            return created;
+        });
+        cursor.setEnvironment(environment);
+        cursor.setAlorPortfolioId(alorPortfolioId);
+        cursor.setExchange(exchange == null || exchange.isEmpty() ? "MOEX" : exchange);
+        return cursorRepository.save(cursor);
+    }
+
+    /**
+     * Загружает новые сделки и движения денежных средств для портфеля, начиная с отметки курсора
+     *
+     * @param cursorId идентификатор курсора синхронизации
+     * @return результат синхронизации
+     */
+    @Transactional
+    public TransactionSyncResult syncPortfolio(Long cursorId) {
+        AlorSyncCursor cursor = cursorRepository.findById(cursorId)
+                .orElseThrow(() -> new IllegalArgumentException("Курсор синхронизации ALOR не найден: " + cursorId));
+        Portfolio portfolio = cursor.getPortfolio();
+        AppUser user = portfolio.getUser();
+        LocalDate today = LocalDate.now();
+
+        // Запрашиваем с даты последней сделки включительно: сделки того же дня могли появиться позже,
+        // повторно полученные записи отсекаются дедупликацией по номеру сделки
+        LocalDate tradesFrom = cursor.getLastTradeDate() != null
+                ? cursor.getLastTradeDate()
+                : today.minusDays(initialDays);
+        LocalDate cashFrom = cursor.getLastCashDate() != null
+                ? cursor.getLastCashDate()
+                : today.minusDays(initialDays);
+
+        // Сделки и движения денежных средств запрашиваются одновременно
+        CompletableFuture<List<AlorTransaction>> transactionsRequest = alorAsyncClient.getTransactions(
+                user, cursor.getEnvironment(), cursor.getAlorPortfolioId(), tradesFrom, today, cursor.getExchange());
+        CompletableFuture<List<AlorCashMovement>> movementsRequest = alorAsyncClient.getCashMovements(
+                user, cursor.getEnvironment(), cursor.getAlorPortfolioId(), cashFrom, today, cursor.getExchange());
+        List<AlorTransaction> alorTransactions = transactionsRequest.join();
+        List<AlorCashMovement> alorMovements = movementsRequest.join();
+
+        int[] transactionCounts = saveNewTransactions(portfolio, cursor, alorTransactions);
+
+        int newCashMovements = saveNewCashMovements(portfolio, cursor, alorMovements, cashFrom);
+
+        cursor.setLastSyncedAt(OffsetDateTime.now());
+        cursorRepository.save(cursor);
+
+        log.info("Синхронизация сделок ALOR для портфеля {}: новых сделок {}, пропущено {}, новых движений ДС {} (курсор: {} / {})",
+                portfolio.getId(), transactionCounts[0], transactionCounts[1], newCashMovements,
+                cursor.getLastTradeDate(), cursor.getLastTradeId());
+
+        return new TransactionSyncResult(transactionCounts[0], transactionCounts[1], newCashMovements);
+    }
+
+    /**
+     * Сохраняет сделки, которых еще нет в портфеле, и сдвигает курсор
+     * Курсор сдвигается только по сохраненным и уже загруженным сделкам и не уходит дальше даты
+     * самой ранней сделки, для которой не найден ISIN (например, облигация еще не в справочнике):
+     * такие сделки запрашиваются повторно при следующих запусках
+     * @return массив {сохранено, пропущено}
+     */
+    private int[] saveNewTransactions(Portfolio portfolio, AlorSyncCursor cursor, List<AlorTransaction> alorTransactions) {
+        if (alorTransactions.isEmpty()) {
+            return new int[]{0, 0};
+        }
+
+        // Одна сделка может прийти несколько раз (перекрытие окна запроса) - оставляем по номеру
+        Map<String, AlorTransaction> byTradeNumber = new LinkedHashMap<>();
+        int skipped = 0;
+        for (AlorTransaction alorTransaction : alorTransactions) {
+            if (alorTransaction.getId() == null || alorTransaction.getDate() == null) {
+                skipped++;
+                continue;
+            }
+            byTradeNumber.putIfAbsent(String.valueOf(alorTransaction.getId()), alorTransaction);
+        }
+
+        // Дедупликация одним запросом по набору номеров сделок
+        Set<String> existing = byTradeNumber.isEmpty()
+                ? Set.of()
+                : transactionRepository.findExistingTradeNumbers(portfolio, byTradeNumber.keySet());
+
+        Map<AlorTransaction, AlorIsinResolver.ResolvedInstrument> instruments =
+                isinResolver.resolveAllTransactions(byTradeNumber.values());
+
+        List<PortfolioTransaction> toSave = new ArrayList<>();
+        LocalDate earliestUnresolved = null;
+        for (Map.Entry<String, AlorTransaction> entry : byTradeNumber.entrySet()) {
+            String tradeNumber = entry.getKey();
+            AlorTransaction alorTransaction = entry.getValue();
+
+            if (existing.contains(tradeNumber)) {
+                advanceTradeCursor(cursor, alorTransaction, tradeNumber);
+                skipped++;
+                continue;
+            }
+
+            AlorIsinResolver.ResolvedInstrument instrument = instruments.get(alorTransaction);
+            if (instrument == null) {
+                log.warn("Пропущена сделка ALOR {} ({}): не удалось определить ISIN", tradeNumber, alorTransaction.getSymbol());
+                LocalDate tradeDate = alorTransaction.getDate().toLocalDate();
+                if (earliestUnresolved == null || tradeDate.isBefore(earliestUnresolved)) {
+                    earliestUnresolved = tradeDate;
+                }
+                skipped++;
+                continue;
+            }
+
+            // Сделки без количества, цены или направления не исправятся при повторном запросе
+            PortfolioTransaction transaction = toPortfolioTransaction(portfolio, alorTransaction, instrument, tradeNumber);
+            if (transaction == null) {
+                skipped++;
+                continue;
+            }
+            advanceTradeCursor(cursor, alorTransaction, tradeNumber);
+            toSave.add(transaction);
+        }
+
+        if (earliestUnresolved != null && cursor.getLastTradeDate() != null
+                && cursor.getLastTradeDate().isAfter(earliestUnresolved)) {
+            cursor.setLastTradeDate(earliestUnresolved);
+            cursor.setLastTradeId(null);
+        }
+
+        transactionRepository.saveAll(toSave);
+        return new int[]{toSave.size(), skipped};
+    }
+
+    private void advanceTradeCursor(AlorSyncCursor cursor, AlorTransaction alorTransaction, String tradeNumber) {
+        LocalDate tradeDate = alorTransaction.getDate().toLocalDate();
+        if (cursor.getLastTradeDate() == null || tradeDate.isAfter(cursor.getLastTradeDate())) {
+            cursor.setLastTradeDate(tradeDate);
+            cursor.setLastTradeId(tradeNumber);
+        } else if (tradeDate.equals(cursor.getLastTradeDate()) && isGreaterTradeNumber(tradeNumber, cursor.getLastTradeId())) {
+            cursor.setLastTradeId(tradeNumber);
+        }
+    }
+
+    private boolean isGreaterTradeNumber(String candidate, String current) {
+        if (current == null) {
+            return true;
+        }
+        if (candidate.length() != current.length()) {
+            return candidate.length() > current.length();
+        }
+        return candidate.compareTo(current) > 0;
+    }
+
+    private PortfolioTransaction toPortfolioTransaction(Portfolio portfolio,
+                                                        AlorTransaction alorTransaction,
+                                                        AlorIsinResolver.ResolvedInstrument instrument,
+                                                        String tradeNumber) {
+        BigDecimal quantity = alorTransaction.getQtyUnits() != null
+                ? alorTransaction.getQtyUnits()
+                : alorTransaction.getQuantity();
+        BigDecimal price = alorTransaction.getPrice();
+        if (quantity == null || price == null) {
+            log.warn("Пропущена сделка ALOR {}: нет количества или цены", tradeNumber);
+            return null;
+        }
+
+        String operationType;
+        if ("buy".equalsIgnoreCase(alorTransaction.getSide())) {
+            operationType = "Покупка";
+        } else if ("sell".equalsIgnoreCase(alorTransaction.getSide())) {
+            operationType = "Продажа";
+        } else {
+            log.warn("Пропущена сделка ALOR {}: неизвестное направление {}", tradeNumber, alorTransaction.getSide());
+            return null;
+        }
+
+        BigDecimal amount = alorTransaction.getValue() != null
+                ? alorTransaction.getValue()
+                : price.multiply(quantity);
+
+        PortfolioTransaction transaction = new PortfolioTransaction();
+        transaction.setPortfolio(portfolio);
+        transaction.setIsin(instrument.isin());
+        transaction.setSecurityType(instrument.securityType() != null ? instrument.securityType() : "STOCK");
+        transaction.setTradeDate(alorTransaction.getDate().toLocalDate());
+        transaction.setTradeTime(alorTransaction.getDate().toLocalTime());
+        transaction.setCurrency(alorTransaction.getCurrency() != null ? alorTransaction.getCurrency() : "RUB");
+        transaction.setOperationType(operationType);
+        transaction.setQuantity(quantity);
+        transaction.setPrice(price);
+        transaction.setAmount(amount.setScale(2, RoundingMode.HALF_UP));
+        if (alorTransaction.getCommission() != null) {
+            transaction.setBrokerCommission(alorTransaction.getCommission().setScale(2, RoundingMode.HALF_UP));
+        }
+        transaction.setTradeNumber(tradeNumber);
+        return transaction;
+    }
+
+    /**
+     * Сохраняет движения денежных средств, которых еще нет в портфеле, и сдвигает курсор
+     * У движений ALOR нет идентификатора, поэтому дубликаты определяются по дате, валюте, сумме и описанию
+     * среди ранее загруженных из ALOR API движений. Ключи считаются с кратностью: два одинаковых
+     * начисления за день - два движения, а при повторной загрузке каждое совпадает со своей записью.
+     * Даты, покрытые загруженными отчетами брокера, пропускаются - за них движения берутся из отчета.
+     */
+    private int saveNewCashMovements(Portfolio portfolio, AlorSyncCursor cursor,
+                                     List<AlorCashMovement> alorMovements, LocalDate from) {
+        if (alorMovements.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, Integer> existingCounts = new HashMap<>();
+        for (PortfolioCashMovement existing : cashMovementRepository.findByPortfolioAndTradingPlatformAndDateGreaterThanEqual(
+                portfolio, PortfolioCashMovement.TRADING_PLATFORM_ALOR_API, from)) {
+            BigDecimal signed = existing.getCreditAmount() != null && existing.getCreditAmount().signum() != 0
+                    ? existing.getCreditAmount()
+                    : existing.getDebitAmount() != null ? existing.getDebitAmount().negate() : BigDecimal.ZERO;
+            existingCounts.merge(cashMovementKey(existing.getDate(), existing.getCurrency(), signed, existing.getDescription()),
+                    1, Integer::sum);
+        }
+        List<BrokerReport> reports = reportRepository.findByPortfolioOrderByReportPeriodStartDesc(portfolio);
+
+        List<PortfolioCashMovement> toSave = new ArrayList<>();
+        int coveredByReports = 0;
+        for (AlorCashMovement alorMovement : alorMovements) {
+            if (alorMovement.getDate() == null || alorMovement.getAmount() == null
+                    || alorMovement.getAmount().signum() == 0) {
+                continue;
+            }
+            if (cursor.getLastCashDate() == null || alorMovement.getDate().isAfter(cursor.getLastCashDate())) {
+                cursor.setLastCashDate(alorMovement.getDate());
+            }
+
+            String currency = alorMovement.getCurrency() != null ? alorMovement.getCurrency() : "RUB";
+            String description = alorMovement.getDescription() != null
+                    ? alorMovement.getDescription()
+                    : alorMovement.getOperationType();
+            BigDecimal amount = alorMovement.getAmount().setScale(2, RoundingMode.HALF_UP);
+
+            if (isCoveredByReport(reports, alorMovement.getDate())) {
+                coveredByReports++;
+                continue;
+            }
+            String key = cashMovementKey(alorMovement.getDate(), currency, amount, description);
+            Integer alreadyLoaded = existingCounts.get(key);
+            if (alreadyLoaded != null && alreadyLoaded > 0) {
+                existingCounts.put(key, alreadyLoaded - 1);
+                continue;
+            }
+
+            PortfolioCashMovement movement = new PortfolioCashMovement();
+            movement.setPortfolio(portfolio);
+            movement.setDate(alorMovement.getDate());
+            movement.setTradingPlatform(PortfolioCashMovement.TRADING_PLATFORM_ALOR_API);
+            movement.setDescription(description);
+            movement.setCurrency(currency);
+            if (amount.signum() > 0) {
+                movement.setCreditAmount(amount);
+            } else {
+                movement.setDebitAmount(amount.negate());
+            }
+            toSave.add(movement);
+        }
+
+        if (coveredByReports > 0) {
+            log.debug("Пропущено {} движений ДС ALOR за периоды загруженных отчетов брокера (портфель {})",
+                    coveredByReports, portfolio.getId());
+        }
+        cashMovementRepository.saveAll(toSave);
+        cashBalanceService.recordInserted(portfolio, toSave);
+        return toSave.size();
+    }
+
+    private boolean isCoveredByReport(List<BrokerReport> reports, LocalDate date) {
+        for (BrokerReport report : reports) {
+            if (!date.isBefore(report.getReportPeriodStart()) && !date.isAfter(report.getReportPeriodEnd())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String cashMovementKey(LocalDate date, String currency, BigDecimal signedAmount, String description) {
+        return date + "|" + currency + "|" + signedAmount.setScale(2, RoundingMode.HALF_UP).toPlainString()
+                + "|" + (description != null ? description : "");
+    }
+}
@@ -0,0 +1,58 @@
+package com.invest.management.alor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Периодическая инкрементальная синхронизация сделок и движений денежных средств из ALOR API
+ * Обрабатывает все портфели, для которых зарегистрирован курсор синхронизации
+ */
+@Service
+@ConditionalOnProperty(name = "alor.transaction-sync.enabled", havingValue = "true", matchIfMissing = false)
+public class AlorTransactionUpdater {
+
+    private static final Logger log = LoggerFactory.getLogger(AlorTransactionUpdater.class);
+
+    private final AlorSyncCursorRepository cursorRepository;
+    private final AlorTransactionSyncService syncService;
+
+    public AlorTransactionUpdater(AlorSyncCursorRepository cursorRepository,
+                                  AlorTransactionSyncService syncService) {
+        this.cursorRepository = cursorRepository;
+        this.syncService = syncService;
+    }
+
+    @Scheduled(cron = "${alor.transaction-sync.cron:0 */15 * * * *}")
+    public void syncTransactionsFromAlor() {
+        List<Long> cursorIds = cursorRepository.findAllIds();
+        if (cursorIds.isEmpty()) {
+            log.debug("Нет портфелей для синхронизации сделок из ALOR");
+            return;
+        }
+
+        log.info("Начало синхронизации сделок из ALOR для {} портфелей", cursorIds.size());
+        int totalTransactions = 0;
+        int totalCashMovements = 0;
+        int errors = 0;
+
+        // Каждый портфель синхронизируется в своей транзакции: ошибка одного не откатывает остальные
+        for (Long cursorId : cursorIds) {
+            try {
+                AlorTransactionSyncService.TransactionSyncResult result = syncService.syncPortfolio(cursorId);
+                totalTransactions += result.newTransactions();
+                totalCashMovements += result.newCashMovements();
+            } catch (Exception e) {
+                errors++;
+                log.error("Ошибка при синхронизации сделок ALOR (курсор {}): {}", cursorId, e.getMessage(), e);
+            }
+        }
+
+        log.info("Синхронизация сделок из ALOR завершена: новых сделок {}, новых движений ДС {}, ошибок {}",
+                totalTransactions, totalCashMovements, errors);
+    }
+}
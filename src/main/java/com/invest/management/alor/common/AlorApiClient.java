@@ -1,11 +1,11 @@
 package com.invest.management.alor.common;
 
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.invest.management.alor.dto.AlorCashMovement;
 import com.invest.management.alor.dto.AlorOrderbook;
 import com.invest.management.alor.dto.AlorPosition;
+import com.invest.management.alor.dto.AlorQuote;
 import com.invest.management.alor.dto.AlorTransaction;
 import com.invest.management.user.AppUser;
 import org.slf4j.Logger;
@@ -21,8 +21,13 @@ import org.springframework.web.client.RestTemplate;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -44,6 +49,12 @@ public class AlorApiClient {
     @Value("${alor.api.production-base-url:https://api.alor.ru}")
     private String productionBaseUrl;
 
+    /**
+     * Максимальное количество инструментов в одном запросе котировок
+     */
+    @Value("${alor.api.quotes-batch-size:50}")
+    private int quotesBatchSize;
+
     public AlorApiClient(RestTemplate alorRestTemplate,
                         ObjectMapper objectMapper,
                         AlorTokenService tokenService) {
@@ -108,9 +119,8 @@ public class AlorApiClient {
                     url, HttpMethod.GET, request, String.class);
             
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                JsonNode json = objectMapper.readTree(response.getBody());
                 // TODO: Адаптировать парсинг под реальную структуру ответа ALOR API
-                return objectMapper.convertValue(json, new TypeReference<List<AlorTransaction>>() {});
+                return objectMapper.readValue(response.getBody(), new TypeReference<List<AlorTransaction>>() {});
             }
             
             log.warn("Не удалось получить сделки: статус {}", response.getStatusCode());
@@ -143,9 +153,8 @@ public class AlorApiClient {
                     url, HttpMethod.GET, request, String.class);
             
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                JsonNode json = objectMapper.readTree(response.getBody());
                 // TODO: Адаптировать парсинг под реальную структуру ответа ALOR API
-                return objectMapper.convertValue(json, new TypeReference<List<AlorPosition>>() {});
+                return objectMapper.readValue(response.getBody(), new TypeReference<List<AlorPosition>>() {});
             }
             
             log.warn("Не удалось получить позиции: статус {}", response.getStatusCode());
@@ -182,9 +191,8 @@ public class AlorApiClient {
                     url, HttpMethod.GET, request, String.class);
             
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                JsonNode json = objectMapper.readTree(response.getBody());
                 // TODO: Адаптировать парсинг под реальную структуру ответа ALOR API
-                return objectMapper.convertValue(json, new TypeReference<List<AlorCashMovement>>() {});
+                return objectMapper.readValue(response.getBody(), new TypeReference<List<AlorCashMovement>>() {});
             }
             
             log.warn("Не удалось получить движения денежных средств: статус {}", response.getStatusCode());
@@ -343,8 +351,7 @@ public class AlorApiClient {
                     url, HttpMethod.GET, request, String.class);
             
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                JsonNode json = objectMapper.readTree(response.getBody());
-                AlorOrderbook orderbook = objectMapper.convertValue(json, AlorOrderbook.class);
+                AlorOrderbook orderbook = objectMapper.readValue(response.getBody(), AlorOrderbook.class);
                 
                 BigDecimal price = orderbook.getCurrentPrice();
                 if (price != null) {
@@ -395,8 +402,7 @@ public class AlorApiClient {
                     url, HttpMethod.GET, request, String.class);
             
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                JsonNode json = objectMapper.readTree(response.getBody());
-                AlorOrderbook orderbook = objectMapper.convertValue(json, AlorOrderbook.class);
+                AlorOrderbook orderbook = objectMapper.readValue(response.getBody(), AlorOrderbook.class);
                 
                 BigDecimal price = orderbook.getCurrentPrice();
                 if (price != null) {
@@ -422,5 +428,87 @@ public class AlorApiClient {
             return Optional.empty();
         }
     }
-}
 
+    /**
+     * Получает котировки сразу для нескольких тикеров используя готовый Access Token
+     * Согласно документации ALOR API: GET /md/v2/Securities/{exchange}:{symbol},{exchange}:{symbol}/quotes
+     * Тикеры разбиваются на пачки по alor.api.quotes-batch-size, по одному запросу на пачку
+     *
+     * @param accessToken Access Token для авторизации
+     * @param environment Окружение (test/production)
+     * @param exchange Биржа (MOEX, SPBX и т.д.)
+     * @param symbols Тикеры инструментов
+     * @return Карта тикер -> цена (тикеры без цены в карту не попадают)
+     */
+    public Map<String, BigDecimal> getQuotesBySymbols(String accessToken, String environment,
+                                                      String exchange, Collection<String> symbols) {
+        Map<String, BigDecimal> prices = new HashMap<>();
+        if (symbols == null || symbols.isEmpty()) {
+            return prices;
+        }
+        String baseUrl = "test".equals(environment) ? testBaseUrl : productionBaseUrl;
+        if (exchange == null || exchange.isEmpty()) {
+            exchange = "MOEX";
+        }
+
+        List<String> uniqueSymbols = new ArrayList<>(new LinkedHashSet<>(symbols));
+        int batchSize = Math.max(1, quotesBatchSize);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", "Bearer " + accessToken);
+        HttpEntity<Void> request = new HttpEntity<>(headers);
+
+        for (int from = 0; from < uniqueSymbols.size(); from += batchSize) {
+            List<String> batch = uniqueSymbols.subList(from, Math.min(from + batchSize, uniqueSymbols.size()));
+            StringBuilder symbolsParam = new StringBuilder();
+            for (String symbol : batch) {
+                if (symbolsParam.length() > 0) {
+                    symbolsParam.append(',');
+                }
+                symbolsParam.append(exchange).append(':').append(symbol);
+            }
+            String url = String.format("%s/md/v2/Securities/%s/quotes", baseUrl, symbolsParam);
+
+            try {
+                log.info("Запрос котировок из ALOR для {} тикеров (биржа: {})", batch.size(), exchange);
+                ResponseEntity<String> response = restTemplate.exchange(
+                        url, HttpMethod.GET, request, String.class);
+
+                if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
+                    List<AlorQuote> quotes = objectMapper.readValue(
+                            response.getBody(), new TypeReference<List<AlorQuote>>() {});
+                    for (AlorQuote quote : quotes) {
+                        BigDecimal price = quote.getCurrentPrice();
+                        if (quote.getSymbol() != null && price != null) {
+                            prices.put(quote.getSymbol(), price);
+                        }
+                    }
+                } else {
+                    log.warn("Не удалось получить котировки для {} тикеров ({}): статус {}",
+                            batch.size(), exchange, response.getStatusCode());
+                }
+            } catch (org.springframework.web.client.HttpClientErrorException e) {
+                String errorBody = e.getResponseBodyAsString() != null ? e.getResponseBodyAsString() : "Нет тела ответа";
+                log.warn("HTTP ошибка при получении котировок для {} тикеров ({}): статус {}, тело: {}",
+                        batch.size(), exchange, e.getStatusCode(), errorBody);
+            } catch (Exception e) {
+                log.error("Ошибка при получении котировок для {} тикеров ({}): {}",
+                        batch.size(), exchange, e.getMessage(), e);
+            }
+        }
+
+        return prices;
+    }
+
+    /**
+     * Количество запросов, которое потребуется {@link #getQuotesBySymbols} для указанных тикеров
+     */
+    public int countQuoteBatches(Collection<String> symbols) {
+        if (symbols == null || symbols.isEmpty()) {
+            return 0;
+        }
+        int batchSize = Math.max(1, quotesBatchSize);
+        int unique = new LinkedHashSet<>(symbols).size();
+        return (unique + batchSize - 1) / batchSize;
+    }
+}
@@ -0,0 +1,279 @@
+package com.invest.management.alor.common;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.invest.management.alor.dto.AlorCashMovement;
+import com.invest.management.alor.dto.AlorOrderbook;
+import com.invest.management.alor.dto.AlorPosition;
+import com.invest.management.alor.dto.AlorQuote;
+import com.invest.management.alor.dto.AlorTransaction;
+import com.invest.management.config.WorkerThreads;
+import com.invest.management.user.AppUser;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Неблокирующий клиент ALOR OpenAPI
+ * Запросы уходят через java.net.http.HttpClient (sendAsync), ответ разбирается Jackson сразу
+ * в DTO за один проход, без промежуточной строки и дерева JsonNode. Одновременно выполняется
+ * не больше alor.api.async.max-concurrency запросов, остальные ждут в ограниченной очереди;
+ * каждый запрос ограничен таймаутом. Ошибки, как и в {@link AlorApiClient}, логируются,
+ * а результатом становится пустой список или пустая карта.
+ */
+@Component
+public class AlorAsyncClient {
+
+    private static final Logger log = LoggerFactory.getLogger(AlorAsyncClient.class);
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final TypeReference<List<AlorPosition>> POSITIONS = new TypeReference<>() {};
+    private static final TypeReference<List<AlorTransaction>> TRANSACTIONS = new TypeReference<>() {};
+    private static final TypeReference<List<AlorCashMovement>> CASH_MOVEMENTS = new TypeReference<>() {};
+    private static final TypeReference<List<AlorQuote>> QUOTES = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper;
+    private final AlorTokenService tokenService;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final AsyncLimiter limiter;
+    private final Duration requestTimeout;
+
+    @Value("${alor.api.test-base-url:https://apidev.alor.ru}")
+    private String testBaseUrl;
+
+    @Value("${alor.api.production-base-url:https://api.alor.ru}")
+    private String productionBaseUrl;
+
+    /**
+     * Максимальное количество инструментов в одном запросе котировок
+     */
+    @Value("${alor.api.quotes-batch-size:50}")
+    private int quotesBatchSize;
+
+    public AlorAsyncClient(ObjectMapper objectMapper,
+                           AlorTokenService tokenService,
+                           WorkerThreads workerThreads,
+                           @Value("${alor.api.async.max-concurrency:8}") int maxConcurrency,
+                           @Value("${alor.api.async.max-pending:500}") int maxPending,
+                           @Value("${alor.api.async.connect-timeout-ms:10000}") long connectTimeoutMs,
+                           @Value("${alor.api.async.request-timeout-ms:30000}") long requestTimeoutMs) {
+        this.objectMapper = objectMapper;
+        this.tokenService = tokenService;
+        this.executor = Executors.newCachedThreadPool(workerThreads.factory("alor-async-"));
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .executor(executor)
+                .build();
+        this.limiter = new AsyncLimiter(maxConcurrency, maxPending);
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Текущие позиции портфеля: GET /md/v2/Clients/{exchange}/{portfolio}/positions
+     */
+    public CompletableFuture<List<AlorPosition>> getPositions(AppUser user, String environment,
+                                                              String portfolioId, String exchange) {
+        String url = String.format("%s/md/v2/Clients/%s/%s/positions",
+                baseUrl(environment), exchangeOrDefault(exchange), portfolioId);
+        return getList(user, environment, url, POSITIONS, "позиций");
+    }
+
+    /**
+     * Сделки за период: GET /md/v2/Clients/{exchange}/{portfolio}/trades
+     */
+    public CompletableFuture<List<AlorTransaction>> getTransactions(AppUser user, String environment,
+                                                                    String portfolioId, LocalDate from,
+                                                                    LocalDate to, String exchange) {
+        String url = String.format("%s/md/v2/Clients/%s/%s/trades?from=%s&to=%s",
+                baseUrl(environment), exchangeOrDefault(exchange), portfolioId,
+                from.format(DATE_FORMATTER), to.format(DATE_FORMATTER));
+        return getList(user, environment, url, TRANSACTIONS, "сделок");
+    }
+
+    /**
+     * Движения денежных средств за период: GET /md/v2/Clients/{exchange}/{portfolio}/money
+     */
+    public CompletableFuture<List<AlorCashMovement>> getCashMovements(AppUser user, String environment,
+                                                                      String portfolioId, LocalDate from,
+                                                                      LocalDate to, String exchange) {
+        String url = String.format("%s/md/v2/Clients/%s/%s/money?from=%s&to=%s",
+                baseUrl(environment), exchangeOrDefault(exchange), portfolioId,
+                from.format(DATE_FORMATTER), to.format(DATE_FORMATTER));
+        return getList(user, environment, url, CASH_MOVEMENTS, "движений денежных средств");
+    }
+
+    /**
+     * Биржевой стакан по тикеру: GET /md/v2/orderbooks/{exchange}/{symbol}
+     */
+    public CompletableFuture<Optional<AlorOrderbook>> getOrderbook(String accessToken, String environment,
+                                                                   String exchange, String symbol) {
+        String url = String.format("%s/md/v2/orderbooks/%s/%s",
+                baseUrl(environment), exchangeOrDefault(exchange), symbol);
+        return get(url, accessToken, body -> objectMapper.readValue(body, AlorOrderbook.class))
+                .thenApply(Optional::ofNullable)
+                .exceptionally(ex -> {
+                    log.warn("Ошибка при получении стакана {} ({}): {}", symbol, exchange, rootMessage(ex));
+                    return Optional.empty();
+                });
+    }
+
+    /**
+     * Котировки нескольких тикеров: пачки по alor.api.quotes-batch-size запрашиваются параллельно
+     * в пределах ограничения одновременных запросов
+     *
+     * @return карта тикер -> цена (тикеры без цены в карту не попадают)
+     */
+    public CompletableFuture<Map<String, BigDecimal>> getQuotesBySymbols(String accessToken, String environment,
+                                                                         String exchange, Collection<String> symbols) {
+        if (symbols == null || symbols.isEmpty()) {
+            return CompletableFuture.completedFuture(new HashMap<>());
+        }
+        String resolvedExchange = exchangeOrDefault(exchange);
+        List<String> uniqueSymbols = new ArrayList<>(new LinkedHashSet<>(symbols));
+        int batchSize = Math.max(1, quotesBatchSize);
+
+        List<CompletableFuture<List<AlorQuote>>> batches = new ArrayList<>();
+        for (int from = 0; from < uniqueSymbols.size(); from += batchSize) {
+            List<String> batch = uniqueSymbols.subList(from, Math.min(from + batchSize, uniqueSymbols.size()));
+            StringBuilder symbolsParam = new StringBuilder();
+            for (String symbol : batch) {
+                if (symbolsParam.length() > 0) {
+                    symbolsParam.append(',');
+                }
+                symbolsParam.append(resolvedExchange).append(':').append(symbol);
+            }
+            String url = String.format("%s/md/v2/Securities/%s/quotes", baseUrl(environment), symbolsParam);
+            int batchCount = batch.size();
+            batches.add(get(url, accessToken, body -> objectMapper.readValue(body, QUOTES))
+                    .exceptionally(ex -> {
+                        log.warn("Ошибка при получении котировок для {} тикеров ({}): {}",
+                                batchCount, resolvedExchange, rootMessage(ex));
+                        return Collections.emptyList();
+                    }));
+        }
+
+        return CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> {
+                    Map<String, BigDecimal> prices = new HashMap<>();
+                    for (CompletableFuture<List<AlorQuote>> batch : batches) {
+                        for (AlorQuote quote : batch.join()) {
+                            BigDecimal price = quote.getCurrentPrice();
+                            if (quote.getSymbol() != null && price != null) {
+                                prices.put(quote.getSymbol(), price);
+                            }
+                        }
+                    }
+                    return prices;
+                });
+    }
+
+    /**
+     * Количество запросов, которое потребуется {@link #getQuotesBySymbols} для указанных тикеров
+     */
+    public int countQuoteBatches(Collection<String> symbols) {
+        if (symbols == null || symbols.isEmpty()) {
+            return 0;
+        }
+        int batchSize = Math.max(1, quotesBatchSize);
+        int unique = new LinkedHashSet<>(symbols).size();
+        return (unique + batchSize - 1) / batchSize;
+    }
+
+    private <T> CompletableFuture<List<T>> getList(AppUser user, String environment, String url,
+                                                   TypeReference<List<T>> type, String what) {
+        Optional<String> accessToken;
+        try {
+            // Access Token кэшируется AlorTokenService, обновление - редкий синхронный запрос
+            accessToken = tokenService.getAccessToken(user, environment)
+                    .map(AlorTokenService.AccessTokenResponse::getAccessToken);
+        } catch (Exception e) {
+            log.error("Ошибка при получении Access Token для пользователя {}: {}", user.getEmail(), e.getMessage(), e);
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        if (accessToken.isEmpty()) {
+            log.error("Не удалось получить Access Token для пользователя {}", user.getEmail());
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        return get(url, accessToken.get(), body -> {
+                    List<T> items = objectMapper.readValue(body, type);
+                    return items != null ? items : Collections.<T>emptyList();
+                })
+                .exceptionally(ex -> {
+                    log.error("Ошибка при получении {} для пользователя {}: {}", what, user.getEmail(), rootMessage(ex));
+                    return Collections.emptyList();
+                });
+    }
+
+    /**
+     * GET-запрос с авторизацией через ограничитель; тело успешного ответа передается декодеру
+     */
+    private <T> CompletableFuture<T> get(String url, String accessToken, BodyDecoder<T> decoder) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(requestTimeout)
+                .header("Authorization", "Bearer " + accessToken)
+                .header("Accept", MediaType.APPLICATION_JSON_VALUE)
+                .GET()
+                .build();
+        return limiter.submit(() -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()))
+                .thenApply(response -> {
+                    if (response.statusCode() / 100 != 2) {
+                        throw new IllegalStateException("статус " + response.statusCode() + " для " + url);
+                    }
+                    try {
+                        return decoder.decode(response.body());
+                    } catch (Exception e) {
+                        throw new IllegalStateException("некорректный ответ " + url + ": " + e.getMessage(), e);
+                    }
+                });
+    }
+
+    private String baseUrl(String environment) {
+        return "test".equals(environment) ? testBaseUrl : productionBaseUrl;
+    }
+
+    private static String exchangeOrDefault(String exchange) {
+        // Если exchange не указан, используем MOEX по умолчанию
+        return exchange == null || exchange.isEmpty() ? "MOEX" : exchange;
+    }
+
+    private static String rootMessage(Throwable ex) {
+        Throwable cause = ex;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    @FunctionalInterface
+    private interface BodyDecoder<T> {
+        T decode(byte[] body) throws Exception;
+    }
+}
@@ -0,0 +1,89 @@
+package com.invest.management.alor.common;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Ограничитель асинхронных запросов: не больше maxConcurrency одновременно,
+ * остальные ждут в очереди длиной maxPending; при переполненной очереди запрос сразу
+ * завершается RejectedExecutionException, чтобы вызывающий код не накапливал работу
+ * быстрее, чем отвечает внешний API.
+ */
+final class AsyncLimiter {
+
+    private final int maxConcurrency;
+    private final int maxPending;
+    private final Deque<Runnable> pending = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private int running;
+
+    AsyncLimiter(int maxConcurrency, int maxPending) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.maxPending = Math.max(0, maxPending);
+    }
+
+    <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> {
+            CompletableFuture<T> started;
+            try {
+                started = task.get();
+            } catch (RuntimeException ex) {
+                release();
+                result.completeExceptionally(ex);
+                return;
+            }
+            started.whenComplete((value, ex) -> {
+                release();
+                if (ex != null) {
+                    result.completeExceptionally(ex);
+                } else {
+                    result.complete(value);
+                }
+            });
+        };
+
+        boolean startNow = false;
+        lock.lock();
+        try {
+            if (running < maxConcurrency) {
+                running++;
+                startNow = true;
+            } else if (pending.size() < maxPending) {
+                pending.addLast(start);
+            } else {
+                result.completeExceptionally(new RejectedExecutionException(
+                    "Очередь запросов переполнена: " + running + " выполняется, " + pending.size() + " ожидает"));
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (startNow) {
+            start.run();
+        }
+        return result;
+    }
+
+    /**
+     * Освобождает место и запускает следующий ожидающий запрос (место переходит к нему)
+     */
+    private void release() {
+        Runnable next;
+        lock.lock();
+        try {
+            next = pending.pollFirst();
+            if (next == null) {
+                running--;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (next != null) {
+            next.run();
+        }
+    }
+}
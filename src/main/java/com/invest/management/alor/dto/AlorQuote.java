@@ -0,0 +1,119 @@
+package com.invest.management.alor.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.math.BigDecimal;
+
+/**
+ * DTO для ответа ALOR API quotes
+ * GET /md/v2/Securities/{symbols}/quotes
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AlorQuote {
+
+    @JsonProperty("symbol")
+    private String symbol;
+
+    @JsonProperty("exchange")
+    private String exchange;
+
+    @JsonProperty("last_price")
+    private BigDecimal lastPrice;
+
+    @JsonProperty("bid")
+    private BigDecimal bid;
+
+    @JsonProperty("ask")
+    private BigDecimal ask;
+
+    @JsonProperty("prev_close_price")
+    private BigDecimal prevClosePrice;
+
+    @JsonProperty("last_price_timestamp")
+    private Long lastPriceTimestamp;
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public void setSymbol(String symbol) {
+        this.symbol = symbol;
+    }
+
+    public String getExchange() {
+        return exchange;
+    }
+
+    public void setExchange(String exchange) {
+        this.exchange = exchange;
+    }
+
+    public BigDecimal getLastPrice() {
+        return lastPrice;
+    }
+
+    public void setLastPrice(BigDecimal lastPrice) {
+        this.lastPrice = lastPrice;
+    }
+
+    public BigDecimal getBid() {
+        return bid;
+    }
+
+    public void setBid(BigDecimal bid) {
+        this.bid = bid;
+    }
+
+    public BigDecimal getAsk() {
+        return ask;
+    }
+
+    public void setAsk(BigDecimal ask) {
+        this.ask = ask;
+    }
+
+    public BigDecimal getPrevClosePrice() {
+        return prevClosePrice;
+    }
+
+    public void setPrevClosePrice(BigDecimal prevClosePrice) {
+        this.prevClosePrice = prevClosePrice;
+    }
+
+    public Long getLastPriceTimestamp() {
+        return lastPriceTimestamp;
+    }
+
+    public void setLastPriceTimestamp(Long lastPriceTimestamp) {
+        this.lastPriceTimestamp = lastPriceTimestamp;
+    }
+
+    /**
+     * Получает текущую цену из котировки
+     * Приоритет: last_price > средняя bid/ask > bid или ask
+     * (та же логика, что и в {@link AlorOrderbook#getCurrentPrice()})
+     */
+    public BigDecimal getCurrentPrice() {
+        if (lastPrice != null && lastPrice.signum() > 0) {
+            return lastPrice;
+        }
+
+        boolean hasBid = bid != null && bid.signum() > 0;
+        boolean hasAsk = ask != null && ask.signum() > 0;
+
+        if (hasBid && hasAsk) {
+            return bid.add(ask).divide(new BigDecimal("2"), 6, java.math.RoundingMode.HALF_UP);
+        }
+
+        if (hasBid) {
+            return bid;
+        }
+
+        if (hasAsk) {
+            return ask;
+        }
+
+        return null;
+    }
+}
@@ -33,6 +33,9 @@ public class AlorTransaction {
     @JsonProperty("qty")
     private BigDecimal quantity;
     
+    @JsonProperty("qtyUnits")
+    private BigDecimal qtyUnits; // Количество в штуках
+    
     @JsonProperty("price")
     private BigDecimal price;
     
@@ -108,6 +111,14 @@ public class AlorTransaction {
         this.quantity = quantity;
     }
     
+    public BigDecimal getQtyUnits() {
+        return qtyUnits;
+    }
+    
+    public void setQtyUnits(BigDecimal qtyUnits) {
+        this.qtyUnits = qtyUnits;
+    }
+    
     public BigDecimal getPrice() {
         return price;
     }
@@ -0,0 +1,61 @@
+package com.invest.management.analysis;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Версия данных, из которых строятся таблицы анализа (цены, экспертные оценки, уровни)
+ * Кэши строк сравнивают свою версию с текущей и перестраиваются при расхождении
+ */
+@Component
+public class AnalysisDataVersion {
+
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong levelsVersion = new AtomicLong();
+
+    public long current() {
+        return version.get();
+    }
+
+    /**
+     * Версия уровней поддержки/сопротивления пользователей (меняется реже, чем цены)
+     */
+    public long currentLevels() {
+        return levelsVersion.get();
+    }
+
+    /**
+     * Отмечает изменение данных анализа
+     * Внутри транзакции версия увеличивается после коммита, чтобы кэш
+     * не перестроился по еще не зафиксированным данным
+     */
+    public void markChanged() {
+        afterCommit(version::incrementAndGet);
+    }
+
+    /**
+     * Отмечает изменение уровней поддержки/сопротивления (вместе с общей версией)
+     */
+    public void markLevelsChanged() {
+        afterCommit(() -> {
+            levelsVersion.incrementAndGet();
+            version.incrementAndGet();
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.invest.management.analysis;
+
+import com.invest.management.moex.MoexStock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Пересчет потенциала до экспертной цели (expert_forecast_percent) для всех акций анализа
+ * Выполняется одним проходом после обновления цен MOEX и при изменении экспертных оценок;
+ * страницы анализа читают сохраненное значение вместо расчета на каждый запрос.
+ * При входе цены в зону около цели публикуется {@link ExpertTargetConvergenceEvent}.
+ */
+@Service
+public class ExpertForecastRecalculator {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpertForecastRecalculator.class);
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    private final StockAnalysisRepository analysisRepository;
+    private final AnalysisDataVersion dataVersion;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Расстояние до экспертной цели (в процентах от цены), при котором акция считается приблизившейся к цели
+     */
+    @Value("${analysis.expert-target.convergence-percent:5}")
+    private BigDecimal convergencePercent;
+
+    public ExpertForecastRecalculator(StockAnalysisRepository analysisRepository,
+                                      AnalysisDataVersion dataVersion,
+                                      ApplicationEventPublisher eventPublisher) {
+        this.analysisRepository = analysisRepository;
+        this.dataVersion = dataVersion;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Пересчитывает прогноз для всех акций анализа
+     * @return количество анализов, у которых изменился прогноз или признак близости к цели
+     */
+    @Transactional
+    public int recalculateAll() {
+        List<StockAnalysis> analyses = analysisRepository.findAll(Sort.by(Sort.Direction.ASC, "id"));
+        OffsetDateTime now = OffsetDateTime.now();
+        List<StockAnalysis> changed = new ArrayList<>();
+        List<ExpertTargetConvergenceEvent> events = new ArrayList<>();
+
+        for (StockAnalysis analysis : analyses) {
+            if (apply(analysis, now, events)) {
+                changed.add(analysis);
+            }
+        }
+
+        if (!changed.isEmpty()) {
+            analysisRepository.saveAll(changed);
+            dataVersion.markChanged();
+        }
+        events.forEach(eventPublisher::publishEvent);
+
+        log.debug("Пересчитан прогноз по экспертным целям: анализов {}, изменено {}, приблизились к цели {}",
+                analyses.size(), changed.size(), events.size());
+        return changed.size();
+    }
+
+    /**
+     * Пересчитывает прогноз одного анализа (после изменения экспертной оценки)
+     */
+    @Transactional
+    public void recalculate(StockAnalysis analysis) {
+        List<ExpertTargetConvergenceEvent> events = new ArrayList<>();
+        if (apply(analysis, OffsetDateTime.now(), events)) {
+            analysisRepository.save(analysis);
+            dataVersion.markChanged();
+        }
+        events.forEach(eventPublisher::publishEvent);
+    }
+
+    private boolean apply(StockAnalysis analysis, OffsetDateTime now, List<ExpertTargetConvergenceEvent> events) {
+        MoexStock stock = analysis.getStock();
+        BigDecimal marketPrice = stock != null ? stock.getMarketprice() : null;
+        BigDecimal target = analysis.getExpertTarget();
+        BigDecimal forecast = calculateForecastPercent(target, marketPrice);
+        boolean near = forecast != null && forecast.abs().compareTo(convergencePercent) <= 0;
+
+        boolean forecastChanged = forecast == null
+                ? analysis.getExpertForecastPercent() != null
+                : analysis.getExpertForecastPercent() == null || forecast.compareTo(analysis.getExpertForecastPercent()) != 0;
+        boolean nearChanged = near != analysis.isNearExpertTarget();
+        if (!forecastChanged && !nearChanged) {
+            return false;
+        }
+
+        if (near && !analysis.isNearExpertTarget()) {
+            events.add(new ExpertTargetConvergenceEvent(analysis.getId(),
+                    stock != null ? stock.getSecid() : null, marketPrice, target, forecast));
+        }
+        analysis.setExpertForecastPercent(forecast);
+        analysis.setExpertForecastUpdatedAt(now);
+        analysis.setNearExpertTarget(near);
+        return true;
+    }
+
+    private BigDecimal calculateForecastPercent(BigDecimal target, BigDecimal marketPrice) {
+        if (target == null || marketPrice == null || marketPrice.compareTo(BigDecimal.ZERO) == 0) {
+            return null;
+        }
+        return target.subtract(marketPrice)
+            .divide(marketPrice, 6, RoundingMode.HALF_UP)
+            .multiply(HUNDRED)
+            .setScale(2, RoundingMode.HALF_UP);
+    }
+}
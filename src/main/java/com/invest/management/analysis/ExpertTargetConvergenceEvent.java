@@ -0,0 +1,14 @@
+package com.invest.management.analysis;
+
+import java.math.BigDecimal;
+
+/**
+ * Событие: цена акции приблизилась к экспертной цели на заданное расстояние
+ * Публикуется {@link ExpertForecastRecalculator} один раз при входе в зону (до выхода из нее)
+ */
+public record ExpertTargetConvergenceEvent(Long stockAnalysisId,
+                                           String secid,
+                                           BigDecimal marketPrice,
+                                           BigDecimal expertTarget,
+                                           BigDecimal forecastPercent) {
+}
@@ -0,0 +1,135 @@
+package com.invest.management.analysis;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Неизменяемый набор строк таблицы анализа с заранее посчитанными ключами сортировки
+ * Строковые ключи приводятся к нижнему регистру, числовые и даты хранятся в примитивных массивах,
+ * поэтому сравнение двух строк не требует разбора параметров и null-проверок.
+ * Отсортированные представления кэшируются по колонке и направлению.
+ *
+ * Пустые значения (null) при сортировке по возрастанию идут первыми, как и раньше.
+ */
+final class RowSortModel<R> {
+
+    private final long version;
+    private final List<R> rows;
+    private final Map<String, Comparator<Integer>> comparators;
+    private final String defaultColumn;
+    private final Map<String, List<R>> sortedViews = new ConcurrentHashMap<>();
+
+    private RowSortModel(long version, List<R> rows, Map<String, Comparator<Integer>> comparators, String defaultColumn) {
+        this.version = version;
+        this.rows = rows;
+        this.comparators = comparators;
+        this.defaultColumn = defaultColumn;
+    }
+
+    static <R> Builder<R> builder(List<R> rows) {
+        return new Builder<>(rows);
+    }
+
+    long version() {
+        return version;
+    }
+
+    /**
+     * Возвращает строки в порядке загрузки, если колонка не указана, иначе отсортированные
+     * Неизвестная колонка сортируется как колонка по умолчанию
+     */
+    List<R> sorted(String sortBy, String sortDir) {
+        if (sortBy == null || sortBy.isBlank()) {
+            return rows;
+        }
+        String column = sortBy.toLowerCase(Locale.ROOT);
+        if (!comparators.containsKey(column)) {
+            column = defaultColumn;
+        }
+        boolean ascending = !"desc".equalsIgnoreCase(sortDir);
+        String viewKey = column + (ascending ? ":asc" : ":desc");
+        String resolvedColumn = column;
+        return sortedViews.computeIfAbsent(viewKey, key -> sortRows(comparators.get(resolvedColumn), ascending));
+    }
+
+    private List<R> sortRows(Comparator<Integer> comparator, boolean ascending) {
+        Integer[] order = new Integer[rows.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        // Сортировка устойчивая: при равных ключах сохраняется порядок загрузки в обоих направлениях
+        Arrays.sort(order, ascending ? comparator : (a, b) -> comparator.compare(b, a));
+        List<R> result = new ArrayList<>(order.length);
+        for (Integer index : order) {
+            result.add(rows.get(index));
+        }
+        return List.copyOf(result);
+    }
+
+    static final class Builder<R> {
+
+        private final List<R> rows;
+        private final Map<String, Comparator<Integer>> comparators = new HashMap<>();
+        private String defaultColumn;
+
+        private Builder(List<R> rows) {
+            this.rows = List.copyOf(rows);
+        }
+
+        Builder<R> text(String column, Function<R, String> extractor) {
+            String[] keys = new String[rows.size()];
+            for (int i = 0; i < keys.length; i++) {
+                String value = extractor.apply(rows.get(i));
+                keys[i] = value != null ? value.toLowerCase(Locale.ROOT) : "";
+            }
+            return column(column, (a, b) -> keys[a].compareTo(keys[b]));
+        }
+
+        Builder<R> number(String column, Function<R, BigDecimal> extractor) {
+            double[] keys = new double[rows.size()];
+            for (int i = 0; i < keys.length; i++) {
+                BigDecimal value = extractor.apply(rows.get(i));
+                keys[i] = value != null ? value.doubleValue() : Double.NEGATIVE_INFINITY;
+            }
+            return column(column, (a, b) -> Double.compare(keys[a], keys[b]));
+        }
+
+        /**
+         * Колонка с датой или временем; extractor возвращает эпохальное значение (дни, миллисекунды)
+         * или null для пустой ячейки
+         */
+        Builder<R> epoch(String column, Function<R, Long> extractor) {
+            long[] keys = new long[rows.size()];
+            for (int i = 0; i < keys.length; i++) {
+                Long value = extractor.apply(rows.get(i));
+                keys[i] = value != null ? value : Long.MIN_VALUE;
+            }
+            return column(column, (a, b) -> Long.compare(keys[a], keys[b]));
+        }
+
+        Builder<R> defaultColumn(String column) {
+            this.defaultColumn = column;
+            return this;
+        }
+
+        RowSortModel<R> build(long version) {
+            if (defaultColumn == null || !comparators.containsKey(defaultColumn)) {
+                throw new IllegalStateException("Не задана колонка сортировки по умолчанию");
+            }
+            return new RowSortModel<>(version, rows, Map.copyOf(comparators), defaultColumn);
+        }
+
+        private Builder<R> column(String column, Comparator<Integer> comparator) {
+            comparators.put(column, comparator);
+            return this;
+        }
+    }
+}
@@ -34,6 +34,19 @@ public class StockAnalysis {
     @JoinColumn(name = "expert_assessment_id")
     private ExpertAssessment currentExpertAssessment;
 
+    /**
+     * Потенциал до экспертной цели в процентах, хранится и пересчитывается
+     * {@link ExpertForecastRecalculator} после обновления цен
+     */
+    @Column(name = "expert_forecast_percent", precision = 10, scale = 2)
+    private BigDecimal expertForecastPercent;
+
+    @Column(name = "expert_forecast_updated_at")
+    private OffsetDateTime expertForecastUpdatedAt;
+
+    @Column(name = "near_expert_target", nullable = false)
+    private boolean nearExpertTarget;
+
     @Column(name = "created_at", nullable = false)
     private OffsetDateTime createdAt;
 
@@ -72,6 +85,30 @@ public class StockAnalysis {
         this.currentExpertAssessment = currentExpertAssessment;
     }
 
+    public BigDecimal getExpertForecastPercent() {
+        return expertForecastPercent;
+    }
+
+    public void setExpertForecastPercent(BigDecimal expertForecastPercent) {
+        this.expertForecastPercent = expertForecastPercent;
+    }
+
+    public OffsetDateTime getExpertForecastUpdatedAt() {
+        return expertForecastUpdatedAt;
+    }
+
+    public void setExpertForecastUpdatedAt(OffsetDateTime expertForecastUpdatedAt) {
+        this.expertForecastUpdatedAt = expertForecastUpdatedAt;
+    }
+
+    public boolean isNearExpertTarget() {
+        return nearExpertTarget;
+    }
+
+    public void setNearExpertTarget(boolean nearExpertTarget) {
+        this.nearExpertTarget = nearExpertTarget;
+    }
+
     /**
      * Получает экспертную целевую цену из текущей оценки (для обратной совместимости)
      */
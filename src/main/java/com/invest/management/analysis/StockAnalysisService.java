@@ -8,7 +8,6 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -19,13 +18,24 @@ public class StockAnalysisService {
     private final StockAnalysisRepository analysisRepository;
     private final MoexStockRepository stockRepository;
     private final ExpertAssessmentRepository assessmentRepository;
+    private final AnalysisDataVersion dataVersion;
+    private final ExpertForecastRecalculator forecastRecalculator;
+
+    /**
+     * Строки таблицы анализа, построенные для версии {@link AnalysisDataVersion}
+     */
+    private volatile RowSortModel<StockAnalysisRow> cachedRows;
 
     public StockAnalysisService(StockAnalysisRepository analysisRepository,
                                 MoexStockRepository stockRepository,
-                                ExpertAssessmentRepository assessmentRepository) {
+                                ExpertAssessmentRepository assessmentRepository,
+                                AnalysisDataVersion dataVersion,
+                                ExpertForecastRecalculator forecastRecalculator) {
         this.analysisRepository = analysisRepository;
         this.stockRepository = stockRepository;
         this.assessmentRepository = assessmentRepository;
+        this.dataVersion = dataVersion;
+        this.forecastRecalculator = forecastRecalculator;
     }
 
     @Transactional(readOnly = true)
@@ -35,6 +45,17 @@ public class StockAnalysisService {
 
     @Transactional(readOnly = true)
     public List<StockAnalysisRow> getAllRows(String sortBy, String sortDir) {
+        // Версию читаем до загрузки: если данные изменятся во время построения, кэш устареет сразу
+        long version = dataVersion.current();
+        RowSortModel<StockAnalysisRow> model = cachedRows;
+        if (model == null || model.version() != version) {
+            model = buildRowModel(version);
+            cachedRows = model;
+        }
+        return model.sorted(sortBy, sortDir);
+    }
+
+    private RowSortModel<StockAnalysisRow> buildRowModel(long version) {
         List<StockAnalysis> analyses = analysisRepository.findAll(Sort.by(Sort.Direction.ASC, "stock.secid"));
         List<StockAnalysisRow> rows = new ArrayList<>(analyses.size());
         for (StockAnalysis analysis : analyses) {
@@ -42,7 +63,6 @@ public class StockAnalysisService {
             BigDecimal marketPrice = stock != null ? stock.getMarketprice() : null;
             int decimals = resolveDecimals(stock);
             BigDecimal target = analysis.getExpertTarget();
-            BigDecimal forecast = calculateExpertForecastPercent(target, marketPrice);
             rows.add(new StockAnalysisRow(
                 analysis,
                 marketPrice,
@@ -55,79 +75,23 @@ public class StockAnalysisService {
                 formatDecimal(target, decimals),
                 analysis.getExpertRecommendation(),
                 resolveRecommendationClass(analysis.getExpertRecommendation()),
-                forecast != null ? forecast.setScale(2, RoundingMode.HALF_UP) : null
+                analysis.getExpertForecastPercent()
             ));
         }
-        
-        // Применяем сортировку, если указана
-        if (sortBy != null && !sortBy.isBlank()) {
-            boolean ascending = !"desc".equalsIgnoreCase(sortDir);
-            rows.sort((a, b) -> compareRows(a, b, sortBy, ascending));
-        }
-        
-        return rows;
-    }
-    
-    private int compareRows(StockAnalysisRow a, StockAnalysisRow b, String sortBy, boolean ascending) {
-        int result = 0;
-        
-        switch (sortBy.toLowerCase()) {
-            case "secid":
-                String secidA = a.analysis().getStock() != null ? a.analysis().getStock().getSecid() : "";
-                String secidB = b.analysis().getStock() != null ? b.analysis().getStock().getSecid() : "";
-                result = secidA.compareToIgnoreCase(secidB);
-                break;
-            case "shortname":
-                String shortnameA = a.analysis().getStock() != null ? a.analysis().getStock().getShortname() : "";
-                String shortnameB = b.analysis().getStock() != null ? b.analysis().getStock().getShortname() : "";
-                result = shortnameA.compareToIgnoreCase(shortnameB);
-                break;
-            case "marketprice":
-                result = compareBigDecimal(a.marketPrice(), b.marketPrice());
-                break;
-            case "experttarget":
-                result = compareBigDecimal(a.analysis().getExpertTarget(), b.analysis().getExpertTarget());
-                break;
-            case "experttargetupdatedat":
-                // Сортируем по expertTargetDate вместо expertTargetUpdatedAt
-                java.time.LocalDate dateA = a.analysis().getExpertTargetDate();
-                java.time.LocalDate dateB = b.analysis().getExpertTargetDate();
-                if (dateA == null && dateB == null) result = 0;
-                else if (dateA == null) result = -1;
-                else if (dateB == null) result = 1;
-                else result = dateA.compareTo(dateB);
-                break;
-            case "expertrecommendation":
-                String recA = a.analysis().getExpertRecommendation() != null ? a.analysis().getExpertRecommendation() : "";
-                String recB = b.analysis().getExpertRecommendation() != null ? b.analysis().getExpertRecommendation() : "";
-                result = recA.compareToIgnoreCase(recB);
-                break;
-            case "expertforecastpercent":
-                result = compareBigDecimal(a.expertForecastPercent(), b.expertForecastPercent());
-                break;
-            default:
-                // По умолчанию сортируем по тикеру
-                String defaultSecidA = a.analysis().getStock() != null ? a.analysis().getStock().getSecid() : "";
-                String defaultSecidB = b.analysis().getStock() != null ? b.analysis().getStock().getSecid() : "";
-                result = defaultSecidA.compareToIgnoreCase(defaultSecidB);
-                break;
-        }
-        
-        return ascending ? result : -result;
-    }
-    
-    private int compareBigDecimal(BigDecimal a, BigDecimal b) {
-        if (a == null && b == null) return 0;
-        if (a == null) return -1;
-        if (b == null) return 1;
-        return a.compareTo(b);
-    }
-    
-    private int compareOffsetDateTime(OffsetDateTime a, OffsetDateTime b) {
-        if (a == null && b == null) return 0;
-        if (a == null) return -1;
-        if (b == null) return 1;
-        return a.compareTo(b);
+
+        return RowSortModel.builder(rows)
+            .text("secid", row -> row.analysis().getStock() != null ? row.analysis().getStock().getSecid() : null)
+            .text("shortname", row -> row.analysis().getStock() != null ? row.analysis().getStock().getShortname() : null)
+            .number("marketprice", StockAnalysisRow::marketPrice)
+            .number("experttarget", row -> row.analysis().getExpertTarget())
+            // Сортируем по expertTargetDate вместо expertTargetUpdatedAt
+            .epoch("experttargetupdatedat", row -> row.analysis().getExpertTargetDate() != null
+                ? row.analysis().getExpertTargetDate().toEpochDay() : null)
+            .text("expertrecommendation", StockAnalysisRow::expertRecommendation)
+            .number("expertforecastpercent", StockAnalysisRow::expertForecastPercent)
+            // По умолчанию сортируем по тикеру
+            .defaultColumn("secid")
+            .build(version);
     }
 
     @Transactional(readOnly = true)
@@ -152,6 +116,8 @@ public class StockAnalysisService {
         StockAnalysis analysis = new StockAnalysis();
         analysis.setStock(stock);
         analysisRepository.save(analysis);
+        forecastRecalculator.recalculate(analysis);
+        dataVersion.markChanged();
     }
 
     /**
@@ -175,6 +141,8 @@ public class StockAnalysisService {
         // Обновляем ссылку на последнюю оценку
         analysis.setCurrentExpertAssessment(saved);
         analysisRepository.save(analysis);
+        forecastRecalculator.recalculate(analysis);
+        dataVersion.markChanged();
     }
 
     /**
@@ -199,8 +167,10 @@ public class StockAnalysisService {
         StockAnalysis analysis = assessment.getStockAnalysis();
         if (analysis != null && analysis.getCurrentExpertAssessment() != null 
             && analysis.getCurrentExpertAssessment().getId().equals(assessmentId)) {
-            // Ссылка уже установлена, ничего не делаем
+            // Ссылка уже установлена, пересчитываем прогноз по новой цели
+            forecastRecalculator.recalculate(analysis);
         }
+        dataVersion.markChanged();
     }
 
     /**
@@ -224,9 +194,11 @@ public class StockAnalysisService {
                 .orElse(null);
             analysis.setCurrentExpertAssessment(newCurrent);
             analysisRepository.save(analysis);
+            forecastRecalculator.recalculate(analysis);
         }
         
         assessmentRepository.delete(assessment);
+        dataVersion.markChanged();
     }
 
     /**
@@ -258,15 +230,7 @@ public class StockAnalysisService {
     @Transactional
     public void delete(Long analysisId) {
         analysisRepository.deleteById(analysisId);
-    }
-
-    private BigDecimal calculateExpertForecastPercent(BigDecimal target, BigDecimal marketPrice) {
-        if (target == null || marketPrice == null || marketPrice.compareTo(BigDecimal.ZERO) == 0) {
-            return null;
-        }
-        return target.subtract(marketPrice)
-            .divide(marketPrice, 6, RoundingMode.HALF_UP)
-            .multiply(BigDecimal.valueOf(100));
+        dataVersion.markLevelsChanged();
     }
 
     private String formatDecimal(BigDecimal value, int decimals) {
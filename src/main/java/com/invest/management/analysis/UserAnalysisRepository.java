@@ -3,6 +3,7 @@ package com.invest.management.analysis;
 import com.invest.management.user.AppUser;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -21,5 +22,12 @@ public interface UserAnalysisRepository extends JpaRepository<UserAnalysis, Long
     Optional<UserAnalysis> findByUserAndStockAnalysis(AppUser user, StockAnalysis stockAnalysis);
 
     void deleteByIdAndUser(Long id, AppUser user);
+
+    List<UserAnalysis> findByStockAnalysisId(Long stockAnalysisId);
+
+    @Query("SELECT new com.invest.management.analysis.UserPriceLevel(ua.id, ua.user.id, s.secid, ua.support, ua.resistance) " +
+           "FROM UserAnalysis ua JOIN ua.stockAnalysis sa JOIN sa.stock s " +
+           "WHERE ua.support IS NOT NULL OR ua.resistance IS NOT NULL")
+    List<UserPriceLevel> findAllPriceLevels();
 }
 
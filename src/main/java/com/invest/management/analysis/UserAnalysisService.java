@@ -15,6 +15,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,13 +25,24 @@ public class UserAnalysisService {
     private final UserAnalysisRepository userAnalysisRepository;
     private final StockAnalysisRepository stockAnalysisRepository;
     private final MoexStockRepository stockRepository;
+    private final AnalysisDataVersion dataVersion;
+
+    /**
+     * Строки таблицы анализа пользователей, построенные для версии {@link AnalysisDataVersion}
+     * Хранятся только для текущей версии: при ее смене кэш очищается целиком, поэтому
+     * строки неактивных и удаленных пользователей не накапливаются
+     */
+    private final Map<Long, RowSortModel<UserAnalysisRow>> cachedRows = new ConcurrentHashMap<>();
+    private final AtomicLong cachedVersion = new AtomicLong(-1);
 
     public UserAnalysisService(UserAnalysisRepository userAnalysisRepository,
                               StockAnalysisRepository stockAnalysisRepository,
-                              MoexStockRepository stockRepository) {
+                              MoexStockRepository stockRepository,
+                              AnalysisDataVersion dataVersion) {
         this.userAnalysisRepository = userAnalysisRepository;
         this.stockAnalysisRepository = stockAnalysisRepository;
         this.stockRepository = stockRepository;
+        this.dataVersion = dataVersion;
     }
 
     @Transactional(readOnly = true)
@@ -39,6 +52,24 @@ public class UserAnalysisService {
 
     @Transactional(readOnly = true)
     public List<UserAnalysisRow> getRowsForUser(AppUser user, String sortBy, String sortDir) {
+        // Версию читаем до загрузки: если данные изменятся во время построения, кэш устареет сразу
+        long version = dataVersion.current();
+        long seen = cachedVersion.get();
+        if (seen < version && cachedVersion.compareAndSet(seen, version)) {
+            cachedRows.clear();
+        }
+        RowSortModel<UserAnalysisRow> model = cachedRows.get(user.getId());
+        if (model == null || model.version() != version) {
+            model = buildRowModel(user, version);
+            // Строки, построенные по уже устаревшей версии, в кэш не попадают
+            if (cachedVersion.get() == version) {
+                cachedRows.put(user.getId(), model);
+            }
+        }
+        return model.sorted(sortBy, sortDir);
+    }
+
+    private RowSortModel<UserAnalysisRow> buildRowModel(AppUser user, long version) {
         List<UserAnalysis> userAnalyses = userAnalysisRepository.findByUserOrderByStockAnalysisStockSecidAsc(user);
         List<UserAnalysisRow> rows = new ArrayList<>(userAnalyses.size());
         
@@ -50,7 +81,6 @@ public class UserAnalysisService {
             BigDecimal potentialLoss = calculatePotentialLossPercent(userAnalysis.getResistance(), marketPrice);
             int decimals = resolveDecimals(stock);
             BigDecimal target = stockAnalysis != null ? stockAnalysis.getExpertTarget() : null;
-            BigDecimal forecast = calculateExpertForecastPercent(target, marketPrice);
             
             rows.add(new UserAnalysisRow(
                 userAnalysis,
@@ -64,83 +94,38 @@ public class UserAnalysisService {
                 formatDecimal(target, decimals),
                 stockAnalysis != null ? stockAnalysis.getExpertRecommendation() : null,
                 resolveRecommendationClass(stockAnalysis != null ? stockAnalysis.getExpertRecommendation() : null),
-                forecast != null ? forecast.setScale(2, RoundingMode.HALF_UP) : null
+                stockAnalysis != null ? stockAnalysis.getExpertForecastPercent() : null
             ));
         }
         
-        // Применяем сортировку, если указана
-        if (sortBy != null && !sortBy.isBlank()) {
-            boolean ascending = !"desc".equalsIgnoreCase(sortDir);
-            rows.sort((a, b) -> compareRows(a, b, sortBy, ascending));
-        }
-        
-        return rows;
+        return RowSortModel.builder(rows)
+            .text("secid", row -> stockOf(row) != null ? stockOf(row).getSecid() : null)
+            .text("shortname", row -> stockOf(row) != null ? stockOf(row).getShortname() : null)
+            .number("support", row -> row.userAnalysis().getSupport())
+            .epoch("supportupdatedat", row -> epochMillis(row.userAnalysis().getSupportUpdatedAt()))
+            .number("resistance", row -> row.userAnalysis().getResistance())
+            .epoch("resistanceupdatedat", row -> epochMillis(row.userAnalysis().getResistanceUpdatedAt()))
+            .number("marketprice", UserAnalysisRow::marketPrice)
+            .number("potentialgainpercent", UserAnalysisRow::potentialGainPercent)
+            .number("potentiallosspercent", UserAnalysisRow::potentialLossPercent)
+            .number("experttarget", row -> row.userAnalysis().getStockAnalysis() != null
+                ? row.userAnalysis().getStockAnalysis().getExpertTarget() : null)
+            .epoch("experttargetupdatedat", row -> row.userAnalysis().getStockAnalysis() != null
+                ? epochMillis(row.userAnalysis().getStockAnalysis().getExpertTargetUpdatedAt()) : null)
+            .text("expertrecommendation", UserAnalysisRow::expertRecommendation)
+            .number("expertforecastpercent", UserAnalysisRow::expertForecastPercent)
+            // По умолчанию сортируем по тикеру
+            .defaultColumn("secid")
+            .build(version);
     }
 
-    private int compareRows(UserAnalysisRow a, UserAnalysisRow b, String sortBy, boolean ascending) {
-        int result = 0;
-        StockAnalysis saA = a.userAnalysis().getStockAnalysis();
-        StockAnalysis saB = b.userAnalysis().getStockAnalysis();
-        MoexStock stockA = saA != null ? saA.getStock() : null;
-        MoexStock stockB = saB != null ? saB.getStock() : null;
-        
-        switch (sortBy.toLowerCase()) {
-            case "secid":
-                String secidA = stockA != null ? stockA.getSecid() : "";
-                String secidB = stockB != null ? stockB.getSecid() : "";
-                result = secidA.compareToIgnoreCase(secidB);
-                break;
-            case "shortname":
-                String shortnameA = stockA != null ? stockA.getShortname() : "";
-                String shortnameB = stockB != null ? stockB.getShortname() : "";
-                result = shortnameA.compareToIgnoreCase(shortnameB);
-                break;
-            case "support":
-                result = compareBigDecimal(a.userAnalysis().getSupport(), b.userAnalysis().getSupport());
-                break;
-            case "supportupdatedat":
-                result = compareOffsetDateTime(a.userAnalysis().getSupportUpdatedAt(), b.userAnalysis().getSupportUpdatedAt());
-                break;
-            case "resistance":
-                result = compareBigDecimal(a.userAnalysis().getResistance(), b.userAnalysis().getResistance());
-                break;
-            case "resistanceupdatedat":
-                result = compareOffsetDateTime(a.userAnalysis().getResistanceUpdatedAt(), b.userAnalysis().getResistanceUpdatedAt());
-                break;
-            case "marketprice":
-                result = compareBigDecimal(a.marketPrice(), b.marketPrice());
-                break;
-            case "potentialgainpercent":
-                result = compareBigDecimal(a.potentialGainPercent(), b.potentialGainPercent());
-                break;
-            case "potentiallosspercent":
-                result = compareBigDecimal(a.potentialLossPercent(), b.potentialLossPercent());
-                break;
-            case "experttarget":
-                result = compareBigDecimal(saA != null ? saA.getExpertTarget() : null, 
-                                         saB != null ? saB.getExpertTarget() : null);
-                break;
-            case "experttargetupdatedat":
-                result = compareOffsetDateTime(saA != null ? saA.getExpertTargetUpdatedAt() : null,
-                                              saB != null ? saB.getExpertTargetUpdatedAt() : null);
-                break;
-            case "expertrecommendation":
-                String recA = saA != null && saA.getExpertRecommendation() != null ? saA.getExpertRecommendation() : "";
-                String recB = saB != null && saB.getExpertRecommendation() != null ? saB.getExpertRecommendation() : "";
-                result = recA.compareToIgnoreCase(recB);
-                break;
-            case "expertforecastpercent":
-                result = compareBigDecimal(a.expertForecastPercent(), b.expertForecastPercent());
-                break;
-            default:
-                // По умолчанию сортируем по тикеру
-                String defaultSecidA = stockA != null ? stockA.getSecid() : "";
-                String defaultSecidB = stockB != null ? stockB.getSecid() : "";
-                result = defaultSecidA.compareToIgnoreCase(defaultSecidB);
-                break;
-        }
-        
-        return ascending ? result : -result;
+    private static MoexStock stockOf(UserAnalysisRow row) {
+        StockAnalysis stockAnalysis = row.userAnalysis().getStockAnalysis();
+        return stockAnalysis != null ? stockAnalysis.getStock() : null;
+    }
+
+    private static Long epochMillis(OffsetDateTime value) {
+        return value != null ? value.toInstant().toEpochMilli() : null;
     }
 
     @Transactional(readOnly = true)
@@ -177,6 +162,7 @@ public class UserAnalysisService {
             userAnalysis.setStockAnalysis(stockAnalysis);
             userAnalysisRepository.save(userAnalysis);
         }
+        dataVersion.markChanged();
     }
 
     @Transactional
@@ -230,26 +216,14 @@ public class UserAnalysisService {
         
         if (!toSave.isEmpty()) {
             userAnalysisRepository.saveAll(toSave);
+            dataVersion.markLevelsChanged();
         }
     }
 
     @Transactional
     public void delete(AppUser user, Long userAnalysisId) {
         userAnalysisRepository.deleteByIdAndUser(userAnalysisId, user);
-    }
-
-    private int compareBigDecimal(BigDecimal a, BigDecimal b) {
-        if (a == null && b == null) return 0;
-        if (a == null) return -1;
-        if (b == null) return 1;
-        return a.compareTo(b);
-    }
-
-    private int compareOffsetDateTime(OffsetDateTime a, OffsetDateTime b) {
-        if (a == null && b == null) return 0;
-        if (a == null) return -1;
-        if (b == null) return 1;
-        return a.compareTo(b);
+        dataVersion.markLevelsChanged();
     }
 
     private BigDecimal calculatePotentialGainPercent(BigDecimal support, BigDecimal marketPrice) {
@@ -272,15 +246,6 @@ public class UserAnalysisService {
             .setScale(2, RoundingMode.HALF_UP);
     }
 
-    private BigDecimal calculateExpertForecastPercent(BigDecimal target, BigDecimal marketPrice) {
-        if (target == null || marketPrice == null || marketPrice.compareTo(BigDecimal.ZERO) == 0) {
-            return null;
-        }
-        return target.subtract(marketPrice)
-            .divide(marketPrice, 6, RoundingMode.HALF_UP)
-            .multiply(BigDecimal.valueOf(100));
-    }
-
     private BigDecimal parseDecimal(String value, int decimals) {
         if (value == null || value.isBlank()) {
             return null;
@@ -0,0 +1,10 @@
+package com.invest.management.analysis;
+
+import java.math.BigDecimal;
+
+/**
+ * Уровни поддержки/сопротивления пользователя по бумаге (проекция user_analysis для индекса уведомлений)
+ */
+public record UserPriceLevel(Long userAnalysisId, Long userId, String secid,
+                             BigDecimal support, BigDecimal resistance) {
+}
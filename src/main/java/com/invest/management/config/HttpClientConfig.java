@@ -0,0 +1,41 @@
+package com.invest.management.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.http.client.ClientHttpRequestFactoryBuilder;
+import org.springframework.boot.http.client.ClientHttpRequestFactorySettings;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.time.Duration;
+
+/**
+ * Исходящие HTTP-клиенты (RestTemplate MOEX ISS и ALOR) в режиме виртуальных потоков
+ * Без spring.threads.virtual.enabled=true бины не создаются, и RestTemplateBuilder
+ * использует фабрику запросов и таймауты Spring Boot по умолчанию
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class HttpClientConfig {
+
+    /**
+     * Запросы выполняются через java.net.http.HttpClient, ответы обрабатываются
+     * в виртуальных потоках, а не в собственном пуле потоков платформы
+     */
+    @Bean
+    public ClientHttpRequestFactoryBuilder<?> virtualThreadClientHttpRequestFactoryBuilder() {
+        return ClientHttpRequestFactoryBuilder.jdk().withHttpClientCustomizer(
+            httpClient -> httpClient.executor(new VirtualThreadTaskExecutor("http-client-")));
+    }
+
+    @Bean
+    public ClientHttpRequestFactorySettings virtualThreadClientHttpRequestFactorySettings(
+            @Value("${http-client.virtual.connect-timeout:10s}") Duration connectTimeout,
+            @Value("${http-client.virtual.read-timeout:60s}") Duration readTimeout) {
+        return ClientHttpRequestFactorySettings.defaults()
+            .withConnectTimeout(connectTimeout)
+            .withReadTimeout(readTimeout);
+    }
+}
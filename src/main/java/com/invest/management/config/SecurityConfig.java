@@ -1,6 +1,7 @@
 package com.invest.management.config;
 
 import com.invest.management.user.AppUserDetailsService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.Customizer;
@@ -43,9 +44,13 @@ public class SecurityConfig {
         return http.build();
     }
 
+    /**
+     * Стоимость BCrypt (log2 числа раундов); хеши с меньшей стоимостью пересчитываются
+     * при следующем входе через {@link AppUserDetailsService#updatePassword}
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${security.password.bcrypt-strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
 }
 
@@ -0,0 +1,44 @@
+package com.invest.management.config;
+
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Потоки фоновых исполнителей приложения (прогрев, загрузки MOEX, история цен, графики купонов)
+ * При spring.threads.virtual.enabled=true на Java 21+ задачи выполняются в виртуальных потоках:
+ * ожидание ответов MOEX и ALOR не занимает потоки платформы. Параллелизм по-прежнему
+ * ограничивается размером пула исполнителя. На Java 17 настройка игнорируется.
+ */
+@Component
+public class WorkerThreads {
+
+    private final boolean virtual;
+
+    public WorkerThreads(Environment environment) {
+        this.virtual = Threading.VIRTUAL.isActive(environment);
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * @param prefix префикс имени потока, к нему добавляется номер
+     */
+    public ThreadFactory factory(String prefix) {
+        if (virtual) {
+            return new VirtualThreadTaskExecutor(prefix).getVirtualThreadFactory();
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
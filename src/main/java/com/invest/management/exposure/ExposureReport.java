@@ -0,0 +1,53 @@
+package com.invest.management.exposure;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Совокупные вложения всех пользователей: концентрация по бумагам, секторам и валютам
+ * Стоимость - в рублях по рыночным ценам MOEX и текущим курсам валют
+ * @param top10SharePercent доля десяти крупнейших бумаг в общей стоимости, %
+ * @param herfindahlIndex индекс Херфиндаля-Хиршмана по бумагам (0-10000)
+ * @param unpricedPositions позиции без цены или курса, не вошедшие в стоимость
+ */
+public record ExposureReport(OffsetDateTime calculatedAt,
+                             BigDecimal totalValue,
+                             int users,
+                             long positions,
+                             int instrumentCount,
+                             BigDecimal top10SharePercent,
+                             BigDecimal herfindahlIndex,
+                             long unpricedPositions,
+                             List<Instrument> instruments,
+                             List<Group> sectors,
+                             List<Group> currencies) {
+
+    /**
+     * Вложения в одну бумагу
+     * @param topHolders крупнейшие держатели бумаги
+     */
+    public record Instrument(String secid,
+                             String shortName,
+                             String securityType,
+                             String sector,
+                             String currency,
+                             BigDecimal quantity,
+                             BigDecimal value,
+                             BigDecimal sharePercent,
+                             int holders,
+                             List<Holder> topHolders) {
+    }
+
+    /**
+     * Доля пользователя в общей стоимости бумаги
+     */
+    public record Holder(String email, BigDecimal value, BigDecimal sharePercent) {
+    }
+
+    /**
+     * Вложения в сектор или валюту
+     */
+    public record Group(String key, BigDecimal value, BigDecimal sharePercent, int instruments, int holders) {
+    }
+}
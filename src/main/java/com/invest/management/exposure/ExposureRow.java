@@ -0,0 +1,12 @@
+package com.invest.management.exposure;
+
+import java.math.BigDecimal;
+
+/**
+ * Суммарное количество бумаги у одного пользователя (агрегат по всем его портфелям)
+ * @param stockId акция из справочника MOEX или null
+ * @param bondId облигация из справочника MOEX или null
+ * @param positions количество позиций, вошедших в агрегат
+ */
+public record ExposureRow(Long userId, Long stockId, Long bondId, String isin, BigDecimal quantity, long positions) {
+}
@@ -0,0 +1,311 @@
+package com.invest.management.exposure;
+
+import com.invest.management.moex.MoexPricesUpdatedEvent;
+import com.invest.management.moex.MoexStock;
+import com.invest.management.moex.MoexStockRepository;
+import com.invest.management.moex.bond.Bond;
+import com.invest.management.moex.bond.BondRepository;
+import com.invest.management.moex.fx.FxRateService;
+import com.invest.management.moex.fx.FxRates;
+import com.invest.management.portfolio.PortfolioPositionsChangedEvent;
+import com.invest.management.user.AppUser;
+import com.invest.management.user.AppUserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Совокупные вложения всех пользователей для администратора
+ * БД возвращает количество каждой бумаги у каждого пользователя, приложение параллельно группирует
+ * эти строки по бумагам, секторам и валютам. Отчет кэшируется, пересчитывается после каждого
+ * обновления цен MOEX и лениво - после изменения позиций.
+ */
+@Service
+public class ExposureService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExposureService.class);
+    private static final int TOP_INSTRUMENTS = 50;
+    private static final int TOP_HOLDERS = 5;
+    private static final String UNKNOWN = "Не указан";
+
+    private final PositionExposureRepository exposureRepository;
+    private final MoexStockRepository stockRepository;
+    private final BondRepository bondRepository;
+    private final AppUserRepository userRepository;
+    private final FxRateService fxRateService;
+
+    private volatile ExposureReport report;
+    /**
+     * Защищает первый расчет отчета. Расчет обращается к БД, а synchronized закрепил бы
+     * виртуальный поток за потоком платформы на все время запроса
+     */
+    private final ReentrantLock reportLock = new ReentrantLock();
+
+    public ExposureService(PositionExposureRepository exposureRepository,
+                           MoexStockRepository stockRepository,
+                           BondRepository bondRepository,
+                           AppUserRepository userRepository,
+                           FxRateService fxRateService) {
+        this.exposureRepository = exposureRepository;
+        this.stockRepository = stockRepository;
+        this.bondRepository = bondRepository;
+        this.userRepository = userRepository;
+        this.fxRateService = fxRateService;
+    }
+
+    public ExposureReport getReport() {
+        ExposureReport current = report;
+        if (current != null) {
+            return current;
+        }
+        reportLock.lock();
+        try {
+            if (report == null) {
+                report = calculate();
+            }
+            return report;
+        } finally {
+            reportLock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPricesUpdated(MoexPricesUpdatedEvent event) {
+        try {
+            ExposureReport calculated = calculate();
+            reportLock.lock();
+            try {
+                report = calculated;
+            } finally {
+                reportLock.unlock();
+            }
+        } catch (Exception ex) {
+            log.error("Ошибка при пересчете совокупных вложений пользователей", ex);
+        }
+    }
+
+    @EventListener
+    public void onPositionsChanged(PortfolioPositionsChangedEvent event) {
+        report = null;
+    }
+
+    ExposureReport calculate() {
+        long started = System.currentTimeMillis();
+        List<ExposureRow> rows = exposureRepository.aggregateByUserAndInstrument();
+        if (rows.isEmpty()) {
+            return new ExposureReport(OffsetDateTime.now(), BigDecimal.ZERO, 0, 0, 0,
+                BigDecimal.ZERO, BigDecimal.ZERO, 0, List.of(), List.of(), List.of());
+        }
+
+        Map<String, InstrumentInfo> instruments = loadInstruments(rows, fxRateService.current());
+        ConcurrentMap<InstrumentInfo, List<ExposureRow>> byInstrument = rows.parallelStream()
+            .collect(Collectors.groupingByConcurrent(row -> instruments.get(instrumentKey(row))));
+        List<Aggregate> aggregates = byInstrument.entrySet().parallelStream()
+            .map(entry -> Aggregate.of(entry.getKey(), entry.getValue()))
+            .sorted(Comparator.comparingDouble(Aggregate::value).reversed())
+            .toList();
+
+        double total = 0.0;
+        long unpriced = 0;
+        for (Aggregate aggregate : aggregates) {
+            if (aggregate.priced()) {
+                total += aggregate.value();
+            } else {
+                unpriced += aggregate.positions();
+            }
+        }
+
+        double top10 = 0.0;
+        double herfindahl = 0.0;
+        int rank = 0;
+        for (Aggregate aggregate : aggregates) {
+            if (!aggregate.priced() || total <= 0) {
+                continue;
+            }
+            double share = aggregate.value() / total * 100.0;
+            herfindahl += share * share;
+            if (rank++ < 10) {
+                top10 += share;
+            }
+        }
+
+        List<Aggregate> top = aggregates.stream().filter(Aggregate::priced).limit(TOP_INSTRUMENTS).toList();
+        Map<Long, String> emails = loadEmails(top);
+        double totalValue = total;
+        List<ExposureReport.Instrument> topInstruments = top.stream()
+            .map(aggregate -> aggregate.toInstrument(totalValue, emails))
+            .toList();
+
+        ExposureReport calculated = new ExposureReport(OffsetDateTime.now(),
+            round(total),
+            (int) rows.stream().mapToLong(ExposureRow::userId).distinct().count(),
+            rows.stream().mapToLong(ExposureRow::positions).sum(),
+            aggregates.size(),
+            round(top10),
+            round(herfindahl),
+            unpriced,
+            topInstruments,
+            groups(aggregates, InstrumentInfo::sector, total),
+            groups(aggregates, InstrumentInfo::currency, total));
+        log.info("Совокупные вложения: {} строк, {} бумаг, {} мс",
+            rows.size(), aggregates.size(), System.currentTimeMillis() - started);
+        return calculated;
+    }
+
+    /**
+     * Справочные данные и цена в рублях для каждой бумаги из агрегата
+     */
+    private Map<String, InstrumentInfo> loadInstruments(List<ExposureRow> rows, FxRates rates) {
+        Set<Long> stockIds = new HashSet<>();
+        Set<Long> bondIds = new HashSet<>();
+        for (ExposureRow row : rows) {
+            if (row.stockId() != null) {
+                stockIds.add(row.stockId());
+            } else if (row.bondId() != null) {
+                bondIds.add(row.bondId());
+            }
+        }
+
+        Map<String, InstrumentInfo> result = new HashMap<>();
+        for (MoexStock stock : stockRepository.findAllById(stockIds)) {
+            BigDecimal price = stock.getMarketprice() != null ? stock.getMarketprice() : stock.getPrevprice();
+            String currency = FxRates.normalize(stock.getCurrencyid());
+            result.put("S" + stock.getId(), new InstrumentInfo(stock.getSecid(), stock.getShortname(), "STOCK",
+                sectorOf(stock.getIssuerSector()), currency, toRub(rates.convert(price, currency, FxRates.RUB))));
+        }
+        for (Bond bond : bondRepository.findAllById(bondIds)) {
+            BigDecimal price = bond.toAbsolutePrice(bond.getMarketprice() != null ? bond.getMarketprice() : bond.getPrevprice());
+            if (price != null && bond.getAccruedInterest() != null) {
+                price = price.add(bond.getAccruedInterest());
+            }
+            String currency = FxRates.normalize(bond.getFaceCurrency());
+            result.put("B" + bond.getId(), new InstrumentInfo(bond.getSecid(), bond.getShortname(), "BOND",
+                sectorOf(bond.getIssuerSector()), currency, toRub(rates.convert(price, currency, FxRates.RUB))));
+        }
+        // Позиции без связи со справочником MOEX: бумага известна только по ISIN
+        for (ExposureRow row : rows) {
+            result.computeIfAbsent(instrumentKey(row),
+                key -> new InstrumentInfo(row.isin(), row.isin(), null, UNKNOWN, UNKNOWN, Double.NaN));
+        }
+        return result;
+    }
+
+    private Map<Long, String> loadEmails(List<Aggregate> top) {
+        Set<Long> userIds = new HashSet<>();
+        for (Aggregate aggregate : top) {
+            for (int i = 0; i < Math.min(TOP_HOLDERS, aggregate.userIds().length); i++) {
+                userIds.add(aggregate.userIds()[i]);
+            }
+        }
+        return userRepository.findAllById(userIds).stream()
+            .collect(Collectors.toMap(AppUser::getId, AppUser::getEmail));
+    }
+
+    private List<ExposureReport.Group> groups(List<Aggregate> aggregates, Function<InstrumentInfo, String> key, double total) {
+        Map<String, List<Aggregate>> grouped = aggregates.stream()
+            .filter(Aggregate::priced)
+            .collect(Collectors.groupingBy(aggregate -> key.apply(aggregate.info())));
+        List<ExposureReport.Group> result = new ArrayList<>(grouped.size());
+        for (Map.Entry<String, List<Aggregate>> entry : grouped.entrySet()) {
+            double value = 0.0;
+            Set<Long> holders = new HashSet<>();
+            for (Aggregate aggregate : entry.getValue()) {
+                value += aggregate.value();
+                for (long userId : aggregate.userIds()) {
+                    holders.add(userId);
+                }
+            }
+            result.add(new ExposureReport.Group(entry.getKey(), round(value), percent(value, total),
+                entry.getValue().size(), holders.size()));
+        }
+        result.sort(Comparator.comparing(ExposureReport.Group::value).reversed());
+        return List.copyOf(result);
+    }
+
+    private static String instrumentKey(ExposureRow row) {
+        if (row.stockId() != null) {
+            return "S" + row.stockId();
+        }
+        return row.bondId() != null ? "B" + row.bondId() : "I" + row.isin();
+    }
+
+    private static String sectorOf(String sector) {
+        return sector != null && !sector.isBlank() ? sector : UNKNOWN;
+    }
+
+    private static double toRub(BigDecimal price) {
+        return price != null ? price.doubleValue() : Double.NaN;
+    }
+
+    private static BigDecimal round(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal percent(double value, double total) {
+        return total > 0 ? round(value / total * 100.0) : BigDecimal.ZERO;
+    }
+
+    /**
+     * Бумага и ее цена в рублях (NaN - цена или курс неизвестны)
+     */
+    private record InstrumentInfo(String secid, String shortName, String securityType,
+                                  String sector, String currency, double priceRub) {
+    }
+
+    /**
+     * Вложения в бумагу; держатели упорядочены по убыванию стоимости
+     */
+    private record Aggregate(InstrumentInfo info, double quantity, double value, long positions,
+                             long[] userIds, double[] userValues) {
+
+        static Aggregate of(InstrumentInfo info, List<ExposureRow> rows) {
+            ExposureRow[] sorted = rows.toArray(ExposureRow[]::new);
+            Arrays.sort(sorted, Comparator.comparing(ExposureRow::quantity).reversed());
+            long[] userIds = new long[sorted.length];
+            double[] userValues = new double[sorted.length];
+            double quantity = 0.0;
+            long positions = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                double userQuantity = sorted[i].quantity().doubleValue();
+                userIds[i] = sorted[i].userId();
+                userValues[i] = userQuantity * info.priceRub();
+                quantity += userQuantity;
+                positions += sorted[i].positions();
+            }
+            return new Aggregate(info, quantity, quantity * info.priceRub(), positions, userIds, userValues);
+        }
+
+        boolean priced() {
+            return !Double.isNaN(value);
+        }
+
+        ExposureReport.Instrument toInstrument(double total, Map<Long, String> emails) {
+            List<ExposureReport.Holder> holders = new ArrayList<>(TOP_HOLDERS);
+            for (int i = 0; i < Math.min(TOP_HOLDERS, userIds.length); i++) {
+                holders.add(new ExposureReport.Holder(emails.getOrDefault(userIds[i], "#" + userIds[i]),
+                    round(userValues[i]), percent(userValues[i], value)));
+            }
+            return new ExposureReport.Instrument(info.secid(), info.shortName(), info.securityType(),
+                info.sector(), info.currency(), BigDecimal.valueOf(quantity).stripTrailingZeros(),
+                round(value), percent(value, total), userIds.length, List.copyOf(holders));
+        }
+    }
+}
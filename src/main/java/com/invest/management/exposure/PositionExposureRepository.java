@@ -0,0 +1,27 @@
+package com.invest.management.exposure;
+
+import com.invest.management.portfolio.PortfolioPosition;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+
+import java.util.List;
+
+/**
+ * Агрегатные запросы по позициям всех пользователей
+ * Группировка выполняется в БД: в приложение приходит по строке на пару пользователь-бумага,
+ * а не каждая позиция
+ */
+public interface PositionExposureRepository extends Repository<PortfolioPosition, Long> {
+
+    @Query("""
+        SELECT new com.invest.management.exposure.ExposureRow(
+            pf.user.id, s.id, b.id, p.isin, SUM(p.quantity), COUNT(p))
+        FROM PortfolioPosition p
+        JOIN p.portfolio pf
+        LEFT JOIN p.moexStock s
+        LEFT JOIN p.moexBond b
+        WHERE p.quantity > 0
+        GROUP BY pf.user.id, s.id, b.id, p.isin
+        """)
+    List<ExposureRow> aggregateByUserAndInstrument();
+}
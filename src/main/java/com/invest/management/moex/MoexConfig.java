@@ -1,5 +1,7 @@
 package com.invest.management.moex;
 
+import com.invest.management.replay.FixtureRecorder;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -11,7 +13,12 @@ import org.springframework.web.client.RestTemplate;
 public class MoexConfig {
 
     @Bean
-    public RestTemplate moexRestTemplate(RestTemplateBuilder builder) {
+    public RestTemplate moexRestTemplate(RestTemplateBuilder builder, ObjectProvider<FixtureRecorder> fixtureRecorder) {
+        FixtureRecorder recorder = fixtureRecorder.getIfAvailable();
+        if (recorder != null) {
+            // Запись ответов для воспроизведения стаб-сервером (replay.record.enabled)
+            builder = builder.additionalInterceptors(recorder.interceptor("moex"));
+        }
         return builder
             .additionalInterceptors(userAgentInterceptor())
             .build();
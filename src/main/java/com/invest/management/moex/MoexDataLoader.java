@@ -1,18 +1,24 @@
 package com.invest.management.moex;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.invest.management.analysis.AnalysisDataVersion;
 import com.invest.management.moex.common.MoexApiClient;
 import com.invest.management.moex.common.MoexResponseParser;
+import com.invest.management.moex.job.LoadProgress;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 public class MoexDataLoader {
@@ -23,32 +29,52 @@ public class MoexDataLoader {
     private final MoexApiClient apiClient;
     private final MoexResponseParser parser;
     private final MoexStockRepository stockRepository;
+    private final AnalysisDataVersion analysisDataVersion;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Количество строк, сохраняемых в одной транзакции
+     */
+    @Value("${moex.load.chunk-size:500}")
+    private int chunkSize;
 
     public MoexDataLoader(MoexApiClient apiClient,
                           MoexResponseParser parser,
-                          MoexStockRepository stockRepository) {
+                          MoexStockRepository stockRepository,
+                          AnalysisDataVersion analysisDataVersion,
+                          TransactionTemplate transactionTemplate) {
         this.apiClient = apiClient;
         this.parser = parser;
         this.stockRepository = stockRepository;
+        this.analysisDataVersion = analysisDataVersion;
+        this.transactionTemplate = transactionTemplate;
     }
 
-    @Transactional
     public void loadStocksListA() {
-        loadStocksForBoard(DEFAULT_BOARD);
+        loadStocksListA(LoadProgress.NONE);
+    }
+
+    /**
+     * Загружает акции списка A; строки сохраняются порциями в отдельных транзакциях,
+     * между порциями проверяется отмена
+     * @return количество сохраненных акций
+     */
+    public int loadStocksListA(LoadProgress progress) {
+        return loadStocksForBoard(DEFAULT_BOARD, progress);
     }
 
-    private void loadStocksForBoard(String boardId) {
+    private int loadStocksForBoard(String boardId, LoadProgress progress) {
         String path = String.format("/engines/stock/markets/shares/boards/%s/securities.json?iss.meta=off", boardId);
         JsonNode root = apiClient.fetch(path);
         if (root == null) {
             log.warn("Не удалось получить данные MOEX по board {}: пустой ответ", boardId);
-            return;
+            return 0;
         }
 
         JsonNode securitiesNode = root.get("securities");
         if (securitiesNode == null || securitiesNode.isMissingNode()) {
             log.warn("Ответ MOEX не содержит секции 'securities' для board {}", boardId);
-            return;
+            return 0;
         }
 
         JsonNode marketDataNode = root.get("marketdata");
@@ -59,8 +85,7 @@ public class MoexDataLoader {
         Map<String, JsonNode> marketDataBySecId = parser.buildMarketDataIndex(marketDataNode);
         Map<String, Integer> marketIndex = marketDataNode != null ? parser.indexMap(parser.readColumns(marketDataNode)) : Map.of();
 
-        List<MoexStock> stocksToPersist = new ArrayList<>();
-
+        List<JsonNode> rows = new ArrayList<>();
         for (JsonNode row : securitiesNode.withArray("data")) {
             String secid = parser.readText(row, secIndex, "secid");
             if (secid == null || secid.isBlank()) {
@@ -72,9 +97,44 @@ public class MoexDataLoader {
             if (listLevel != null && !listLevel.trim().matches("[12]")) {
                 continue;
             }
+            rows.add(row);
+        }
+
+        if (rows.isEmpty()) {
+            log.warn("По board {} не найдено записей списка A", boardId);
+            return 0;
+        }
 
-            MoexStock stock = stockRepository.findBySecid(secid)
-                .orElseGet(MoexStock::new);
+        progress.addTotal(rows.size());
+        int saved = 0;
+        for (int from = 0; from < rows.size(); from += chunkSize) {
+            if (progress.isCancelled()) {
+                log.info("Загрузка акций board {} отменена после {} записей", boardId, saved);
+                break;
+            }
+            List<JsonNode> chunk = rows.subList(from, Math.min(rows.size(), from + chunkSize));
+            transactionTemplate.executeWithoutResult(status ->
+                saveChunk(chunk, secIndex, marketDataBySecId, marketIndex));
+            saved += chunk.size();
+            progress.advance(chunk.size());
+        }
+
+        if (saved > 0) {
+            analysisDataVersion.markChanged();
+        }
+        log.info("Обновлено {} акций списка A для board {}", saved, boardId);
+        return saved;
+    }
+
+    private void saveChunk(List<JsonNode> rows,
+                           Map<String, Integer> secIndex,
+                           Map<String, JsonNode> marketDataBySecId,
+                           Map<String, Integer> marketIndex) {
+        Map<String, MoexStock> existing = findExisting(rows, secIndex);
+        List<MoexStock> stocksToPersist = new ArrayList<>(rows.size());
+        for (JsonNode row : rows) {
+            String secid = parser.readText(row, secIndex, "secid");
+            MoexStock stock = existing.computeIfAbsent(secid, key -> new MoexStock());
 
             stock.setSecid(secid);
             stock.setBoardid(parser.readText(row, secIndex, "boardid"));
@@ -115,14 +175,25 @@ public class MoexDataLoader {
             stock.setUpdatedAt(OffsetDateTime.now());
             stocksToPersist.add(stock);
         }
+        stockRepository.saveAll(stocksToPersist);
+    }
 
-        if (stocksToPersist.isEmpty()) {
-            log.warn("По board {} не найдено записей списка A", boardId);
-            return;
+    /**
+     * Загружает уже сохраненные акции площадки одним запросом вместо поиска по каждому secid
+     */
+    private Map<String, MoexStock> findExisting(Iterable<JsonNode> rows, Map<String, Integer> secIndex) {
+        Set<String> secids = new HashSet<>();
+        for (JsonNode row : rows) {
+            String secid = parser.readText(row, secIndex, "secid");
+            if (secid != null && !secid.isBlank()) {
+                secids.add(secid);
+            }
         }
-
-        stockRepository.saveAll(stocksToPersist);
-        log.info("Обновлено {} акций списка A для board {}", stocksToPersist.size(), boardId);
+        Map<String, MoexStock> existing = new HashMap<>(secids.size() * 2);
+        if (!secids.isEmpty()) {
+            stockRepository.findBySecidIn(secids).forEach(stock -> existing.putIfAbsent(stock.getSecid(), stock));
+        }
+        return existing;
     }
 }
 
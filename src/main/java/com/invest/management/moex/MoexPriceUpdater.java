@@ -2,6 +2,10 @@ package com.invest.management.moex;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.invest.management.alert.PriceAlertEngine;
+import com.invest.management.alert.PriceTick;
+import com.invest.management.analysis.AnalysisDataVersion;
+import com.invest.management.analysis.ExpertForecastRecalculator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -23,6 +27,7 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -31,10 +36,11 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.InflaterInputStream;
-import org.springframework.boot.context.event.ApplicationReadyEvent;
-import org.springframework.context.event.EventListener;
+import org.springframework.context.ApplicationEventPublisher;
 import com.invest.management.moex.bond.Bond;
+import com.invest.management.moex.bond.BondAnalyticsService;
 import com.invest.management.moex.bond.BondRepository;
+import com.invest.management.portfolio.PortfolioDataVersion;
 
 @Service
 @ConditionalOnProperty(name = "moex.price-updater.enabled", havingValue = "true", matchIfMissing = true)
@@ -51,6 +57,12 @@ public class MoexPriceUpdater {
     private final MoexDataLoader dataLoader;
     private final BondRepository bondRepository;
     private final com.invest.management.moex.bond.BondDataLoader bondDataLoader;
+    private final AnalysisDataVersion analysisDataVersion;
+    private final PriceAlertEngine priceAlertEngine;
+    private final ExpertForecastRecalculator forecastRecalculator;
+    private final BondAnalyticsService bondAnalyticsService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PortfolioDataVersion portfolioDataVersion;
 
     @Value("${moex.api.base-url:https://iss.moex.com/iss}")
     private String baseUrl;
@@ -63,19 +75,25 @@ public class MoexPriceUpdater {
                             MoexStockRepository stockRepository,
                             MoexDataLoader dataLoader,
                             BondRepository bondRepository,
-                            com.invest.management.moex.bond.BondDataLoader bondDataLoader) {
+                            com.invest.management.moex.bond.BondDataLoader bondDataLoader,
+                            AnalysisDataVersion analysisDataVersion,
+                            PriceAlertEngine priceAlertEngine,
+                            ExpertForecastRecalculator forecastRecalculator,
+                            BondAnalyticsService bondAnalyticsService,
+                            ApplicationEventPublisher eventPublisher,
+                            PortfolioDataVersion portfolioDataVersion) {
         this.restTemplate = moexRestTemplate;
         this.objectMapper = objectMapper;
         this.stockRepository = stockRepository;
         this.dataLoader = dataLoader;
         this.bondRepository = bondRepository;
         this.bondDataLoader = bondDataLoader;
-    }
-
-    @EventListener(ApplicationReadyEvent.class)
-    public void onApplicationReady() {
-        log.info("Проверка необходимости полного обновления данных MOEX при старте приложения");
-        checkAndPerformFullUpdate();
+        this.analysisDataVersion = analysisDataVersion;
+        this.priceAlertEngine = priceAlertEngine;
+        this.forecastRecalculator = forecastRecalculator;
+        this.bondAnalyticsService = bondAnalyticsService;
+        this.eventPublisher = eventPublisher;
+        this.portfolioDataVersion = portfolioDataVersion;
     }
 
     @Scheduled(cron = "${moex.price-updater.cron:0 */5 * * * *}")
@@ -89,14 +107,22 @@ public class MoexPriceUpdater {
                 performFullUpdate();
             }
             updatePricesForBoard(DEFAULT_BOARD);
+            recalculateExpertForecasts();
             updateBondPrices();
+            recalculateBondAnalytics();
+            eventPublisher.publishEvent(new MoexPricesUpdatedEvent());
             log.info("Обновление рыночных цен завершено успешно");
         } catch (Exception ex) {
             log.error("Ошибка при обновлении рыночных цен", ex);
         }
     }
 
-    private void checkAndPerformFullUpdate() {
+    /**
+     * Выполняет полное обновление справочника акций, если он пуст или устарел
+     * Вызывается в фоне при запуске приложения (см. StartupWarmup)
+     */
+    public void checkAndPerformFullUpdate() {
+        log.info("Проверка необходимости полного обновления данных MOEX");
         if (needsFullUpdate()) {
             log.info("Требуется полное обновление данных MOEX. Выполняем...");
             performFullUpdate();
@@ -196,6 +222,7 @@ public class MoexPriceUpdater {
 
         int updatedCount = 0;
         int prevpriceUpdatedCount = 0;
+        List<PriceTick> priceTicks = new ArrayList<>();
         
         for (JsonNode row : marketDataNode.withArray("data")) {
             String secid = readText(row, marketIndex, "secid");
@@ -225,6 +252,7 @@ public class MoexPriceUpdater {
                 log.debug("Обновление цены для {}: {} -> {} (источник: {})", 
                     secid, stock.getMarketprice(), newPrice, 
                     lastPrice != null ? "LAST" : "MARKETPRICE");
+                priceTicks.add(new PriceTick(secid, PriceTick.SOURCE_MOEX, stock.getMarketprice(), newPrice));
                 stock.setMarketprice(newPrice);
                 stockChanged = true;
             }
@@ -252,13 +280,48 @@ public class MoexPriceUpdater {
 
         if (updatedCount > 0) {
             stockRepository.saveAll(stocksBySecid.values());
+            analysisDataVersion.markChanged();
             log.info("Обновлено {} цен для board {} (в т.ч. {} prevprice)", 
                 updatedCount, boardId, prevpriceUpdatedCount);
+            checkPriceAlerts(priceTicks);
         } else {
             log.debug("Нет изменений в ценах для board {}", boardId);
         }
     }
 
+    /**
+     * Пересчитывает сохраненный прогноз по экспертным целям по только что обновленным ценам
+     */
+    private void recalculateExpertForecasts() {
+        try {
+            int changed = forecastRecalculator.recalculateAll();
+            if (changed > 0) {
+                log.info("Обновлен прогноз по экспертным целям для {} акций", changed);
+            }
+        } catch (Exception ex) {
+            log.error("Ошибка при пересчете прогноза по экспертным целям", ex);
+        }
+    }
+
+    /**
+     * Пересчитывает НКД, доходность и дюрацию облигаций по только что обновленным ценам
+     */
+    private void recalculateBondAnalytics() {
+        try {
+            bondAnalyticsService.recalculateAll();
+        } catch (Exception ex) {
+            log.error("Ошибка при пересчете аналитики облигаций", ex);
+        }
+    }
+
+    private void checkPriceAlerts(List<PriceTick> priceTicks) {
+        try {
+            priceAlertEngine.onPriceTicks(priceTicks);
+        } catch (Exception ex) {
+            log.error("Ошибка при проверке ценовых уровней пользователей", ex);
+        }
+    }
+
     private void updateBondPrices() {
         String[] bondBoards = {"TQOB", "TQCB"};
         int totalUpdated = 0;
@@ -364,6 +427,7 @@ public class MoexPriceUpdater {
         }
         
         if (totalUpdated > 0) {
+            portfolioDataVersion.markChanged();
             log.info("Всего обновлено {} цен облигаций (в т.ч. {} prevprice)", 
                 totalUpdated, totalPrevpriceUpdated);
         }
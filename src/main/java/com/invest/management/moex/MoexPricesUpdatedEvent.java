@@ -0,0 +1,7 @@
+package com.invest.management.moex;
+
+/**
+ * Завершено плановое обновление рыночных цен акций и облигаций MOEX
+ */
+public record MoexPricesUpdatedEvent() {
+}
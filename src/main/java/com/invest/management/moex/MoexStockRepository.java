@@ -4,6 +4,8 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 
 import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface MoexStockRepository extends JpaRepository<MoexStock, Long> {
@@ -11,6 +13,10 @@ public interface MoexStockRepository extends JpaRepository<MoexStock, Long> {
     Optional<MoexStock> findBySecid(String secid);
     
     Optional<MoexStock> findByIsin(String isin);
+
+    List<MoexStock> findBySecidIn(Collection<String> secids);
+
+    List<MoexStock> findByIsinIn(Collection<String> isins);
     
     @Query("SELECT MIN(s.updatedAt) FROM MoexStock s")
     Optional<OffsetDateTime> findMinUpdatedAt();
@@ -6,10 +6,13 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
+import java.util.Objects;
 
 @Entity
 @Table(name = "moex_bonds")
@@ -69,6 +72,9 @@ public class Bond {
     @Column(length = 10)
     private String currencyid;
 
+    @Column(length = 10)
+    private String faceunit;
+
     @Column(precision = 20, scale = 2)
     private BigDecimal issuesize;
 
@@ -109,6 +115,38 @@ public class Bond {
     @Column(name = "offerdate")
     private LocalDate offerdate;
 
+    @Column(name = "couponvalue", precision = 18, scale = 6)
+    private BigDecimal couponvalue;
+
+    @Column(name = "couponperiod")
+    private Integer couponperiod;
+
+    // Аналитика, рассчитываемая BondAnalyticsService после загрузки облигаций и обновления цен
+    @Column(name = "accrued_interest", precision = 18, scale = 6)
+    private BigDecimal accruedInterest;
+
+    @Column(name = "yield_to_maturity", precision = 10, scale = 4)
+    private BigDecimal yieldToMaturity;
+
+    @Column(name = "yield_to_offer", precision = 10, scale = 4)
+    private BigDecimal yieldToOffer;
+
+    @Column(name = "modified_duration", precision = 10, scale = 4)
+    private BigDecimal modifiedDuration;
+
+    @Column(name = "analytics_updated_at")
+    private OffsetDateTime analyticsUpdatedAt;
+
+    // Состояние графика выплат, загружаемого BondScheduleLoader
+    @Column(name = "listed_at")
+    private OffsetDateTime listedAt;
+
+    @Column(name = "schedule_nextcoupon")
+    private LocalDate scheduleNextcoupon;
+
+    @Column(name = "schedule_loaded_at")
+    private OffsetDateTime scheduleLoadedAt;
+
     public Long getId() {
         return id;
     }
@@ -249,6 +287,23 @@ public class Bond {
         this.currencyid = currencyid;
     }
 
+    public String getFaceunit() {
+        return faceunit;
+    }
+
+    public void setFaceunit(String faceunit) {
+        this.faceunit = faceunit;
+    }
+
+    /**
+     * Валюта номинала, в которой выражены абсолютная цена, НКД и купоны;
+     * для выпусков без FACEUNIT - валюта расчетов
+     */
+    @Transient
+    public String getFaceCurrency() {
+        return faceunit != null && !faceunit.isBlank() ? faceunit : currencyid;
+    }
+
     public BigDecimal getIssuesize() {
         return issuesize;
     }
@@ -352,5 +407,104 @@ public class Bond {
     public void setOfferdate(LocalDate offerdate) {
         this.offerdate = offerdate;
     }
-}
 
+    public BigDecimal getCouponvalue() {
+        return couponvalue;
+    }
+
+    public void setCouponvalue(BigDecimal couponvalue) {
+        this.couponvalue = couponvalue;
+    }
+
+    public Integer getCouponperiod() {
+        return couponperiod;
+    }
+
+    public void setCouponperiod(Integer couponperiod) {
+        this.couponperiod = couponperiod;
+    }
+
+    public BigDecimal getAccruedInterest() {
+        return accruedInterest;
+    }
+
+    public void setAccruedInterest(BigDecimal accruedInterest) {
+        this.accruedInterest = accruedInterest;
+    }
+
+    public BigDecimal getYieldToMaturity() {
+        return yieldToMaturity;
+    }
+
+    public void setYieldToMaturity(BigDecimal yieldToMaturity) {
+        this.yieldToMaturity = yieldToMaturity;
+    }
+
+    public BigDecimal getYieldToOffer() {
+        return yieldToOffer;
+    }
+
+    public void setYieldToOffer(BigDecimal yieldToOffer) {
+        this.yieldToOffer = yieldToOffer;
+    }
+
+    public BigDecimal getModifiedDuration() {
+        return modifiedDuration;
+    }
+
+    public void setModifiedDuration(BigDecimal modifiedDuration) {
+        this.modifiedDuration = modifiedDuration;
+    }
+
+    public OffsetDateTime getAnalyticsUpdatedAt() {
+        return analyticsUpdatedAt;
+    }
+
+    public void setAnalyticsUpdatedAt(OffsetDateTime analyticsUpdatedAt) {
+        this.analyticsUpdatedAt = analyticsUpdatedAt;
+    }
+
+    public OffsetDateTime getListedAt() {
+        return listedAt;
+    }
+
+    public void setListedAt(OffsetDateTime listedAt) {
+        this.listedAt = listedAt;
+    }
+
+    public LocalDate getScheduleNextcoupon() {
+        return scheduleNextcoupon;
+    }
+
+    public void setScheduleNextcoupon(LocalDate scheduleNextcoupon) {
+        this.scheduleNextcoupon = scheduleNextcoupon;
+    }
+
+    public OffsetDateTime getScheduleLoadedAt() {
+        return scheduleLoadedAt;
+    }
+
+    public void setScheduleLoadedAt(OffsetDateTime scheduleLoadedAt) {
+        this.scheduleLoadedAt = scheduleLoadedAt;
+    }
+
+    /**
+     * График выплат нужно (пере)загрузить: он еще не загружался или купон с тех пор сменился
+     */
+    @Transient
+    public boolean isScheduleStale() {
+        return scheduleLoadedAt == null || !Objects.equals(scheduleNextcoupon, nextcoupon);
+    }
+
+    /**
+     * Переводит цену в процентах от номинала (так котируются облигации на MOEX и в ALOR)
+     * в цену одной облигации в валюте номинала; без номинала возвращает цену как есть
+     */
+    @Transient
+    public BigDecimal toAbsolutePrice(BigDecimal percentPrice) {
+        if (percentPrice == null || facevalue == null || facevalue.signum() <= 0) {
+            return percentPrice;
+        }
+        return percentPrice.multiply(facevalue).divide(BigDecimal.valueOf(100), 6, RoundingMode.HALF_UP);
+    }
+}
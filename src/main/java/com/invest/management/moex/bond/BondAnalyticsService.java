@@ -0,0 +1,425 @@
+package com.invest.management.moex.bond;
+
+import com.invest.management.portfolio.PortfolioDataVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Расчет НКД, эффективной доходности к погашению/оферте и модифицированной дюрации облигаций
+ * Выполняется одним проходом по всем облигациям после загрузки справочника и обновления цен.
+ * Расчет ведется в double; график денежных потоков облигации кэшируется и перестраивается
+ * только при смене купона, даты следующего купона, погашения, оферты или загруженного графика выплат.
+ *
+ * Если график выплат загружен {@link BondScheduleLoader}, используются купоны и амортизации из него
+ * (необъявленные купоны принимаются равными текущему). Иначе график строится по текущему купону,
+ * а номинал считается погашаемым целиком в дату погашения или оферты.
+ */
+@Service
+public class BondAnalyticsService {
+
+    private static final Logger log = LoggerFactory.getLogger(BondAnalyticsService.class);
+
+    private static final double DAYS_IN_YEAR = 365.0;
+    private static final int MAX_COUPONS = 1_000;
+    private static final int MAX_NEWTON_ITERATIONS = 50;
+    private static final int MAX_BISECTION_ITERATIONS = 200;
+    private static final double MIN_YIELD = -0.99;
+    private static final double MAX_YIELD = 100.0;
+    private static final double PRICE_TOLERANCE = 1e-9;
+
+    private final BondRepository bondRepository;
+    private final BondCashFlowRepository cashFlowRepository;
+    private final PortfolioDataVersion portfolioDataVersion;
+
+    /**
+     * Графики денежных потоков по secid (отдельно к погашению и к оферте)
+     */
+    private final Map<String, CashFlowSchedule> scheduleCache = new ConcurrentHashMap<>();
+
+    /**
+     * Загруженные из MOEX графики выплат по id облигации
+     */
+    private final Map<Long, StoredFlows> storedFlows = new ConcurrentHashMap<>();
+
+    public BondAnalyticsService(BondRepository bondRepository, BondCashFlowRepository cashFlowRepository,
+                                PortfolioDataVersion portfolioDataVersion) {
+        this.bondRepository = bondRepository;
+        this.cashFlowRepository = cashFlowRepository;
+        this.portfolioDataVersion = portfolioDataVersion;
+    }
+
+    /**
+     * Пересчитывает аналитику для всех облигаций справочника
+     * @return количество облигаций, у которых изменились рассчитанные значения
+     */
+    @Transactional
+    public int recalculateAll() {
+        List<Bond> bonds = bondRepository.findAll();
+        long today = LocalDate.now().toEpochDay();
+        OffsetDateTime now = OffsetDateTime.now();
+        refreshStoredFlows(bonds);
+
+        List<Bond> changed = new ArrayList<>();
+        for (Bond bond : bonds) {
+            if (apply(bond, today, now)) {
+                changed.add(bond);
+            }
+        }
+
+        if (!changed.isEmpty()) {
+            bondRepository.saveAll(changed);
+            // НКД входит в стоимость портфелей: новый ETag после коммита
+            portfolioDataVersion.markChanged();
+        }
+        log.info("Пересчитана аналитика облигаций: всего {}, изменено {}", bonds.size(), changed.size());
+        return changed.size();
+    }
+
+    /**
+     * Подгружает графики выплат только для облигаций, у которых график появился или был перезагружен
+     */
+    private void refreshStoredFlows(List<Bond> bonds) {
+        List<Bond> outdated = bonds.stream()
+            .filter(bond -> bond.getScheduleLoadedAt() != null)
+            .filter(bond -> {
+                StoredFlows cached = storedFlows.get(bond.getId());
+                return cached == null || !cached.loadedAt().isEqual(bond.getScheduleLoadedAt());
+            })
+            .toList();
+        if (outdated.isEmpty()) {
+            return;
+        }
+
+        Map<Long, List<BondCashFlow>> flowsByBond = cashFlowRepository.findByBondInOrderByFlowDateAsc(outdated).stream()
+            .collect(Collectors.groupingBy(flow -> flow.getBond().getId()));
+        for (Bond bond : outdated) {
+            storedFlows.put(bond.getId(),
+                StoredFlows.of(bond.getScheduleLoadedAt(), flowsByBond.getOrDefault(bond.getId(), List.of())));
+        }
+    }
+
+    private boolean apply(Bond bond, long today, OffsetDateTime now) {
+        double face = toDouble(bond.getFacevalue());
+        double coupon = resolveCouponValue(bond);
+        Integer period = bond.getCouponperiod();
+
+        BigDecimal accrued = null;
+        BigDecimal ytm = null;
+        BigDecimal yto = null;
+        BigDecimal duration = null;
+
+        if (face > 0) {
+            double accruedValue = calculateAccruedInterest(bond.getNextcoupon(), period, coupon, today);
+            accrued = toDecimal(accruedValue, 6);
+
+            BigDecimal pricePercent = bond.getMarketprice() != null ? bond.getMarketprice() : bond.getPrevprice();
+            if (pricePercent != null && pricePercent.signum() > 0) {
+                double dirtyPrice = pricePercent.doubleValue() * face / 100.0 + accruedValue;
+
+                CashFlowSchedule toMaturity = schedule(bond, bond.getMaturitydate(), "M", face, coupon, today);
+                double[] maturityResult = yieldAndDuration(toMaturity, today, dirtyPrice);
+                ytm = toPercent(maturityResult[0]);
+                duration = toDecimal(maturityResult[1], 4);
+
+                LocalDate offer = bond.getOfferdate();
+                if (offer != null && offer.toEpochDay() > today
+                        && (bond.getMaturitydate() == null || offer.isBefore(bond.getMaturitydate()))) {
+                    CashFlowSchedule toOffer = schedule(bond, offer, "O", face, coupon, today);
+                    double[] offerResult = yieldAndDuration(toOffer, today, dirtyPrice);
+                    yto = toPercent(offerResult[0]);
+                    // Для облигаций с офертой риск определяется ближайшей датой погашения номинала
+                    duration = toDecimal(offerResult[1], 4);
+                }
+            }
+        }
+
+        boolean changed = !same(bond.getAccruedInterest(), accrued)
+                || !same(bond.getYieldToMaturity(), ytm)
+                || !same(bond.getYieldToOffer(), yto)
+                || !same(bond.getModifiedDuration(), duration);
+        if (changed) {
+            bond.setAccruedInterest(accrued);
+            bond.setYieldToMaturity(ytm);
+            bond.setYieldToOffer(yto);
+            bond.setModifiedDuration(duration);
+            bond.setAnalyticsUpdatedAt(now);
+        }
+        return changed;
+    }
+
+    /**
+     * НКД на одну облигацию: купон пропорционально дням с начала текущего купонного периода
+     */
+    static double calculateAccruedInterest(LocalDate nextCoupon, Integer period, double coupon, long today) {
+        if (nextCoupon == null || period == null || period <= 0 || coupon <= 0) {
+            return 0.0;
+        }
+        long periodStart = nextCoupon.toEpochDay() - period;
+        long elapsed = Math.max(0, Math.min(period, today - periodStart));
+        return coupon * elapsed / period;
+    }
+
+    private double resolveCouponValue(Bond bond) {
+        double couponValue = toDouble(bond.getCouponvalue());
+        if (couponValue > 0) {
+            return couponValue;
+        }
+        double face = toDouble(bond.getFacevalue());
+        double rate = toDouble(bond.getCouponpercent());
+        Integer period = bond.getCouponperiod();
+        if (face > 0 && rate > 0 && period != null && period > 0) {
+            return face * rate / 100.0 * period / DAYS_IN_YEAR;
+        }
+        return 0.0;
+    }
+
+    private CashFlowSchedule schedule(Bond bond, LocalDate horizon, String kind, double face, double coupon, long today) {
+        if (horizon == null || horizon.toEpochDay() <= today) {
+            return null;
+        }
+        Integer period = bond.getCouponperiod();
+        StoredFlows stored = bond.getScheduleLoadedAt() != null ? storedFlows.get(bond.getId()) : null;
+        String key = (stored != null ? "S" + stored.loadedAt().toInstant() : "E" + bond.getNextcoupon() + "|" + period)
+            + "|" + coupon + "|" + face + "|" + horizon;
+        String cacheKey = bond.getSecid() + ":" + kind;
+        CashFlowSchedule cached = scheduleCache.get(cacheKey);
+        if (cached != null && cached.key.equals(key)) {
+            return cached;
+        }
+        CashFlowSchedule built = stored != null && stored.hasPrincipal()
+            ? CashFlowSchedule.fromStored(key, stored, coupon, horizon.toEpochDay())
+            : CashFlowSchedule.build(key, bond.getNextcoupon(), period, coupon, face, horizon.toEpochDay());
+        if (built != null) {
+            scheduleCache.put(cacheKey, built);
+        }
+        return built;
+    }
+
+    /**
+     * Эффективная годовая доходность (доля) и модифицированная дюрация (лет) по грязной цене
+     * @return массив {доходность, дюрация}; NaN, если решение не найдено
+     */
+    static double[] yieldAndDuration(CashFlowSchedule schedule, long today, double dirtyPrice) {
+        if (schedule == null || dirtyPrice <= 0) {
+            return new double[] {Double.NaN, Double.NaN};
+        }
+
+        int count = schedule.days.length;
+        double[] times = new double[count];
+        for (int i = 0; i < count; i++) {
+            times[i] = (schedule.days[i] - today) / DAYS_IN_YEAR;
+        }
+
+        double y = solveYield(times, schedule.amounts, dirtyPrice);
+        if (Double.isNaN(y)) {
+            return new double[] {Double.NaN, Double.NaN};
+        }
+
+        double presentValue = 0.0;
+        double weightedTime = 0.0;
+        for (int i = 0; i < count; i++) {
+            if (times[i] <= 0) {
+                continue;
+            }
+            double discounted = schedule.amounts[i] * Math.pow(1.0 + y, -times[i]);
+            presentValue += discounted;
+            weightedTime += times[i] * discounted;
+        }
+        double macaulay = presentValue > 0 ? weightedTime / presentValue : Double.NaN;
+        return new double[] {y, macaulay / (1.0 + y)};
+    }
+
+    private static double solveYield(double[] times, double[] amounts, double price) {
+        // Метод Ньютона, при расхождении - бисекция (приведенная стоимость монотонно убывает по доходности)
+        double y = 0.1;
+        for (int iteration = 0; iteration < MAX_NEWTON_ITERATIONS; iteration++) {
+            double presentValue = 0.0;
+            double derivative = 0.0;
+            for (int i = 0; i < times.length; i++) {
+                if (times[i] <= 0) {
+                    continue;
+                }
+                double discounted = amounts[i] * Math.pow(1.0 + y, -times[i]);
+                presentValue += discounted;
+                derivative -= times[i] * discounted / (1.0 + y);
+            }
+            double error = presentValue - price;
+            if (Math.abs(error) <= PRICE_TOLERANCE * price) {
+                return y;
+            }
+            if (derivative == 0.0) {
+                break;
+            }
+            double next = y - error / derivative;
+            if (!Double.isFinite(next) || next <= MIN_YIELD || next >= MAX_YIELD) {
+                break;
+            }
+            y = next;
+        }
+
+        double low = MIN_YIELD;
+        double high = MAX_YIELD;
+        if (presentValue(times, amounts, low) < price || presentValue(times, amounts, high) > price) {
+            return Double.NaN;
+        }
+        for (int iteration = 0; iteration < MAX_BISECTION_ITERATIONS; iteration++) {
+            double mid = (low + high) / 2.0;
+            double error = presentValue(times, amounts, mid) - price;
+            if (Math.abs(error) <= PRICE_TOLERANCE * price) {
+                return mid;
+            }
+            if (error > 0) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return (low + high) / 2.0;
+    }
+
+    private static double presentValue(double[] times, double[] amounts, double y) {
+        double result = 0.0;
+        for (int i = 0; i < times.length; i++) {
+            if (times[i] > 0) {
+                result += amounts[i] * Math.pow(1.0 + y, -times[i]);
+            }
+        }
+        return result;
+    }
+
+    private static BigDecimal toPercent(double share) {
+        return Double.isFinite(share) ? toDecimal(share * 100.0, 4) : null;
+    }
+
+    private static BigDecimal toDecimal(double value, int scale) {
+        return Double.isFinite(value) ? BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP) : null;
+    }
+
+    private static double toDouble(BigDecimal value) {
+        return value != null ? value.doubleValue() : 0.0;
+    }
+
+    private static boolean same(BigDecimal left, BigDecimal right) {
+        if (left == null || right == null) {
+            return left == right;
+        }
+        return left.compareTo(right) == 0;
+    }
+
+    /**
+     * График будущих выплат одной облигации: даты (epoch day) и суммы на одну облигацию
+     */
+    static final class CashFlowSchedule {
+        private final String key;
+        private final long[] days;
+        private final double[] amounts;
+
+        private CashFlowSchedule(String key, long[] days, double[] amounts) {
+            this.key = key;
+            this.days = days;
+            this.amounts = amounts;
+        }
+
+        static CashFlowSchedule build(String key, LocalDate nextCoupon, Integer period,
+                                      double coupon, double face, long horizon) {
+            int coupons = 0;
+            if (coupon > 0) {
+                if (nextCoupon == null || period == null || period <= 0) {
+                    // Купон есть, но график восстановить нельзя - доходность не считаем
+                    return null;
+                }
+                long first = nextCoupon.toEpochDay();
+                if (first <= horizon) {
+                    coupons = (int) Math.min(MAX_COUPONS, (horizon - first) / period + 1);
+                }
+            }
+
+            long[] days = new long[coupons + 1];
+            double[] amounts = new double[coupons + 1];
+            for (int i = 0; i < coupons; i++) {
+                days[i] = nextCoupon.toEpochDay() + (long) i * period;
+                amounts[i] = coupon;
+            }
+            days[coupons] = horizon;
+            amounts[coupons] = face;
+            return new CashFlowSchedule(key, days, amounts);
+        }
+
+        /**
+         * График по выплатам MOEX до горизонта; непогашенный к горизонту номинал выплачивается в дату горизонта
+         */
+        static CashFlowSchedule fromStored(String key, StoredFlows stored, double fallbackCoupon, long horizon) {
+            int count = stored.days().length;
+            long[] days = new long[count + 1];
+            double[] amounts = new double[count + 1];
+            int size = 0;
+            double outstanding = 0.0;
+            for (int i = 0; i < count; i++) {
+                long day = stored.days()[i];
+                double amount = stored.amounts()[i];
+                if (day > horizon) {
+                    if (stored.principal()[i]) {
+                        outstanding += amount;
+                    }
+                    continue;
+                }
+                if (Double.isNaN(amount)) {
+                    amount = fallbackCoupon;
+                }
+                if (amount > 0) {
+                    days[size] = day;
+                    amounts[size] = amount;
+                    size++;
+                }
+            }
+            if (outstanding > 0) {
+                days[size] = horizon;
+                amounts[size] = outstanding;
+                size++;
+            }
+            return new CashFlowSchedule(key, Arrays.copyOf(days, size), Arrays.copyOf(amounts, size));
+        }
+    }
+
+    /**
+     * Выплаты из графика MOEX в виде массивов: дата (epoch day), сумма (NaN для необъявленного купона),
+     * признак погашения номинала
+     */
+    record StoredFlows(OffsetDateTime loadedAt, long[] days, double[] amounts, boolean[] principal) {
+
+        static StoredFlows of(OffsetDateTime loadedAt, List<BondCashFlow> flows) {
+            long[] days = new long[flows.size()];
+            double[] amounts = new double[flows.size()];
+            boolean[] principal = new boolean[flows.size()];
+            for (int i = 0; i < flows.size(); i++) {
+                BondCashFlow flow = flows.get(i);
+                days[i] = flow.getFlowDate().toEpochDay();
+                amounts[i] = flow.getValue() != null ? flow.getValue().doubleValue() : Double.NaN;
+                principal[i] = !flow.isCoupon();
+            }
+            return new StoredFlows(loadedAt, days, amounts, principal);
+        }
+
+        boolean hasPrincipal() {
+            for (boolean value : principal) {
+                if (value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.invest.management.moex.bond;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Плановая выплата по облигации из графика MOEX ISS (bondization): купон или погашение части номинала
+ * Загружается {@link BondScheduleLoader}
+ */
+@Entity
+@Table(name = "moex_bond_cashflows")
+public class BondCashFlow {
+
+    public static final String TYPE_COUPON = "COUPON";
+    public static final String TYPE_AMORTIZATION = "AMORTIZATION";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "bond_id", nullable = false)
+    private Bond bond;
+
+    @Column(name = "flow_type", nullable = false, length = 16)
+    private String flowType;
+
+    @Column(name = "flow_date", nullable = false)
+    private LocalDate flowDate;
+
+    /**
+     * Выплата на одну облигацию в валюте номинала; null для еще не объявленных купонов
+     */
+    @Column(name = "flow_value", precision = 18, scale = 6)
+    private BigDecimal value;
+
+    @Column(name = "value_percent", precision = 10, scale = 4)
+    private BigDecimal valuePercent;
+
+    @Column(name = "face_value", precision = 18, scale = 6)
+    private BigDecimal faceValue;
+
+    public Long getId() {
+        return id;
+    }
+
+    public Bond getBond() {
+        return bond;
+    }
+
+    public void setBond(Bond bond) {
+        this.bond = bond;
+    }
+
+    public String getFlowType() {
+        return flowType;
+    }
+
+    public void setFlowType(String flowType) {
+        this.flowType = flowType;
+    }
+
+    public LocalDate getFlowDate() {
+        return flowDate;
+    }
+
+    public void setFlowDate(LocalDate flowDate) {
+        this.flowDate = flowDate;
+    }
+
+    public BigDecimal getValue() {
+        return value;
+    }
+
+    public void setValue(BigDecimal value) {
+        this.value = value;
+    }
+
+    public BigDecimal getValuePercent() {
+        return valuePercent;
+    }
+
+    public void setValuePercent(BigDecimal valuePercent) {
+        this.valuePercent = valuePercent;
+    }
+
+    public BigDecimal getFaceValue() {
+        return faceValue;
+    }
+
+    public void setFaceValue(BigDecimal faceValue) {
+        this.faceValue = faceValue;
+    }
+
+    public boolean isCoupon() {
+        return TYPE_COUPON.equals(flowType);
+    }
+}
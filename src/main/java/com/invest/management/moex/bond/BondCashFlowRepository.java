@@ -0,0 +1,18 @@
+package com.invest.management.moex.bond;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface BondCashFlowRepository extends JpaRepository<BondCashFlow, Long> {
+
+    List<BondCashFlow> findByBondInOrderByFlowDateAsc(Collection<Bond> bonds);
+
+    @Modifying
+    @Query("DELETE FROM BondCashFlow f WHERE f.bond = :bond")
+    int deleteByBond(@Param("bond") Bond bond);
+}
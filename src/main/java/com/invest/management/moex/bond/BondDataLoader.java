@@ -3,16 +3,23 @@ package com.invest.management.moex.bond;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.invest.management.moex.common.MoexApiClient;
 import com.invest.management.moex.common.MoexResponseParser;
+import com.invest.management.moex.job.LoadProgress;
+import com.invest.management.portfolio.PortfolioDataVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 public class BondDataLoader {
@@ -26,36 +33,69 @@ public class BondDataLoader {
     private final MoexApiClient apiClient;
     private final MoexResponseParser parser;
     private final BondRepository bondRepository;
+    private final BondAnalyticsService analyticsService;
+    private final TransactionTemplate transactionTemplate;
+    private final PortfolioDataVersion portfolioDataVersion;
+
+    /**
+     * Количество строк, сохраняемых в одной транзакции
+     */
+    @Value("${moex.load.chunk-size:500}")
+    private int chunkSize;
 
     public BondDataLoader(MoexApiClient apiClient,
                           MoexResponseParser parser,
-                          BondRepository bondRepository) {
+                          BondRepository bondRepository,
+                          BondAnalyticsService analyticsService,
+                          TransactionTemplate transactionTemplate,
+                          PortfolioDataVersion portfolioDataVersion) {
         this.apiClient = apiClient;
         this.parser = parser;
         this.bondRepository = bondRepository;
+        this.analyticsService = analyticsService;
+        this.transactionTemplate = transactionTemplate;
+        this.portfolioDataVersion = portfolioDataVersion;
     }
 
-    @Transactional
     public void loadBonds() {
+        loadBonds(LoadProgress.NONE);
+    }
+
+    /**
+     * Загружает облигации со всех площадок; строки сохраняются порциями в отдельных транзакциях,
+     * между порциями проверяется отмена. Аналитика пересчитывается и после отмены - по сохраненным порциям.
+     * @return количество сохраненных облигаций
+     */
+    public int loadBonds(LoadProgress progress) {
+        int saved = 0;
         for (String boardId : BOND_BOARDS) {
+            if (progress.isCancelled()) {
+                break;
+            }
             log.info("Загрузка облигаций с площадки {}", boardId);
-            loadBondsForBoard(boardId);
+            saved += loadBondsForBoard(boardId, progress);
+        }
+        analyticsService.recalculateAll();
+        if (saved > 0) {
+            // Цены и НКД облигаций из справочника участвуют в оценке портфелей
+            portfolioDataVersion.markChanged();
         }
         log.info("Загрузка облигаций завершена");
+        return saved;
     }
 
-    private void loadBondsForBoard(String boardId) {
+    private int loadBondsForBoard(String boardId, LoadProgress progress) {
         String path = String.format("/engines/stock/markets/bonds/boards/%s/securities.json?iss.meta=off", boardId);
         JsonNode root = apiClient.fetch(path);
         if (root == null) {
             log.warn("Не удалось получить данные MOEX по board {}: пустой ответ", boardId);
-            return;
+            return 0;
         }
 
         JsonNode securitiesNode = root.get("securities");
         if (securitiesNode == null || securitiesNode.isMissingNode()) {
             log.warn("Ответ MOEX не содержит секции 'securities' для board {}", boardId);
-            return;
+            return 0;
         }
 
         JsonNode marketDataNode = root.get("marketdata");
@@ -66,16 +106,49 @@ public class BondDataLoader {
         Map<String, JsonNode> marketDataBySecId = parser.buildMarketDataIndex(marketDataNode);
         Map<String, Integer> marketIndex = marketDataNode != null ? parser.indexMap(parser.readColumns(marketDataNode)) : Map.of();
 
-        List<Bond> bondsToPersist = new ArrayList<>();
-
+        List<JsonNode> rows = new ArrayList<>();
         for (JsonNode row : securitiesNode.withArray("data")) {
             String secid = parser.readText(row, secIndex, "secid");
-            if (secid == null || secid.isBlank()) {
-                continue;
+            if (secid != null && !secid.isBlank()) {
+                rows.add(row);
             }
+        }
 
-            Bond bond = bondRepository.findBySecid(secid)
-                .orElseGet(Bond::new);
+        if (rows.isEmpty()) {
+            log.warn("По board {} не найдено облигаций", boardId);
+            return 0;
+        }
+
+        progress.addTotal(rows.size());
+        int saved = 0;
+        for (int from = 0; from < rows.size(); from += chunkSize) {
+            if (progress.isCancelled()) {
+                log.info("Загрузка облигаций board {} отменена после {} записей", boardId, saved);
+                break;
+            }
+            List<JsonNode> chunk = rows.subList(from, Math.min(rows.size(), from + chunkSize));
+            transactionTemplate.executeWithoutResult(status ->
+                saveChunk(chunk, secIndex, marketDataBySecId, marketIndex));
+            saved += chunk.size();
+            progress.advance(chunk.size());
+        }
+
+        log.info("Обновлено {} облигаций для board {}", saved, boardId);
+        return saved;
+    }
+
+    private void saveChunk(List<JsonNode> rows,
+                           Map<String, Integer> secIndex,
+                           Map<String, JsonNode> marketDataBySecId,
+                           Map<String, Integer> marketIndex) {
+        Map<String, Bond> existing = findExisting(rows, secIndex);
+        List<Bond> bondsToPersist = new ArrayList<>(rows.size());
+        for (JsonNode row : rows) {
+            String secid = parser.readText(row, secIndex, "secid");
+            Bond bond = existing.computeIfAbsent(secid, key -> new Bond());
+            if (bond.getId() == null && bond.getListedAt() == null) {
+                bond.setListedAt(OffsetDateTime.now());
+            }
 
             // Базовые поля
             bond.setSecid(secid);
@@ -95,6 +168,7 @@ public class BondDataLoader {
             bond.setSectorid(parser.readText(row, secIndex, "sectorid"));
             bond.setGroup(parser.readText(row, secIndex, "group"));
             bond.setCurrencyid(parser.readText(row, secIndex, "currencyid", "faceunit"));
+            bond.setFaceunit(parser.readText(row, secIndex, "faceunit"));
             bond.setIssuesize(parser.readDecimal(row, secIndex, "issuesize"));
             bond.setIssuer(parser.readText(row, secIndex, "issuer"));
             bond.setIssuerCountry(parser.readText(row, secIndex, "issuer_country"));
@@ -104,6 +178,8 @@ public class BondDataLoader {
             // Специфичные поля для облигаций
             bond.setMaturitydate(parser.readDate(row, secIndex, "maturitydate"));
             bond.setCouponpercent(parser.readDecimal(row, secIndex, "couponpercent"));
+            bond.setCouponvalue(parser.readDecimal(row, secIndex, "couponvalue"));
+            bond.setCouponperiod(parser.readInteger(row, secIndex, "couponperiod"));
             bond.setNextcoupon(parser.readDate(row, secIndex, "nextcoupon"));
             bond.setBondtype(parser.readText(row, secIndex, "bondtype"));
             bond.setOfferdate(parser.readDate(row, secIndex, "offerdate"));
@@ -123,14 +199,25 @@ public class BondDataLoader {
             bond.setUpdatedAt(OffsetDateTime.now());
             bondsToPersist.add(bond);
         }
+        bondRepository.saveAll(bondsToPersist);
+    }
 
-        if (bondsToPersist.isEmpty()) {
-            log.warn("По board {} не найдено облигаций", boardId);
-            return;
+    /**
+     * Загружает уже сохраненные облигации площадки одним запросом вместо поиска по каждому secid
+     */
+    private Map<String, Bond> findExisting(Iterable<JsonNode> rows, Map<String, Integer> secIndex) {
+        Set<String> secids = new HashSet<>();
+        for (JsonNode row : rows) {
+            String secid = parser.readText(row, secIndex, "secid");
+            if (secid != null && !secid.isBlank()) {
+                secids.add(secid);
+            }
         }
-
-        bondRepository.saveAll(bondsToPersist);
-        log.info("Обновлено {} облигаций для board {}", bondsToPersist.size(), boardId);
+        Map<String, Bond> existing = new HashMap<>(secids.size() * 2);
+        if (!secids.isEmpty()) {
+            bondRepository.findBySecidIn(secids).forEach(bond -> existing.putIfAbsent(bond.getSecid(), bond));
+        }
+        return existing;
     }
 
     /**
@@ -273,6 +360,9 @@ public class BondDataLoader {
             
             Bond bond = bondRepository.findBySecid(secid)
                 .orElseGet(Bond::new);
+            if (bond.getId() == null) {
+                bond.setListedAt(OffsetDateTime.now());
+            }
             
             // Заполняем все поля как в loadBondsForBoard
             bond.setSecid(secid);
@@ -292,6 +382,7 @@ public class BondDataLoader {
             bond.setSectorid(parser.readText(row, secIndex, "sectorid"));
             bond.setGroup(parser.readText(row, secIndex, "group"));
             bond.setCurrencyid(parser.readText(row, secIndex, "currencyid", "faceunit"));
+            bond.setFaceunit(parser.readText(row, secIndex, "faceunit"));
             bond.setIssuesize(parser.readDecimal(row, secIndex, "issuesize"));
             bond.setIssuer(parser.readText(row, secIndex, "issuer"));
             bond.setIssuerCountry(parser.readText(row, secIndex, "issuer_country"));
@@ -301,6 +392,8 @@ public class BondDataLoader {
             // Специфичные поля для облигаций
             bond.setMaturitydate(parser.readDate(row, secIndex, "maturitydate"));
             bond.setCouponpercent(parser.readDecimal(row, secIndex, "couponpercent"));
+            bond.setCouponvalue(parser.readDecimal(row, secIndex, "couponvalue"));
+            bond.setCouponperiod(parser.readInteger(row, secIndex, "couponperiod"));
             bond.setNextcoupon(parser.readDate(row, secIndex, "nextcoupon"));
             bond.setBondtype(parser.readText(row, secIndex, "bondtype"));
             bond.setOfferdate(parser.readDate(row, secIndex, "offerdate"));
@@ -346,6 +439,7 @@ public class BondDataLoader {
         bond.setStatus(parser.readText(row, index, "status"));
         bond.setGroup(parser.readText(row, index, "group"));
         bond.setCurrencyid(parser.readText(row, index, "currencyid", "faceunit"));
+        bond.setFaceunit(parser.readText(row, index, "faceunit"));
         bond.setUpdatedAt(OffsetDateTime.now());
         
         Bond savedBond = bondRepository.save(bond);
@@ -1,7 +1,11 @@
 package com.invest.management.moex.bond;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface BondRepository extends JpaRepository<Bond, Long> {
@@ -9,5 +13,17 @@ public interface BondRepository extends JpaRepository<Bond, Long> {
     Optional<Bond> findBySecid(String secid);
     
     Optional<Bond> findByIsin(String isin);
+
+    List<Bond> findBySecidIn(Collection<String> secids);
+
+    List<Bond> findByIsinIn(Collection<String> isins);
+
+    /**
+     * Облигации, которые есть хотя бы в одном портфеле
+     */
+    @Query("SELECT DISTINCT p.moexBond FROM PortfolioPosition p WHERE p.moexBond IS NOT NULL AND p.quantity > 0")
+    List<Bond> findHeld();
+
+    List<Bond> findByListedAtAfter(OffsetDateTime listedAfter);
 }
 
@@ -0,0 +1,201 @@
+package com.invest.management.moex.bond;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.invest.management.config.WorkerThreads;
+import com.invest.management.moex.common.MoexApiClient;
+import com.invest.management.moex.common.MoexResponseParser;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Загрузка графиков купонов и амортизаций облигаций из MOEX ISS (/securities/{secid}/bondization.json)
+ * Графики загружаются только для облигаций из портфелей пользователей и недавно появившихся в справочнике,
+ * и перезагружаются, только когда сменилась дата следующего купона (купон выплачен или объявлен новый).
+ * Запросы выполняются параллельно; общую нагрузку на MOEX ограничивает {@link MoexApiClient}.
+ */
+@Service
+@ConditionalOnProperty(name = "moex.bondization.enabled", havingValue = "true", matchIfMissing = true)
+public class BondScheduleLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(BondScheduleLoader.class);
+
+    private final MoexApiClient apiClient;
+    private final MoexResponseParser parser;
+    private final BondRepository bondRepository;
+    private final BondCashFlowRepository cashFlowRepository;
+    private final BondAnalyticsService analyticsService;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ExecutorService executor;
+
+    /**
+     * Сколько дней после появления в справочнике облигация считается новой и получает график без покупки
+     */
+    @Value("${moex.bondization.new-listing-days:7}")
+    private long newListingDays;
+
+    public BondScheduleLoader(MoexApiClient apiClient,
+                              MoexResponseParser parser,
+                              BondRepository bondRepository,
+                              BondCashFlowRepository cashFlowRepository,
+                              BondAnalyticsService analyticsService,
+                              TransactionTemplate transactionTemplate,
+                              ApplicationEventPublisher eventPublisher,
+                              WorkerThreads workerThreads,
+                              @Value("${moex.bondization.parallelism:4}") int parallelism) {
+        this.apiClient = apiClient;
+        this.parser = parser;
+        this.bondRepository = bondRepository;
+        this.cashFlowRepository = cashFlowRepository;
+        this.analyticsService = analyticsService;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism), workerThreads.factory("bondization-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Scheduled(cron = "${moex.bondization.cron:0 20 * * * *}")
+    public void refreshScheduled() {
+        try {
+            refreshSchedules();
+        } catch (Exception ex) {
+            log.error("Ошибка при обновлении графиков выплат облигаций", ex);
+        }
+    }
+
+    /**
+     * Загружает устаревшие графики выплат
+     * @return количество облигаций, для которых график обновлен
+     */
+    public int refreshSchedules() {
+        List<Bond> candidates = transactionTemplate.execute(status -> findStaleBonds());
+        if (candidates == null || candidates.isEmpty()) {
+            log.debug("Графики выплат облигаций актуальны");
+            return 0;
+        }
+        log.info("Загрузка графиков выплат для {} облигаций", candidates.size());
+
+        List<CompletableFuture<List<BondCashFlow>>> requests = candidates.stream()
+            .map(bond -> CompletableFuture.supplyAsync(() -> fetchSchedule(bond.getSecid()), executor))
+            .toList();
+
+        int updated = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            Bond bond = candidates.get(i);
+            List<BondCashFlow> flows;
+            try {
+                flows = requests.get(i).join();
+            } catch (Exception ex) {
+                log.warn("Не удалось загрузить график выплат {}: {}", bond.getSecid(), ex.getMessage());
+                continue;
+            }
+            if (flows == null) {
+                continue;
+            }
+            Boolean stored = transactionTemplate.execute(status -> store(bond.getId(), flows));
+            if (Boolean.TRUE.equals(stored)) {
+                updated++;
+            }
+        }
+
+        if (updated > 0) {
+            analyticsService.recalculateAll();
+            eventPublisher.publishEvent(new BondSchedulesUpdatedEvent(updated));
+        }
+        log.info("Графики выплат обновлены для {} из {} облигаций", updated, candidates.size());
+        return updated;
+    }
+
+    private List<Bond> findStaleBonds() {
+        LocalDate today = LocalDate.now();
+        Map<Long, Bond> bonds = new LinkedHashMap<>();
+        bondRepository.findHeld().forEach(bond -> bonds.putIfAbsent(bond.getId(), bond));
+        bondRepository.findByListedAtAfter(OffsetDateTime.now().minusDays(newListingDays))
+            .forEach(bond -> bonds.putIfAbsent(bond.getId(), bond));
+
+        return bonds.values().stream()
+            .filter(Bond::isScheduleStale)
+            .filter(bond -> bond.getMaturitydate() == null || !bond.getMaturitydate().isBefore(today))
+            .toList();
+    }
+
+    private boolean store(Long bondId, List<BondCashFlow> flows) {
+        Bond bond = bondRepository.findById(bondId).orElse(null);
+        if (bond == null) {
+            return false;
+        }
+        cashFlowRepository.deleteByBond(bond);
+        flows.forEach(flow -> flow.setBond(bond));
+        cashFlowRepository.saveAll(flows);
+
+        bond.setScheduleNextcoupon(bond.getNextcoupon());
+        bond.setScheduleLoadedAt(OffsetDateTime.now());
+        bondRepository.save(bond);
+        return true;
+    }
+
+    /**
+     * Запрашивает график выплат одной облигации
+     * @return выплаты без привязки к облигации или null, если MOEX не ответил
+     */
+    private List<BondCashFlow> fetchSchedule(String secid) {
+        String path = String.format("/securities/%s/bondization.json?iss.meta=off&iss.only=coupons,amortizations&limit=unlimited", secid);
+        JsonNode root = apiClient.fetch(path);
+        if (root == null) {
+            log.warn("Не удалось получить график выплат MOEX для {}: пустой ответ", secid);
+            return null;
+        }
+
+        List<BondCashFlow> flows = new ArrayList<>();
+        readSection(root.get("coupons"), "coupondate", BondCashFlow.TYPE_COUPON, flows);
+        readSection(root.get("amortizations"), "amortdate", BondCashFlow.TYPE_AMORTIZATION, flows);
+        return flows;
+    }
+
+    private void readSection(JsonNode section, String dateColumn, String flowType, List<BondCashFlow> flows) {
+        if (section == null || section.isMissingNode()) {
+            return;
+        }
+        Map<String, Integer> index = parser.indexMap(parser.readColumns(section));
+        for (JsonNode row : section.withArray("data")) {
+            LocalDate date = parser.readDate(row, index, dateColumn);
+            if (date == null) {
+                continue;
+            }
+            BondCashFlow flow = new BondCashFlow();
+            flow.setFlowType(flowType);
+            flow.setFlowDate(date);
+            flow.setValue(positiveOrNull(parser.readDecimal(row, index, "value", "value_rub")));
+            flow.setValuePercent(parser.readDecimal(row, index, "valueprc"));
+            flow.setFaceValue(parser.readDecimal(row, index, "facevalue"));
+            flows.add(flow);
+        }
+    }
+
+    private BigDecimal positiveOrNull(BigDecimal value) {
+        // Для еще не объявленных купонов MOEX возвращает пустое или нулевое значение
+        return value != null && value.signum() > 0 ? value : null;
+    }
+}
@@ -0,0 +1,8 @@
+package com.invest.management.moex.bond;
+
+/**
+ * Событие: графики выплат облигаций перезагружены из MOEX
+ * Публикуется {@link BondScheduleLoader}; кэши, построенные по графикам, должны быть перестроены
+ */
+public record BondSchedulesUpdatedEvent(int updatedBonds) {
+}
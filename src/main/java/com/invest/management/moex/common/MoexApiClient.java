@@ -18,6 +18,7 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.concurrent.Semaphore;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.InflaterInputStream;
 
@@ -31,15 +32,39 @@ public class MoexApiClient {
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
 
+    /**
+     * Ограничение числа одновременных запросов к MOEX ISS: вместе с паузой после каждого запроса
+     * задает предельную частоту обращений при параллельной загрузке
+     */
+    private final Semaphore requestPermits;
+
     @Value("${moex.api.base-url:https://iss.moex.com/iss}")
     private String baseUrl;
 
-    public MoexApiClient(RestTemplate moexRestTemplate, ObjectMapper objectMapper) {
+    public MoexApiClient(RestTemplate moexRestTemplate,
+                         ObjectMapper objectMapper,
+                         @Value("${moex.api.max-concurrent-requests:4}") int maxConcurrentRequests) {
         this.restTemplate = moexRestTemplate;
         this.objectMapper = objectMapper;
+        this.requestPermits = new Semaphore(Math.max(1, maxConcurrentRequests), true);
     }
 
     public JsonNode fetch(String path) {
+        try {
+            requestPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Запрос {} прерван в ожидании очереди к MOEX", path);
+            return null;
+        }
+        try {
+            return fetchWithRetries(path);
+        } finally {
+            requestPermits.release();
+        }
+    }
+
+    private JsonNode fetchWithRetries(String path) {
         String url = baseUrl + path;
         HttpHeaders headers = new HttpHeaders();
         headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
@@ -0,0 +1,127 @@
+package com.invest.management.moex.fx;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.invest.management.moex.common.MoexApiClient;
+import com.invest.management.moex.common.MoexResponseParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Загрузка курсов валют с валютного рынка MOEX (режим CETS, расчеты «завтра»)
+ * Выполняется по расписанию обновления цен MOEX и в фоне при запуске; все инструменты запрашиваются одним запросом.
+ */
+@Service
+@ConditionalOnProperty(name = "moex.fx.enabled", havingValue = "true", matchIfMissing = true)
+public class FxRateLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(FxRateLoader.class);
+
+    private final MoexApiClient apiClient;
+    private final MoexResponseParser parser;
+    private final FxRateService rateService;
+
+    /**
+     * Валюта -> инструмент CETS
+     */
+    private final Map<String, String> instruments;
+
+    public FxRateLoader(MoexApiClient apiClient,
+                        MoexResponseParser parser,
+                        FxRateService rateService,
+                        @Value("${moex.fx.instruments:USD:USD000UTSTOM,EUR:EUR_RUB__TOM,CNY:CNYRUB_TOM}") String instruments) {
+        this.apiClient = apiClient;
+        this.parser = parser;
+        this.rateService = rateService;
+        this.instruments = parseInstruments(instruments);
+    }
+
+    @Scheduled(cron = "${moex.price-updater.cron:0 */5 * * * *}")
+    public void refreshScheduled() {
+        try {
+            refresh();
+        } catch (Exception ex) {
+            log.error("Ошибка при обновлении курсов валют MOEX", ex);
+        }
+    }
+
+    /**
+     * @return количество обновленных курсов
+     */
+    public int refresh() {
+        if (instruments.isEmpty()) {
+            return 0;
+        }
+        String path = "/engines/currency/markets/selt/boards/CETS/securities.json?iss.meta=off"
+            + "&iss.only=securities,marketdata"
+            + "&securities=" + String.join(",", instruments.values())
+            + "&securities.columns=SECID,FACEVALUE,PREVWAPRICE,PREVPRICE"
+            + "&marketdata.columns=SECID,LAST,WAPRICE";
+        JsonNode root = apiClient.fetch(path);
+        if (root == null) {
+            log.warn("Не удалось получить курсы валют MOEX, используются прежние значения");
+            return 0;
+        }
+
+        // Цена прошлого дня и лот котировки - из securities, текущие сделки - из marketdata
+        Map<String, BigDecimal> units = new HashMap<>();
+        Map<String, BigDecimal> prices = new HashMap<>();
+        JsonNode securities = root.get("securities");
+        if (securities != null && !securities.isMissingNode()) {
+            Map<String, Integer> index = parser.indexMap(parser.readColumns(securities));
+            for (JsonNode row : securities.withArray("data")) {
+                String secid = parser.readText(row, index, "secid");
+                putPositive(units, secid, parser.readDecimal(row, index, "facevalue"));
+                putPositive(prices, secid, parser.readDecimal(row, index, "prevwaprice", "prevprice"));
+            }
+        }
+        JsonNode marketdata = root.get("marketdata");
+        if (marketdata != null && !marketdata.isMissingNode()) {
+            Map<String, Integer> index = parser.indexMap(parser.readColumns(marketdata));
+            for (JsonNode row : marketdata.withArray("data")) {
+                putPositive(prices, parser.readText(row, index, "secid"), parser.readDecimal(row, index, "last", "waprice"));
+            }
+        }
+
+        Map<String, BigDecimal> rates = new HashMap<>();
+        for (Map.Entry<String, String> entry : instruments.entrySet()) {
+            BigDecimal price = prices.get(entry.getValue());
+            if (price == null) {
+                log.warn("Нет котировки {} для курса {}", entry.getValue(), entry.getKey());
+                continue;
+            }
+            // Часть валют котируется за 100 единиц (FACEVALUE)
+            BigDecimal unit = units.getOrDefault(entry.getValue(), BigDecimal.ONE);
+            rates.put(entry.getKey(), price.divide(unit, 10, RoundingMode.HALF_UP));
+        }
+        rateService.update(rates);
+        log.info("Курсы валют MOEX обновлены: {}", rates);
+        return rates.size();
+    }
+
+    private static void putPositive(Map<String, BigDecimal> target, String secid, BigDecimal value) {
+        if (secid != null && value != null && value.signum() > 0) {
+            target.put(secid, value);
+        }
+    }
+
+    private static Map<String, String> parseInstruments(String value) {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (String item : value.split(",")) {
+            String[] parts = item.trim().split(":");
+            if (parts.length == 2 && !parts[0].isBlank() && !parts[1].isBlank()) {
+                result.put(FxRates.normalize(parts[0]), parts[1].trim());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,26 @@
+package com.invest.management.moex.fx;
+
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.Map;
+
+/**
+ * Текущие курсы валют в памяти
+ * Чтение - одно volatile-чтение без блокировок и обращений к БД или MOEX;
+ * {@link FxRateLoader} публикует новую неизменяемую таблицу целиком.
+ */
+@Component
+public class FxRateService {
+
+    private volatile FxRates rates = FxRates.EMPTY;
+
+    public FxRates current() {
+        return rates;
+    }
+
+    synchronized void update(Map<String, BigDecimal> updated) {
+        rates = rates.merge(updated, OffsetDateTime.now());
+    }
+}
@@ -0,0 +1,90 @@
+package com.invest.management.moex.fx;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Неизменяемая таблица курсов валют к рублю
+ * Снимок передается в расчеты целиком, поэтому все суммы одной оценки портфеля
+ * пересчитываются по одним и тем же курсам.
+ */
+public final class FxRates {
+
+    public static final String RUB = "RUB";
+    public static final FxRates EMPTY = new FxRates(Map.of(), null);
+
+    private static final int SCALE = 10;
+
+    private final Map<String, BigDecimal> ratesToRub;
+    private final OffsetDateTime updatedAt;
+
+    FxRates(Map<String, BigDecimal> ratesToRub, OffsetDateTime updatedAt) {
+        this.ratesToRub = Map.copyOf(ratesToRub);
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * Код валюты в виде ISO 4217: MOEX обозначает рубль как SUR
+     */
+    public static String normalize(String currency) {
+        if (currency == null || currency.isBlank()) {
+            return RUB;
+        }
+        String code = currency.trim().toUpperCase();
+        return "SUR".equals(code) || "RUR".equals(code) ? RUB : code;
+    }
+
+    /**
+     * Курс валюты в рублях за единицу или null, если курс неизвестен
+     */
+    public BigDecimal rateToRub(String currency) {
+        String code = normalize(currency);
+        return RUB.equals(code) ? BigDecimal.ONE : ratesToRub.get(code);
+    }
+
+    public boolean supports(String currency) {
+        return rateToRub(currency) != null;
+    }
+
+    /**
+     * Пересчитывает сумму из одной валюты в другую через рубль
+     * @return сумма в валюте to или null, если курс одной из валют неизвестен
+     */
+    public BigDecimal convert(BigDecimal amount, String from, String to) {
+        if (amount == null) {
+            return null;
+        }
+        String source = normalize(from);
+        String target = normalize(to);
+        if (source.equals(target)) {
+            return amount;
+        }
+        BigDecimal sourceRate = rateToRub(source);
+        BigDecimal targetRate = rateToRub(target);
+        if (sourceRate == null || targetRate == null) {
+            return null;
+        }
+        BigDecimal rub = amount.multiply(sourceRate);
+        return RUB.equals(target) ? rub : rub.divide(targetRate, SCALE, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Новая таблица: обновленные курсы заменяют старые, остальные сохраняются
+     */
+    FxRates merge(Map<String, BigDecimal> updated, OffsetDateTime at) {
+        Map<String, BigDecimal> merged = new HashMap<>(ratesToRub);
+        merged.putAll(updated);
+        return new FxRates(merged, at);
+    }
+
+    public Map<String, BigDecimal> getRatesToRub() {
+        return ratesToRub;
+    }
+
+    public OffsetDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
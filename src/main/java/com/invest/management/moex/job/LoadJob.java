@@ -0,0 +1,142 @@
+package com.invest.management.moex.job;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Задание загрузки справочника MOEX
+ * Счетчики обновляются потоком загрузки и читаются страницей администратора без блокировок.
+ */
+public class LoadJob implements LoadProgress {
+
+    public enum Type {
+        STOCKS("Акции списка A"),
+        BONDS("Облигации");
+
+        private final String title;
+
+        Type(String title) {
+            this.title = title;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+    }
+
+    public enum Status {
+        QUEUED, RUNNING, DONE, CANCELLED, FAILED;
+
+        public boolean isActive() {
+            return this == QUEUED || this == RUNNING;
+        }
+    }
+
+    private final long id;
+    private final Type type;
+    private final OffsetDateTime queuedAt = OffsetDateTime.now();
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger processed = new AtomicInteger();
+    private volatile Status status = Status.QUEUED;
+    private volatile boolean cancelRequested;
+    private volatile OffsetDateTime startedAt;
+    private volatile OffsetDateTime finishedAt;
+    private volatile String error;
+
+    LoadJob(long id, Type type) {
+        this.id = id;
+        this.type = type;
+    }
+
+    @Override
+    public void addTotal(int rows) {
+        total.addAndGet(rows);
+    }
+
+    @Override
+    public void advance(int rows) {
+        processed.addAndGet(rows);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelRequested;
+    }
+
+    void requestCancel() {
+        cancelRequested = true;
+    }
+
+    void markRunning() {
+        startedAt = OffsetDateTime.now();
+        status = Status.RUNNING;
+    }
+
+    void markFinished(Status finalStatus, String errorMessage) {
+        error = errorMessage;
+        finishedAt = OffsetDateTime.now();
+        status = finalStatus;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public OffsetDateTime getQueuedAt() {
+        return queuedAt;
+    }
+
+    public OffsetDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public OffsetDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public int getTotal() {
+        return total.get();
+    }
+
+    public int getProcessed() {
+        return processed.get();
+    }
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    /**
+     * @return процент выполнения или null, пока количество строк неизвестно
+     */
+    public Integer getPercent() {
+        int expected = total.get();
+        return expected > 0 ? Math.min(100, processed.get() * 100 / expected) : null;
+    }
+
+    /**
+     * @return скорость сохранения, строк в секунду
+     */
+    public long getRowsPerSecond() {
+        OffsetDateTime from = startedAt;
+        if (from == null) {
+            return 0;
+        }
+        OffsetDateTime to = finishedAt != null ? finishedAt : OffsetDateTime.now();
+        long millis = Math.max(1, Duration.between(from, to).toMillis());
+        return processed.get() * 1000L / millis;
+    }
+}
@@ -0,0 +1,131 @@
+package com.invest.management.moex.job;
+
+import com.invest.management.config.WorkerThreads;
+import com.invest.management.moex.MoexDataLoader;
+import com.invest.management.moex.bond.BondDataLoader;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоновое выполнение загрузок справочников MOEX, запущенных администратором
+ * Задания выполняются по одному из ограниченной очереди; повторный запуск загрузки,
+ * которая уже стоит в очереди или выполняется, отклоняется.
+ */
+@Service
+public class LoadJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadJobService.class);
+    private static final int HISTORY_SIZE = 20;
+
+    private final MoexDataLoader stockLoader;
+    private final BondDataLoader bondLoader;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Последние задания, новые в начале
+     */
+    private final Deque<LoadJob> jobs = new ArrayDeque<>();
+
+    public LoadJobService(MoexDataLoader stockLoader,
+                          BondDataLoader bondLoader,
+                          WorkerThreads workerThreads,
+                          @Value("${moex.load-jobs.queue-capacity:4}") int queueCapacity) {
+        this.stockLoader = stockLoader;
+        this.bondLoader = bondLoader;
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), workerThreads.factory("moex-load-job-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (jobs) {
+            jobs.forEach(LoadJob::requestCancel);
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * Ставит загрузку в очередь
+     * @throws IllegalStateException если такая загрузка уже выполняется или очередь заполнена
+     */
+    public LoadJob submit(LoadJob.Type type) {
+        synchronized (jobs) {
+            for (LoadJob job : jobs) {
+                if (job.getType() == type && job.getStatus().isActive()) {
+                    throw new IllegalStateException("Загрузка «" + type.getTitle() + "» уже выполняется");
+                }
+            }
+            LoadJob job = new LoadJob(sequence.incrementAndGet(), type);
+            try {
+                executor.execute(() -> run(job));
+            } catch (RejectedExecutionException ex) {
+                throw new IllegalStateException("Очередь загрузок заполнена, повторите позже");
+            }
+            jobs.addFirst(job);
+            while (jobs.size() > HISTORY_SIZE) {
+                jobs.removeLast();
+            }
+            return job;
+        }
+    }
+
+    /**
+     * Запрашивает отмену: загрузка остановится перед следующей порцией, сохраненные порции останутся
+     * @return false, если задание не найдено или уже завершено
+     */
+    public boolean cancel(long jobId) {
+        synchronized (jobs) {
+            for (LoadJob job : jobs) {
+                if (job.getId() == jobId && job.getStatus().isActive()) {
+                    job.requestCancel();
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public List<LoadJob> getJobs() {
+        synchronized (jobs) {
+            return List.copyOf(jobs);
+        }
+    }
+
+    public boolean hasActiveJobs() {
+        return getJobs().stream().anyMatch(job -> job.getStatus().isActive());
+    }
+
+    private void run(LoadJob job) {
+        if (job.isCancelled()) {
+            job.markFinished(LoadJob.Status.CANCELLED, null);
+            return;
+        }
+        job.markRunning();
+        log.info("Запущена загрузка #{}: {}", job.getId(), job.getType().getTitle());
+        try {
+            switch (job.getType()) {
+                case STOCKS -> stockLoader.loadStocksListA(job);
+                case BONDS -> bondLoader.loadBonds(job);
+            }
+            job.markFinished(job.isCancelled() ? LoadJob.Status.CANCELLED : LoadJob.Status.DONE, null);
+            log.info("Загрузка #{} завершена со статусом {}: {} строк, {} строк/с",
+                job.getId(), job.getStatus(), job.getProcessed(), job.getRowsPerSecond());
+        } catch (Exception ex) {
+            job.markFinished(LoadJob.Status.FAILED, ex.getMessage());
+            log.error("Ошибка при выполнении загрузки #{}", job.getId(), ex);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.invest.management.moex.job;
+
+/**
+ * Прогресс загрузки справочника, который загрузчик сообщает выполняющему ее заданию
+ */
+public interface LoadProgress {
+
+    /**
+     * Прогресс без наблюдателя (загрузка по расписанию или при запуске)
+     */
+    LoadProgress NONE = new LoadProgress() {
+        @Override
+        public void addTotal(int rows) {
+        }
+
+        @Override
+        public void advance(int rows) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    /**
+     * Увеличивает ожидаемое количество строк (загрузчик узнает его по каждой площадке)
+     */
+    void addTotal(int rows);
+
+    /**
+     * Отмечает сохраненные строки
+     */
+    void advance(int rows);
+
+    /**
+     * @return true, если загрузку нужно прервать до следующей порции
+     */
+    boolean isCancelled();
+}
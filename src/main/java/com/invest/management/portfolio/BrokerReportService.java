@@ -8,8 +8,12 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class BrokerReportService {
@@ -20,6 +24,7 @@ public class BrokerReportService {
     private final BrokerReportRepository reportRepository;
     private final PortfolioTransactionRepository transactionRepository;
     private final PortfolioCashMovementRepository cashMovementRepository;
+    private final PortfolioCashBalanceService cashBalanceService;
     private final PortfolioPositionService positionService;
     private final com.invest.management.moex.MoexStockRepository stockRepository;
     private final com.invest.management.moex.bond.BondRepository bondRepository;
@@ -28,6 +33,7 @@ public class BrokerReportService {
                                BrokerReportRepository reportRepository,
                                PortfolioTransactionRepository transactionRepository,
                                PortfolioCashMovementRepository cashMovementRepository,
+                               PortfolioCashBalanceService cashBalanceService,
                                PortfolioPositionService positionService,
                                com.invest.management.moex.MoexStockRepository stockRepository,
                                com.invest.management.moex.bond.BondRepository bondRepository) {
@@ -35,6 +41,7 @@ public class BrokerReportService {
         this.reportRepository = reportRepository;
         this.transactionRepository = transactionRepository;
         this.cashMovementRepository = cashMovementRepository;
+        this.cashBalanceService = cashBalanceService;
         this.positionService = positionService;
         this.stockRepository = stockRepository;
         this.bondRepository = bondRepository;
@@ -133,16 +140,31 @@ public class BrokerReportService {
                 if (isFullyContained) {
                     log.info("Удаление движений денежных средств из отчета за период {} - {} (полностью попадает в период нового отчета)",
                         overlapping.getReportPeriodStart(), overlapping.getReportPeriodEnd());
+                    cashBalanceService.recordDeleted(portfolio, cashMovementRepository.findByReport(overlapping));
                     cashMovementRepository.deleteByReport(overlapping);
                 }
             }
 
+            // Отчет брокера - основной источник за свой период: движения, загруженные за этот период
+            // синхронизацией ALOR API, заменяются движениями отчета, иначе они учтутся дважды
+            List<PortfolioCashMovement> syncedMovements = cashMovementRepository
+                .findByPortfolioAndReportIsNullAndTradingPlatformAndDateBetween(portfolio,
+                    PortfolioCashMovement.TRADING_PLATFORM_ALOR_API,
+                    parsed.getReportPeriodStart(), parsed.getReportPeriodEnd());
+            if (!syncedMovements.isEmpty()) {
+                log.info("Удаление {} движений денежных средств ALOR API за период отчета {} - {}",
+                    syncedMovements.size(), parsed.getReportPeriodStart(), parsed.getReportPeriodEnd());
+                cashBalanceService.recordDeleted(portfolio, syncedMovements);
+                cashMovementRepository.deleteAllInBatch(syncedMovements);
+            }
+
             // Сохраняем движение денежных средств с привязкой к отчету
             for (PortfolioCashMovement movement : parsed.getCashMovements()) {
                 movement.setPortfolio(portfolio);
                 movement.setReport(report);
-                cashMovementRepository.save(movement);
             }
+            cashMovementRepository.saveAll(parsed.getCashMovements());
+            cashBalanceService.recordInserted(portfolio, parsed.getCashMovements());
 
             // Обновляем конечные позиции только если новый отчет новее или равен максимальному периоду
             Optional<java.time.LocalDate> maxPeriodEnd = reportRepository.findMaxReportPeriodEnd(portfolio);
@@ -210,27 +232,41 @@ public class BrokerReportService {
      */
     public List<PositionWithName> getPositionsWithNamesRequiringPriceInput(Portfolio portfolio) {
         List<PortfolioPosition> positions = getPositionsRequiringPriceInput(portfolio);
+        if (positions.isEmpty()) {
+            return List.of();
+        }
+
+        // Названия берутся из связанных бумаг; позиции без связи ищутся в справочниках
+        // одним запросом на тип бумаги, а не запросом на каждую позицию
+        Set<String> stockIsins = new HashSet<>();
+        Set<String> bondIsins = new HashSet<>();
+        for (PortfolioPosition position : positions) {
+            if (position.getMoexStock() == null && position.getMoexBond() == null) {
+                if ("STOCK".equals(position.getSecurityType())) {
+                    stockIsins.add(position.getIsin());
+                } else if ("BOND".equals(position.getSecurityType())) {
+                    bondIsins.add(position.getIsin());
+                }
+            }
+        }
+        Map<String, String> namesByIsin = new HashMap<>();
+        if (!stockIsins.isEmpty()) {
+            stockRepository.findByIsinIn(stockIsins).forEach(stock -> namesByIsin.putIfAbsent(stock.getIsin(), stock.getShortname()));
+        }
+        if (!bondIsins.isEmpty()) {
+            bondRepository.findByIsinIn(bondIsins).forEach(bond -> namesByIsin.putIfAbsent(bond.getIsin(), bond.getShortname()));
+        }
+
         return positions.stream()
             .map(p -> {
-                String name = getSecurityName(p.getIsin(), p.getSecurityType());
-                return new PositionWithName(p, name);
+                String name = p.getMoexStock() != null ? p.getMoexStock().getShortname()
+                    : p.getMoexBond() != null ? p.getMoexBond().getShortname()
+                    : namesByIsin.get(p.getIsin());
+                return new PositionWithName(p, name != null ? name : p.getIsin());
             })
             .toList();
     }
 
-    private String getSecurityName(String isin, String securityType) {
-        if ("STOCK".equals(securityType)) {
-            return stockRepository.findByIsin(isin)
-                .map(stock -> stock.getShortname() != null ? stock.getShortname() : isin)
-                .orElse(isin);
-        } else if ("BOND".equals(securityType)) {
-            return bondRepository.findByIsin(isin)
-                .map(bond -> bond.getShortname() != null ? bond.getShortname() : isin)
-                .orElse(isin);
-        }
-        return isin;
-    }
-
     public static class PositionWithName {
         private final PortfolioPosition position;
         private final String name;
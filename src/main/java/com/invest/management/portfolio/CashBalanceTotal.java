@@ -0,0 +1,10 @@
+package com.invest.management.portfolio;
+
+import java.math.BigDecimal;
+
+/**
+ * Остаток денежных средств портфеля в валюте, посчитанный суммированием всех движений
+ * Используется для сверки журнала остатков {@link PortfolioCashBalance}
+ */
+public record CashBalanceTotal(Long portfolioId, String currency, BigDecimal balance) {
+}
@@ -0,0 +1,17 @@
+package com.invest.management.portfolio;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Календарь ожидаемых выплат портфеля на период [from, to]
+ * @param events выплаты, упорядоченные по дате
+ * @param totals сумма выплат за период по валютам
+ */
+public record CashFlowCalendar(LocalDate from,
+                               LocalDate to,
+                               List<CashFlowEvent> events,
+                               Map<String, BigDecimal> totals) {
+}
@@ -0,0 +1,180 @@
+package com.invest.management.portfolio;
+
+import com.invest.management.moex.bond.Bond;
+import com.invest.management.moex.bond.BondCashFlow;
+import com.invest.management.moex.bond.BondCashFlowRepository;
+import com.invest.management.moex.bond.BondSchedulesUpdatedEvent;
+import com.invest.management.moex.fx.FxRates;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Календарь ожидаемых купонов и погашений по облигациям портфеля
+ * Строится из графиков выплат MOEX ({@link BondCashFlow}) и количества бумаг в позициях
+ * и кэшируется по портфелю. Календарь портфеля перестраивается только после изменения его позиций
+ * ({@link PortfolioPositionsChangedEvent}), после перезагрузки графиков выплат или при смене дня.
+ */
+@Service
+public class CashFlowCalendarService {
+
+    private final PortfolioPositionRepository positionRepository;
+    private final BondCashFlowRepository cashFlowRepository;
+
+    /**
+     * Горизонт календаря в месяцах
+     */
+    @Value("${portfolio.cash-flow-calendar.horizon-months:12}")
+    private long horizonMonths;
+
+    private final AtomicLong schedulesVersion = new AtomicLong();
+    private final Map<Long, AtomicLong> positionVersions = new ConcurrentHashMap<>();
+    private final Map<Long, CachedCalendar> calendars = new ConcurrentHashMap<>();
+
+    public CashFlowCalendarService(PortfolioPositionRepository positionRepository,
+                                   BondCashFlowRepository cashFlowRepository) {
+        this.positionRepository = positionRepository;
+        this.cashFlowRepository = cashFlowRepository;
+    }
+
+    @Transactional(readOnly = true)
+    public CashFlowCalendar getCalendar(Portfolio portfolio) {
+        LocalDate today = LocalDate.now();
+        long schedules = schedulesVersion.get();
+        long positions = positionVersion(portfolio.getId()).get();
+
+        CachedCalendar cached = calendars.get(portfolio.getId());
+        if (cached != null && cached.schedulesVersion() == schedules
+                && cached.positionsVersion() == positions && cached.builtOn().equals(today)) {
+            return cached.calendar();
+        }
+
+        CashFlowCalendar calendar = build(portfolio, today, today.plusMonths(horizonMonths));
+        calendars.put(portfolio.getId(), new CachedCalendar(schedules, positions, today, calendar));
+        return calendar;
+    }
+
+    @EventListener
+    public void onPositionsChanged(PortfolioPositionsChangedEvent event) {
+        positionVersion(event.portfolioId()).incrementAndGet();
+        calendars.remove(event.portfolioId());
+    }
+
+    @EventListener
+    public void onSchedulesUpdated(BondSchedulesUpdatedEvent event) {
+        schedulesVersion.incrementAndGet();
+    }
+
+    private CashFlowCalendar build(Portfolio portfolio, LocalDate from, LocalDate to) {
+        List<PortfolioPosition> positions = positionRepository.findByPortfolio(portfolio).stream()
+            .filter(position -> position.getMoexBond() != null)
+            .filter(position -> position.getQuantity() != null && position.getQuantity().signum() > 0)
+            .toList();
+
+        Map<Long, List<BondCashFlow>> flowsByBond = positions.isEmpty()
+            ? Map.of()
+            : cashFlowRepository.findByBondInOrderByFlowDateAsc(
+                    positions.stream().map(PortfolioPosition::getMoexBond).distinct().toList())
+                .stream()
+                .collect(Collectors.groupingBy(flow -> flow.getBond().getId()));
+
+        List<CashFlowEvent> events = new ArrayList<>();
+        for (PortfolioPosition position : positions) {
+            Bond bond = position.getMoexBond();
+            List<BondCashFlow> flows = flowsByBond.get(bond.getId());
+            if (flows != null && !flows.isEmpty()) {
+                addScheduled(position, bond, flows, from, to, events);
+            } else {
+                addEstimated(position, bond, from, to, events);
+            }
+        }
+        events.sort(Comparator.comparing(CashFlowEvent::date).thenComparing(CashFlowEvent::shortName));
+
+        Map<String, BigDecimal> totals = new LinkedHashMap<>();
+        for (CashFlowEvent event : events) {
+            totals.merge(event.currency(), event.amount(), BigDecimal::add);
+        }
+        return new CashFlowCalendar(from, to, List.copyOf(events), Map.copyOf(totals));
+    }
+
+    private void addScheduled(PortfolioPosition position, Bond bond, List<BondCashFlow> flows,
+                              LocalDate from, LocalDate to, List<CashFlowEvent> events) {
+        for (BondCashFlow flow : flows) {
+            if (flow.getFlowDate().isBefore(from) || flow.getFlowDate().isAfter(to)) {
+                continue;
+            }
+            BigDecimal perUnit = flow.getValue();
+            boolean estimated = false;
+            if (perUnit == null && flow.isCoupon()) {
+                // Купон еще не объявлен: считаем равным текущему
+                perUnit = bond.getCouponvalue();
+                estimated = true;
+            }
+            if (perUnit == null || perUnit.signum() <= 0) {
+                continue;
+            }
+            String type = flow.isCoupon() ? CashFlowEvent.TYPE_COUPON : CashFlowEvent.TYPE_REDEMPTION;
+            events.add(toEvent(position, bond, flow.getFlowDate(), type, perUnit, estimated));
+        }
+    }
+
+    /**
+     * Оценка по текущему купону для облигаций без загруженного графика выплат
+     */
+    private void addEstimated(PortfolioPosition position, Bond bond, LocalDate from, LocalDate to,
+                              List<CashFlowEvent> events) {
+        LocalDate maturity = bond.getMaturitydate();
+        LocalDate horizon = maturity != null && maturity.isBefore(to) ? maturity : to;
+        BigDecimal coupon = bond.getCouponvalue();
+        Integer period = bond.getCouponperiod();
+
+        if (bond.getNextcoupon() != null && coupon != null && coupon.signum() > 0 && period != null && period > 0) {
+            for (LocalDate date = bond.getNextcoupon(); !date.isAfter(horizon); date = date.plusDays(period)) {
+                if (!date.isBefore(from)) {
+                    events.add(toEvent(position, bond, date, CashFlowEvent.TYPE_COUPON, coupon, true));
+                }
+            }
+        }
+        if (maturity != null && !maturity.isBefore(from) && !maturity.isAfter(to)
+                && bond.getFacevalue() != null && bond.getFacevalue().signum() > 0) {
+            events.add(toEvent(position, bond, maturity, CashFlowEvent.TYPE_REDEMPTION, bond.getFacevalue(), true));
+        }
+    }
+
+    private CashFlowEvent toEvent(PortfolioPosition position, Bond bond, LocalDate date, String type,
+                                  BigDecimal perUnit, boolean estimated) {
+        BigDecimal quantity = position.getQuantity();
+        BigDecimal amount = perUnit.multiply(quantity).setScale(2, RoundingMode.HALF_UP);
+        String shortName = bond.getShortname() != null ? bond.getShortname() : position.getIsin();
+        return new CashFlowEvent(date, type, position.getIsin(), shortName, quantity, perUnit, amount,
+            currencyOf(bond), estimated);
+    }
+
+    /**
+     * Купоны и погашения выплачиваются в валюте номинала
+     */
+    private String currencyOf(Bond bond) {
+        return FxRates.normalize(bond.getFaceCurrency());
+    }
+
+    private AtomicLong positionVersion(Long portfolioId) {
+        return positionVersions.computeIfAbsent(portfolioId, id -> new AtomicLong());
+    }
+
+    private record CachedCalendar(long schedulesVersion, long positionsVersion, LocalDate builtOn,
+                                  CashFlowCalendar calendar) {
+    }
+}
@@ -0,0 +1,24 @@
+package com.invest.management.portfolio;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Ожидаемая выплата по позиции портфеля (купон или погашение номинала облигации)
+ * @param amountPerUnit выплата на одну бумагу
+ * @param amount выплата на всю позицию
+ * @param estimated сумма оценена по текущему купону (купон еще не объявлен или график не загружен)
+ */
+public record CashFlowEvent(LocalDate date,
+                            String type,
+                            String isin,
+                            String shortName,
+                            BigDecimal quantity,
+                            BigDecimal amountPerUnit,
+                            BigDecimal amount,
+                            String currency,
+                            boolean estimated) {
+
+    public static final String TYPE_COUPON = "COUPON";
+    public static final String TYPE_REDEMPTION = "REDEMPTION";
+}
@@ -22,6 +22,9 @@ public class Portfolio {
     @Column(name = "broker_account", length = 50)
     private String brokerAccount;
 
+    @Column(name = "base_currency", nullable = false, length = 10)
+    private String baseCurrency = "RUB";
+
     @Column(name = "created_at", nullable = false)
     private OffsetDateTime createdAt;
 
@@ -68,6 +71,14 @@ public class Portfolio {
         this.brokerAccount = brokerAccount;
     }
 
+    public String getBaseCurrency() {
+        return baseCurrency;
+    }
+
+    public void setBaseCurrency(String baseCurrency) {
+        this.baseCurrency = baseCurrency;
+    }
+
     public OffsetDateTime getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,37 @@
+package com.invest.management.portfolio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Периодическая сверка журнала остатков денежных средств с полной суммой движений
+ */
+@Service
+@ConditionalOnProperty(name = "portfolio.cash-ledger.reconcile.enabled", havingValue = "true", matchIfMissing = false)
+public class PortfolioCashBalanceReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(PortfolioCashBalanceReconciler.class);
+
+    private final PortfolioCashBalanceService balanceService;
+
+    public PortfolioCashBalanceReconciler(PortfolioCashBalanceService balanceService) {
+        this.balanceService = balanceService;
+    }
+
+    @Scheduled(cron = "${portfolio.cash-ledger.reconcile.cron:0 30 3 * * *}")
+    public void reconcileCashBalances() {
+        try {
+            int fixed = balanceService.reconcile();
+            if (fixed > 0) {
+                log.warn("Сверка остатков ДС завершена: исправлено расхождений {}", fixed);
+            } else {
+                log.info("Сверка остатков ДС завершена: расхождений нет");
+            }
+        } catch (Exception e) {
+            log.error("Ошибка при сверке остатков ДС: {}", e.getMessage(), e);
+        }
+    }
+}
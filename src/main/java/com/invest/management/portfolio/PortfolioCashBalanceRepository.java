@@ -0,0 +1,22 @@
+package com.invest.management.portfolio;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface PortfolioCashBalanceRepository extends JpaRepository<PortfolioCashBalance, Long> {
+
+    Optional<PortfolioCashBalance> findByPortfolioAndCurrency(Portfolio portfolio, String currency);
+
+    List<PortfolioCashBalance> findByPortfolio(Portfolio portfolio);
+
+    /**
+     * Блокирует строки остатков портфеля до конца транзакции, чтобы параллельные
+     * загрузки отчетов, синхронизация ALOR и сверка не теряли изменения друг друга
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<PortfolioCashBalance> findForUpdateByPortfolio(Portfolio portfolio);
+}
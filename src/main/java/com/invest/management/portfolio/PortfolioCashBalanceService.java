@@ -0,0 +1,218 @@
+package com.invest.management.portfolio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Журнал остатков денежных средств портфелей по валютам
+ * Остаток меняется в той же транзакции, что и движения денежных средств,
+ * поэтому для оценки портфеля не нужно суммировать всю историю движений
+ */
+@Service
+public class PortfolioCashBalanceService {
+
+    private static final Logger log = LoggerFactory.getLogger(PortfolioCashBalanceService.class);
+
+    private final PortfolioCashBalanceRepository balanceRepository;
+    private final PortfolioCashMovementRepository cashMovementRepository;
+    private final PortfolioRepository portfolioRepository;
+    private final PortfolioDataVersion dataVersion;
+
+    public PortfolioCashBalanceService(PortfolioCashBalanceRepository balanceRepository,
+                                       PortfolioCashMovementRepository cashMovementRepository,
+                                       PortfolioRepository portfolioRepository,
+                                       PortfolioDataVersion dataVersion) {
+        this.balanceRepository = balanceRepository;
+        this.cashMovementRepository = cashMovementRepository;
+        this.portfolioRepository = portfolioRepository;
+        this.dataVersion = dataVersion;
+    }
+
+    /**
+     * Учитывает в остатках добавленные движения денежных средств
+     * Должен вызываться в транзакции, в которой движения сохранены
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordInserted(Portfolio portfolio, Collection<PortfolioCashMovement> movements) {
+        applyDeltas(portfolio, collectDeltas(movements, false));
+    }
+
+    /**
+     * Учитывает в остатках удаленные движения денежных средств
+     * Должен вызываться в транзакции, в которой движения удалены
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordDeleted(Portfolio portfolio, Collection<PortfolioCashMovement> movements) {
+        applyDeltas(portfolio, collectDeltas(movements, true));
+    }
+
+    /**
+     * Возвращает остаток портфеля в валюте (0, если движений в этой валюте не было)
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal getBalance(Portfolio portfolio, String currency) {
+        return balanceRepository.findByPortfolioAndCurrency(portfolio, currency)
+                .map(PortfolioCashBalance::getBalance)
+                .orElse(BigDecimal.ZERO);
+    }
+
+    /**
+     * Возвращает остатки портфеля во всех валютах
+     */
+    @Transactional(readOnly = true)
+    public Map<String, BigDecimal> getBalances(Portfolio portfolio) {
+        Map<String, BigDecimal> result = new TreeMap<>();
+        for (PortfolioCashBalance balance : balanceRepository.findByPortfolio(portfolio)) {
+            result.put(balance.getCurrency(), balance.getBalance());
+        }
+        return result;
+    }
+
+    /**
+     * Сверяет журнал остатков с суммой всех движений денежных средств
+     * Расхождения пересчитываются повторно под блокировкой портфеля и исправляются
+     * @return количество исправленных остатков
+     */
+    @Transactional
+    public int reconcile() {
+        Map<String, CashBalanceTotal> expected = new HashMap<>();
+        for (CashBalanceTotal total : cashMovementRepository.calculateAllBalances()) {
+            expected.put(key(total.portfolioId(), total.currency()), total);
+        }
+
+        Set<Long> mismatchedPortfolioIds = new HashSet<>();
+        Set<String> seen = new HashSet<>();
+        for (PortfolioCashBalance balance : balanceRepository.findAll()) {
+            Long portfolioId = balance.getPortfolio().getId();
+            String key = key(portfolioId, balance.getCurrency());
+            seen.add(key);
+            CashBalanceTotal total = expected.get(key);
+            BigDecimal expectedBalance = total != null ? total.balance() : BigDecimal.ZERO;
+            if (expectedBalance.compareTo(balance.getBalance()) != 0) {
+                mismatchedPortfolioIds.add(portfolioId);
+            }
+        }
+        for (Map.Entry<String, CashBalanceTotal> entry : expected.entrySet()) {
+            if (!seen.contains(entry.getKey()) && entry.getValue().balance().signum() != 0) {
+                mismatchedPortfolioIds.add(entry.getValue().portfolioId());
+            }
+        }
+
+        int fixed = 0;
+        for (Long portfolioId : mismatchedPortfolioIds) {
+            fixed += rebuild(portfolioRepository.getReferenceById(portfolioId));
+        }
+        if (fixed > 0) {
+            dataVersion.markChanged();
+        }
+        return fixed;
+    }
+
+    /**
+     * Пересчитывает остатки одного портфеля из движений денежных средств
+     * Строки остатков блокируются до пересчета, поэтому параллельные изменения не теряются
+     */
+    private int rebuild(Portfolio portfolio) {
+        Map<String, PortfolioCashBalance> current = lockBalances(portfolio);
+        Map<String, BigDecimal> actual = new HashMap<>();
+        for (PortfolioCashMovement movement : cashMovementRepository.findByPortfolio(portfolio)) {
+            if (movement.getCurrency() != null) {
+                actual.merge(movement.getCurrency(), signedAmount(movement), BigDecimal::add);
+            }
+        }
+
+        int fixed = 0;
+        for (PortfolioCashBalance balance : current.values()) {
+            BigDecimal value = actual.getOrDefault(balance.getCurrency(), BigDecimal.ZERO);
+            if (value.compareTo(balance.getBalance()) != 0) {
+                log.warn("Расхождение остатка ДС портфеля {} ({}): в журнале {}, по движениям {}",
+                        portfolio.getId(), balance.getCurrency(), balance.getBalance(), value);
+                balance.setBalance(value);
+                fixed++;
+            }
+        }
+        for (Map.Entry<String, BigDecimal> entry : actual.entrySet()) {
+            if (!current.containsKey(entry.getKey())) {
+                log.warn("Отсутствует остаток ДС портфеля {} ({}), по движениям {}",
+                        portfolio.getId(), entry.getKey(), entry.getValue());
+                balanceRepository.save(newBalance(portfolio, entry.getKey(), entry.getValue()));
+                fixed++;
+            }
+        }
+        return fixed;
+    }
+
+    private void applyDeltas(Portfolio portfolio, Map<String, BigDecimal> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        Map<String, PortfolioCashBalance> current = lockBalances(portfolio);
+        for (Map.Entry<String, BigDecimal> delta : deltas.entrySet()) {
+            PortfolioCashBalance balance = current.get(delta.getKey());
+            if (balance == null) {
+                balanceRepository.save(newBalance(portfolio, delta.getKey(), delta.getValue()));
+            } else {
+                balance.setBalance(balance.getBalance().add(delta.getValue()));
+            }
+        }
+        dataVersion.markChanged();
+    }
+
+    /**
+     * Сначала блокируется сам портфель: две транзакции, добавляющие остаток в валюте, которой
+     * еще нет в журнале, иначе обе вставили бы строку (portfolio_id, currency), и одна из них
+     * откатилась бы целиком на уникальном ограничении
+     */
+    private Map<String, PortfolioCashBalance> lockBalances(Portfolio portfolio) {
+        portfolioRepository.findForUpdateById(portfolio.getId());
+        Map<String, PortfolioCashBalance> result = new HashMap<>();
+        List<PortfolioCashBalance> balances = balanceRepository.findForUpdateByPortfolio(portfolio);
+        for (PortfolioCashBalance balance : balances) {
+            result.put(balance.getCurrency(), balance);
+        }
+        return result;
+    }
+
+    private static Map<String, BigDecimal> collectDeltas(Collection<PortfolioCashMovement> movements, boolean negate) {
+        Map<String, BigDecimal> deltas = new HashMap<>();
+        for (PortfolioCashMovement movement : movements) {
+            if (movement.getCurrency() == null) {
+                continue;
+            }
+            BigDecimal amount = signedAmount(movement);
+            deltas.merge(movement.getCurrency(), negate ? amount.negate() : amount, BigDecimal::add);
+        }
+        return deltas;
+    }
+
+    private static BigDecimal signedAmount(PortfolioCashMovement movement) {
+        BigDecimal credit = movement.getCreditAmount() != null ? movement.getCreditAmount() : BigDecimal.ZERO;
+        BigDecimal debit = movement.getDebitAmount() != null ? movement.getDebitAmount() : BigDecimal.ZERO;
+        return credit.subtract(debit);
+    }
+
+    private static PortfolioCashBalance newBalance(Portfolio portfolio, String currency, BigDecimal value) {
+        PortfolioCashBalance balance = new PortfolioCashBalance();
+        balance.setPortfolio(portfolio);
+        balance.setCurrency(currency);
+        balance.setBalance(value);
+        return balance;
+    }
+
+    private static String key(Long portfolioId, String currency) {
+        return portfolioId + "|" + currency;
+    }
+}
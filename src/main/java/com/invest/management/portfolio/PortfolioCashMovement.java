@@ -9,6 +9,11 @@ import java.time.OffsetDateTime;
 @Table(name = "portfolio_cash_movements")
 public class PortfolioCashMovement {
 
+    /**
+     * Площадка движений, загруженных синхронизацией ALOR API (а не из отчета брокера)
+     */
+    public static final String TRADING_PLATFORM_ALOR_API = "ALOR API";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
 
 public interface PortfolioCashMovementRepository extends JpaRepository<PortfolioCashMovement, Long> {
@@ -13,11 +14,25 @@ public interface PortfolioCashMovementRepository extends JpaRepository<Portfolio
 
     List<PortfolioCashMovement> findByPortfolioOrderByDateAsc(Portfolio portfolio);
 
+    List<PortfolioCashMovement> findByPortfolioAndDateGreaterThanEqual(Portfolio portfolio, LocalDate date);
+
+    List<PortfolioCashMovement> findByPortfolioAndTradingPlatformAndDateGreaterThanEqual(
+            Portfolio portfolio, String tradingPlatform, LocalDate date);
+
+    List<PortfolioCashMovement> findByPortfolioAndReportIsNullAndTradingPlatformAndDateBetween(
+            Portfolio portfolio, String tradingPlatform, LocalDate from, LocalDate to);
+
     void deleteAllByPortfolio(Portfolio portfolio);
 
+    List<PortfolioCashMovement> findByReport(BrokerReport report);
+
     void deleteByReport(BrokerReport report);
 
     @Query("SELECT COALESCE(SUM(c.creditAmount), 0) - COALESCE(SUM(c.debitAmount), 0) FROM PortfolioCashMovement c WHERE c.portfolio = :portfolio AND c.currency = :currency")
     BigDecimal calculateBalance(@Param("portfolio") Portfolio portfolio, @Param("currency") String currency);
-}
 
+    @Query("SELECT new com.invest.management.portfolio.CashBalanceTotal(c.portfolio.id, c.currency, " +
+           "COALESCE(SUM(c.creditAmount), 0) - COALESCE(SUM(c.debitAmount), 0)) " +
+           "FROM PortfolioCashMovement c WHERE c.currency IS NOT NULL GROUP BY c.portfolio.id, c.currency")
+    List<CashBalanceTotal> calculateAllBalances();
+}
@@ -0,0 +1,51 @@
+package com.invest.management.portfolio;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Версия данных, из которых считается стоимость портфелей (цены позиций и облигаций,
+ * состав позиций, средние цены, остатки денежных средств)
+ * Входит в ETag ответа /portfolios/{id}/value: пока версия не изменилась, клиент получает 304
+ * без пересчета стоимости
+ */
+@Component
+public class PortfolioDataVersion {
+
+    private final AtomicLong version = new AtomicLong();
+
+    public long current() {
+        return version.get();
+    }
+
+    /**
+     * Отмечает изменение данных портфелей
+     * Внутри транзакции версия увеличивается после коммита: иначе клиент успел бы
+     * получить новый ETag вместе со старыми данными
+     */
+    public void markChanged() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    version.incrementAndGet();
+                }
+            });
+        } else {
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Событие публикуется уже после коммита (см. {@link PortfolioPositionEvents}),
+     * поэтому версия увеличивается сразу
+     */
+    @EventListener
+    public void onPositionsChanged(PortfolioPositionsChangedEvent event) {
+        version.incrementAndGet();
+    }
+}
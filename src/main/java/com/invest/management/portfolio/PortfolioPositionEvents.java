@@ -0,0 +1,39 @@
+package com.invest.management.portfolio;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Оповещение о изменении позиций портфеля для кэшей, построенных по позициям
+ * (календарь выплат, риск-метрики)
+ */
+@Component
+public class PortfolioPositionEvents {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public PortfolioPositionEvents(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Отмечает изменение позиций портфеля
+     * Внутри транзакции событие публикуется после коммита, чтобы кэши
+     * не перестроились по еще не зафиксированным данным
+     */
+    public void positionsChanged(Portfolio portfolio) {
+        PortfolioPositionsChangedEvent event = new PortfolioPositionsChangedEvent(portfolio.getId());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eventPublisher.publishEvent(event);
+                }
+            });
+        } else {
+            eventPublisher.publishEvent(event);
+        }
+    }
+}
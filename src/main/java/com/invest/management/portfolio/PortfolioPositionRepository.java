@@ -29,5 +29,12 @@ public interface PortfolioPositionRepository extends JpaRepository<PortfolioPosi
     @EntityGraph(attributePaths = {"moexStock", "moexBond", "portfolio", "portfolio.user"})
     @Query("SELECT p FROM PortfolioPosition p WHERE p.portfolio.user IN :users")
     List<PortfolioPosition> findByUsers(@Param("users") List<AppUser> users);
+
+    /**
+     * Открытые позиции всех портфелей вместе с инструментами MOEX (для расчетов по всем портфелям сразу)
+     */
+    @EntityGraph(attributePaths = {"moexStock", "moexBond"})
+    @Query("SELECT p FROM PortfolioPosition p WHERE p.quantity > 0")
+    List<PortfolioPosition> findAllOpen();
 }
 
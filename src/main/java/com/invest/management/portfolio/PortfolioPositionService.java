@@ -23,19 +23,27 @@ public class PortfolioPositionService {
     private final PortfolioTransactionRepository transactionRepository;
     private final MoexStockRepository stockRepository;
     private final BondRepository bondRepository;
+    private final PortfolioPositionEvents positionEvents;
+    private final PortfolioDataVersion dataVersion;
 
     public PortfolioPositionService(PortfolioPositionRepository positionRepository,
                                     PortfolioTransactionRepository transactionRepository,
                                     MoexStockRepository stockRepository,
-                                    BondRepository bondRepository) {
+                                    BondRepository bondRepository,
+                                    PortfolioPositionEvents positionEvents,
+                                    PortfolioDataVersion dataVersion) {
         this.positionRepository = positionRepository;
         this.transactionRepository = transactionRepository;
         this.stockRepository = stockRepository;
         this.bondRepository = bondRepository;
+        this.positionEvents = positionEvents;
+        this.dataVersion = dataVersion;
     }
 
     @Transactional
     public void recalculatePositions(Portfolio portfolio) {
+        positionEvents.positionsChanged(portfolio);
+
         // Удаляем все текущие позиции
         positionRepository.deleteAllByPortfolio(portfolio);
 
@@ -85,6 +93,8 @@ public class PortfolioPositionService {
      */
     @Transactional
     public void setEndPeriodPositions(Portfolio portfolio, List<BrokerReportParser.EndPeriodPosition> endPositions) {
+        positionEvents.positionsChanged(portfolio);
+
         // Получаем существующие позиции для сохранения средней цены
         List<PortfolioPosition> existingPositions = positionRepository.findByPortfolio(portfolio);
         Map<String, BigDecimal> existingAveragePrices = new HashMap<>();
@@ -164,6 +174,8 @@ public class PortfolioPositionService {
 
         position.setAveragePurchasePrice(newAveragePrice);
         positionRepository.save(position);
+        // Средняя цена входит в доходность позиции, но не меняет состав портфеля
+        dataVersion.markChanged();
         log.debug("Обновлена средняя цена для ISIN {}: {} -> {}", 
             transaction.getIsin(), currentAvgPrice, newAveragePrice);
     }
@@ -215,6 +227,7 @@ public class PortfolioPositionService {
                 log.debug("Пересчитана средняя цена для ISIN {}: {}", position.getIsin(), averagePrice);
             }
         }
+        dataVersion.markChanged();
     }
 
     /**
@@ -230,6 +243,7 @@ public class PortfolioPositionService {
             PortfolioPosition position = positionOpt.get();
             position.setAveragePurchasePrice(averagePrice);
             positionRepository.save(position);
+            dataVersion.markChanged();
             log.info("Обновлена средняя цена для ISIN {}: {}", isin, averagePrice);
         } else {
             log.warn("Позиция для ISIN {} не найдена", isin);
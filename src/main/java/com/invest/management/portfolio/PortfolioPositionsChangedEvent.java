@@ -0,0 +1,8 @@
+package com.invest.management.portfolio;
+
+/**
+ * Событие: состав или количество позиций портфеля изменились
+ * Публикуется {@link PortfolioPositionEvents} после коммита транзакции, изменившей позиции
+ */
+public record PortfolioPositionsChangedEvent(Long portfolioId) {
+}
@@ -1,7 +1,11 @@
 package com.invest.management.portfolio;
 
 import com.invest.management.user.AppUser;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -11,5 +15,13 @@ public interface PortfolioRepository extends JpaRepository<Portfolio, Long> {
     List<Portfolio> findByUser(AppUser user);
 
     Optional<Portfolio> findByIdAndUser(Long id, AppUser user);
+
+    /**
+     * Блокирует строку портфеля до конца транзакции: сериализует изменения журнала остатков,
+     * включая первую вставку остатка в новой валюте, которую не защищает блокировка строк остатков
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Portfolio p WHERE p.id = :id")
+    Optional<Portfolio> findForUpdateById(@Param("id") Long id);
 }
 
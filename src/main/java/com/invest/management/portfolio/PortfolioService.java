@@ -1,5 +1,6 @@
 package com.invest.management.portfolio;
 
+import com.invest.management.moex.fx.FxRates;
 import com.invest.management.user.AppUser;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -26,10 +27,19 @@ public class PortfolioService {
 
     @Transactional
     public Portfolio createPortfolio(AppUser user, String name, String brokerAccount) {
+        return createPortfolio(user, name, brokerAccount, FxRates.RUB);
+    }
+
+    /**
+     * @param baseCurrency валюта, в которую пересчитываются стоимость и результат портфеля
+     */
+    @Transactional
+    public Portfolio createPortfolio(AppUser user, String name, String brokerAccount, String baseCurrency) {
         Portfolio portfolio = new Portfolio();
         portfolio.setUser(user);
         portfolio.setName(name);
         portfolio.setBrokerAccount(brokerAccount);
+        portfolio.setBaseCurrency(FxRates.normalize(baseCurrency));
         return portfolioRepository.save(portfolio);
     }
 
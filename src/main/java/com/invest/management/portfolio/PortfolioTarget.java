@@ -0,0 +1,83 @@
+package com.invest.management.portfolio;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * Целевая доля портфеля для бумаги (по SECID) или сектора эмитента
+ */
+@Entity
+@Table(name = "portfolio_targets",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"portfolio_id", "target_type", "target_key"}))
+public class PortfolioTarget {
+
+    public static final String TYPE_INSTRUMENT = "INSTRUMENT";
+    public static final String TYPE_SECTOR = "SECTOR";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "portfolio_id", nullable = false)
+    private Portfolio portfolio;
+
+    @Column(name = "target_type", nullable = false, length = 20)
+    private String targetType;
+
+    @Column(name = "target_key", nullable = false)
+    private String targetKey;
+
+    @Column(name = "weight_percent", nullable = false, precision = 7, scale = 4)
+    private BigDecimal weightPercent;
+
+    @Column(name = "updated_at", nullable = false)
+    private OffsetDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    void prePersist() {
+        updatedAt = OffsetDateTime.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Portfolio getPortfolio() {
+        return portfolio;
+    }
+
+    public void setPortfolio(Portfolio portfolio) {
+        this.portfolio = portfolio;
+    }
+
+    public String getTargetType() {
+        return targetType;
+    }
+
+    public void setTargetType(String targetType) {
+        this.targetType = targetType;
+    }
+
+    public String getTargetKey() {
+        return targetKey;
+    }
+
+    public void setTargetKey(String targetKey) {
+        this.targetKey = targetKey;
+    }
+
+    public BigDecimal getWeightPercent() {
+        return weightPercent;
+    }
+
+    public void setWeightPercent(BigDecimal weightPercent) {
+        this.weightPercent = weightPercent;
+    }
+
+    public OffsetDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -0,0 +1,20 @@
+package com.invest.management.portfolio;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface PortfolioTargetRepository extends JpaRepository<PortfolioTarget, Long> {
+
+    List<PortfolioTarget> findByPortfolioOrderByTargetTypeAscTargetKeyAsc(Portfolio portfolio);
+
+    /**
+     * Массовое удаление выполняется сразу, до вставки новых целей с теми же ключами
+     */
+    @Modifying
+    @Query("DELETE FROM PortfolioTarget t WHERE t.portfolio = :portfolio")
+    int deleteByPortfolio(@Param("portfolio") Portfolio portfolio);
+}
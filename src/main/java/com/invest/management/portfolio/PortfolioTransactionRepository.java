@@ -5,8 +5,10 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 public interface PortfolioTransactionRepository extends JpaRepository<PortfolioTransaction, Long> {
 
@@ -18,5 +20,13 @@ public interface PortfolioTransactionRepository extends JpaRepository<PortfolioT
                                                         @Param("endDate") LocalDate endDate);
 
     Optional<PortfolioTransaction> findByPortfolioAndTradeNumber(Portfolio portfolio, String tradeNumber);
+
+    /**
+     * Возвращает номера сделок из переданного набора, которые уже сохранены в портфеле
+     * Используется для пакетной дедупликации вместо запроса на каждую сделку
+     */
+    @Query("SELECT t.tradeNumber FROM PortfolioTransaction t WHERE t.portfolio = :portfolio AND t.tradeNumber IN :tradeNumbers")
+    Set<String> findExistingTradeNumbers(@Param("portfolio") Portfolio portfolio,
+                                         @Param("tradeNumbers") Collection<String> tradeNumbers);
 }
 
@@ -1,41 +1,76 @@
 package com.invest.management.portfolio;
 
+import com.invest.management.analysis.AnalysisDataVersion;
 import com.invest.management.moex.MoexStock;
 import com.invest.management.moex.MoexStockRepository;
 import com.invest.management.moex.bond.Bond;
 import com.invest.management.moex.bond.BondRepository;
+import com.invest.management.moex.fx.FxRateService;
+import com.invest.management.moex.fx.FxRates;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class PortfolioValueService {
 
+    private static final Logger log = LoggerFactory.getLogger(PortfolioValueService.class);
+
     private final PortfolioPositionRepository positionRepository;
     private final MoexStockRepository stockRepository;
     private final BondRepository bondRepository;
-    private final PortfolioCashMovementRepository cashMovementRepository;
+    private final PortfolioCashBalanceService cashBalanceService;
+    private final FxRateService fxRateService;
+    private final PortfolioDataVersion portfolioDataVersion;
+    private final AnalysisDataVersion stockDataVersion;
 
     public PortfolioValueService(PortfolioPositionRepository positionRepository,
                                  MoexStockRepository stockRepository,
                                  BondRepository bondRepository,
-                                 PortfolioCashMovementRepository cashMovementRepository) {
+                                 PortfolioCashBalanceService cashBalanceService,
+                                 FxRateService fxRateService,
+                                 PortfolioDataVersion portfolioDataVersion,
+                                 AnalysisDataVersion stockDataVersion) {
         this.positionRepository = positionRepository;
         this.stockRepository = stockRepository;
         this.bondRepository = bondRepository;
-        this.cashMovementRepository = cashMovementRepository;
+        this.cashBalanceService = cashBalanceService;
+        this.fxRateService = fxRateService;
+        this.portfolioDataVersion = portfolioDataVersion;
+        this.stockDataVersion = stockDataVersion;
+    }
+
+    /**
+     * Версия входных данных оценки портфеля: меняется вместе с позициями, остатками,
+     * ценами облигаций и позиций ALOR ({@link PortfolioDataVersion}), ценами акций MOEX
+     * ({@link AnalysisDataVersion} увеличивается при каждом обновлении цен) и курсами валют.
+     * Пока версия та же, {@link #calculatePortfolioValue} вернет тот же результат
+     */
+    public String dataVersion(Portfolio portfolio) {
+        OffsetDateTime ratesUpdatedAt = fxRateService.current().getUpdatedAt();
+        return portfolioDataVersion.current()
+            + "." + stockDataVersion.current()
+            + "." + (ratesUpdatedAt != null ? ratesUpdatedAt.toInstant().toEpochMilli() : 0)
+            + "." + FxRates.normalize(portfolio.getBaseCurrency());
     }
 
     /**
-     * Рассчитывает общую стоимость портфеля
+     * Рассчитывает общую стоимость портфеля в его базовой валюте
+     * Все суммы пересчитываются по одному снимку курсов из памяти ({@link FxRateService})
      */
     public PortfolioValue calculatePortfolioValue(Portfolio portfolio) {
         List<PortfolioPosition> positions = positionRepository.findByPortfolio(portfolio);
+        FxRates rates = fxRateService.current();
+        String baseCurrency = FxRates.normalize(portfolio.getBaseCurrency());
         
         BigDecimal totalValue = BigDecimal.ZERO;
         BigDecimal previousTotalValue = BigDecimal.ZERO;
@@ -43,7 +78,7 @@ public class PortfolioValueService {
         
         // Рассчитываем стоимость каждой позиции
         for (PortfolioPosition position : positions) {
-            PositionValue posValue = calculatePositionValue(position);
+            PositionValue posValue = calculatePositionValue(position, rates, baseCurrency);
             positionValues.add(posValue);
             
             if (posValue.getCurrentValue() != null) {
@@ -55,7 +90,7 @@ public class PortfolioValueService {
         }
         
         // Добавляем свободные денежные средства
-        BigDecimal cashBalance = calculateCashBalance(portfolio);
+        BigDecimal cashBalance = calculateCashBalance(portfolio, rates, baseCurrency);
         totalValue = totalValue.add(cashBalance);
         previousTotalValue = previousTotalValue.add(cashBalance); // Свободные средства не меняются
         
@@ -74,10 +109,10 @@ public class PortfolioValueService {
             .thenComparing(PositionValue::getShortName));
         
         return new PortfolioValue(totalValue, previousTotalValue, dailyChange, dailyChangePercent, 
-            positionValues, cashBalance);
+            positionValues, cashBalance, baseCurrency);
     }
 
-    private PositionValue calculatePositionValue(PortfolioPosition position) {
+    private PositionValue calculatePositionValue(PortfolioPosition position, FxRates rates, String baseCurrency) {
         String isin = position.getIsin();
         BigDecimal quantity = position.getQuantity();
         
@@ -85,6 +120,8 @@ public class PortfolioValueService {
         BigDecimal previousPrice = null;
         String shortName = isin; // По умолчанию используем ISIN
         Integer decimals = null; // Количество знаков после запятой для форматирования
+        BigDecimal accruedInterest = null; // НКД на одну облигацию
+        String currency = FxRates.RUB; // Валюта цены: для облигаций - валюта номинала
         
         // ПРИОРИТЕТ 1: Используем last_known_price из ALOR (обновляется через AlorPriceUpdater)
         if (position.getLastKnownPrice() != null) {
@@ -104,14 +141,18 @@ public class PortfolioValueService {
             previousPrice = stock.getPrevprice();
             shortName = stock.getShortname() != null ? stock.getShortname() : isin;
             decimals = stock.getDecimals();
+            currency = FxRates.normalize(stock.getCurrencyid());
         } else if (bond != null) {
             // Используем данные из связи
+            // Цены облигаций MOEX указаны в процентах от номинала
             if (currentPrice == null) {
-                currentPrice = bond.getMarketprice();
+                currentPrice = bond.toAbsolutePrice(bond.getMarketprice());
             }
-            previousPrice = bond.getPrevprice();
+            previousPrice = bond.toAbsolutePrice(bond.getPrevprice());
             shortName = bond.getShortname() != null ? bond.getShortname() : isin;
             decimals = bond.getDecimals();
+            accruedInterest = bond.getAccruedInterest();
+            currency = FxRates.normalize(bond.getFaceCurrency());
         } else {
             // Fallback: ищем в справочниках по ISIN (если связи не установлены)
             if ("STOCK".equals(position.getSecurityType())) {
@@ -124,17 +165,20 @@ public class PortfolioValueService {
                     previousPrice = foundStock.getPrevprice();
                     shortName = foundStock.getShortname() != null ? foundStock.getShortname() : isin;
                     decimals = foundStock.getDecimals();
+                    currency = FxRates.normalize(foundStock.getCurrencyid());
                 }
             } else if ("BOND".equals(position.getSecurityType())) {
                 Optional<Bond> bondOpt = bondRepository.findByIsin(isin);
                 if (bondOpt.isPresent()) {
                     Bond foundBond = bondOpt.get();
                     if (currentPrice == null) {
-                        currentPrice = foundBond.getMarketprice();
+                        currentPrice = foundBond.toAbsolutePrice(foundBond.getMarketprice());
                     }
-                    previousPrice = foundBond.getPrevprice();
+                    previousPrice = foundBond.toAbsolutePrice(foundBond.getPrevprice());
                     shortName = foundBond.getShortname() != null ? foundBond.getShortname() : isin;
                     decimals = foundBond.getDecimals();
+                    accruedInterest = foundBond.getAccruedInterest();
+                    currency = FxRates.normalize(foundBond.getFaceCurrency());
                 }
             }
         }
@@ -154,12 +198,19 @@ public class PortfolioValueService {
         BigDecimal totalReturn = null;
         BigDecimal totalReturnPercent = null;
         
+        BigDecimal cleanValue = null;
+        // НКД входит в стоимость облигаций, но не в финансовый результат (цена покупки указана без НКД)
+        BigDecimal accruedValue = accruedInterest != null
+            ? accruedInterest.multiply(quantity).setScale(2, RoundingMode.HALF_UP)
+            : BigDecimal.ZERO;
+        
         if (currentPrice != null) {
-            currentValue = currentPrice.multiply(quantity).setScale(2, RoundingMode.HALF_UP);
+            cleanValue = currentPrice.multiply(quantity).setScale(2, RoundingMode.HALF_UP);
+            currentValue = cleanValue.add(accruedValue);
         }
         
         if (previousPrice != null) {
-            previousValue = previousPrice.multiply(quantity).setScale(2, RoundingMode.HALF_UP);
+            previousValue = previousPrice.multiply(quantity).setScale(2, RoundingMode.HALF_UP).add(accruedValue);
         }
         
         if (currentValue != null && previousValue != null) {
@@ -173,9 +224,9 @@ public class PortfolioValueService {
         
         // Расчет финансового результата за все время (текущая стоимость - средняя цена приобретения * количество)
         BigDecimal averagePurchasePrice = position.getAveragePurchasePrice();
-        if (currentValue != null && averagePurchasePrice != null && quantity.compareTo(BigDecimal.ZERO) > 0) {
+        if (cleanValue != null && averagePurchasePrice != null && quantity.compareTo(BigDecimal.ZERO) > 0) {
             BigDecimal purchaseValue = averagePurchasePrice.multiply(quantity).setScale(2, RoundingMode.HALF_UP);
-            totalReturn = currentValue.subtract(purchaseValue);
+            totalReturn = cleanValue.subtract(purchaseValue);
             if (purchaseValue.compareTo(BigDecimal.ZERO) > 0) {
                 totalReturnPercent = totalReturn
                     .divide(purchaseValue, 4, RoundingMode.HALF_UP)
@@ -183,12 +234,47 @@ public class PortfolioValueService {
             }
         }
         
+        // Суммы переводятся в базовую валюту по текущему курсу; цены остаются в валюте бумаги
+        if (!currency.equals(baseCurrency)) {
+            if (rates.supports(currency) && rates.supports(baseCurrency)) {
+                currentValue = toBaseCurrency(currentValue, currency, baseCurrency, rates);
+                previousValue = toBaseCurrency(previousValue, currency, baseCurrency, rates);
+                dailyChange = toBaseCurrency(dailyChange, currency, baseCurrency, rates);
+                totalReturn = toBaseCurrency(totalReturn, currency, baseCurrency, rates);
+            } else {
+                log.warn("Нет курса {}/{}: позиция {} не учтена в стоимости портфеля", currency, baseCurrency, isin);
+                currentValue = null;
+                previousValue = null;
+                dailyChange = null;
+                totalReturn = null;
+            }
+        }
+        
         return new PositionValue(position, shortName, currentPrice, currentValue, 
-            previousPrice, previousValue, dailyChange, dailyChangePercent, totalReturn, totalReturnPercent, decimals);
+            previousPrice, previousValue, dailyChange, dailyChangePercent, totalReturn, totalReturnPercent, decimals,
+            accruedInterest, currency);
     }
 
-    private BigDecimal calculateCashBalance(Portfolio portfolio) {
-        return cashMovementRepository.calculateBalance(portfolio, "RUB");
+    private BigDecimal toBaseCurrency(BigDecimal amount, String currency, String baseCurrency, FxRates rates) {
+        BigDecimal converted = rates.convert(amount, currency, baseCurrency);
+        return converted != null ? converted.setScale(2, RoundingMode.HALF_UP) : null;
+    }
+
+    /**
+     * Свободные денежные средства во всех валютах, пересчитанные в базовую валюту
+     */
+    private BigDecimal calculateCashBalance(Portfolio portfolio, FxRates rates, String baseCurrency) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (Map.Entry<String, BigDecimal> balance : cashBalanceService.getBalances(portfolio).entrySet()) {
+            BigDecimal converted = rates.convert(balance.getValue(), balance.getKey(), baseCurrency);
+            if (converted == null) {
+                log.warn("Нет курса {}/{}: остаток {} не учтен в стоимости портфеля {}",
+                    balance.getKey(), baseCurrency, balance.getValue(), portfolio.getId());
+                continue;
+            }
+            total = total.add(converted);
+        }
+        return total.setScale(2, RoundingMode.HALF_UP);
     }
 
     // DTO для стоимости позиции
@@ -204,6 +290,8 @@ public class PortfolioValueService {
         private final BigDecimal totalReturn;
         private final BigDecimal totalReturnPercent;
         private final Integer decimals;
+        private final BigDecimal accruedInterest;
+        private final String currency;
 
         public PositionValue(PortfolioPosition position, String shortName,
                            BigDecimal currentPrice, BigDecimal currentValue,
@@ -211,6 +299,29 @@ public class PortfolioValueService {
                            BigDecimal dailyChange, BigDecimal dailyChangePercent,
                            BigDecimal totalReturn, BigDecimal totalReturnPercent,
                            Integer decimals) {
+            this(position, shortName, currentPrice, currentValue, previousPrice, previousValue,
+                dailyChange, dailyChangePercent, totalReturn, totalReturnPercent, decimals, null);
+        }
+
+        public PositionValue(PortfolioPosition position, String shortName,
+                           BigDecimal currentPrice, BigDecimal currentValue,
+                           BigDecimal previousPrice, BigDecimal previousValue,
+                           BigDecimal dailyChange, BigDecimal dailyChangePercent,
+                           BigDecimal totalReturn, BigDecimal totalReturnPercent,
+                           Integer decimals, BigDecimal accruedInterest) {
+            this(position, shortName, currentPrice, currentValue, previousPrice, previousValue,
+                dailyChange, dailyChangePercent, totalReturn, totalReturnPercent, decimals, accruedInterest, "RUB");
+        }
+
+        /**
+         * @param currency валюта цен бумаги; стоимость, изменение и результат - в базовой валюте портфеля
+         */
+        public PositionValue(PortfolioPosition position, String shortName,
+                           BigDecimal currentPrice, BigDecimal currentValue,
+                           BigDecimal previousPrice, BigDecimal previousValue,
+                           BigDecimal dailyChange, BigDecimal dailyChangePercent,
+                           BigDecimal totalReturn, BigDecimal totalReturnPercent,
+                           Integer decimals, BigDecimal accruedInterest, String currency) {
             this.position = position;
             this.shortName = shortName;
             this.currentPrice = currentPrice;
@@ -222,6 +333,8 @@ public class PortfolioValueService {
             this.totalReturn = totalReturn;
             this.totalReturnPercent = totalReturnPercent;
             this.decimals = decimals;
+            this.accruedInterest = accruedInterest;
+            this.currency = currency;
         }
 
         public PortfolioPosition getPosition() { return position; }
@@ -236,6 +349,8 @@ public class PortfolioValueService {
         public BigDecimal getTotalReturn() { return totalReturn; }
         public BigDecimal getTotalReturnPercent() { return totalReturnPercent; }
         public Integer getDecimals() { return decimals; }
+        public BigDecimal getAccruedInterest() { return accruedInterest; }
+        public String getCurrency() { return currency; }
     }
 
     // DTO для общей стоимости портфеля
@@ -246,16 +361,24 @@ public class PortfolioValueService {
         private final BigDecimal dailyChangePercent;
         private final List<PositionValue> positions;
         private final BigDecimal cashBalance;
+        private final String baseCurrency;
 
         public PortfolioValue(BigDecimal totalValue, BigDecimal previousTotalValue,
                             BigDecimal dailyChange, BigDecimal dailyChangePercent,
                             List<PositionValue> positions, BigDecimal cashBalance) {
+            this(totalValue, previousTotalValue, dailyChange, dailyChangePercent, positions, cashBalance, "RUB");
+        }
+
+        public PortfolioValue(BigDecimal totalValue, BigDecimal previousTotalValue,
+                            BigDecimal dailyChange, BigDecimal dailyChangePercent,
+                            List<PositionValue> positions, BigDecimal cashBalance, String baseCurrency) {
             this.totalValue = totalValue;
             this.previousTotalValue = previousTotalValue;
             this.dailyChange = dailyChange;
             this.dailyChangePercent = dailyChangePercent;
             this.positions = positions;
             this.cashBalance = cashBalance;
+            this.baseCurrency = baseCurrency;
         }
 
         public BigDecimal getTotalValue() { return totalValue; }
@@ -264,6 +387,7 @@ public class PortfolioValueService {
         public BigDecimal getDailyChangePercent() { return dailyChangePercent; }
         public List<PositionValue> getPositions() { return positions; }
         public BigDecimal getCashBalance() { return cashBalance; }
+        public String getBaseCurrency() { return baseCurrency; }
     }
 }
 
@@ -0,0 +1,30 @@
+package com.invest.management.rebalance;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * План ребалансировки портфеля к целевым долям
+ * @param totalValue стоимость портфеля вместе со свободными денежными средствами
+ * @param cashBefore свободные денежные средства до сделок
+ * @param cashAfter свободные денежные средства после сделок
+ * @param allocations текущие и итоговые доли по целям
+ * @param warnings цели, которые невозможно выполнить (нет цены, нет бумаг сектора и т.п.)
+ */
+public record RebalancePlan(BigDecimal totalValue,
+                            BigDecimal cashBefore,
+                            BigDecimal cashAfter,
+                            List<RebalanceTrade> trades,
+                            List<Allocation> allocations,
+                            List<String> warnings) {
+
+    /**
+     * Доля цели в портфеле, %
+     */
+    public record Allocation(String type,
+                             String key,
+                             BigDecimal targetPercent,
+                             BigDecimal currentPercent,
+                             BigDecimal plannedPercent) {
+    }
+}
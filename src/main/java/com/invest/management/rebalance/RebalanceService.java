@@ -0,0 +1,395 @@
+package com.invest.management.rebalance;
+
+import com.invest.management.analysis.AnalysisDataVersion;
+import com.invest.management.moex.MoexStock;
+import com.invest.management.moex.MoexStockRepository;
+import com.invest.management.moex.bond.Bond;
+import com.invest.management.moex.bond.BondRepository;
+import com.invest.management.moex.fx.FxRateService;
+import com.invest.management.moex.fx.FxRates;
+import com.invest.management.portfolio.Portfolio;
+import com.invest.management.portfolio.PortfolioPosition;
+import com.invest.management.portfolio.PortfolioPositionsChangedEvent;
+import com.invest.management.portfolio.PortfolioTarget;
+import com.invest.management.portfolio.PortfolioTargetRepository;
+import com.invest.management.portfolio.PortfolioValueService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Целевые доли портфеля и план ребалансировки к ним
+ * Оценка портфеля ({@link PortfolioValueService}) кэшируется по версии позиций и цен, план - по оценке
+ * и набору целей, поэтому при редактировании целей пересчитывается только {@link RebalanceSolver}.
+ */
+@Service
+public class RebalanceService {
+
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+    private static final int MAX_TARGETS = 200;
+
+    private final PortfolioTargetRepository targetRepository;
+    private final PortfolioValueService portfolioValueService;
+    private final MoexStockRepository stockRepository;
+    private final BondRepository bondRepository;
+    private final AnalysisDataVersion dataVersion;
+    private final FxRateService fxRateService;
+
+    /**
+     * Допустимое отклонение доли цели (в процентных пунктах), внутри которого сделки не предлагаются
+     */
+    @Value("${portfolio.rebalance.tolerance-percent:0.5}")
+    private double tolerancePercent;
+
+    /**
+     * Сколько секунд оценка портфеля используется повторно (цены ALOR обновляются без смены версии данных)
+     */
+    @Value("${portfolio.rebalance.valuation-ttl-seconds:60}")
+    private long valuationTtlSeconds;
+
+    private final Map<Long, AtomicLong> positionVersions = new ConcurrentHashMap<>();
+    private final Map<Long, CachedValuation> valuations = new ConcurrentHashMap<>();
+    private final Map<Long, CachedPlan> plans = new ConcurrentHashMap<>();
+
+    public RebalanceService(PortfolioTargetRepository targetRepository,
+                            PortfolioValueService portfolioValueService,
+                            MoexStockRepository stockRepository,
+                            BondRepository bondRepository,
+                            AnalysisDataVersion dataVersion,
+                            FxRateService fxRateService) {
+        this.targetRepository = targetRepository;
+        this.portfolioValueService = portfolioValueService;
+        this.stockRepository = stockRepository;
+        this.bondRepository = bondRepository;
+        this.dataVersion = dataVersion;
+        this.fxRateService = fxRateService;
+    }
+
+    @Transactional(readOnly = true)
+    public List<TargetWeight> getTargets(Portfolio portfolio) {
+        return targetRepository.findByPortfolioOrderByTargetTypeAscTargetKeyAsc(portfolio).stream()
+            .map(target -> new TargetWeight(target.getTargetType(), target.getTargetKey(), target.getWeightPercent()))
+            .toList();
+    }
+
+    /**
+     * Заменяет цели портфеля
+     */
+    @Transactional
+    public List<TargetWeight> saveTargets(Portfolio portfolio, List<TargetWeight> targets) {
+        List<TargetWeight> normalized = validate(targets);
+        targetRepository.deleteByPortfolio(portfolio);
+        List<PortfolioTarget> entities = new ArrayList<>(normalized.size());
+        for (TargetWeight weight : normalized) {
+            PortfolioTarget target = new PortfolioTarget();
+            target.setPortfolio(portfolio);
+            target.setTargetType(weight.type());
+            target.setTargetKey(weight.key());
+            target.setWeightPercent(weight.weightPercent());
+            entities.add(target);
+        }
+        targetRepository.saveAll(entities);
+        return normalized;
+    }
+
+    /**
+     * План ребалансировки к сохраненным целям
+     */
+    @Transactional(readOnly = true)
+    public RebalancePlan plan(Portfolio portfolio) {
+        return plan(portfolio, getTargets(portfolio));
+    }
+
+    /**
+     * План ребалансировки к переданным (в том числе еще не сохраненным) целям
+     */
+    @Transactional(readOnly = true)
+    public RebalancePlan plan(Portfolio portfolio, List<TargetWeight> targets) {
+        List<TargetWeight> normalized = validate(targets);
+        Valuation valuation = valuation(portfolio);
+
+        CachedPlan cached = plans.get(portfolio.getId());
+        if (cached != null && cached.valuation() == valuation && cached.targets().equals(normalized)) {
+            return cached.plan();
+        }
+        RebalancePlan plan = solve(valuation, normalized);
+        plans.put(portfolio.getId(), new CachedPlan(valuation, normalized, plan));
+        return plan;
+    }
+
+    @EventListener
+    public void onPositionsChanged(PortfolioPositionsChangedEvent event) {
+        positionVersions.computeIfAbsent(event.portfolioId(), id -> new AtomicLong()).incrementAndGet();
+        valuations.remove(event.portfolioId());
+        plans.remove(event.portfolioId());
+    }
+
+    private List<TargetWeight> validate(List<TargetWeight> targets) {
+        if (targets == null) {
+            return List.of();
+        }
+        if (targets.size() > MAX_TARGETS) {
+            throw new IllegalArgumentException("Слишком много целей: " + targets.size() + " (не более " + MAX_TARGETS + ")");
+        }
+        List<TargetWeight> normalized = new ArrayList<>(targets.size());
+        Set<String> keys = new HashSet<>();
+        BigDecimal total = BigDecimal.ZERO;
+        for (TargetWeight target : targets) {
+            TargetWeight weight = target.normalized();
+            if (!PortfolioTarget.TYPE_INSTRUMENT.equals(weight.type()) && !PortfolioTarget.TYPE_SECTOR.equals(weight.type())) {
+                throw new IllegalArgumentException("Неизвестный тип цели: " + target.type());
+            }
+            if (weight.key() == null || weight.key().isEmpty()) {
+                throw new IllegalArgumentException("Не указана бумага или сектор цели");
+            }
+            if (weight.weightPercent() == null || weight.weightPercent().signum() < 0
+                    || weight.weightPercent().compareTo(HUNDRED) > 0) {
+                throw new IllegalArgumentException("Доля цели " + weight.key() + " должна быть от 0 до 100%");
+            }
+            if (!keys.add(weight.type() + ":" + weight.key())) {
+                throw new IllegalArgumentException("Цель указана дважды: " + weight.key());
+            }
+            total = total.add(weight.weightPercent());
+            normalized.add(weight);
+        }
+        if (total.compareTo(HUNDRED) > 0) {
+            throw new IllegalArgumentException("Сумма целевых долей превышает 100%: " + total.toPlainString());
+        }
+        return List.copyOf(normalized);
+    }
+
+    private Valuation valuation(Portfolio portfolio) {
+        long positions = positionVersions.computeIfAbsent(portfolio.getId(), id -> new AtomicLong()).get();
+        long data = dataVersion.current();
+        long now = System.currentTimeMillis();
+
+        CachedValuation cached = valuations.get(portfolio.getId());
+        if (cached != null && cached.positionsVersion() == positions && cached.dataVersion() == data
+                && now - cached.builtAt() < valuationTtlSeconds * 1000) {
+            return cached.valuation();
+        }
+        Valuation valuation = Valuation.of(portfolioValueService.calculatePortfolioValue(portfolio));
+        valuations.put(portfolio.getId(), new CachedValuation(positions, data, now, valuation));
+        return valuation;
+    }
+
+    private RebalancePlan solve(Valuation valuation, List<TargetWeight> targets) {
+        List<String> warnings = new ArrayList<>();
+        Map<String, Integer> instrumentGroups = new HashMap<>();
+        Map<String, Integer> sectorGroups = new HashMap<>();
+        double[] groupTarget = new double[targets.size()];
+        for (int g = 0; g < targets.size(); g++) {
+            TargetWeight target = targets.get(g);
+            (PortfolioTarget.TYPE_INSTRUMENT.equals(target.type()) ? instrumentGroups : sectorGroups).put(target.key(), g);
+            groupTarget[g] = target.weightPercent().doubleValue() / 100.0 * valuation.totalValue();
+        }
+
+        Valuation problem = valuation.withInstruments(missingInstruments(valuation, instrumentGroups.keySet(), warnings));
+        int count = problem.secids().length;
+        int[] group = new int[count];
+        boolean[] covered = new boolean[targets.size()];
+        for (int i = 0; i < count; i++) {
+            Integer g = instrumentGroups.get(problem.secids()[i]);
+            if (g == null && problem.sectors()[i] != null) {
+                g = sectorGroups.get(problem.sectors()[i]);
+            }
+            group[i] = g != null && problem.prices()[i] > 0 ? g : -1;
+            if (group[i] >= 0) {
+                covered[group[i]] = true;
+            }
+        }
+        for (int g = 0; g < targets.size(); g++) {
+            if (!covered[g] && groupTarget[g] > 0) {
+                warnings.add(PortfolioTarget.TYPE_SECTOR.equals(targets.get(g).type())
+                    ? "В портфеле нет бумаг сектора " + targets.get(g).key() + ": задайте цели по конкретным бумагам"
+                    : "Нет цены для " + targets.get(g).key());
+            }
+        }
+
+        double tolerance = tolerancePercent / 100.0 * valuation.totalValue();
+        long[] delta = RebalanceSolver.solve(problem.prices(), problem.lotSizes(), problem.held(), group,
+            groupTarget, tolerance, valuation.cash());
+
+        List<RebalanceTrade> trades = new ArrayList<>();
+        double cashAfter = valuation.cash();
+        double[] groupCurrent = new double[targets.size()];
+        double[] groupPlanned = new double[targets.size()];
+        for (int i = 0; i < count; i++) {
+            double price = problem.prices()[i];
+            if (group[i] >= 0) {
+                groupCurrent[group[i]] += price * problem.held()[i];
+                groupPlanned[group[i]] += price * (problem.held()[i] + delta[i]);
+            }
+            if (delta[i] == 0) {
+                continue;
+            }
+            long quantity = Math.abs(delta[i]);
+            cashAfter -= delta[i] * price;
+            trades.add(new RebalanceTrade(problem.secids()[i], problem.names()[i], problem.sectors()[i],
+                delta[i] > 0 ? RebalanceTrade.SIDE_BUY : RebalanceTrade.SIDE_SELL,
+                quantity / problem.lotSizes()[i], quantity,
+                BigDecimal.valueOf(price).setScale(4, RoundingMode.HALF_UP),
+                money(quantity * price)));
+        }
+
+        List<RebalancePlan.Allocation> allocations = new ArrayList<>(targets.size());
+        for (int g = 0; g < targets.size(); g++) {
+            TargetWeight target = targets.get(g);
+            allocations.add(new RebalancePlan.Allocation(target.type(), target.key(), target.weightPercent(),
+                percent(groupCurrent[g], valuation.totalValue()), percent(groupPlanned[g], valuation.totalValue())));
+        }
+        return new RebalancePlan(money(valuation.totalValue()), money(valuation.cash()), money(cashAfter),
+            List.copyOf(trades), List.copyOf(allocations), List.copyOf(warnings));
+    }
+
+    /**
+     * Бумаги из целей, которых еще нет в портфеле: цена и лот берутся из справочников MOEX,
+     * цена пересчитывается в базовую валюту портфеля
+     */
+    private Valuation missingInstruments(Valuation valuation, Set<String> targetSecids, List<String> warnings) {
+        FxRates rates = fxRateService.current();
+        Set<String> missing = new LinkedHashSet<>(targetSecids);
+        for (String secid : valuation.secids()) {
+            missing.remove(secid);
+        }
+        List<String> secids = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<String> sectors = new ArrayList<>();
+        List<Double> prices = new ArrayList<>();
+        List<Integer> lotSizes = new ArrayList<>();
+        if (!missing.isEmpty()) {
+            for (MoexStock stock : stockRepository.findBySecidIn(missing)) {
+                BigDecimal price = rates.convert(stock.getMarketprice(), stock.getCurrencyid(), valuation.currency());
+                if (price != null && missing.remove(stock.getSecid())) {
+                    secids.add(stock.getSecid());
+                    names.add(stock.getShortname());
+                    sectors.add(stock.getIssuerSector());
+                    prices.add(price.doubleValue());
+                    lotSizes.add(stock.getLotsize());
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Bond bond : bondRepository.findBySecidIn(missing)) {
+                BigDecimal price = bond.toAbsolutePrice(bond.getMarketprice());
+                if (price != null && bond.getAccruedInterest() != null) {
+                    price = price.add(bond.getAccruedInterest());
+                }
+                price = rates.convert(price, bond.getFaceCurrency(), valuation.currency());
+                if (price != null && missing.remove(bond.getSecid())) {
+                    secids.add(bond.getSecid());
+                    names.add(bond.getShortname());
+                    sectors.add(bond.getIssuerSector());
+                    prices.add(price.doubleValue());
+                    lotSizes.add(bond.getLotsize());
+                }
+            }
+        }
+        for (String secid : missing) {
+            warnings.add("Бумага " + secid + " не найдена в справочниках MOEX или для нее нет цены");
+        }
+        return Valuation.of(secids, names, sectors, prices, lotSizes, new ArrayList<>(), 0.0, 0.0, valuation.currency());
+    }
+
+    private static BigDecimal money(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal percent(double value, double total) {
+        return total > 0 ? BigDecimal.valueOf(value / total * 100.0).setScale(2, RoundingMode.HALF_UP) : BigDecimal.ZERO;
+    }
+
+    /**
+     * Оценка портфеля в базовой валюте в виде массивов для {@link RebalanceSolver}
+     * Цена облигаций включает НКД, который уплачивается при покупке
+     */
+    record Valuation(String[] secids, String[] names, String[] sectors, double[] prices, int[] lotSizes,
+                     long[] held, double cash, double totalValue, String currency) {
+
+        static Valuation of(PortfolioValueService.PortfolioValue value) {
+            List<String> secids = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            List<String> sectors = new ArrayList<>();
+            List<Double> prices = new ArrayList<>();
+            List<Integer> lotSizes = new ArrayList<>();
+            List<Long> held = new ArrayList<>();
+            for (PortfolioValueService.PositionValue positionValue : value.getPositions()) {
+                PortfolioPosition position = positionValue.getPosition();
+                BigDecimal quantity = position.getQuantity();
+                if (quantity == null || quantity.signum() <= 0 || positionValue.getCurrentValue() == null) {
+                    continue;
+                }
+                MoexStock stock = position.getMoexStock();
+                Bond bond = position.getMoexBond();
+                secids.add(stock != null ? stock.getSecid() : bond != null ? bond.getSecid() : position.getIsin());
+                names.add(positionValue.getShortName());
+                sectors.add(stock != null ? stock.getIssuerSector() : bond != null ? bond.getIssuerSector() : null);
+                prices.add(positionValue.getCurrentValue().doubleValue() / quantity.doubleValue());
+                lotSizes.add(stock != null ? stock.getLotsize() : bond != null ? bond.getLotsize() : null);
+                held.add(quantity.longValue());
+            }
+            double cash = value.getCashBalance() != null ? value.getCashBalance().doubleValue() : 0.0;
+            return of(secids, names, sectors, prices, lotSizes, held, cash, value.getTotalValue().doubleValue(),
+                value.getBaseCurrency());
+        }
+
+        static Valuation of(List<String> secids, List<String> names, List<String> sectors, List<Double> prices,
+                            List<Integer> lotSizes, List<Long> held, double cash, double totalValue, String currency) {
+            int count = secids.size();
+            double[] priceArray = new double[count];
+            int[] lotArray = new int[count];
+            long[] heldArray = new long[count];
+            for (int i = 0; i < count; i++) {
+                priceArray[i] = prices.get(i);
+                Integer lotSize = lotSizes.get(i);
+                lotArray[i] = lotSize != null && lotSize > 0 ? lotSize : 1;
+                heldArray[i] = i < held.size() ? held.get(i) : 0L;
+            }
+            return new Valuation(secids.toArray(String[]::new), names.toArray(String[]::new),
+                sectors.toArray(String[]::new), priceArray, lotArray, heldArray, cash, totalValue, currency);
+        }
+
+        /**
+         * Оценка, дополненная бумагами без позиции (количество 0)
+         */
+        Valuation withInstruments(Valuation extra) {
+            if (extra.secids().length == 0) {
+                return this;
+            }
+            int count = secids.length;
+            int total = count + extra.secids().length;
+            String[] allSecids = Arrays.copyOf(secids, total);
+            String[] allNames = Arrays.copyOf(names, total);
+            String[] allSectors = Arrays.copyOf(sectors, total);
+            double[] allPrices = Arrays.copyOf(prices, total);
+            int[] allLots = Arrays.copyOf(lotSizes, total);
+            System.arraycopy(extra.secids(), 0, allSecids, count, extra.secids().length);
+            System.arraycopy(extra.names(), 0, allNames, count, extra.secids().length);
+            System.arraycopy(extra.sectors(), 0, allSectors, count, extra.secids().length);
+            System.arraycopy(extra.prices(), 0, allPrices, count, extra.secids().length);
+            System.arraycopy(extra.lotSizes(), 0, allLots, count, extra.secids().length);
+            return new Valuation(allSecids, allNames, allSectors, allPrices, allLots,
+                Arrays.copyOf(held, total), cash, totalValue, currency);
+        }
+    }
+
+    private record CachedValuation(long positionsVersion, long dataVersion, long builtAt, Valuation valuation) {
+    }
+
+    private record CachedPlan(Valuation valuation, List<TargetWeight> targets, RebalancePlan plan) {
+    }
+}
@@ -0,0 +1,113 @@
+package com.invest.management.rebalance;
+
+/**
+ * Подбор сделок для приближения портфеля к целевым долям с учетом лотности и свободных средств
+ * Работает на массивах примитивов без промежуточных объектов, поэтому пересчет плана при
+ * каждом изменении целей занимает микросекунды даже для крупных портфелей.
+ * Сделки минимальны: цель в пределах допуска не торгуется, продажа и покупка округляются
+ * до целого лота, только если это уменьшает отклонение от цели.
+ */
+final class RebalanceSolver {
+
+    private RebalanceSolver() {
+    }
+
+    /**
+     * @param price цена одной бумаги в рублях
+     * @param lotSize размер лота
+     * @param held количество бумаг в портфеле
+     * @param group индекс цели бумаги или -1, если бумага не входит ни в одну цель и не торгуется
+     * @param groupTarget целевая стоимость каждой цели в рублях
+     * @param tolerance допустимое отклонение стоимости цели в рублях
+     * @param cash свободные денежные средства
+     * @return изменение количества бумаг (положительное - покупка, отрицательное - продажа)
+     */
+    static long[] solve(double[] price, int[] lotSize, long[] held, int[] group,
+                        double[] groupTarget, double tolerance, double cash) {
+        int count = price.length;
+        double[] groupCurrent = new double[groupTarget.length];
+        int[] groupMembers = new int[groupTarget.length];
+        for (int i = 0; i < count; i++) {
+            if (group[i] >= 0) {
+                groupCurrent[group[i]] += price[i] * held[i];
+                groupMembers[group[i]]++;
+            }
+        }
+
+        // Целевая стоимость бумаги: внутри сектора сохраняются текущие пропорции
+        double[] target = new double[count];
+        for (int i = 0; i < count; i++) {
+            int g = group[i];
+            double current = price[i] * held[i];
+            if (g < 0 || Math.abs(groupTarget[g] - groupCurrent[g]) <= tolerance) {
+                target[i] = current;
+            } else if (groupCurrent[g] > 0) {
+                target[i] = current / groupCurrent[g] * groupTarget[g];
+            } else {
+                target[i] = groupTarget[g] / groupMembers[g];
+            }
+        }
+
+        long[] delta = new long[count];
+        double available = cash;
+
+        // Продажи: освобождают средства для покупок
+        for (int i = 0; i < count; i++) {
+            double excess = price[i] * held[i] - target[i];
+            if (excess <= 0 || held[i] == 0) {
+                continue;
+            }
+            long quantity;
+            if (target[i] <= 0) {
+                quantity = held[i];
+            } else {
+                double lotValue = price[i] * lotSize[i];
+                quantity = Math.min(Math.round(excess / lotValue) * lotSize[i], held[i]);
+            }
+            delta[i] = -quantity;
+            available += quantity * price[i];
+        }
+
+        // Покупки: сначала целые лоты в пределах недостающей суммы, при нехватке средств - пропорционально
+        long[] lots = new long[count];
+        double cost = 0.0;
+        for (int i = 0; i < count; i++) {
+            double need = target[i] - price[i] * held[i];
+            if (need > 0 && price[i] > 0) {
+                lots[i] = (long) Math.floor(need / (price[i] * lotSize[i]));
+                cost += lots[i] * price[i] * lotSize[i];
+            }
+        }
+        double scale = cost > available ? available / cost : 1.0;
+        for (int i = 0; i < count; i++) {
+            if (lots[i] > 0) {
+                long bought = scale < 1.0 ? (long) Math.floor(lots[i] * scale) : lots[i];
+                delta[i] += bought * lotSize[i];
+                available -= bought * price[i] * lotSize[i];
+            }
+        }
+
+        // Остаток средств - по одному лоту туда, где отставание от цели больше и покупка его уменьшает
+        while (true) {
+            int best = -1;
+            double bestGap = 0.0;
+            for (int i = 0; i < count; i++) {
+                if (group[i] < 0 || price[i] <= 0) {
+                    continue;
+                }
+                double lotValue = price[i] * lotSize[i];
+                double gap = target[i] - price[i] * (held[i] + delta[i]);
+                if (lotValue <= available && gap >= lotValue / 2 && gap > bestGap) {
+                    best = i;
+                    bestGap = gap;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            delta[best] += lotSize[best];
+            available -= price[best] * lotSize[best];
+        }
+        return delta;
+    }
+}
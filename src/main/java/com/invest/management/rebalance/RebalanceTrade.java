@@ -0,0 +1,23 @@
+package com.invest.management.rebalance;
+
+import java.math.BigDecimal;
+
+/**
+ * Сделка плана ребалансировки
+ * @param side BUY или SELL
+ * @param quantity количество бумаг (кратно лоту, кроме полной продажи позиции)
+ * @param price цена одной бумаги в рублях (для облигаций - с НКД)
+ * @param amount сумма сделки в рублях
+ */
+public record RebalanceTrade(String secid,
+                             String shortName,
+                             String sector,
+                             String side,
+                             long lots,
+                             long quantity,
+                             BigDecimal price,
+                             BigDecimal amount) {
+
+    public static final String SIDE_BUY = "BUY";
+    public static final String SIDE_SELL = "SELL";
+}
@@ -0,0 +1,21 @@
+package com.invest.management.rebalance;
+
+import java.math.BigDecimal;
+
+/**
+ * Целевая доля бумаги или сектора
+ * @param type INSTRUMENT или SECTOR ({@link com.invest.management.portfolio.PortfolioTarget})
+ * @param key SECID бумаги или сектор эмитента
+ * @param weightPercent доля от стоимости портфеля, %
+ */
+public record TargetWeight(String type, String key, BigDecimal weightPercent) {
+
+    /**
+     * Приводит значение к виду, в котором одинаковые цели равны друг другу (для ключа кэша)
+     */
+    TargetWeight normalized() {
+        return new TargetWeight(type != null ? type.trim().toUpperCase() : null,
+            key != null ? key.trim() : null,
+            weightPercent != null ? weightPercent.stripTrailingZeros() : null);
+    }
+}
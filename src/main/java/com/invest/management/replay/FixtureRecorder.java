@@ -0,0 +1,105 @@
+package com.invest.management.replay;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Запись успешных ответов внешних API в {@link FixtureStore}
+ * Перехватчик подключается к RestTemplate клиентов MOEX и ALOR, поэтому записываются
+ * ответы MoexApiClient, MoexPriceUpdater и AlorApiClient без изменения их кода.
+ * Ответы OAuth ALOR (/refresh с Access Token) не записываются: стаб-сервер выдает свой токен.
+ * Остальные ответы ALOR содержат позиции и сделки счета, поэтому каталог записей не коммитится.
+ */
+@Component
+@ConditionalOnProperty(name = "replay.record.enabled", havingValue = "true")
+public class FixtureRecorder {
+
+    private final FixtureStore store;
+
+    public FixtureRecorder(FixtureStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @param service пространство имен записей (moex, alor)
+     */
+    public ClientHttpRequestInterceptor interceptor(String service) {
+        return (request, body, execution) -> {
+            ClientHttpResponse response = execution.execute(request, body);
+            if (!response.getStatusCode().is2xxSuccessful() || isOAuth(request.getURI())) {
+                return response;
+            }
+            byte[] raw;
+            try (InputStream in = response.getBody()) {
+                raw = in.readAllBytes();
+            }
+            store.save(service, request.getMethod().name(), request.getURI().getRawPath(),
+                request.getURI().getRawQuery(), decode(raw, response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)));
+            return new BufferedResponse(response, raw);
+        };
+    }
+
+    private static boolean isOAuth(URI uri) {
+        String host = uri.getHost();
+        String path = uri.getPath();
+        return (host != null && host.toLowerCase(Locale.ROOT).startsWith("oauth"))
+            || (path != null && path.endsWith("/refresh"));
+    }
+
+    private static byte[] decode(byte[] raw, String encoding) throws IOException {
+        if ("gzip".equalsIgnoreCase(encoding)) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(raw))) {
+                return in.readAllBytes();
+            }
+        }
+        if ("deflate".equalsIgnoreCase(encoding)) {
+            try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(raw))) {
+                return in.readAllBytes();
+            }
+        }
+        return raw;
+    }
+
+    /**
+     * Ответ с уже прочитанным телом: клиент получает те же байты и заголовки, что пришли от сервера
+     */
+    private record BufferedResponse(ClientHttpResponse delegate, byte[] body) implements ClientHttpResponse {
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
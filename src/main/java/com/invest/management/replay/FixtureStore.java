@@ -0,0 +1,93 @@
+package com.invest.management.replay;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Хранилище записанных ответов внешних API (MOEX ISS, ALOR) в сжатых файлах
+ * Ключ ответа - сервис, HTTP-метод, путь и параметры запроса без токенов.
+ * Файл: {fixtures-dir}/{service}/{путь}-{хэш ключа}.json.gz, тело хранится раскодированным.
+ */
+@Component
+public class FixtureStore {
+
+    private static final Logger log = LoggerFactory.getLogger(FixtureStore.class);
+    private static final Pattern SECRET_PARAM = Pattern.compile("(^|&)(token|refreshToken)=[^&]*", Pattern.CASE_INSENSITIVE);
+    private static final Pattern UNSAFE_CHARS = Pattern.compile("[^A-Za-z0-9._-]+");
+    private static final int MAX_NAME_LENGTH = 80;
+
+    private final Path root;
+
+    public FixtureStore(@Value("${replay.fixtures-dir:fixtures}") String fixturesDir) {
+        this.root = Paths.get(fixturesDir);
+    }
+
+    public void save(String service, String method, String path, String query, byte[] body) {
+        Path file = resolve(service, method, path, query);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), "fixture", ".tmp");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                out.write(body);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Записан ответ {} {} {} -> {}", service, method, path, file);
+        } catch (IOException ex) {
+            log.warn("Не удалось записать ответ {} {} {}: {}", service, method, path, ex.getMessage());
+        }
+    }
+
+    public Optional<byte[]> find(String service, String method, String path, String query) {
+        Path file = resolve(service, method, path, query);
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            return Optional.of(in.readAllBytes());
+        } catch (IOException ex) {
+            log.warn("Не удалось прочитать записанный ответ {}: {}", file, ex.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    Path resolve(String service, String method, String path, String query) {
+        String cleanQuery = query != null ? SECRET_PARAM.matcher(query).replaceAll("") : "";
+        if (cleanQuery.startsWith("&")) {
+            cleanQuery = cleanQuery.substring(1);
+        }
+        String key = method + " " + path + (cleanQuery.isEmpty() ? "" : "?" + cleanQuery);
+
+        String name = UNSAFE_CHARS.matcher(path).replaceAll("_").replaceAll("^_+|_+$", "");
+        if (name.length() > MAX_NAME_LENGTH) {
+            name = name.substring(0, MAX_NAME_LENGTH);
+        }
+        return root.resolve(service).resolve(name + "-" + hash(key) + ".json.gz");
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.invest.management.replay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Встроенный HTTP-сервер, воспроизводящий MOEX ISS и ALOR для прогонов без сети
+ * Сервер обслуживает префиксы /moex и /alor; чтобы направить на него клиентов, достаточно
+ * указать базовые адреса, например moex.api.base-url=http://localhost:18090/moex/iss и
+ * alor.api.production-base-url=http://localhost:18090/alor (так же для OAuth-адресов).
+ * Ответ ищется сначала в синтетическом рынке (если задан replay.stub.synthetic-tickers),
+ * затем среди записанных {@link FixtureRecorder} ответов; иначе возвращается 404.
+ */
+@Component
+@ConditionalOnProperty(name = "replay.stub.enabled", havingValue = "true")
+public class FixtureStubServer {
+
+    private static final Logger log = LoggerFactory.getLogger(FixtureStubServer.class);
+    private static final String[] SERVICES = {"moex", "alor"};
+
+    private final FixtureStore store;
+    private final SyntheticMarket syntheticMarket;
+    private final int port;
+    private final int threads;
+
+    /**
+     * Задержка ответа и случайная добавка к ней (мс)
+     */
+    @Value("${replay.stub.latency-ms:0}")
+    private long latencyMs;
+
+    @Value("${replay.stub.latency-jitter-ms:0}")
+    private long latencyJitterMs;
+
+    /**
+     * Доля запросов (0..1), на которые отвечается 503
+     */
+    @Value("${replay.stub.error-rate:0}")
+    private double errorRate;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public FixtureStubServer(FixtureStore store,
+                             ObjectMapper objectMapper,
+                             @Value("${replay.stub.port:18090}") int port,
+                             @Value("${replay.stub.threads:16}") int threads,
+                             @Value("${replay.stub.synthetic-tickers:0}") int syntheticTickers) {
+        this.store = store;
+        this.syntheticMarket = syntheticTickers > 0 ? new SyntheticMarket(syntheticTickers, objectMapper) : null;
+        this.port = port;
+        this.threads = threads;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "replay-stub-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        for (String service : SERVICES) {
+            server.createContext("/" + service, exchange -> handle(service, exchange));
+        }
+        server.setExecutor(executor);
+        server.start();
+        log.info("Стаб-сервер MOEX/ALOR запущен на порту {} (синтетический рынок: {}, задержка {}+{} мс, ошибки {})",
+            port, syntheticMarket != null ? "да" : "нет", latencyMs, latencyJitterMs, errorRate);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(String service, HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getRawPath().substring(service.length() + 1);
+            String query = exchange.getRequestURI().getRawQuery();
+            pause();
+
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                respond(exchange, 503, "{\"error\":\"stub failure\"}".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+
+            Optional<byte[]> body = Optional.empty();
+            if (syntheticMarket != null) {
+                body = "moex".equals(service) ? syntheticMarket.moex(path) : syntheticMarket.alor(path);
+            }
+            if (body.isEmpty()) {
+                body = store.find(service, exchange.getRequestMethod(), path, query);
+            }
+            if (body.isPresent()) {
+                respond(exchange, 200, body.get());
+            } else {
+                log.debug("Нет записанного ответа для {} {} {}?{}", service, exchange.getRequestMethod(), path, query);
+                respond(exchange, 404, "{\"error\":\"fixture not found\"}".getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (Exception ex) {
+            log.warn("Ошибка стаб-сервера при обработке {}: {}", exchange.getRequestURI(), ex.getMessage());
+        }
+    }
+
+    private void pause() {
+        long delay = latencyMs + (latencyJitterMs > 0 ? ThreadLocalRandom.current().nextLong(latencyJitterMs + 1) : 0);
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.invest.management.replay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Синтетический рынок заданного размера для нагрузочных прогонов
+ * Отвечает на списки бумаг площадок MOEX ISS (акции и облигации), котировки и позиции ALOR;
+ * базовая цена бумаги определяется ее номером или тикером, при каждом запросе цена
+ * немного смещается, чтобы обновления цен находили изменения.
+ */
+final class SyntheticMarket {
+
+    private static final Pattern MOEX_BOARD = Pattern.compile(
+        "^/iss/engines/stock/markets/(shares|bonds)/boards/([A-Za-z0-9]+)/securities\\.json$");
+    private static final Pattern ALOR_QUOTES = Pattern.compile("^/md/v2/Securities/([^/]+)/quotes$");
+    private static final Pattern ALOR_POSITIONS = Pattern.compile("^/md/v2/Clients/([^/]+)/([^/]+)/positions$");
+    private static final int POSITIONS_PER_PORTFOLIO = 10;
+
+    private static final String[] SHARE_COLUMNS = {"SECID", "BOARDID", "SHORTNAME", "SECNAME", "ISIN", "STATUS",
+        "LOTSIZE", "FACEVALUE", "DECIMALS", "PREVPRICE", "CURRENCYID", "LISTLEVEL", "ISSUESIZE"};
+    private static final String[] BOND_COLUMNS = {"SECID", "BOARDID", "SHORTNAME", "SECNAME", "ISIN", "STATUS",
+        "LOTSIZE", "FACEVALUE", "DECIMALS", "PREVPRICE", "CURRENCYID", "FACEUNIT", "MATURITYDATE",
+        "COUPONPERCENT", "COUPONVALUE", "COUPONPERIOD", "NEXTCOUPON", "BONDTYPE"};
+    private static final String[] MARKET_COLUMNS = {"SECID", "LAST", "MARKETPRICE", "TRADINGSTATUS"};
+
+    private final int tickers;
+    private final ObjectMapper objectMapper;
+
+    SyntheticMarket(int tickers, ObjectMapper objectMapper) {
+        this.tickers = tickers;
+        this.objectMapper = objectMapper;
+    }
+
+    Optional<byte[]> moex(String path) throws IOException {
+        Matcher matcher = MOEX_BOARD.matcher(path);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        boolean bonds = "bonds".equals(matcher.group(1));
+        String board = matcher.group(2).toUpperCase();
+
+        ObjectNode root = objectMapper.createObjectNode();
+        ArrayNode securities = table(root, "securities", bonds ? BOND_COLUMNS : SHARE_COLUMNS);
+        ArrayNode marketdata = table(root, "marketdata", MARKET_COLUMNS);
+        LocalDate today = LocalDate.now();
+        for (int i = 1; i <= tickers; i++) {
+            String secid = (bonds ? "SYN" + board : "SYN") + String.format("%05d", i);
+            BigDecimal prevprice = bonds
+                ? price(90.0 + i % 15, 2)
+                : price(10.0 + (i * 37L) % 5000, 2);
+            ArrayNode row = securities.addArray()
+                .add(secid).add(board).add(secid).add("Синтетическая бумага " + i)
+                .add(isin(bonds ? board.charAt(2) : 'S', i)).add("A")
+                .add(bonds ? 1 : 10).add(bonds ? 1000 : 1).add(2).add(prevprice).add("SUR");
+            if (bonds) {
+                row.add("SUR")
+                    .add(today.plusDays(180L + (i * 11L) % 3600).toString())
+                    .add(5.0 + i % 12).add(25.0 + i % 40).add(182)
+                    .add(today.plusDays(1L + i % 182).toString())
+                    .add(i % 3 == 0 ? "Государственные облигации" : "Корпоративные облигации");
+            } else {
+                row.add(i % 4 == 0 ? 2 : 1).add(1_000_000L * (1 + i % 100));
+            }
+            BigDecimal last = drift(prevprice);
+            marketdata.addArray().add(secid).add(last).add(last).add("T");
+        }
+        return Optional.of(objectMapper.writeValueAsBytes(root));
+    }
+
+    Optional<byte[]> alor(String path) throws IOException {
+        if (path.equals("/refresh")) {
+            ObjectNode token = objectMapper.createObjectNode();
+            token.put("AccessToken", "stub-access-token");
+            return Optional.of(objectMapper.writeValueAsBytes(token));
+        }
+        Matcher positions = ALOR_POSITIONS.matcher(path);
+        if (positions.matches()) {
+            return Optional.of(objectMapper.writeValueAsBytes(positions(positions.group(1), positions.group(2))));
+        }
+        Matcher matcher = ALOR_QUOTES.matcher(path);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        ArrayNode quotes = objectMapper.createArrayNode();
+        for (String instrument : matcher.group(1).split(",")) {
+            int separator = instrument.indexOf(':');
+            String exchange = separator > 0 ? instrument.substring(0, separator) : "MOEX";
+            String symbol = separator > 0 ? instrument.substring(separator + 1) : instrument;
+            BigDecimal close = price(10.0 + Math.floorMod(symbol.hashCode(), 5000), 2);
+            BigDecimal last = drift(close);
+            quotes.addObject()
+                .put("symbol", symbol)
+                .put("exchange", exchange)
+                .put("last_price", last)
+                .put("bid", last.subtract(new BigDecimal("0.01")))
+                .put("ask", last.add(new BigDecimal("0.01")))
+                .put("prev_close_price", close);
+        }
+        return Optional.of(objectMapper.writeValueAsBytes(quotes));
+    }
+
+    /**
+     * Позиции портфеля ALOR: первые акции синтетического справочника
+     */
+    private ArrayNode positions(String exchange, String portfolio) {
+        ArrayNode positions = objectMapper.createArrayNode();
+        for (int i = 1; i <= Math.min(tickers, POSITIONS_PER_PORTFOLIO); i++) {
+            String secid = "SYN" + String.format("%05d", i);
+            BigDecimal avgPrice = price(10.0 + (i * 37L) % 5000, 2);
+            BigDecimal currentPrice = drift(avgPrice);
+            BigDecimal qty = BigDecimal.valueOf(10L * i);
+            positions.addObject()
+                .put("symbol", secid)
+                .put("isin", isin('S', i))
+                .put("brokerSymbol", exchange + ":" + secid)
+                .put("exchange", exchange)
+                .put("board", "TQBR")
+                .put("qty", qty)
+                .put("qtyUnits", qty)
+                .put("lotSize", 1)
+                .put("avgPrice", avgPrice)
+                .put("currentPrice", currentPrice)
+                .put("volume", avgPrice.multiply(qty))
+                .put("currentVolume", currentPrice.multiply(qty))
+                .put("currency", "RUB")
+                .put("shortName", secid)
+                .put("securityType", "STOCK")
+                .put("isCurrency", false)
+                .put("portfolio", portfolio)
+                .put("existing", true);
+        }
+        return positions;
+    }
+
+    /**
+     * Синтетический ISIN длиной 12 символов, уникальный для площадки и номера бумаги
+     */
+    static String isin(char kind, int number) {
+        return String.format("RU%c%09d", kind, number);
+    }
+
+    private ArrayNode table(ObjectNode root, String name, String[] columns) {
+        ObjectNode table = root.putObject(name);
+        ArrayNode columnsNode = table.putArray("columns");
+        for (String column : columns) {
+            columnsNode.add(column);
+        }
+        return table.putArray("data");
+    }
+
+    private static BigDecimal drift(BigDecimal price) {
+        double change = ThreadLocalRandom.current().nextGaussian() * 0.01;
+        return price(price.doubleValue() * (1.0 + change), 2);
+    }
+
+    private static BigDecimal price(double value, int scale) {
+        return BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP);
+    }
+}
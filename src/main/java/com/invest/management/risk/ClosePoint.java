@@ -0,0 +1,9 @@
+package com.invest.management.risk;
+
+import java.time.LocalDate;
+
+/**
+ * Цена закрытия без загрузки сущности (для построения матрицы доходностей)
+ */
+public record ClosePoint(String secid, LocalDate tradeDate, double close) {
+}
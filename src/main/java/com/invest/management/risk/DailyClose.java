@@ -0,0 +1,55 @@
+package com.invest.management.risk;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Цена закрытия инструмента за торговый день (MOEX ISS history)
+ */
+@Entity
+@Table(name = "moex_daily_closes",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"secid", "trade_date"}))
+public class DailyClose {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 20)
+    private String secid;
+
+    @Column(name = "trade_date", nullable = false)
+    private LocalDate tradeDate;
+
+    @Column(nullable = false, precision = 18, scale = 6)
+    private BigDecimal close;
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getSecid() {
+        return secid;
+    }
+
+    public void setSecid(String secid) {
+        this.secid = secid;
+    }
+
+    public LocalDate getTradeDate() {
+        return tradeDate;
+    }
+
+    public void setTradeDate(LocalDate tradeDate) {
+        this.tradeDate = tradeDate;
+    }
+
+    public BigDecimal getClose() {
+        return close;
+    }
+
+    public void setClose(BigDecimal close) {
+        this.close = close;
+    }
+}
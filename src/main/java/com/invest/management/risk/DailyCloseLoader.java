@@ -0,0 +1,173 @@
+package com.invest.management.risk;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.invest.management.config.WorkerThreads;
+import com.invest.management.moex.common.MoexApiClient;
+import com.invest.management.moex.common.MoexResponseParser;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Инкрементальная загрузка цен закрытия из MOEX ISS history
+ * Для каждого инструмента запрашиваются только дни после последней сохраненной даты;
+ * запросы выполняются параллельно под общим ограничением {@link MoexApiClient}.
+ */
+@Service
+public class DailyCloseLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(DailyCloseLoader.class);
+    private static final int MAX_PAGES = 100;
+
+    private final MoexApiClient apiClient;
+    private final MoexResponseParser parser;
+    private final DailyCloseRepository closeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+
+    /**
+     * Глубина первой загрузки истории (в днях)
+     */
+    @Value("${portfolio.risk.history-days:1100}")
+    private long historyDays;
+
+    public DailyCloseLoader(MoexApiClient apiClient,
+                            MoexResponseParser parser,
+                            DailyCloseRepository closeRepository,
+                            TransactionTemplate transactionTemplate,
+                            WorkerThreads workerThreads,
+                            @Value("${portfolio.risk.history-parallelism:4}") int parallelism) {
+        this.apiClient = apiClient;
+        this.parser = parser;
+        this.closeRepository = closeRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism), workerThreads.factory("moex-history-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Догружает цены закрытия по инструментам
+     * @return количество сохраненных дней
+     */
+    public int loadMissing(Collection<HistorySource> sources) {
+        LocalDate today = LocalDate.now();
+        List<CompletableFuture<Integer>> loads = sources.stream()
+            .map(source -> CompletableFuture.supplyAsync(() -> load(source, today), executor))
+            .toList();
+
+        int saved = 0;
+        for (CompletableFuture<Integer> load : loads) {
+            try {
+                saved += load.join();
+            } catch (Exception ex) {
+                log.warn("Ошибка при загрузке истории цен: {}", ex.getMessage());
+            }
+        }
+        log.info("История цен MOEX: инструментов {}, сохранено дней {}", sources.size(), saved);
+        return saved;
+    }
+
+    private int load(HistorySource source, LocalDate today) {
+        LocalDate last = closeRepository.findLastTradeDate(source.secid());
+        LocalDate from = last != null ? last.plusDays(1) : today.minusDays(historyDays);
+        if (from.isAfter(today)) {
+            return 0;
+        }
+
+        List<DailyClose> closes = new ArrayList<>();
+        int start = 0;
+        for (int page = 0; page < MAX_PAGES; page++) {
+            String path = String.format("%s?iss.meta=off&history.columns=TRADEDATE,CLOSE&from=%s&start=%d",
+                source.path(), from, start);
+            JsonNode root = apiClient.fetch(path);
+            if (root == null) {
+                log.warn("Не удалось получить историю цен MOEX для {}", source.secid());
+                break;
+            }
+            int rows = readHistory(root.get("history"), source.secid(), closes);
+            Integer total = readTotal(root.get("history.cursor"));
+            start += rows;
+            if (rows == 0 || total == null || start >= total) {
+                break;
+            }
+        }
+
+        if (closes.isEmpty()) {
+            return 0;
+        }
+        transactionTemplate.executeWithoutResult(status -> closeRepository.saveAll(closes));
+        return closes.size();
+    }
+
+    private int readHistory(JsonNode history, String secid, List<DailyClose> closes) {
+        if (history == null || history.isMissingNode()) {
+            return 0;
+        }
+        Map<String, Integer> index = parser.indexMap(parser.readColumns(history));
+        int rows = 0;
+        for (JsonNode row : history.withArray("data")) {
+            rows++;
+            LocalDate date = parser.readDate(row, index, "tradedate");
+            BigDecimal close = parser.readDecimal(row, index, "close");
+            // В дни без сделок MOEX возвращает строку без цены закрытия
+            if (date == null || close == null || close.signum() <= 0) {
+                continue;
+            }
+            DailyClose dailyClose = new DailyClose();
+            dailyClose.setSecid(secid);
+            dailyClose.setTradeDate(date);
+            dailyClose.setClose(close);
+            closes.add(dailyClose);
+        }
+        return rows;
+    }
+
+    /**
+     * Общее количество строк истории из курсора постраничной выдачи MOEX
+     */
+    private Integer readTotal(JsonNode cursorNode) {
+        if (cursorNode == null || cursorNode.isMissingNode()) {
+            return null;
+        }
+        Map<String, Integer> index = parser.indexMap(parser.readColumns(cursorNode));
+        JsonNode data = cursorNode.withArray("data");
+        return data.isEmpty() ? null : parser.readInteger(data.get(0), index, "total");
+    }
+
+    /**
+     * Инструмент и путь к его истории в MOEX ISS
+     */
+    public record HistorySource(String secid, String path) {
+
+        public static HistorySource stock(String secid, String boardId) {
+            return new HistorySource(secid, String.format("/history/engines/stock/markets/shares/boards/%s/securities/%s.json",
+                boardId != null ? boardId : "TQBR", secid));
+        }
+
+        public static HistorySource bond(String secid, String boardId) {
+            return new HistorySource(secid, String.format("/history/engines/stock/markets/bonds/boards/%s/securities/%s.json",
+                boardId != null ? boardId : "TQCB", secid));
+        }
+
+        public static HistorySource index(String secid) {
+            return new HistorySource(secid, String.format("/history/engines/stock/markets/index/boards/SNDX/securities/%s.json", secid));
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.invest.management.risk;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface DailyCloseRepository extends JpaRepository<DailyClose, Long> {
+
+    @Query("SELECT MAX(c.tradeDate) FROM DailyClose c WHERE c.secid = :secid")
+    LocalDate findLastTradeDate(@Param("secid") String secid);
+
+    @Query("SELECT new com.invest.management.risk.ClosePoint(c.secid, c.tradeDate, CAST(c.close AS double)) " +
+           "FROM DailyClose c WHERE c.secid IN :secids AND c.tradeDate >= :from ORDER BY c.tradeDate")
+    List<ClosePoint> findClosePoints(@Param("secids") Collection<String> secids, @Param("from") LocalDate from);
+}
@@ -0,0 +1,35 @@
+package com.invest.management.risk;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Риск-метрики портфеля по дневным доходностям бумаг с текущими весами позиций
+ * @param asOf последний торговый день истории
+ * @param observations количество дневных доходностей в расчете
+ * @param investedValue стоимость бумаг портфеля (без свободных денежных средств)
+ * @param coveragePercent доля стоимости бумаг, для которых есть история цен
+ * @param volatilityPercent годовая волатильность за все окно, %
+ * @param shortVolatilityPercent годовая волатильность за последний месяц, %
+ * @param beta бета к индексу
+ * @param correlationToIndex корреляция доходности портфеля с индексом
+ * @param var95 однодневный исторический VaR 95% в рублях (ожидаемый убыток, положительное число)
+ * @param var99 однодневный исторический VaR 99% в рублях
+ * @param instruments бумаги, вошедшие в расчет
+ * @param correlations матрица корреляций доходностей бумаг в порядке instruments
+ */
+public record PortfolioRisk(Long portfolioId,
+                            LocalDate asOf,
+                            int observations,
+                            BigDecimal investedValue,
+                            BigDecimal coveragePercent,
+                            BigDecimal volatilityPercent,
+                            BigDecimal shortVolatilityPercent,
+                            BigDecimal beta,
+                            BigDecimal correlationToIndex,
+                            BigDecimal var95,
+                            BigDecimal var99,
+                            List<String> instruments,
+                            double[][] correlations) {
+}
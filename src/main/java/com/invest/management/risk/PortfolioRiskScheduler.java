@@ -0,0 +1,35 @@
+package com.invest.management.risk;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Ночная догрузка цен закрытия и пересчет риск-метрик всех портфелей
+ */
+@Service
+@ConditionalOnProperty(name = "portfolio.risk.enabled", havingValue = "true", matchIfMissing = true)
+public class PortfolioRiskScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(PortfolioRiskScheduler.class);
+
+    private final DailyCloseLoader closeLoader;
+    private final PortfolioRiskService riskService;
+
+    public PortfolioRiskScheduler(DailyCloseLoader closeLoader, PortfolioRiskService riskService) {
+        this.closeLoader = closeLoader;
+        this.riskService = riskService;
+    }
+
+    @Scheduled(cron = "${portfolio.risk.cron:0 0 4 * * *}")
+    public void refreshScheduled() {
+        try {
+            closeLoader.loadMissing(riskService.historySources());
+            riskService.recalculateAll();
+        } catch (Exception ex) {
+            log.error("Ошибка при пересчете риск-метрик портфелей", ex);
+        }
+    }
+}
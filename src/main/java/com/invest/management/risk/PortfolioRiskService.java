@@ -0,0 +1,298 @@
+package com.invest.management.risk;
+
+import com.invest.management.moex.MoexStock;
+import com.invest.management.moex.bond.Bond;
+import com.invest.management.moex.fx.FxRateService;
+import com.invest.management.moex.fx.FxRates;
+import com.invest.management.portfolio.Portfolio;
+import com.invest.management.portfolio.PortfolioPosition;
+import com.invest.management.portfolio.PortfolioPositionRepository;
+import com.invest.management.portfolio.PortfolioPositionsChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Риск-метрики портфелей: волатильность, бета и корреляция с индексом, исторический VaR
+ * Доходности всех бумаг хранятся в одной матрице {@link ReturnMatrix}, которая перестраивается
+ * ночью после загрузки цен закрытия; портфели считаются параллельно по массивам double.
+ * Метрики портфеля кэшируются и пересчитываются при изменении его позиций.
+ */
+@Service
+public class PortfolioRiskService {
+
+    private static final Logger log = LoggerFactory.getLogger(PortfolioRiskService.class);
+    private static final double TRADING_DAYS = 252.0;
+    private static final int SHORT_WINDOW = 21;
+
+    private final PortfolioPositionRepository positionRepository;
+    private final DailyCloseRepository closeRepository;
+    private final FxRateService fxRateService;
+
+    /**
+     * Индекс, относительно которого считаются бета и корреляция
+     */
+    @Value("${portfolio.risk.market-index:IMOEX}")
+    private String marketIndex;
+
+    /**
+     * Окно расчета (количество торговых дней)
+     */
+    @Value("${portfolio.risk.window-days:250}")
+    private int windowDays;
+
+    private volatile ReturnMatrix matrix;
+    private final Map<Long, PortfolioRisk> risks = new ConcurrentHashMap<>();
+    /**
+     * Ленивое построение матрицы с запросом к БД (без synchronized - см. spring.threads.virtual.enabled)
+     */
+    private final ReentrantLock matrixLock = new ReentrantLock();
+
+    public PortfolioRiskService(PortfolioPositionRepository positionRepository,
+                                DailyCloseRepository closeRepository,
+                                FxRateService fxRateService) {
+        this.positionRepository = positionRepository;
+        this.closeRepository = closeRepository;
+        this.fxRateService = fxRateService;
+    }
+
+    public String getMarketIndex() {
+        return marketIndex;
+    }
+
+    @Transactional(readOnly = true)
+    public PortfolioRisk getRisk(Portfolio portfolio) {
+        PortfolioRisk cached = risks.get(portfolio.getId());
+        if (cached != null) {
+            return cached;
+        }
+        Holdings holdings = Holdings.of(portfolio.getId(), positionRepository.findByPortfolio(portfolio).stream()
+            .filter(position -> position.getQuantity() != null && position.getQuantity().signum() > 0)
+            .toList(), fxRateService.current());
+        PortfolioRisk risk = calculate(holdings, currentMatrix());
+        risks.put(portfolio.getId(), risk);
+        return risk;
+    }
+
+    /**
+     * Перестраивает матрицу доходностей и пересчитывает метрики всех портфелей
+     * @return количество портфелей
+     */
+    @Transactional(readOnly = true)
+    public int recalculateAll() {
+        long started = System.currentTimeMillis();
+        ReturnMatrix rebuilt = buildMatrix();
+        matrix = rebuilt;
+
+        Map<Long, List<PortfolioPosition>> positionsByPortfolio = positionRepository.findAllOpen().stream()
+            .collect(Collectors.groupingBy(position -> position.getPortfolio().getId()));
+        FxRates rates = fxRateService.current();
+        List<Holdings> holdings = positionsByPortfolio.entrySet().stream()
+            .map(entry -> Holdings.of(entry.getKey(), entry.getValue(), rates))
+            .toList();
+
+        // Вычисления не обращаются к JPA и выполняются параллельно по портфелям
+        Map<Long, PortfolioRisk> calculated = holdings.parallelStream()
+            .map(portfolioHoldings -> calculate(portfolioHoldings, rebuilt))
+            .collect(Collectors.toConcurrentMap(PortfolioRisk::portfolioId, risk -> risk));
+
+        risks.clear();
+        risks.putAll(calculated);
+        log.info("Рассчитаны риск-метрики {} портфелей по {} бумагам и {} дням за {} мс",
+            calculated.size(), holdings.stream().mapToInt(h -> h.secids().length).sum(),
+            rebuilt.periods(), System.currentTimeMillis() - started);
+        return calculated.size();
+    }
+
+    /**
+     * Инструменты, по которым нужна история цен: индекс и бумаги открытых позиций
+     */
+    @Transactional(readOnly = true)
+    public List<DailyCloseLoader.HistorySource> historySources() {
+        Map<String, DailyCloseLoader.HistorySource> sources = new LinkedHashMap<>();
+        sources.put(marketIndex, DailyCloseLoader.HistorySource.index(marketIndex));
+        for (PortfolioPosition position : positionRepository.findAllOpen()) {
+            MoexStock stock = position.getMoexStock();
+            Bond bond = position.getMoexBond();
+            if (stock != null) {
+                sources.putIfAbsent(stock.getSecid(), DailyCloseLoader.HistorySource.stock(stock.getSecid(), stock.getBoardid()));
+            } else if (bond != null) {
+                sources.putIfAbsent(bond.getSecid(), DailyCloseLoader.HistorySource.bond(bond.getSecid(), bond.getBoardid()));
+            }
+        }
+        return new ArrayList<>(sources.values());
+    }
+
+    @EventListener
+    public void onPositionsChanged(PortfolioPositionsChangedEvent event) {
+        risks.remove(event.portfolioId());
+    }
+
+    private ReturnMatrix currentMatrix() {
+        ReturnMatrix current = matrix;
+        if (current == null) {
+            matrixLock.lock();
+            try {
+                current = matrix;
+                if (current == null) {
+                    current = buildMatrix();
+                    matrix = current;
+                }
+            } finally {
+                matrixLock.unlock();
+            }
+        }
+        return current;
+    }
+
+    private ReturnMatrix buildMatrix() {
+        Set<String> secids = new LinkedHashSet<>();
+        secids.add(marketIndex);
+        for (PortfolioPosition position : positionRepository.findAllOpen()) {
+            String secid = secidOf(position);
+            if (secid != null) {
+                secids.add(secid);
+            }
+        }
+        // Календарных дней с запасом на выходные и праздники
+        LocalDate from = LocalDate.now().minusDays(windowDays * 7L / 5 + 30);
+        return ReturnMatrix.build(closeRepository.findClosePoints(secids, from), marketIndex, windowDays);
+    }
+
+    PortfolioRisk calculate(Holdings holdings, ReturnMatrix returns) {
+        int count = holdings.secids().length;
+        double invested = 0.0;
+        double covered = 0.0;
+        int[] instruments = new int[count];
+        int held = 0;
+        for (int i = 0; i < count; i++) {
+            invested += holdings.values()[i];
+            int instrument = returns.indexOf(holdings.secids()[i]);
+            if (instrument >= 0 && holdings.values()[i] > 0) {
+                instruments[held++] = instrument;
+                covered += holdings.values()[i];
+            }
+        }
+
+        int periods = returns.periods();
+        if (held == 0 || periods < 2) {
+            return new PortfolioRisk(holdings.portfolioId(), returns.asOf(), periods, money(invested),
+                BigDecimal.ZERO, null, null, null, null, null, null, List.of(), new double[0][]);
+        }
+
+        double[] portfolio = new double[periods];
+        double[] weights = new double[held];
+        List<String> names = new ArrayList<>(held);
+        for (int i = 0, h = 0; i < count; i++) {
+            int instrument = returns.indexOf(holdings.secids()[i]);
+            if (instrument < 0 || holdings.values()[i] <= 0) {
+                continue;
+            }
+            weights[h] = holdings.values()[i] / covered;
+            double[] series = returns.returns(instrument);
+            for (int t = 0; t < periods; t++) {
+                portfolio[t] += weights[h] * series[t];
+            }
+            names.add(holdings.secids()[i]);
+            h++;
+        }
+
+        double[] market = returns.market();
+        double marketVariance = RiskMath.covariance(market, market, 0, periods);
+        double beta = marketVariance > 0 ? RiskMath.covariance(portfolio, market, 0, periods) / marketVariance : Double.NaN;
+        int shortFrom = Math.max(0, periods - SHORT_WINDOW);
+
+        double[][] correlations = new double[held][held];
+        for (int a = 0; a < held; a++) {
+            correlations[a][a] = 1.0;
+            for (int b = a + 1; b < held; b++) {
+                double value = RiskMath.correlation(returns.returns(instruments[a]), returns.returns(instruments[b]), 0, periods);
+                correlations[a][b] = value;
+                correlations[b][a] = value;
+            }
+        }
+
+        return new PortfolioRisk(holdings.portfolioId(), returns.asOf(), periods,
+            money(invested),
+            decimal(invested > 0 ? covered / invested * 100.0 : 0.0, 2),
+            decimal(RiskMath.stdev(portfolio, 0, periods) * Math.sqrt(TRADING_DAYS) * 100.0, 2),
+            decimal(RiskMath.stdev(portfolio, shortFrom, periods) * Math.sqrt(TRADING_DAYS) * 100.0, 2),
+            decimal(beta, 3),
+            decimal(RiskMath.correlation(portfolio, market, 0, periods), 3),
+            money(RiskMath.historicalVar(portfolio, 0.95) * covered),
+            money(RiskMath.historicalVar(portfolio, 0.99) * covered),
+            List.copyOf(names),
+            correlations);
+    }
+
+    private static String secidOf(PortfolioPosition position) {
+        if (position.getMoexStock() != null) {
+            return position.getMoexStock().getSecid();
+        }
+        return position.getMoexBond() != null ? position.getMoexBond().getSecid() : null;
+    }
+
+    /**
+     * Текущая стоимость позиции в рублях: цена ALOR или рыночная цена MOEX в валюте бумаги,
+     * пересчитанная по курсу; без цены или курса позиция не учитывается
+     */
+    private static double positionValue(PortfolioPosition position, FxRates rates) {
+        MoexStock stock = position.getMoexStock();
+        Bond bond = position.getMoexBond();
+        BigDecimal price = position.getLastKnownPrice();
+        if (price == null && stock != null) {
+            price = stock.getMarketprice();
+        }
+        if (price == null && bond != null) {
+            price = bond.toAbsolutePrice(bond.getMarketprice());
+        }
+        String currency = stock != null ? stock.getCurrencyid() : bond != null ? bond.getFaceCurrency() : FxRates.RUB;
+        BigDecimal rub = rates.convert(price, currency, FxRates.RUB);
+        return rub != null ? rub.doubleValue() * position.getQuantity().doubleValue() : 0.0;
+    }
+
+    private static BigDecimal money(double value) {
+        return decimal(value, 2);
+    }
+
+    private static BigDecimal decimal(double value, int scale) {
+        return Double.isFinite(value) ? BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP) : null;
+    }
+
+    /**
+     * Бумаги портфеля и их стоимость в рублях
+     */
+    record Holdings(Long portfolioId, String[] secids, double[] values) {
+
+        static Holdings of(Long portfolioId, Collection<PortfolioPosition> positions, FxRates rates) {
+            List<String> secids = new ArrayList<>(positions.size());
+            List<Double> values = new ArrayList<>(positions.size());
+            for (PortfolioPosition position : positions) {
+                String secid = secidOf(position);
+                if (secid != null) {
+                    secids.add(secid);
+                    values.add(positionValue(position, rates));
+                }
+            }
+            return new Holdings(portfolioId, secids.toArray(String[]::new),
+                values.stream().mapToDouble(Double::doubleValue).toArray());
+        }
+    }
+}
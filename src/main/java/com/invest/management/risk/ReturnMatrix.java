@@ -0,0 +1,147 @@
+package com.invest.management.risk;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Матрица дневных доходностей инструментов, выровненная по торговым дням индекса
+ * Строится один раз из сохраненных цен закрытия и используется для расчета риска всех портфелей.
+ * Пропуски (дни без сделок) заполняются предыдущей ценой, т.е. нулевой доходностью;
+ * инструменты с историей короче половины окна в матрицу не попадают.
+ */
+final class ReturnMatrix {
+
+    private final LocalDate asOf;
+    private final String[] secids;
+    private final Map<String, Integer> index;
+    private final double[][] returns;
+    private final double[] market;
+
+    private ReturnMatrix(LocalDate asOf, String[] secids, double[][] returns, double[] market) {
+        this.asOf = asOf;
+        this.secids = secids;
+        this.returns = returns;
+        this.market = market;
+        this.index = new HashMap<>(secids.length * 2);
+        for (int i = 0; i < secids.length; i++) {
+            index.put(secids[i], i);
+        }
+    }
+
+    /**
+     * @param points цены закрытия, упорядоченные по дате
+     * @param marketSecid индекс, задающий календарь торговых дней
+     * @param window количество дневных доходностей в матрице
+     */
+    static ReturnMatrix build(List<ClosePoint> points, String marketSecid, int window) {
+        TreeSet<LocalDate> marketDates = new TreeSet<>();
+        for (ClosePoint point : points) {
+            if (marketSecid.equals(point.secid())) {
+                marketDates.add(point.tradeDate());
+            }
+        }
+        if (marketDates.size() < 2) {
+            return new ReturnMatrix(null, new String[0], new double[0][], new double[0]);
+        }
+
+        // Последние window + 1 торговых дней дают window доходностей
+        LocalDate[] dates = marketDates.descendingSet().stream()
+            .limit(window + 1L)
+            .sorted()
+            .toArray(LocalDate[]::new);
+        Map<LocalDate, Integer> dateIndex = new HashMap<>(dates.length * 2);
+        for (int t = 0; t < dates.length; t++) {
+            dateIndex.put(dates[t], t);
+        }
+
+        Map<String, double[]> closesBySecid = new HashMap<>();
+        for (ClosePoint point : points) {
+            Integer t = dateIndex.get(point.tradeDate());
+            if (t == null) {
+                continue;
+            }
+            double[] closes = closesBySecid.computeIfAbsent(point.secid(), secid -> {
+                double[] empty = new double[dates.length];
+                Arrays.fill(empty, Double.NaN);
+                return empty;
+            });
+            closes[t] = point.close();
+        }
+
+        double[] market = toReturns(closesBySecid.get(marketSecid));
+        int periods = dates.length - 1;
+        List<String> included = new ArrayList<>();
+        List<double[]> rows = new ArrayList<>();
+        for (Map.Entry<String, double[]> entry : closesBySecid.entrySet()) {
+            if (entry.getKey().equals(marketSecid)) {
+                continue;
+            }
+            double[] row = toReturns(entry.getValue());
+            int observed = 0;
+            for (int t = 0; t < periods; t++) {
+                if (Double.isNaN(row[t])) {
+                    row[t] = 0.0;
+                } else {
+                    observed++;
+                }
+            }
+            if (observed * 2 >= periods) {
+                included.add(entry.getKey());
+                rows.add(row);
+            }
+        }
+        for (int t = 0; t < periods; t++) {
+            if (Double.isNaN(market[t])) {
+                market[t] = 0.0;
+            }
+        }
+
+        return new ReturnMatrix(dates[dates.length - 1], included.toArray(String[]::new),
+            rows.toArray(double[][]::new), market);
+    }
+
+    /**
+     * Доходности по ценам закрытия с заполнением пропусков предыдущей ценой;
+     * до первой известной цены доходность не определена (NaN)
+     */
+    private static double[] toReturns(double[] closes) {
+        double[] result = new double[closes.length - 1];
+        double previous = closes[0];
+        for (int t = 1; t < closes.length; t++) {
+            double close = Double.isNaN(closes[t]) ? previous : closes[t];
+            result[t - 1] = Double.isNaN(previous) || Double.isNaN(close) ? Double.NaN : close / previous - 1.0;
+            previous = close;
+        }
+        return result;
+    }
+
+    LocalDate asOf() {
+        return asOf;
+    }
+
+    int periods() {
+        return market.length;
+    }
+
+    int indexOf(String secid) {
+        Integer i = index.get(secid);
+        return i != null ? i : -1;
+    }
+
+    String secid(int instrument) {
+        return secids[instrument];
+    }
+
+    double[] returns(int instrument) {
+        return returns[instrument];
+    }
+
+    double[] market() {
+        return market;
+    }
+}
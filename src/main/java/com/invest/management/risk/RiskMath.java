@@ -0,0 +1,59 @@
+package com.invest.management.risk;
+
+import java.util.Arrays;
+
+/**
+ * Статистики по рядам дневных доходностей
+ */
+final class RiskMath {
+
+    private RiskMath() {
+    }
+
+    static double mean(double[] values, int from, int to) {
+        double sum = 0.0;
+        for (int t = from; t < to; t++) {
+            sum += values[t];
+        }
+        return sum / (to - from);
+    }
+
+    /**
+     * Выборочная ковариация рядов на отрезке [from, to)
+     */
+    static double covariance(double[] left, double[] right, int from, int to) {
+        int count = to - from;
+        if (count < 2) {
+            return Double.NaN;
+        }
+        double leftMean = mean(left, from, to);
+        double rightMean = mean(right, from, to);
+        double sum = 0.0;
+        for (int t = from; t < to; t++) {
+            sum += (left[t] - leftMean) * (right[t] - rightMean);
+        }
+        return sum / (count - 1);
+    }
+
+    static double stdev(double[] values, int from, int to) {
+        return Math.sqrt(covariance(values, values, from, to));
+    }
+
+    static double correlation(double[] left, double[] right, int from, int to) {
+        double denominator = stdev(left, from, to) * stdev(right, from, to);
+        return denominator > 0 ? covariance(left, right, from, to) / denominator : Double.NaN;
+    }
+
+    /**
+     * Исторический VaR: убыток (доля), который не превышается с заданной вероятностью
+     */
+    static double historicalVar(double[] returns, double confidence) {
+        if (returns.length == 0) {
+            return Double.NaN;
+        }
+        double[] sorted = Arrays.copyOf(returns, returns.length);
+        Arrays.sort(sorted);
+        int position = (int) Math.floor((1.0 - confidence) * sorted.length);
+        return Math.max(0.0, -sorted[Math.min(position, sorted.length - 1)]);
+    }
+}
@@ -0,0 +1,166 @@
+package com.invest.management.startup;
+
+import com.invest.management.alert.PriceAlertEngine;
+import com.invest.management.analysis.StockAnalysisService;
+import com.invest.management.config.WorkerThreads;
+import com.invest.management.exposure.ExposureService;
+import com.invest.management.moex.MoexPriceUpdater;
+import com.invest.management.moex.fx.FxRateLoader;
+import com.invest.management.risk.PortfolioRiskService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Фоновый прогрев приложения после запуска
+ * Запросы обслуживаются сразу по последним сохраненным данным: загрузки из MOEX
+ * (курсы валют, полное обновление справочника акций) и построение кэшей выполняются
+ * параллельно в отдельных потоках. Состояние задач доступно администратору.
+ */
+@Service
+@ConditionalOnProperty(name = "startup.warmup.enabled", havingValue = "true", matchIfMissing = true)
+public class StartupWarmup {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+
+    public enum Status {
+        PENDING, RUNNING, DONE, FAILED
+    }
+
+    /**
+     * Состояние задачи прогрева
+     * @param durationMs длительность выполнения (для завершенных задач)
+     * @param error сообщение об ошибке (для FAILED)
+     */
+    public record TaskState(String name, Status status, OffsetDateTime startedAt, Long durationMs, String error) {
+    }
+
+    private final ObjectProvider<MoexPriceUpdater> priceUpdater;
+    private final ObjectProvider<FxRateLoader> fxRateLoader;
+    private final StockAnalysisService stockAnalysisService;
+    private final PriceAlertEngine priceAlertEngine;
+    private final PortfolioRiskService riskService;
+    private final ExposureService exposureService;
+    private final ExecutorService executor;
+
+    private final Map<String, TaskState> tasks = new ConcurrentHashMap<>();
+    private final List<String> order = new ArrayList<>();
+    private volatile OffsetDateTime completedAt;
+
+    public StartupWarmup(ObjectProvider<MoexPriceUpdater> priceUpdater,
+                         ObjectProvider<FxRateLoader> fxRateLoader,
+                         StockAnalysisService stockAnalysisService,
+                         PriceAlertEngine priceAlertEngine,
+                         PortfolioRiskService riskService,
+                         ExposureService exposureService,
+                         WorkerThreads workerThreads,
+                         @Value("${startup.warmup.parallelism:4}") int parallelism) {
+        this.priceUpdater = priceUpdater;
+        this.fxRateLoader = fxRateLoader;
+        this.stockAnalysisService = stockAnalysisService;
+        this.priceAlertEngine = priceAlertEngine;
+        this.riskService = riskService;
+        this.exposureService = exposureService;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism), workerThreads.factory("startup-warmup-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        long started = System.currentTimeMillis();
+        List<CompletableFuture<Void>> runs = new ArrayList<>();
+
+        // Загрузки из MOEX: медленные и зависят от доступности биржи
+        FxRateLoader fx = fxRateLoader.getIfAvailable();
+        CompletableFuture<Void> fxLoaded = fx != null
+            ? submit("Курсы валют MOEX", fx::refresh)
+            : CompletableFuture.completedFuture(null);
+        runs.add(fxLoaded);
+        MoexPriceUpdater updater = priceUpdater.getIfAvailable();
+        if (updater != null) {
+            runs.add(submit("Справочник акций MOEX", updater::checkAndPerformFullUpdate));
+        }
+
+        // Кэши строятся по сохраненным в БД данным
+        runs.add(submit("Таблица анализа акций", stockAnalysisService::getAllRows));
+        runs.add(submit("Индекс ценовых уровней", priceAlertEngine::preload));
+        // Стоимость валютных позиций пересчитывается в рубли: до загрузки курсов она была бы нулевой
+        // и оставалась бы в кэше риск-метрик до ночного пересчета
+        runs.add(submitAfter(fxLoaded, "Риск-метрики портфелей", riskService::recalculateAll));
+        runs.add(submitAfter(fxLoaded, "Совокупные вложения", exposureService::getReport));
+
+        CompletableFuture.allOf(runs.toArray(CompletableFuture[]::new))
+            .whenComplete((ignored, ex) -> {
+                completedAt = OffsetDateTime.now();
+                log.info("Прогрев после запуска завершен за {} мс", System.currentTimeMillis() - started);
+            });
+    }
+
+    /**
+     * @return true, если все задачи прогрева завершены (успешно или с ошибкой)
+     */
+    public boolean isCompleted() {
+        return completedAt != null;
+    }
+
+    public OffsetDateTime getCompletedAt() {
+        return completedAt;
+    }
+
+    public List<TaskState> getTasks() {
+        synchronized (order) {
+            return order.stream().map(tasks::get).toList();
+        }
+    }
+
+    private CompletableFuture<Void> submit(String name, Runnable task) {
+        return submitAfter(CompletableFuture.completedFuture(null), name, task);
+    }
+
+    /**
+     * Задача запускается после завершения prerequisite (ошибки задач перехватываются в run,
+     * поэтому зависимая задача выполняется и при неудачной предыдущей)
+     */
+    private CompletableFuture<Void> submitAfter(CompletableFuture<Void> prerequisite, String name, Runnable task) {
+        synchronized (order) {
+            order.add(name);
+        }
+        tasks.put(name, new TaskState(name, Status.PENDING, null, null, null));
+        return prerequisite.thenRunAsync(() -> run(name, task), executor);
+    }
+
+    private void run(String name, Runnable task) {
+        OffsetDateTime startedAt = OffsetDateTime.now();
+        long started = System.currentTimeMillis();
+        tasks.put(name, new TaskState(name, Status.RUNNING, startedAt, null, null));
+        try {
+            task.run();
+            long duration = System.currentTimeMillis() - started;
+            tasks.put(name, new TaskState(name, Status.DONE, startedAt, duration, null));
+            log.info("Прогрев: {} - выполнено за {} мс", name, duration);
+        } catch (Exception ex) {
+            long duration = System.currentTimeMillis() - started;
+            tasks.put(name, new TaskState(name, Status.FAILED, startedAt, duration, ex.getMessage()));
+            log.error("Прогрев: {} - ошибка", name, ex);
+        }
+    }
+}
@@ -1,33 +1,48 @@
 package com.invest.management.user;
 
-import org.springframework.security.core.userdetails.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
-public class AppUserDetailsService implements UserDetailsService {
+public class AppUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
+
+    private static final Logger log = LoggerFactory.getLogger(AppUserDetailsService.class);
 
     private final AppUserRepository userRepository;
+    private final CurrentUserService currentUserService;
 
-    public AppUserDetailsService(AppUserRepository userRepository) {
+    public AppUserDetailsService(AppUserRepository userRepository,
+                                 CurrentUserService currentUserService) {
         this.userRepository = userRepository;
+        this.currentUserService = currentUserService;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        AppUser user = userRepository.findByEmailIgnoreCase(username)
+        AppUser user = currentUserService.findByEmail(username)
             .orElseThrow(() -> new UsernameNotFoundException("Пользователь не найден: " + username));
+        return new AppUserPrincipal(user);
+    }
 
-        return User.withUsername(user.getEmail())
-            .password(user.getPasswordHash())
-            .authorities(user.getAuthorities())
-            .accountLocked(false)
-            .accountExpired(false)
-            .credentialsExpired(false)
-            .disabled(false)
-            .build();
+    /**
+     * Пересчет хеша при входе: Spring Security вызывает метод, если хеш создан с меньшей
+     * стоимостью BCrypt, чем security.password.bcrypt-strength
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails details, String newPassword) {
+        AppUser user = userRepository.findByEmailIgnoreCase(details.getUsername())
+            .orElseThrow(() -> new UsernameNotFoundException("Пользователь не найден: " + details.getUsername()));
+        user.setPasswordHash(newPassword);
+        AppUser saved = userRepository.save(user);
+        currentUserService.refresh(saved);
+        log.info("Хеш пароля пользователя {} пересчитан с текущей стоимостью BCrypt", saved.getEmail());
+        return new AppUserPrincipal(saved);
     }
 }
-
@@ -0,0 +1,24 @@
+package com.invest.management.user;
+
+import org.springframework.security.core.userdetails.User;
+
+/**
+ * Principal сессии: кроме email и ролей хранит id пользователя,
+ * чтобы контроллеры находили AppUser по первичному ключу, а не по email
+ * Пароль стирается после входа, в сессии остаются только id, email и роли
+ */
+public class AppUserPrincipal extends User {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+
+    public AppUserPrincipal(AppUser user) {
+        super(user.getEmail(), user.getPasswordHash(), user.getAuthorities());
+        this.id = user.getId();
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
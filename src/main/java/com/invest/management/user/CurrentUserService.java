@@ -0,0 +1,116 @@
+package com.invest.management.user;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Пользователь текущего запроса без обращения к БД на каждый вызов
+ * Найденный AppUser запоминается в атрибутах запроса (повторные вызовы в пределах запроса
+ * возвращают тот же объект) и на security.user-cache.ttl-seconds в общем кэше по email.
+ * Если principal - {@link AppUserPrincipal}, запись кэша с другим id (пользователь удален и создан
+ * заново с тем же email) отбрасывается, а при промахе кэша пользователь читается по id.
+ * Кэшированный AppUser - отсоединенная сущность без ленивых связей: подходит для параметров
+ * запросов и ссылок из новых сущностей, но не для изменения.
+ */
+@Service
+public class CurrentUserService {
+
+    private static final String REQUEST_ATTRIBUTE = CurrentUserService.class.getName() + ".user";
+
+    private final AppUserRepository userRepository;
+    private final Map<String, CachedUser> users = new ConcurrentHashMap<>();
+
+    /**
+     * Сколько секунд найденный пользователь используется повторно; 0 - только в пределах запроса
+     */
+    @Value("${security.user-cache.ttl-seconds:30}")
+    private long ttlSeconds;
+
+    public CurrentUserService(AppUserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Пользователь из SecurityContext текущего потока
+     */
+    public AppUser getCurrentUser() {
+        return getCurrentUser(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    public AppUser getCurrentUser(Authentication authentication) {
+        if (authentication == null || !StringUtils.hasText(authentication.getName())) {
+            throw new IllegalStateException("Не удалось определить текущего пользователя");
+        }
+        String email = authentication.getName();
+        Long id = authentication.getPrincipal() instanceof AppUserPrincipal principal ? principal.getId() : null;
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null
+                && request.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof AppUser user
+                && user.getEmail().equalsIgnoreCase(email)
+                && (id == null || id.equals(user.getId()))) {
+            return user;
+        }
+
+        AppUser user = find(email, id)
+            .orElseThrow(() -> new IllegalStateException("Пользователь не найден: " + email));
+        if (request != null) {
+            request.setAttribute(REQUEST_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
+        }
+        return user;
+    }
+
+    /**
+     * Пользователь по email (для входа): из кэша, если запись еще не устарела
+     */
+    public Optional<AppUser> findByEmail(String email) {
+        return find(email, null);
+    }
+
+    /**
+     * Обновляет запись кэша после изменения пользователя (например, пересчета хеша пароля)
+     */
+    public void refresh(AppUser user) {
+        users.remove(key(user.getEmail()));
+        if (ttlSeconds > 0) {
+            users.put(key(user.getEmail()), new CachedUser(user, System.currentTimeMillis()));
+        }
+    }
+
+    private Optional<AppUser> find(String email, Long id) {
+        String key = key(email);
+        long now = System.currentTimeMillis();
+        CachedUser cached = users.get(key);
+        if (cached != null && id != null && !id.equals(cached.user().getId())) {
+            users.remove(key, cached);
+        } else if (cached != null && now - cached.loadedAt() < ttlSeconds * 1000) {
+            return Optional.of(cached.user());
+        }
+
+        Optional<AppUser> user = id != null
+            ? userRepository.findById(id).filter(found -> found.getEmail().equalsIgnoreCase(email))
+            : userRepository.findByEmailIgnoreCase(email);
+        if (user.isPresent() && ttlSeconds > 0) {
+            users.put(key, new CachedUser(user.get(), now));
+        } else {
+            users.remove(key);
+        }
+        return user;
+    }
+
+    private static String key(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    private record CachedUser(AppUser user, long loadedAt) {
+    }
+}
@@ -1,13 +1,16 @@
 package com.invest.management.web;
 
-import com.invest.management.moex.MoexDataLoader;
 import com.invest.management.moex.MoexStockRepository;
-import com.invest.management.moex.bond.BondDataLoader;
 import com.invest.management.moex.bond.BondRepository;
+import com.invest.management.moex.job.LoadJob;
+import com.invest.management.moex.job.LoadJobService;
+import com.invest.management.startup.StartupWarmup;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
@@ -17,48 +20,59 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 @PreAuthorize("hasRole('ADMIN')")
 public class AdminController {
 
-    private final MoexDataLoader moexDataLoader;
+    private final LoadJobService loadJobService;
     private final MoexStockRepository moexStockRepository;
-    private final BondDataLoader bondDataLoader;
     private final BondRepository bondRepository;
+    private final ObjectProvider<StartupWarmup> startupWarmup;
 
-    public AdminController(MoexDataLoader moexDataLoader,
+    public AdminController(LoadJobService loadJobService,
                            MoexStockRepository moexStockRepository,
-                           BondDataLoader bondDataLoader,
-                           BondRepository bondRepository) {
-        this.moexDataLoader = moexDataLoader;
+                           BondRepository bondRepository,
+                           ObjectProvider<StartupWarmup> startupWarmup) {
+        this.loadJobService = loadJobService;
         this.moexStockRepository = moexStockRepository;
-        this.bondDataLoader = bondDataLoader;
         this.bondRepository = bondRepository;
+        this.startupWarmup = startupWarmup;
     }
 
     @GetMapping
     public String adminDashboard(Model model) {
         model.addAttribute("stockCount", moexStockRepository.count());
         model.addAttribute("bondCount", bondRepository.count());
+        model.addAttribute("warmup", startupWarmup.getIfAvailable());
+        model.addAttribute("loadJobs", loadJobService.getJobs());
+        model.addAttribute("hasActiveJobs", loadJobService.hasActiveJobs());
         return "admin-dashboard";
     }
 
     @PostMapping("/load/stocks")
     public String loadStocks(RedirectAttributes redirectAttributes) {
-        try {
-            moexDataLoader.loadStocksListA();
-            redirectAttributes.addFlashAttribute("successMessage", "Акции списка A обновлены.");
-        } catch (Exception ex) {
-            redirectAttributes.addFlashAttribute("errorMessage", "Не удалось загрузить акции: " + ex.getMessage());
-        }
-        return "redirect:/admin";
+        return submit(LoadJob.Type.STOCKS, redirectAttributes);
     }
 
     @PostMapping("/load/bonds")
     public String loadBonds(RedirectAttributes redirectAttributes) {
+        return submit(LoadJob.Type.BONDS, redirectAttributes);
+    }
+
+    @PostMapping("/jobs/{id}/cancel")
+    public String cancelJob(@PathVariable Long id, RedirectAttributes redirectAttributes) {
+        if (loadJobService.cancel(id)) {
+            redirectAttributes.addFlashAttribute("successMessage", "Загрузка #" + id + " будет остановлена после текущей порции.");
+        } else {
+            redirectAttributes.addFlashAttribute("errorMessage", "Загрузка #" + id + " уже завершена.");
+        }
+        return "redirect:/admin";
+    }
+
+    private String submit(LoadJob.Type type, RedirectAttributes redirectAttributes) {
         try {
-            bondDataLoader.loadBonds();
-            redirectAttributes.addFlashAttribute("successMessage", "Облигации обновлены.");
-        } catch (Exception ex) {
-            redirectAttributes.addFlashAttribute("errorMessage", "Не удалось загрузить облигации: " + ex.getMessage());
+            LoadJob job = loadJobService.submit(type);
+            redirectAttributes.addFlashAttribute("successMessage",
+                "Загрузка #" + job.getId() + " «" + type.getTitle() + "» поставлена в очередь.");
+        } catch (IllegalStateException ex) {
+            redirectAttributes.addFlashAttribute("errorMessage", ex.getMessage());
         }
         return "redirect:/admin";
     }
 }
-
@@ -0,0 +1,38 @@
+package com.invest.management.web;
+
+import com.invest.management.exposure.ExposureReport;
+import com.invest.management.exposure.ExposureService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * Совокупные вложения пользователей по бумагам, секторам и валютам
+ */
+@Controller
+@RequestMapping("/admin/exposure")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminExposureController {
+
+    private final ExposureService exposureService;
+
+    public AdminExposureController(ExposureService exposureService) {
+        this.exposureService = exposureService;
+    }
+
+    @GetMapping
+    public String exposure(Model model) {
+        model.addAttribute("report", exposureService.getReport());
+        return "admin-exposure";
+    }
+
+    @GetMapping("/data")
+    @ResponseBody
+    public ResponseEntity<ExposureReport> exposureJson() {
+        return ResponseEntity.ok(exposureService.getReport());
+    }
+}
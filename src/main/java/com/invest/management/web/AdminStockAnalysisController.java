@@ -1,18 +1,17 @@
 package com.invest.management.web;
 
+import com.invest.management.analysis.AnalysisDataVersion;
 import com.invest.management.analysis.ExpertAssessmentDto;
 import com.invest.management.analysis.StockAnalysisRow;
 import com.invest.management.analysis.StockAnalysisService;
 import com.invest.management.moex.MoexStock;
 import com.invest.management.moex.MoexStockRepository;
 import com.invest.management.user.AppUser;
-import com.invest.management.user.AppUserRepository;
+import com.invest.management.user.CurrentUserService;
 import jakarta.servlet.http.HttpSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.util.StringUtils;
@@ -25,6 +24,7 @@ import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import org.springframework.format.annotation.DateTimeFormat;
 
@@ -43,28 +43,40 @@ public class AdminStockAnalysisController {
     private static final String SESSION_LAST_ADD = "admin:analysis:lastSecid";
 
     private final StockAnalysisService analysisService;
-    private final AppUserRepository userRepository;
+    private final CurrentUserService currentUserService;
     private final MoexStockRepository stockRepository;
     private final HttpSession httpSession;
+    private final AnalysisDataVersion dataVersion;
+    private final ConditionalGet conditionalGet;
 
     public AdminStockAnalysisController(StockAnalysisService analysisService,
-                                       AppUserRepository userRepository,
+                                       CurrentUserService currentUserService,
                                        MoexStockRepository stockRepository,
-                                       HttpSession httpSession) {
+                                       HttpSession httpSession,
+                                       AnalysisDataVersion dataVersion,
+                                       ConditionalGet conditionalGet) {
         this.analysisService = analysisService;
-        this.userRepository = userRepository;
+        this.currentUserService = currentUserService;
         this.stockRepository = stockRepository;
         this.httpSession = httpSession;
+        this.dataVersion = dataVersion;
+        this.conditionalGet = conditionalGet;
     }
 
     @GetMapping
     public String analysis(@RequestParam(value = "sortBy", required = false) String sortBy,
                           @RequestParam(value = "sortDir", required = false) String sortDir,
-                          Model model) {
+                          Model model,
+                          ServletWebRequest webRequest) {
         AppUser user = currentUser();
+        String sessionLast = (String) httpSession.getAttribute(SESSION_LAST_ADD);
+        // Последняя добавленная акция выбрана в форме по умолчанию, поэтому тоже входит в ETag
+        if (conditionalGet.notModified(webRequest, "admin-analysis", user.getId(), dataVersion.current(), sessionLast)) {
+            return null;
+        }
+
         List<StockAnalysisRow> rows = analysisService.getAllRows(sortBy, sortDir);
         List<MoexStock> availableStocks = analysisService.getAvailableStocks();
-        String sessionLast = (String) httpSession.getAttribute(SESSION_LAST_ADD);
         String defaultSelection = availableStocks.isEmpty() ? null : availableStocks.get(0).getSecid();
         if (sessionLast != null && availableStocks.stream().anyMatch(s -> s.getSecid().equals(sessionLast))) {
             defaultSelection = sessionLast;
@@ -276,12 +288,7 @@ public class AdminStockAnalysisController {
     }
 
     private AppUser currentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null || !StringUtils.hasText(authentication.getName())) {
-            throw new IllegalStateException("Не удалось определить текущего пользователя");
-        }
-        return userRepository.findByEmailIgnoreCase(authentication.getName())
-            .orElseThrow(() -> new IllegalStateException("Пользователь не найден: " + authentication.getName()));
+        return currentUserService.getCurrentUser();
     }
 }
 
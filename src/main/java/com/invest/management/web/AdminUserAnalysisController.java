@@ -4,15 +4,12 @@ import com.invest.management.analysis.StockAnalysis;
 import com.invest.management.analysis.UserAnalysisRow;
 import com.invest.management.analysis.UserAnalysisService;
 import com.invest.management.user.AppUser;
-import com.invest.management.user.AppUserRepository;
+import com.invest.management.user.CurrentUserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
-import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -30,12 +27,12 @@ public class AdminUserAnalysisController {
     private static final Logger log = LoggerFactory.getLogger(AdminUserAnalysisController.class);
 
     private final UserAnalysisService userAnalysisService;
-    private final AppUserRepository userRepository;
+    private final CurrentUserService currentUserService;
 
     public AdminUserAnalysisController(UserAnalysisService userAnalysisService,
-                                       AppUserRepository userRepository) {
+                                       CurrentUserService currentUserService) {
         this.userAnalysisService = userAnalysisService;
-        this.userRepository = userRepository;
+        this.currentUserService = currentUserService;
     }
 
     @GetMapping
@@ -48,17 +45,10 @@ public class AdminUserAnalysisController {
         List<UserAnalysisRow> rows = userAnalysisService.getRowsForUser(user, sortBy, sortDir);
         List<StockAnalysis> availableStockAnalyses = userAnalysisService.getAvailableStockAnalyses(user);
         
-        // Вычисляем expertForecastPercent для каждого StockAnalysis и округляем до 2 знаков
+        // Прогноз по экспертной цели хранится в StockAnalysis и пересчитывается после обновления цен
         java.util.Map<Long, java.math.BigDecimal> forecastPercentMap = new java.util.HashMap<>();
         for (StockAnalysis analysis : availableStockAnalyses) {
-            java.math.BigDecimal forecast = calculateExpertForecastPercent(
-                analysis.getExpertTarget(),
-                analysis.getStock() != null ? analysis.getStock().getMarketprice() : null
-            );
-            if (forecast != null) {
-                forecast = forecast.setScale(2, java.math.RoundingMode.HALF_UP);
-            }
-            forecastPercentMap.put(analysis.getId(), forecast);
+            forecastPercentMap.put(analysis.getId(), analysis.getExpertForecastPercent());
         }
 
         log.debug("Admin {} user analysis page: rows={}, availableStockAnalyses={}, sortBy={}, sortDir={}",
@@ -75,15 +65,6 @@ public class AdminUserAnalysisController {
         return "admin-user-analysis";
     }
     
-    private java.math.BigDecimal calculateExpertForecastPercent(java.math.BigDecimal target, java.math.BigDecimal marketPrice) {
-        if (target == null || marketPrice == null || marketPrice.compareTo(java.math.BigDecimal.ZERO) == 0) {
-            return null;
-        }
-        return target.subtract(marketPrice)
-            .divide(marketPrice, 6, java.math.RoundingMode.HALF_UP)
-            .multiply(java.math.BigDecimal.valueOf(100));
-    }
-
     @PostMapping("/add")
     public String addStockAnalyses(@RequestParam(value = "stockAnalysisIds", required = false) List<Long> stockAnalysisIds,
                                    RedirectAttributes redirectAttributes) {
@@ -157,12 +138,7 @@ public class AdminUserAnalysisController {
     }
 
     private AppUser currentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null || !StringUtils.hasText(authentication.getName())) {
-            throw new IllegalStateException("Не удалось определить текущего пользователя");
-        }
-        return userRepository.findByEmailIgnoreCase(authentication.getName())
-            .orElseThrow(() -> new IllegalStateException("Пользователь не найден: " + authentication.getName()));
+        return currentUserService.getCurrentUser();
     }
 }
 
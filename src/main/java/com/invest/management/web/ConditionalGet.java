@@ -0,0 +1,52 @@
+package com.invest.management.web;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.support.RequestContextUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Условные GET-запросы для страниц, которые строятся по версиям данных
+ * ETag собирается из версий и идентификатора пользователя, поэтому If-None-Match проверяется
+ * до расчета ответа: при совпадении контроллер возвращает null, клиент получает 304 без тела.
+ * ETag слабый (W/), так как Tomcat не сжимает ответы с сильным ETag.
+ * Время запуска приложения входит в ETag: счетчики версий после перезапуска начинаются заново.
+ */
+@Component
+public class ConditionalGet {
+
+    private final String instance = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * Проставляет Cache-Control и сравнивает ETag из частей с If-None-Match
+     *
+     * @return true, если у клиента актуальная версия и ответ 304 уже подготовлен
+     */
+    public boolean notModified(ServletWebRequest webRequest, Object... parts) {
+        HttpServletResponse response = webRequest.getResponse();
+        if (response != null) {
+            // Браузер хранит ответ, но перед каждым показом сверяет ETag с сервером
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        }
+        // Flash-сообщения после POST показываются один раз, такую страницу не кэшируем
+        Map<String, ?> flash = RequestContextUtils.getInputFlashMap(webRequest.getRequest());
+        if (flash != null && !flash.isEmpty()) {
+            return false;
+        }
+        return webRequest.checkNotModified(etag(parts));
+    }
+
+    private String etag(Object... parts) {
+        String key = instance + ":" + Arrays.stream(parts)
+            .map(String::valueOf)
+            .collect(Collectors.joining(":"));
+        return "W/\"" + DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+}
@@ -2,7 +2,7 @@ package com.invest.management.web;
 
 import com.invest.management.portfolio.*;
 import com.invest.management.user.AppUser;
-import com.invest.management.user.AppUserRepository;
+import com.invest.management.user.CurrentUserService;
 import com.invest.management.web.AlorTokenForm;
 import jakarta.validation.Valid;
 import org.springframework.validation.BindingResult;
@@ -12,6 +12,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
@@ -33,31 +34,46 @@ public class PortfolioController {
     private final PortfolioService portfolioService;
     private final BrokerReportService brokerReportService;
     private final PortfolioPositionService positionService;
-    private final AppUserRepository userRepository;
+    private final CurrentUserService currentUserService;
     private final PortfolioValueService portfolioValueService;
     private final com.invest.management.alor.common.AlorTokenService alorTokenService;
     private final com.invest.management.alor.AlorUserTokenRepository alorTokenRepository;
     private final com.invest.management.alor.common.AlorApiClient alorApiClient;
     private final com.invest.management.alor.AlorPortfolioService alorPortfolioService;
+    private final com.invest.management.alor.AlorTransactionSyncService alorTransactionSyncService;
+    private final CashFlowCalendarService cashFlowCalendarService;
+    private final com.invest.management.risk.PortfolioRiskService riskService;
+    private final com.invest.management.rebalance.RebalanceService rebalanceService;
+    private final ConditionalGet conditionalGet;
 
     public PortfolioController(PortfolioService portfolioService,
                                 BrokerReportService brokerReportService,
                                 PortfolioPositionService positionService,
-                                AppUserRepository userRepository,
+                                CurrentUserService currentUserService,
                                 PortfolioValueService portfolioValueService,
                                 com.invest.management.alor.common.AlorTokenService alorTokenService,
                                 com.invest.management.alor.AlorUserTokenRepository alorTokenRepository,
                                 com.invest.management.alor.common.AlorApiClient alorApiClient,
-                                com.invest.management.alor.AlorPortfolioService alorPortfolioService) {
+                                com.invest.management.alor.AlorPortfolioService alorPortfolioService,
+                                com.invest.management.alor.AlorTransactionSyncService alorTransactionSyncService,
+                                CashFlowCalendarService cashFlowCalendarService,
+                                com.invest.management.risk.PortfolioRiskService riskService,
+                                com.invest.management.rebalance.RebalanceService rebalanceService,
+                                ConditionalGet conditionalGet) {
         this.portfolioService = portfolioService;
         this.brokerReportService = brokerReportService;
         this.positionService = positionService;
-        this.userRepository = userRepository;
+        this.currentUserService = currentUserService;
         this.portfolioValueService = portfolioValueService;
         this.alorTokenService = alorTokenService;
         this.alorTokenRepository = alorTokenRepository;
         this.alorApiClient = alorApiClient;
         this.alorPortfolioService = alorPortfolioService;
+        this.alorTransactionSyncService = alorTransactionSyncService;
+        this.cashFlowCalendarService = cashFlowCalendarService;
+        this.riskService = riskService;
+        this.rebalanceService = rebalanceService;
+        this.conditionalGet = conditionalGet;
     }
 
     @GetMapping
@@ -80,7 +96,7 @@ public class PortfolioController {
                                   RedirectAttributes redirectAttributes) {
         AppUser user = getCurrentUser(authentication);
         try {
-            portfolioService.createPortfolio(user, form.getName(), form.getBrokerAccount());
+            portfolioService.createPortfolio(user, form.getName(), form.getBrokerAccount(), form.getBaseCurrency());
             redirectAttributes.addFlashAttribute("success", "Портфель успешно создан");
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("error", "Ошибка при создании портфеля: " + e.getMessage());
@@ -114,6 +130,10 @@ public class PortfolioController {
 
         model.addAttribute("portfolio", p);
         model.addAttribute("portfolioValue", portfolioValue);
+        model.addAttribute("currencySymbol", "RUB".equals(portfolioValue.getBaseCurrency()) ? "₽" : portfolioValue.getBaseCurrency());
+        model.addAttribute("cashFlowCalendar", cashFlowCalendarService.getCalendar(p));
+        model.addAttribute("risk", riskService.getRisk(p));
+        model.addAttribute("riskIndex", riskService.getMarketIndex());
         
         // Инициализируем форму, если она не была передана через flash attributes
         if (!model.containsAttribute("alorTokenForm")) {
@@ -127,13 +147,20 @@ public class PortfolioController {
     @ResponseBody
     public ResponseEntity<Map<String, Object>> getPortfolioValueJson(
             @PathVariable Long id,
-            Authentication authentication) {
+            Authentication authentication,
+            ServletWebRequest webRequest) {
         AppUser user = getCurrentUser(authentication);
         Optional<Portfolio> portfolio = portfolioService.getPortfolioByIdAndUser(id, user);
         
         if (portfolio.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
+
+        // Страница опрашивает стоимость по таймеру; между обновлениями цен отвечаем 304 без пересчета
+        if (conditionalGet.notModified(webRequest, "value", user.getId(), id,
+                portfolioValueService.dataVersion(portfolio.get()))) {
+            return null;
+        }
         
         PortfolioValueService.PortfolioValue portfolioValue = 
             portfolioValueService.calculatePortfolioValue(portfolio.get());
@@ -144,6 +171,7 @@ public class PortfolioController {
         result.put("dailyChange", portfolioValue.getDailyChange());
         result.put("dailyChangePercent", portfolioValue.getDailyChangePercent());
         result.put("cashBalance", portfolioValue.getCashBalance());
+        result.put("baseCurrency", portfolioValue.getBaseCurrency());
         
         List<Map<String, Object>> positions = new ArrayList<>();
         for (PortfolioValueService.PositionValue posValue : portfolioValue.getPositions()) {
@@ -158,6 +186,8 @@ public class PortfolioController {
             pos.put("totalReturn", posValue.getTotalReturn());
             pos.put("totalReturnPercent", posValue.getTotalReturnPercent());
             pos.put("decimals", posValue.getDecimals());
+            pos.put("accruedInterest", posValue.getAccruedInterest());
+            pos.put("currency", posValue.getCurrency());
             positions.add(pos);
         }
         result.put("positions", positions);
@@ -165,6 +195,119 @@ public class PortfolioController {
         return ResponseEntity.ok(result);
     }
 
+    @GetMapping("/{id}/cash-flows")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getCashFlowCalendarJson(
+            @PathVariable Long id,
+            Authentication authentication) {
+        AppUser user = getCurrentUser(authentication);
+        Optional<Portfolio> portfolio = portfolioService.getPortfolioByIdAndUser(id, user);
+        
+        if (portfolio.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        CashFlowCalendar calendar = cashFlowCalendarService.getCalendar(portfolio.get());
+        Map<String, Object> result = new HashMap<>();
+        result.put("from", calendar.from());
+        result.put("to", calendar.to());
+        result.put("totals", calendar.totals());
+        result.put("events", calendar.events());
+        return ResponseEntity.ok(result);
+    }
+
+    @GetMapping("/{id}/risk")
+    @ResponseBody
+    public ResponseEntity<com.invest.management.risk.PortfolioRisk> getPortfolioRiskJson(
+            @PathVariable Long id,
+            Authentication authentication) {
+        AppUser user = getCurrentUser(authentication);
+        Optional<Portfolio> portfolio = portfolioService.getPortfolioByIdAndUser(id, user);
+
+        if (portfolio.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok(riskService.getRisk(portfolio.get()));
+    }
+
+    @GetMapping("/{id}/targets")
+    @ResponseBody
+    public ResponseEntity<List<com.invest.management.rebalance.TargetWeight>> getTargetsJson(
+            @PathVariable Long id,
+            Authentication authentication) {
+        AppUser user = getCurrentUser(authentication);
+        Optional<Portfolio> portfolio = portfolioService.getPortfolioByIdAndUser(id, user);
+
+        if (portfolio.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok(rebalanceService.getTargets(portfolio.get()));
+    }
+
+    @PostMapping("/{id}/targets")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> saveTargets(
+            @PathVariable Long id,
+            @RequestBody List<com.invest.management.rebalance.TargetWeight> targets,
+            Authentication authentication) {
+        AppUser user = getCurrentUser(authentication);
+        Optional<Portfolio> portfolio = portfolioService.getPortfolioByIdAndUser(id, user);
+
+        if (portfolio.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Портфель не найден"));
+        }
+
+        try {
+            List<com.invest.management.rebalance.TargetWeight> saved = rebalanceService.saveTargets(portfolio.get(), targets);
+            return ResponseEntity.ok(Map.of("success", true, "targets", saved));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * План ребалансировки к сохраненным целям
+     */
+    @GetMapping("/{id}/rebalance")
+    @ResponseBody
+    public ResponseEntity<Object> getRebalancePlan(
+            @PathVariable Long id,
+            Authentication authentication) {
+        AppUser user = getCurrentUser(authentication);
+        Optional<Portfolio> portfolio = portfolioService.getPortfolioByIdAndUser(id, user);
+
+        if (portfolio.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok(rebalanceService.plan(portfolio.get()));
+    }
+
+    /**
+     * План ребалансировки к редактируемым (еще не сохраненным) целям
+     */
+    @PostMapping("/{id}/rebalance")
+    @ResponseBody
+    public ResponseEntity<Object> previewRebalancePlan(
+            @PathVariable Long id,
+            @RequestBody List<com.invest.management.rebalance.TargetWeight> targets,
+            Authentication authentication) {
+        AppUser user = getCurrentUser(authentication);
+        Optional<Portfolio> portfolio = portfolioService.getPortfolioByIdAndUser(id, user);
+
+        if (portfolio.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        try {
+            return ResponseEntity.ok(rebalanceService.plan(portfolio.get(), targets));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @GetMapping("/{id}/upload")
     public String showUploadForm(@PathVariable Long id, Model model, Authentication authentication) {
         AppUser user = getCurrentUser(authentication);
@@ -518,9 +661,7 @@ public class PortfolioController {
     }
 
     private AppUser getCurrentUser(Authentication authentication) {
-        String email = authentication.getName();
-        return userRepository.findByEmailIgnoreCase(email)
-            .orElseThrow(() -> new RuntimeException("Пользователь не найден"));
+        return currentUserService.getCurrentUser(authentication);
     }
 
     private boolean hasAlorToken(AppUser user, String environment) {
@@ -554,6 +695,9 @@ public class PortfolioController {
             com.invest.management.alor.AlorPortfolioService.SyncResult result = 
                     alorPortfolioService.syncPositionsFromAlor(p, user, environment, alorPortfolioId, exchange);
 
+            // Регистрируем портфель для периодической загрузки сделок и движений денежных средств
+            alorTransactionSyncService.registerPortfolio(p, environment, alorPortfolioId, exchange);
+
             // Формируем сообщение об успехе
             StringBuilder message = new StringBuilder();
             message.append(String.format("Синхронизация завершена: успешно обработано %d из %d позиций", 
@@ -593,6 +737,7 @@ public class PortfolioController {
     public static class PortfolioForm {
         private String name;
         private String brokerAccount;
+        private String baseCurrency = "RUB";
 
         public String getName() {
             return name;
@@ -609,6 +754,14 @@ public class PortfolioController {
         public void setBrokerAccount(String brokerAccount) {
             this.brokerAccount = brokerAccount;
         }
+
+        public String getBaseCurrency() {
+            return baseCurrency;
+        }
+
+        public void setBaseCurrency(String baseCurrency) {
+            this.baseCurrency = baseCurrency;
+        }
     }
 }
 
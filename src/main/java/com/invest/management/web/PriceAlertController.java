@@ -0,0 +1,78 @@
+package com.invest.management.web;
+
+import com.invest.management.alert.PriceAlert;
+import com.invest.management.alert.PriceAlertService;
+import com.invest.management.user.AppUser;
+import com.invest.management.user.CurrentUserService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ящик уведомлений о пересечении уровней поддержки/сопротивления
+ */
+@Controller
+@RequestMapping("/alerts")
+public class PriceAlertController {
+
+    private final PriceAlertService alertService;
+    private final CurrentUserService currentUserService;
+
+    public PriceAlertController(PriceAlertService alertService,
+                                CurrentUserService currentUserService) {
+        this.alertService = alertService;
+        this.currentUserService = currentUserService;
+    }
+
+    @GetMapping
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getAlerts() {
+        AppUser user = currentUser();
+        List<Map<String, Object>> alerts = alertService.getRecentAlerts(user).stream()
+            .map(this::toResponse)
+            .toList();
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("unreadCount", alertService.countUnread(user));
+        response.put("alerts", alerts);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/unread-count")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getUnreadCount() {
+        return ResponseEntity.ok(Map.of("unreadCount", alertService.countUnread(currentUser())));
+    }
+
+    @PostMapping("/read")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> markAllRead() {
+        int updated = alertService.markAllRead(currentUser());
+        return ResponseEntity.ok(Map.of("success", true, "updated", updated));
+    }
+
+    private Map<String, Object> toResponse(PriceAlert alert) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", alert.getId());
+        result.put("secid", alert.getSecid());
+        result.put("levelType", alert.getLevelType());
+        result.put("direction", alert.getDirection());
+        result.put("levelPrice", alert.getLevelPrice());
+        result.put("previousPrice", alert.getPreviousPrice());
+        result.put("price", alert.getPrice());
+        result.put("createdAt", alert.getCreatedAt());
+        result.put("read", alert.getReadAt() != null);
+        return result;
+    }
+
+    private AppUser currentUser() {
+        return currentUserService.getCurrentUser();
+    }
+}
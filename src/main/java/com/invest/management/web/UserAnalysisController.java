@@ -1,25 +1,22 @@
 package com.invest.management.web;
 
+import com.invest.management.analysis.AnalysisDataVersion;
 import com.invest.management.analysis.StockAnalysis;
 import com.invest.management.analysis.UserAnalysisRow;
 import com.invest.management.analysis.UserAnalysisService;
 import com.invest.management.user.AppUser;
-import com.invest.management.user.AppUserRepository;
+import com.invest.management.user.CurrentUserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
-import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -33,36 +30,44 @@ public class UserAnalysisController {
     private static final Logger log = LoggerFactory.getLogger(UserAnalysisController.class);
 
     private final UserAnalysisService userAnalysisService;
-    private final AppUserRepository userRepository;
+    private final CurrentUserService currentUserService;
+    private final AnalysisDataVersion dataVersion;
+    private final ConditionalGet conditionalGet;
 
     public UserAnalysisController(UserAnalysisService userAnalysisService,
-                                  AppUserRepository userRepository) {
+                                  CurrentUserService currentUserService,
+                                  AnalysisDataVersion dataVersion,
+                                  ConditionalGet conditionalGet) {
         this.userAnalysisService = userAnalysisService;
-        this.userRepository = userRepository;
+        this.currentUserService = currentUserService;
+        this.dataVersion = dataVersion;
+        this.conditionalGet = conditionalGet;
     }
 
     @GetMapping
     public String analysis(@RequestParam(value = "sortBy", required = false) String sortBy,
                           @RequestParam(value = "sortDir", required = false) String sortDir,
-                          Model model) {
+                          Model model,
+                          ServletWebRequest webRequest) {
         AppUser user = currentUser();
         
         // Редирект для ADMIN на страницу администрирования
         if ("ADMIN".equals(user.getRole())) {
             return "redirect:/admin/analysis";
         }
+
+        // Сортировка входит в URL, поэтому в ETag достаточно пользователя и версии данных анализа
+        if (conditionalGet.notModified(webRequest, "analysis", user.getId(), dataVersion.current())) {
+            return null;
+        }
         
         List<UserAnalysisRow> rows = userAnalysisService.getRowsForUser(user, sortBy, sortDir);
         List<StockAnalysis> availableStockAnalyses = userAnalysisService.getAvailableStockAnalyses(user);
 
-        // Вычисляем expertForecastPercent для каждого StockAnalysis
+        // Прогноз по экспертной цели хранится в StockAnalysis и пересчитывается после обновления цен
         java.util.Map<Long, java.math.BigDecimal> forecastPercentMap = new java.util.HashMap<>();
         for (StockAnalysis analysis : availableStockAnalyses) {
-            java.math.BigDecimal forecast = calculateExpertForecastPercent(
-                analysis.getExpertTarget(),
-                analysis.getStock() != null ? analysis.getStock().getMarketprice() : null
-            );
-            forecastPercentMap.put(analysis.getId(), forecast != null ? forecast.setScale(2, java.math.RoundingMode.HALF_UP) : null);
+            forecastPercentMap.put(analysis.getId(), analysis.getExpertForecastPercent());
         }
 
         log.debug("User {} analysis page: rows={}, availableStockAnalyses={}, sortBy={}, sortDir={}",
@@ -151,21 +156,6 @@ public class UserAnalysisController {
     }
 
     private AppUser currentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null || !StringUtils.hasText(authentication.getName())) {
-            throw new IllegalStateException("Не удалось определить текущего пользователя");
-        }
-        return userRepository.findByEmailIgnoreCase(authentication.getName())
-            .orElseThrow(() -> new IllegalStateException("Пользователь не найден: " + authentication.getName()));
-    }
-
-    private BigDecimal calculateExpertForecastPercent(BigDecimal target, BigDecimal marketPrice) {
-        if (target == null || marketPrice == null || marketPrice.compareTo(BigDecimal.ZERO) == 0) {
-            return null;
-        }
-        return target.subtract(marketPrice)
-            .divide(marketPrice, 6, RoundingMode.HALF_UP)
-            .multiply(new BigDecimal("100"));
+        return currentUserService.getCurrentUser();
     }
 }
-
@@ -0,0 +1,85 @@
+package com.invest.management;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверяет, что горячие запросы репозиториев используют индексы из changeSet 024.
+ * Индексы частичные/покрывающие и существуют только в PostgreSQL, поэтому тест запускается
+ * только при заданной переменной окружения INVEST_TEST_POSTGRES_URL (схема создается Liquibase).
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=${INVEST_TEST_POSTGRES_URL}",
+        "spring.datasource.username=${INVEST_TEST_POSTGRES_USER:invest_user}",
+        "spring.datasource.password=${INVEST_TEST_POSTGRES_PASSWORD:}",
+        "spring.datasource.driver-class-name=org.postgresql.Driver",
+        "moex.price-updater.enabled=false",
+        "alor.price-updater.enabled=false",
+        "alor.transaction-sync.enabled=false"
+})
+@EnabledIfEnvironmentVariable(named = "INVEST_TEST_POSTGRES_URL", matches = ".+")
+@Transactional
+class HotQueryIndexIntegrationTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        // На пустых таблицах планировщик выбирает seq scan, отключаем его в рамках транзакции теста
+        jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+        jdbcTemplate.execute("SET LOCAL enable_bitmapscan = off");
+    }
+
+    private String explain(String sql) {
+        List<String> plan = jdbcTemplate.queryForList("EXPLAIN " + sql, String.class);
+        return String.join("\n", plan);
+    }
+
+    @Test
+    void findByUsers_UsesPortfolioUserIndex() {
+        String plan = explain("SELECT pp.* FROM portfolio_positions pp "
+                + "JOIN portfolios p ON p.id = pp.portfolio_id WHERE p.user_id IN (1, 2)");
+        assertThat(plan).contains("idx_portfolios_user");
+    }
+
+    @Test
+    void findByIsin_UsesIsinIndexes() {
+        assertThat(explain("SELECT * FROM moex_stocks WHERE isin = 'RU0009029540'"))
+                .contains("idx_moex_stocks_isin");
+        assertThat(explain("SELECT * FROM moex_bonds WHERE isin = 'RU000A100733'"))
+                .contains("idx_moex_bonds_isin");
+    }
+
+    @Test
+    void findBySecid_UsesUniqueSecidIndexes() {
+        assertThat(explain("SELECT * FROM moex_stocks WHERE secid = 'SBER'"))
+                .contains("uq_moex_stocks_secid");
+        assertThat(explain("SELECT * FROM moex_bonds WHERE secid = 'SU26238RMFS4'"))
+                .contains("uq_moex_bonds_secid");
+    }
+
+    @Test
+    void findByPortfolioAndTradeNumber_UsesUniqueTradeNumberIndex() {
+        String plan = explain("SELECT * FROM portfolio_transactions WHERE portfolio_id = 1 AND trade_number = '3071727764'");
+        assertThat(plan).contains("uq_portfolio_transactions_trade_number");
+    }
+
+    @Test
+    void calculateBalance_UsesCoveringIndexOnly() {
+        String plan = explain("SELECT COALESCE(SUM(credit_amount), 0) - COALESCE(SUM(debit_amount), 0) "
+                + "FROM portfolio_cash_movements WHERE portfolio_id = 1 AND currency = 'RUB'");
+        assertThat(plan)
+                .contains("Index Only Scan")
+                .contains("idx_portfolio_cash_movements_portfolio_currency");
+    }
+}
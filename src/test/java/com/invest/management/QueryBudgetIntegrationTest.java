@@ -0,0 +1,209 @@
+package com.invest.management;
+
+import com.invest.management.alor.AlorPriceUpdater;
+import com.invest.management.alor.common.AlorTokenService;
+import com.invest.management.analysis.ExpertAssessment;
+import com.invest.management.analysis.StockAnalysis;
+import com.invest.management.analysis.UserAnalysis;
+import com.invest.management.analysis.UserAnalysisRow;
+import com.invest.management.analysis.UserAnalysisService;
+import com.invest.management.moex.MoexStock;
+import com.invest.management.portfolio.Portfolio;
+import com.invest.management.portfolio.PortfolioPosition;
+import com.invest.management.support.QueryBudget;
+import com.invest.management.user.AppUser;
+import com.invest.management.user.AppUserPrincipal;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Бюджеты SQL-запросов ключевых сценариев
+ * Количество бумаг в данных заметно больше бюджета: запрос на каждую позицию или строку (N+1)
+ * гарантированно выводит сценарий за бюджет, и тест падает со списком повторяющихся запросов.
+ * Котировки ALOR отдает встроенная заглушка (replay.stub), сеть не нужна.
+ */
+@SpringBootTest(properties = {
+        "replay.stub.enabled=true",
+        "replay.stub.port=18191",
+        "replay.stub.synthetic-tickers=1",
+        "replay.stub.latency-ms=0",
+        "replay.stub.latency-jitter-ms=0",
+        "alor.api.production-base-url=http://localhost:18191/alor",
+        "alor.api.production-oauth-url=http://localhost:18191/alor",
+        "alor.price-updater.enabled=true",
+        "alor.price-updater.cron=-",
+        "moex.price-updater.enabled=false",
+        "alor.transaction-sync.enabled=false"
+})
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+@Transactional
+class QueryBudgetIntegrationTest {
+
+    private static final int SECURITIES = 60;
+    private static final String EMAIL = "budget@example.com";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private UserAnalysisService userAnalysisService;
+
+    @Autowired
+    private AlorPriceUpdater alorPriceUpdater;
+
+    @Autowired
+    private AlorTokenService alorTokenService;
+
+    private AppUser testUser;
+    private Portfolio testPortfolio;
+
+    @BeforeEach
+    void setUp() {
+        testUser = new AppUser();
+        testUser.setEmail(EMAIL);
+        testUser.setPasswordHash("not-used");
+        testUser.setRole("USER");
+        entityManager.persist(testUser);
+
+        testPortfolio = new Portfolio();
+        testPortfolio.setUser(testUser);
+        testPortfolio.setName("Budget Portfolio");
+        entityManager.persist(testPortfolio);
+
+        for (int i = 1; i <= SECURITIES; i++) {
+            MoexStock stock = new MoexStock();
+            stock.setSecid(String.format("BGT%03d", i));
+            stock.setBoardid("TQBR");
+            stock.setShortname("Бумага " + i);
+            stock.setIsin(String.format("RUB%09d", i));
+            stock.setCurrencyid("SUR");
+            stock.setDecimals(2);
+            stock.setMarketprice(BigDecimal.valueOf(100 + i));
+            stock.setPrevprice(BigDecimal.valueOf(99 + i));
+            entityManager.persist(stock);
+
+            PortfolioPosition position = new PortfolioPosition();
+            position.setPortfolio(testPortfolio);
+            position.setIsin(stock.getIsin());
+            position.setSecurityType("STOCK");
+            position.setMoexStock(stock);
+            position.setQuantity(BigDecimal.TEN);
+            // Половина позиций без средней цены попадает в список "требуется ввод цены"
+            position.setAveragePurchasePrice(i % 2 == 0 ? BigDecimal.valueOf(90 + i) : null);
+            entityManager.persist(position);
+
+            StockAnalysis stockAnalysis = new StockAnalysis();
+            stockAnalysis.setStock(stock);
+            entityManager.persist(stockAnalysis);
+
+            ExpertAssessment assessment = new ExpertAssessment();
+            assessment.setStockAnalysis(stockAnalysis);
+            assessment.setExpertTarget(BigDecimal.valueOf(150 + i));
+            assessment.setExpertRecommendation("BUY");
+            assessment.setExpertTargetDate(LocalDate.now().plusMonths(6));
+            assessment.setCreatedAt(OffsetDateTime.now());
+            entityManager.persist(assessment);
+            stockAnalysis.setCurrentExpertAssessment(assessment);
+
+            UserAnalysis userAnalysis = new UserAnalysis();
+            userAnalysis.setUser(testUser);
+            userAnalysis.setStockAnalysis(stockAnalysis);
+            userAnalysis.setSupport(BigDecimal.valueOf(95 + i));
+            userAnalysis.setResistance(BigDecimal.valueOf(120 + i));
+            entityManager.persist(userAnalysis);
+        }
+        alorTokenService.saveRefreshToken(testUser, "production", "query-budget-refresh-token", null, null);
+        clearPersistenceContext();
+    }
+
+    /**
+     * Principal, как после входа через форму: с id пользователя, по которому проверяется кэш пользователей
+     */
+    private AppUserPrincipal principal() {
+        return new AppUserPrincipal(testUser);
+    }
+
+    /**
+     * Сбрасывает данные в БД и очищает кэш первого уровня, чтобы сценарий читал связи заново
+     */
+    private void clearPersistenceContext() {
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void viewPortfolio_StaysWithinBudget() throws Exception {
+        QueryBudget.assertAtMost("viewPortfolio", 40, () ->
+            mockMvc.perform(get("/portfolios/{id}", testPortfolio.getId()).with(user(principal())))
+                .andExpect(status().isOk()));
+    }
+
+    @Test
+    void portfolioValueJson_StaysWithinBudget() throws Exception {
+        QueryBudget.assertAtMost("getPortfolioValueJson", 20, () ->
+            mockMvc.perform(get("/portfolios/{id}/value", testPortfolio.getId()).with(user(principal())))
+                .andExpect(status().isOk()));
+    }
+
+    @Test
+    void portfolioValueJson_NotModifiedSkipsValuation() throws Exception {
+        String etag = mockMvc.perform(get("/portfolios/{id}/value", testPortfolio.getId()).with(user(principal())))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader("ETag");
+        assertThat(etag).startsWith("W/");
+
+        // Пользователь и портфель, без позиций и цен
+        QueryBudget.assertAtMost("getPortfolioValueJson (304)", 2, () ->
+            mockMvc.perform(get("/portfolios/{id}/value", testPortfolio.getId())
+                    .header("If-None-Match", etag)
+                    .with(user(principal())))
+                .andExpect(status().isNotModified()));
+    }
+
+    @Test
+    void getRowsForUser_StaysWithinBudget() throws Exception {
+        AppUser user = entityManager.find(AppUser.class, testUser.getId());
+        List<UserAnalysisRow> rows = QueryBudget.assertAtMost("getRowsForUser", 5, () ->
+            userAnalysisService.getRowsForUser(user));
+        assertThat(rows).hasSize(SECURITIES);
+        assertThat(rows.get(0).userAnalysis().getStockAnalysis().getExpertTarget()).isNotNull();
+    }
+
+    @Test
+    void updatePricesFromAlor_StaysWithinBudget() throws Exception {
+        QueryBudget.assertAtMost("updatePricesFromAlor", 20, () -> {
+            alorPriceUpdater.updatePricesFromAlor();
+            // Обновления цен уходят пакетами при сбросе контекста
+            entityManager.flush();
+        });
+        clearPersistenceContext();
+
+        PortfolioPosition position = entityManager.createQuery(
+                "SELECT p FROM PortfolioPosition p WHERE p.portfolio = :portfolio", PortfolioPosition.class)
+            .setParameter("portfolio", testPortfolio)
+            .setMaxResults(1)
+            .getSingleResult();
+        assertThat(position.getLastKnownPrice()).isNotNull();
+    }
+}
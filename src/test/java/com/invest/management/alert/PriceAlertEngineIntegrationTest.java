@@ -0,0 +1,130 @@
+package com.invest.management.alert;
+
+import com.invest.management.analysis.AnalysisDataVersion;
+import com.invest.management.analysis.StockAnalysis;
+import com.invest.management.analysis.UserAnalysis;
+import com.invest.management.moex.MoexStock;
+import com.invest.management.user.AppUser;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Уведомления о пересечении уровня при расходящихся ценах MOEX (отложенная ISS) и ALOR
+ * Движок сохраняет уведомления в отдельной транзакции, поэтому данные коммитятся и удаляются после теста
+ */
+@SpringBootTest(properties = {
+        "moex.price-updater.enabled=false",
+        "alor.price-updater.enabled=false",
+        "alor.transaction-sync.enabled=false"
+})
+@ActiveProfiles("test")
+class PriceAlertEngineIntegrationTest {
+
+    private static final String SECID = "ALRT";
+    private static final String MOEX = PriceTick.SOURCE_MOEX;
+    private static final String ALOR = PriceTick.SOURCE_ALOR;
+
+    @Autowired
+    private PriceAlertEngine engine;
+
+    @Autowired
+    private PriceAlertRepository alertRepository;
+
+    @Autowired
+    private AnalysisDataVersion dataVersion;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private AppUser user;
+
+    @BeforeEach
+    void setUp() {
+        user = transactionTemplate.execute(status -> {
+            AppUser created = new AppUser();
+            created.setEmail("alerts@example.com");
+            created.setPasswordHash("not-used");
+            created.setRole("USER");
+            entityManager.persist(created);
+
+            MoexStock stock = new MoexStock();
+            stock.setSecid(SECID);
+            stock.setBoardid("TQBR");
+            stock.setShortname("Уровни");
+            stock.setIsin("RU000ALRT001");
+            entityManager.persist(stock);
+
+            StockAnalysis stockAnalysis = new StockAnalysis();
+            stockAnalysis.setStock(stock);
+            entityManager.persist(stockAnalysis);
+
+            UserAnalysis userAnalysis = new UserAnalysis();
+            userAnalysis.setUser(created);
+            userAnalysis.setStockAnalysis(stockAnalysis);
+            userAnalysis.setResistance(new BigDecimal("100"));
+            entityManager.persist(userAnalysis);
+            return created;
+        });
+        // Индекс уровней перестраивается по версии уровней
+        dataVersion.markLevelsChanged();
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.createQuery("DELETE FROM PriceAlert").executeUpdate();
+            entityManager.createQuery("DELETE FROM UserAnalysis").executeUpdate();
+            entityManager.createQuery("DELETE FROM StockAnalysis").executeUpdate();
+            entityManager.createQuery("DELETE FROM MoexStock").executeUpdate();
+            entityManager.createQuery("DELETE FROM AppUser").executeUpdate();
+        });
+        dataVersion.markLevelsChanged();
+    }
+
+    @Test
+    void alternatingMoexAndAlorTicks_ReportCrossingOnce() {
+        tick(MOEX, "99", "99.5");
+        tick(ALOR, null, "99.8");
+        // ALOR пересекает сопротивление 100
+        tick(ALOR, null, "100.4");
+
+        // ISS отстает и держится ниже уровня: каждый источник сравнивается со своей ценой
+        for (int i = 0; i < 5; i++) {
+            tick(MOEX, null, "99.5");
+            tick(ALOR, null, "100.4");
+        }
+
+        // ISS догоняет ALOR - то же пересечение по другому источнику
+        tick(MOEX, null, "100.2");
+
+        // Колебания около уровня в пределах полосы повторной охраны
+        tick(ALOR, null, "99.9");
+        tick(ALOR, null, "100.1");
+        tick(MOEX, null, "99.8");
+        tick(MOEX, null, "100.3");
+
+        assertThat(alertRepository.countByUserAndReadAtIsNull(user)).isEqualTo(1);
+        PriceAlert alert = alertRepository.findTop50ByUserOrderByCreatedAtDesc(user).get(0);
+        assertThat(alert.getDirection()).isEqualTo(PriceAlert.DIRECTION_UP);
+        assertThat(alert.getPrice()).isEqualByComparingTo("100.4");
+    }
+
+    private void tick(String source, String previousPrice, String price) {
+        engine.onPriceTicks(List.of(new PriceTick(SECID, source,
+            previousPrice != null ? new BigDecimal(previousPrice) : null, new BigDecimal(price))));
+    }
+}
@@ -0,0 +1,198 @@
+package com.invest.management.alor;
+
+import com.invest.management.alor.common.AlorAsyncClient;
+import com.invest.management.alor.dto.AlorCashMovement;
+import com.invest.management.alor.dto.AlorTransaction;
+import com.invest.management.moex.MoexStock;
+import com.invest.management.moex.MoexStockRepository;
+import com.invest.management.portfolio.BrokerReport;
+import com.invest.management.portfolio.BrokerReportRepository;
+import com.invest.management.portfolio.Portfolio;
+import com.invest.management.portfolio.PortfolioCashBalanceService;
+import com.invest.management.portfolio.PortfolioCashMovementRepository;
+import com.invest.management.portfolio.PortfolioRepository;
+import com.invest.management.portfolio.PortfolioTransactionRepository;
+import com.invest.management.user.AppUser;
+import com.invest.management.user.AppUserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Инкрементальная синхронизация ALOR: сдвиг курсора и повторная загрузка того же окна
+ * Ответы ALOR подменяются, сделки и движения сохраняются в H2
+ */
+@SpringBootTest(properties = {
+        "moex.price-updater.enabled=false",
+        "alor.price-updater.enabled=false",
+        "alor.transaction-sync.enabled=false"
+})
+@ActiveProfiles("test")
+@Transactional
+class AlorTransactionSyncServiceIntegrationTest {
+
+    @Autowired
+    private AlorTransactionSyncService syncService;
+
+    @Autowired
+    private AlorSyncCursorRepository cursorRepository;
+
+    @Autowired
+    private PortfolioRepository portfolioRepository;
+
+    @Autowired
+    private PortfolioTransactionRepository transactionRepository;
+
+    @Autowired
+    private PortfolioCashMovementRepository cashMovementRepository;
+
+    @Autowired
+    private PortfolioCashBalanceService cashBalanceService;
+
+    @Autowired
+    private BrokerReportRepository reportRepository;
+
+    @Autowired
+    private MoexStockRepository stockRepository;
+
+    @Autowired
+    private AppUserRepository userRepository;
+
+    @MockitoBean
+    private AlorAsyncClient alorAsyncClient;
+
+    private Portfolio portfolio;
+    private AlorSyncCursor cursor;
+
+    @BeforeEach
+    void setUp() {
+        AppUser user = new AppUser();
+        user.setEmail("alor-sync@example.com");
+        user.setPasswordHash("not-used");
+        user.setRole("USER");
+        user = userRepository.save(user);
+
+        portfolio = new Portfolio();
+        portfolio.setUser(user);
+        portfolio.setName("ALOR");
+        portfolio = portfolioRepository.save(portfolio);
+
+        stockRepository.save(stock("SBER", "RU0009029540"));
+
+        cursor = syncService.registerPortfolio(portfolio, "production", "D12345", "MOEX");
+    }
+
+    @Test
+    void unresolvedTrade_KeepsCursorAtItsDate() {
+        LocalDate earlier = LocalDate.now().minusDays(10);
+        LocalDate later = LocalDate.now().minusDays(2);
+        // Бумаги NEWB еще нет в справочнике - сделку нельзя сохранить
+        respond(List.of(trade(101L, "NEWB", earlier), trade(102L, "SBER", later)), List.of());
+
+        AlorTransactionSyncService.TransactionSyncResult first = syncService.syncPortfolio(cursor.getId());
+
+        assertThat(first.newTransactions()).isEqualTo(1);
+        assertThat(first.skippedTransactions()).isEqualTo(1);
+        assertThat(cursorRepository.findById(cursor.getId()).orElseThrow().getLastTradeDate()).isEqualTo(earlier);
+
+        // Бумага появилась в справочнике - следующий запуск с той же даты догружает пропущенную сделку
+        stockRepository.save(stock("NEWB", "RU000NEWB001"));
+
+        AlorTransactionSyncService.TransactionSyncResult second = syncService.syncPortfolio(cursor.getId());
+
+        assertThat(second.newTransactions()).isEqualTo(1);
+        assertThat(transactionRepository.findExistingTradeNumbers(portfolio, List.of("101", "102")))
+            .containsExactlyInAnyOrder("101", "102");
+        assertThat(cursorRepository.findById(cursor.getId()).orElseThrow().getLastTradeDate()).isEqualTo(later);
+    }
+
+    @Test
+    void repeatedSync_IsIdempotentForTradesAndEqualCashMovements() {
+        LocalDate day = LocalDate.now().minusDays(3);
+        // Два одинаковых купона за день - два движения, а не одно
+        respond(List.of(trade(201L, "SBER", day)),
+            List.of(coupon(day, "150.00"), coupon(day, "150.00")));
+
+        AlorTransactionSyncService.TransactionSyncResult first = syncService.syncPortfolio(cursor.getId());
+
+        assertThat(first.newTransactions()).isEqualTo(1);
+        assertThat(first.newCashMovements()).isEqualTo(2);
+        assertThat(cashBalanceService.getBalance(portfolio, "RUB")).isEqualByComparingTo("300.00");
+
+        AlorTransactionSyncService.TransactionSyncResult second = syncService.syncPortfolio(cursor.getId());
+
+        assertThat(second.newTransactions()).isZero();
+        assertThat(second.newCashMovements()).isZero();
+        assertThat(cashMovementRepository.findByPortfolio(portfolio)).hasSize(2);
+        assertThat(cashBalanceService.getBalance(portfolio, "RUB")).isEqualByComparingTo("300.00");
+    }
+
+    @Test
+    void cashMovementsInsideBrokerReportPeriod_AreNotLoaded() {
+        LocalDate day = LocalDate.now().minusDays(20);
+        BrokerReport report = new BrokerReport();
+        report.setPortfolio(portfolio);
+        report.setFileName("report.xlsx");
+        report.setReportPeriodStart(day.minusDays(5));
+        report.setReportPeriodEnd(day.plusDays(5));
+        reportRepository.save(report);
+
+        respond(List.of(), List.of(coupon(day, "150.00"), coupon(LocalDate.now().minusDays(1), "80.00")));
+
+        AlorTransactionSyncService.TransactionSyncResult result = syncService.syncPortfolio(cursor.getId());
+
+        assertThat(result.newCashMovements()).isEqualTo(1);
+        assertThat(cashBalanceService.getBalance(portfolio, "RUB")).isEqualByComparingTo("80.00");
+    }
+
+    private void respond(List<AlorTransaction> transactions, List<AlorCashMovement> movements) {
+        when(alorAsyncClient.getTransactions(any(), any(), any(), any(), any(), any()))
+            .thenReturn(CompletableFuture.completedFuture(transactions));
+        when(alorAsyncClient.getCashMovements(any(), any(), any(), any(), any(), any()))
+            .thenReturn(CompletableFuture.completedFuture(movements));
+    }
+
+    private static MoexStock stock(String secid, String isin) {
+        MoexStock stock = new MoexStock();
+        stock.setSecid(secid);
+        stock.setBoardid("TQBR");
+        stock.setShortname(secid);
+        stock.setIsin(isin);
+        return stock;
+    }
+
+    private static AlorTransaction trade(long id, String symbol, LocalDate date) {
+        AlorTransaction transaction = new AlorTransaction();
+        transaction.setId(id);
+        transaction.setSymbol(symbol);
+        transaction.setQuantity(new BigDecimal("10"));
+        transaction.setPrice(new BigDecimal("250.50"));
+        transaction.setCurrency("RUB");
+        transaction.setDate(date.atTime(11, 30));
+        transaction.setSide("buy");
+        return transaction;
+    }
+
+    private static AlorCashMovement coupon(LocalDate date, String amount) {
+        AlorCashMovement movement = new AlorCashMovement();
+        movement.setDate(date);
+        movement.setAmount(new BigDecimal(amount));
+        movement.setCurrency("RUB");
+        movement.setOperationType("COUPON");
+        movement.setDescription("Купон");
+        return movement;
+    }
+}
@@ -0,0 +1,67 @@
+package com.invest.management.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Накопитель длительностей операций одного вида (запросы страницы, запуски обновления цен)
+ * Длительности пишутся в заранее выделенный массив без блокировок; при переполнении
+ * лишние значения учитываются только в счетчиках.
+ */
+final class LatencyStats {
+
+    private final String name;
+    private final long[] samplesNanos;
+    private final AtomicInteger recorded = new AtomicInteger();
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    LatencyStats(String name, int capacity) {
+        this.name = name;
+        this.samplesNanos = new long[capacity];
+    }
+
+    void record(long nanos, boolean success) {
+        count.increment();
+        if (!success) {
+            errors.increment();
+        }
+        int slot = recorded.getAndIncrement();
+        if (slot < samplesNanos.length) {
+            samplesNanos[slot] = nanos;
+        }
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    long errors() {
+        return errors.sum();
+    }
+
+    /**
+     * @return строка отчета: количество, ошибки, пропускная способность, p50/p99/max в мс
+     */
+    String summary(double seconds) {
+        long[] sorted = Arrays.copyOf(samplesNanos, Math.min(recorded.get(), samplesNanos.length));
+        Arrays.sort(sorted);
+        return String.format("%-28s n=%-7d err=%-5d %8.1f op/s  p50=%8.1f мс  p99=%8.1f мс  max=%8.1f мс",
+            name, count(), errors(), count() / Math.max(seconds, 0.001),
+            millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.99)),
+            millis(sorted.length > 0 ? sorted[sorted.length - 1] : 0));
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
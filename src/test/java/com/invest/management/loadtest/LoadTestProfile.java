@@ -0,0 +1,31 @@
+package com.invest.management.loadtest;
+
+import java.time.Duration;
+
+/**
+ * Параметры нагрузочного прогона из переменных окружения INVEST_LOAD_*
+ */
+record LoadTestProfile(int users,
+                       int portfoliosPerUser,
+                       int positionsPerPortfolio,
+                       int transactionsPerPosition,
+                       int concurrency,
+                       Duration duration,
+                       Duration warmup) {
+
+    static LoadTestProfile fromEnvironment() {
+        return new LoadTestProfile(
+            intEnv("INVEST_LOAD_USERS", 20),
+            intEnv("INVEST_LOAD_PORTFOLIOS", 3),
+            intEnv("INVEST_LOAD_POSITIONS", 30),
+            intEnv("INVEST_LOAD_TRANSACTIONS", 5),
+            intEnv("INVEST_LOAD_CONCURRENCY", 16),
+            Duration.ofSeconds(intEnv("INVEST_LOAD_DURATION_SECONDS", 60)),
+            Duration.ofSeconds(intEnv("INVEST_LOAD_WARMUP_SECONDS", 10)));
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+}
@@ -0,0 +1,144 @@
+package com.invest.management.loadtest;
+
+import com.invest.management.alor.common.AlorTokenService;
+import com.invest.management.moex.MoexStock;
+import com.invest.management.portfolio.Portfolio;
+import com.invest.management.portfolio.PortfolioPosition;
+import com.invest.management.portfolio.PortfolioPositionRepository;
+import com.invest.management.portfolio.PortfolioRepository;
+import com.invest.management.portfolio.PortfolioTransaction;
+import com.invest.management.portfolio.PortfolioTransactionRepository;
+import com.invest.management.user.AppUser;
+import com.invest.management.user.AppUserRepository;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Наполнение БД для нагрузочного прогона: N пользователей × M портфелей × K позиций,
+ * по каждой позиции - заданное количество сделок покупки
+ * Данные детерминированы (фиксированный seed), чтобы прогоны были сравнимы между собой.
+ */
+class LoadTestSeeder {
+
+    static final String PASSWORD = "load-test-password";
+
+    private final AppUserRepository userRepository;
+    private final PortfolioRepository portfolioRepository;
+    private final PortfolioPositionRepository positionRepository;
+    private final PortfolioTransactionRepository transactionRepository;
+    private final AlorTokenService alorTokenService;
+    private final PasswordEncoder passwordEncoder;
+    private final TransactionTemplate transactionTemplate;
+
+    LoadTestSeeder(AppUserRepository userRepository,
+                   PortfolioRepository portfolioRepository,
+                   PortfolioPositionRepository positionRepository,
+                   PortfolioTransactionRepository transactionRepository,
+                   AlorTokenService alorTokenService,
+                   PasswordEncoder passwordEncoder,
+                   TransactionTemplate transactionTemplate) {
+        this.userRepository = userRepository;
+        this.portfolioRepository = portfolioRepository;
+        this.positionRepository = positionRepository;
+        this.transactionRepository = transactionRepository;
+        this.alorTokenService = alorTokenService;
+        this.passwordEncoder = passwordEncoder;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * @return пользователи с идентификаторами их портфелей
+     */
+    List<SeededUser> seed(LoadTestProfile profile, List<MoexStock> stocks) {
+        if (stocks.isEmpty()) {
+            throw new IllegalStateException("Справочник акций пуст: нечего класть в портфели");
+        }
+        Random random = new Random(42);
+        // BCrypt дорогой, один хэш используется всеми пользователями
+        String passwordHash = passwordEncoder.encode(PASSWORD);
+        List<SeededUser> seeded = new ArrayList<>(profile.users());
+
+        for (int u = 0; u < profile.users(); u++) {
+            int userNumber = u;
+            SeededUser user = transactionTemplate.execute(status ->
+                seedUser(userNumber, passwordHash, profile, stocks, random));
+            seeded.add(user);
+        }
+
+        // Котировки ALOR запрашиваются с токеном первого пользователя с токеном
+        AppUser first = userRepository.findByEmailIgnoreCase(seeded.get(0).email()).orElseThrow();
+        alorTokenService.saveRefreshToken(first, "production", "load-test-refresh-token", null, null);
+        return seeded;
+    }
+
+    private SeededUser seedUser(int number, String passwordHash, LoadTestProfile profile,
+                                List<MoexStock> stocks, Random random) {
+        AppUser user = new AppUser();
+        user.setEmail("load-user-" + number + "@example.com");
+        user.setPasswordHash(passwordHash);
+        user.setRole("USER");
+        user = userRepository.save(user);
+
+        List<Long> portfolioIds = new ArrayList<>(profile.portfoliosPerUser());
+        for (int p = 0; p < profile.portfoliosPerUser(); p++) {
+            Portfolio portfolio = new Portfolio();
+            portfolio.setUser(user);
+            portfolio.setName("Нагрузочный портфель " + (p + 1));
+            portfolio = portfolioRepository.save(portfolio);
+            portfolioIds.add(portfolio.getId());
+
+            List<PortfolioPosition> positions = new ArrayList<>(profile.positionsPerPortfolio());
+            List<PortfolioTransaction> transactions = new ArrayList<>();
+            int offset = random.nextInt(stocks.size());
+            for (int k = 0; k < Math.min(profile.positionsPerPortfolio(), stocks.size()); k++) {
+                MoexStock stock = stocks.get((offset + k) % stocks.size());
+                BigDecimal price = stock.getPrevprice() != null ? stock.getPrevprice() : BigDecimal.TEN;
+                BigDecimal quantity = BigDecimal.ZERO;
+                for (int t = 0; t < profile.transactionsPerPosition(); t++) {
+                    BigDecimal lots = BigDecimal.valueOf(1 + random.nextInt(20));
+                    BigDecimal tradePrice = price.multiply(BigDecimal.valueOf(0.8 + random.nextDouble() * 0.4))
+                        .setScale(2, RoundingMode.HALF_UP);
+                    transactions.add(transaction(portfolio, stock, lots, tradePrice, t));
+                    quantity = quantity.add(lots);
+                }
+
+                PortfolioPosition position = new PortfolioPosition();
+                position.setPortfolio(portfolio);
+                position.setIsin(stock.getIsin());
+                position.setSecurityType("STOCK");
+                position.setMoexStock(stock);
+                position.setQuantity(quantity);
+                position.setAveragePurchasePrice(price);
+                positions.add(position);
+            }
+            positionRepository.saveAll(positions);
+            transactionRepository.saveAll(transactions);
+        }
+        return new SeededUser(user.getEmail(), List.copyOf(portfolioIds));
+    }
+
+    private static PortfolioTransaction transaction(Portfolio portfolio, MoexStock stock,
+                                                    BigDecimal quantity, BigDecimal price, int number) {
+        PortfolioTransaction transaction = new PortfolioTransaction();
+        transaction.setPortfolio(portfolio);
+        transaction.setIsin(stock.getIsin());
+        transaction.setSecurityType("STOCK");
+        transaction.setTradeDate(LocalDate.now().minusDays(30L * (number + 1)));
+        transaction.setCurrency("RUB");
+        transaction.setOperationType("Покупка");
+        transaction.setQuantity(quantity);
+        transaction.setPrice(price);
+        transaction.setAmount(price.multiply(quantity).setScale(2, RoundingMode.HALF_UP));
+        return transaction;
+    }
+
+    record SeededUser(String email, List<Long> portfolioIds) {
+    }
+}
@@ -0,0 +1,272 @@
+package com.invest.management.loadtest;
+
+import com.invest.management.alor.AlorPriceUpdater;
+import com.invest.management.alor.common.AlorTokenService;
+import com.invest.management.moex.MoexDataLoader;
+import com.invest.management.moex.MoexPriceUpdater;
+import com.invest.management.moex.MoexStock;
+import com.invest.management.moex.MoexStockRepository;
+import com.invest.management.portfolio.PortfolioPositionRepository;
+import com.invest.management.portfolio.PortfolioRepository;
+import com.invest.management.portfolio.PortfolioTransactionRepository;
+import com.invest.management.user.AppUserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Нагрузочный прогон страниц портфеля вместе с обновлением цен
+ * Приложение поднимается на случайном порту, MOEX ISS и ALOR заменяются встроенным
+ * стаб-сервером с синтетическим рынком (replay.stub.*). Справочник акций загружается
+ * через стаб, затем БД наполняется пользователями, портфелями, позициями и сделками.
+ * Параллельные клиенты запрашивают /portfolios/{id} и /portfolios/{id}/value, пока
+ * MoexPriceUpdater и AlorPriceUpdater работают в цикле; в лог выводятся p50/p99,
+ * пропускная способность и количество SQL-запросов (статистика Hibernate).
+ *
+ * Запуск: INVEST_LOAD_TEST=true mvn test -Dtest=PortfolioLoadTest
+ * Размер прогона задается переменными INVEST_LOAD_* (см. {@link LoadTestProfile}),
+ * по умолчанию используется H2; для PostgreSQL задайте INVEST_LOAD_DB_URL,
+ * INVEST_LOAD_DB_USER, INVEST_LOAD_DB_PASSWORD, INVEST_LOAD_DB_DRIVER и INVEST_LOAD_DB_DIALECT.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=${INVEST_LOAD_DB_URL:jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1}",
+        "spring.datasource.username=${INVEST_LOAD_DB_USER:sa}",
+        "spring.datasource.password=${INVEST_LOAD_DB_PASSWORD:}",
+        "spring.datasource.driver-class-name=${INVEST_LOAD_DB_DRIVER:org.h2.Driver}",
+        "spring.jpa.properties.hibernate.dialect=${INVEST_LOAD_DB_DIALECT:org.hibernate.dialect.H2Dialect}",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "replay.stub.enabled=true",
+        "replay.stub.port=${INVEST_LOAD_STUB_PORT:18090}",
+        "replay.stub.synthetic-tickers=${INVEST_LOAD_TICKERS:300}",
+        "replay.stub.latency-ms=${INVEST_LOAD_STUB_LATENCY_MS:20}",
+        "replay.stub.latency-jitter-ms=${INVEST_LOAD_STUB_JITTER_MS:30}",
+        "moex.api.base-url=http://localhost:${replay.stub.port}/moex/iss",
+        "alor.api.production-base-url=http://localhost:${replay.stub.port}/alor",
+        "alor.api.production-oauth-url=http://localhost:${replay.stub.port}/alor",
+        // Обновления цен запускает сам тест, расписание отключено
+        "moex.price-updater.enabled=true",
+        "moex.price-updater.cron=-",
+        "alor.price-updater.enabled=true",
+        "alor.price-updater.cron=-",
+        "alor.transaction-sync.enabled=false",
+        "moex.fx.enabled=false",
+        "moex.bondization.enabled=false",
+        "portfolio.risk.enabled=false",
+        "startup.warmup.enabled=false"
+})
+@ActiveProfiles("test")
+@EnabledIfEnvironmentVariable(named = "INVEST_LOAD_TEST", matches = "true")
+class PortfolioLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(PortfolioLoadTest.class);
+    private static final int SAMPLE_CAPACITY = 2_000_000;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MoexDataLoader moexDataLoader;
+
+    @Autowired
+    private MoexStockRepository stockRepository;
+
+    @Autowired
+    private MoexPriceUpdater moexPriceUpdater;
+
+    @Autowired
+    private AlorPriceUpdater alorPriceUpdater;
+
+    @Autowired
+    private AppUserRepository userRepository;
+
+    @Autowired
+    private PortfolioRepository portfolioRepository;
+
+    @Autowired
+    private PortfolioPositionRepository positionRepository;
+
+    @Autowired
+    private PortfolioTransactionRepository transactionRepository;
+
+    @Autowired
+    private AlorTokenService alorTokenService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void portfolioPagesUnderLoadWithPriceUpdates() throws Exception {
+        LoadTestProfile profile = LoadTestProfile.fromEnvironment();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        long seedStarted = System.nanoTime();
+        moexDataLoader.loadStocksListA();
+        List<MoexStock> stocks = stockRepository.findAll();
+        List<LoadTestSeeder.SeededUser> users = new LoadTestSeeder(userRepository, portfolioRepository,
+            positionRepository, transactionRepository, alorTokenService, passwordEncoder, transactionTemplate)
+            .seed(profile, stocks);
+        log.info("Наполнение: {} акций, профиль {} за {} мс", stocks.size(), profile,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - seedStarted));
+
+        List<Session> sessions = new ArrayList<>(users.size());
+        for (LoadTestSeeder.SeededUser user : users) {
+            sessions.add(login(user));
+        }
+
+        LatencyStats pageStats = new LatencyStats("GET /portfolios/{id}", SAMPLE_CAPACITY);
+        LatencyStats valueStats = new LatencyStats("GET /portfolios/{id}/value", SAMPLE_CAPACITY);
+        LatencyStats moexStats = new LatencyStats("MoexPriceUpdater", 10_000);
+        LatencyStats alorStats = new LatencyStats("AlorPriceUpdater", 10_000);
+
+        // Прогрев: те же запросы без учета в статистике
+        drive(sessions, profile.concurrency(), profile.warmup(), null, null);
+
+        statistics.clear();
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService updaters = Executors.newFixedThreadPool(2);
+        updaters.submit(() -> loop(running, moexStats, moexPriceUpdater::updateMarketPrices));
+        updaters.submit(() -> loop(running, alorStats, alorPriceUpdater::updatePricesFromAlor));
+
+        long started = System.nanoTime();
+        drive(sessions, profile.concurrency(), profile.duration(), pageStats, valueStats);
+        double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+        running.set(false);
+        updaters.shutdown();
+        updaters.awaitTermination(2, TimeUnit.MINUTES);
+
+        long requests = pageStats.count() + valueStats.count();
+        long statements = statistics.getPrepareStatementCount();
+        log.info("""
+
+            ==== Нагрузочный прогон: {} пользователей × {} портфелей × {} позиций, {} потоков, {} с ====
+            {}
+            {}
+            {}
+            {}
+            SQL-запросов: {} (≈{} на HTTP-запрос, включая обновления цен), транзакций: {}
+            """,
+            profile.users(), profile.portfoliosPerUser(), profile.positionsPerPortfolio(), profile.concurrency(),
+            String.format("%.1f", seconds),
+            pageStats.summary(seconds), valueStats.summary(seconds),
+            moexStats.summary(seconds), alorStats.summary(seconds),
+            statements, requests > 0 ? statements / requests : 0, statistics.getTransactionCount());
+
+        assertThat(requests).isPositive();
+        assertThat(pageStats.errors() + valueStats.errors()).isZero();
+    }
+
+    /**
+     * Параллельные клиенты запрашивают страницы случайных портфелей случайных пользователей
+     * @param pageStats статистика страниц или null (прогрев)
+     */
+    private void drive(List<Session> sessions, int concurrency, Duration duration,
+                       LatencyStats pageStats, LatencyStats valueStats) throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            clients.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    Session session = sessions.get(random.nextInt(sessions.size()));
+                    Long portfolioId = session.portfolioIds().get(random.nextInt(session.portfolioIds().size()));
+                    boolean value = random.nextBoolean();
+                    String path = "/portfolios/" + portfolioId + (value ? "/value" : "");
+                    long requestStarted = System.nanoTime();
+                    boolean success = get(session, path);
+                    LatencyStats stats = value ? valueStats : pageStats;
+                    if (stats != null) {
+                        stats.record(System.nanoTime() - requestStarted, success);
+                    }
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(duration.toSeconds() + 120, TimeUnit.SECONDS);
+    }
+
+    private static void loop(AtomicBoolean running, LatencyStats stats, Runnable update) {
+        while (running.get()) {
+            long started = System.nanoTime();
+            boolean success = true;
+            try {
+                update.run();
+            } catch (Exception ex) {
+                success = false;
+                log.warn("Ошибка обновления цен во время прогона: {}", ex.getMessage());
+            }
+            stats.record(System.nanoTime() - started, success);
+        }
+    }
+
+    private Session login(LoadTestSeeder.SeededUser user) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+            .cookieHandler(new CookieManager())
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+        String form = "username=" + URLEncoder.encode(user.email(), StandardCharsets.UTF_8)
+            + "&password=" + URLEncoder.encode(LoadTestSeeder.PASSWORD, StandardCharsets.UTF_8);
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(uri("/login"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build(),
+            HttpResponse.BodyHandlers.discarding());
+        assertThat(response.headers().firstValue("Location")).hasValueSatisfying(
+            location -> assertThat(location).endsWith("/dashboard"));
+        return new Session(client, user.portfolioIds());
+    }
+
+    private boolean get(Session session, String path) {
+        try {
+            HttpResponse<byte[]> response = session.client().send(HttpRequest.newBuilder(uri(path)).GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+            return response.statusCode() == 200;
+        } catch (Exception ex) {
+            if (ex instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private record Session(HttpClient client, List<Long> portfolioIds) {
+    }
+}
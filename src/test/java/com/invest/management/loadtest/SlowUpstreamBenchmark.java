@@ -0,0 +1,205 @@
+package com.invest.management.loadtest;
+
+import com.invest.management.alor.common.AlorTokenService;
+import com.invest.management.config.WorkerThreads;
+import com.invest.management.moex.MoexDataLoader;
+import com.invest.management.moex.MoexStock;
+import com.invest.management.moex.MoexStockRepository;
+import com.invest.management.portfolio.PortfolioPositionRepository;
+import com.invest.management.portfolio.PortfolioRepository;
+import com.invest.management.portfolio.PortfolioTransactionRepository;
+import com.invest.management.user.AppUserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Пропускная способность при медленном ALOR: каждый запрос /portfolios/{id}/test-alor-positions
+ * синхронно ждет ответа стаб-сервера с задержкой INVEST_BENCH_UPSTREAM_MS. Клиентов больше,
+ * чем потоков Tomcat, поэтому с потоками платформы запросы стоят в очереди к пулу,
+ * а с виртуальными потоками ограничением становится только задержка ALOR.
+ *
+ * Запуск (результаты сравниваются по логу):
+ * INVEST_BENCH_SLOW_UPSTREAM=true mvn test -Dtest=SlowUpstreamBenchmark
+ * INVEST_BENCH_SLOW_UPSTREAM=true INVEST_BENCH_VIRTUAL=true mvn test -Dtest=SlowUpstreamBenchmark  (Java 21+)
+ * Параметры: INVEST_BENCH_CONCURRENCY (400), INVEST_BENCH_DURATION_SECONDS (30),
+ * INVEST_BENCH_UPSTREAM_MS (200), INVEST_BENCH_TOMCAT_THREADS (200).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+        "spring.threads.virtual.enabled=${INVEST_BENCH_VIRTUAL:false}",
+        "server.tomcat.threads.max=${INVEST_BENCH_TOMCAT_THREADS:200}",
+        "server.tomcat.max-connections=10000",
+        "server.tomcat.accept-count=10000",
+        "replay.stub.enabled=true",
+        "replay.stub.port=${INVEST_BENCH_STUB_PORT:18092}",
+        "replay.stub.threads=2000",
+        "replay.stub.synthetic-tickers=20",
+        "replay.stub.latency-ms=${INVEST_BENCH_UPSTREAM_MS:200}",
+        "moex.api.base-url=http://localhost:${replay.stub.port}/moex/iss",
+        "alor.api.production-base-url=http://localhost:${replay.stub.port}/alor",
+        "alor.api.production-oauth-url=http://localhost:${replay.stub.port}/alor",
+        "moex.price-updater.enabled=false",
+        "alor.price-updater.enabled=false",
+        "alor.transaction-sync.enabled=false",
+        "moex.fx.enabled=false",
+        "moex.bondization.enabled=false",
+        "portfolio.risk.enabled=false"
+})
+@ActiveProfiles("test")
+@EnabledIfEnvironmentVariable(named = "INVEST_BENCH_SLOW_UPSTREAM", matches = "true")
+class SlowUpstreamBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(SlowUpstreamBenchmark.class);
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${server.tomcat.threads.max}")
+    private int tomcatThreads;
+
+    @Value("${replay.stub.latency-ms}")
+    private long upstreamMs;
+
+    @Autowired
+    private WorkerThreads workerThreads;
+
+    @Autowired
+    private MoexDataLoader moexDataLoader;
+
+    @Autowired
+    private MoexStockRepository stockRepository;
+
+    @Autowired
+    private AppUserRepository userRepository;
+
+    @Autowired
+    private PortfolioRepository portfolioRepository;
+
+    @Autowired
+    private PortfolioPositionRepository positionRepository;
+
+    @Autowired
+    private PortfolioTransactionRepository transactionRepository;
+
+    @Autowired
+    private AlorTokenService alorTokenService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void alorBoundRequestsUnderHighConcurrency() throws Exception {
+        int concurrency = intEnv("INVEST_BENCH_CONCURRENCY", 400);
+        Duration duration = Duration.ofSeconds(intEnv("INVEST_BENCH_DURATION_SECONDS", 30));
+
+        moexDataLoader.loadStocksListA();
+        List<MoexStock> stocks = stockRepository.findAll();
+        LoadTestSeeder.SeededUser user = new LoadTestSeeder(userRepository, portfolioRepository,
+            positionRepository, transactionRepository, alorTokenService, passwordEncoder, transactionTemplate)
+            .seed(new LoadTestProfile(1, 1, 5, 1, concurrency, duration, Duration.ZERO), stocks).get(0);
+
+        HttpClient client = login(user.email());
+        String path = "/portfolios/" + user.portfolioIds().get(0)
+            + "/test-alor-positions?environment=production&alorPortfolioId=D00001";
+        // Первый запрос получает Access Token, дальше он берется из кэша
+        assertThat(get(client, path)).isTrue();
+
+        LatencyStats stats = new LatencyStats("GET /portfolios/{id}/test-alor-positions", 2_000_000);
+        long deadline = System.nanoTime() + duration.toNanos();
+        long started = System.nanoTime();
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            clients.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    long requestStarted = System.nanoTime();
+                    boolean success = get(client, path);
+                    stats.record(System.nanoTime() - requestStarted, success);
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(duration.toSeconds() + 120, TimeUnit.SECONDS);
+        double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+
+        log.info("""
+
+            ==== Медленный ALOR: {} потоки, Tomcat {} потоков, {} клиентов, задержка ALOR {} мс, {} с ====
+            {}
+            Предел при потоках платформы ≈ {} запросов/с, при виртуальных ≈ {} запросов/с
+            """,
+            workerThreads.isVirtual() ? "виртуальные" : "платформенные", tomcatThreads, concurrency, upstreamMs,
+            String.format("%.1f", seconds), stats.summary(seconds),
+            upstreamMs > 0 ? tomcatThreads * 1000 / upstreamMs : "-",
+            upstreamMs > 0 ? concurrency * 1000 / upstreamMs : "-");
+
+        assertThat(stats.count()).isPositive();
+        assertThat(stats.errors()).isZero();
+    }
+
+    private HttpClient login(String email) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+            .cookieHandler(new CookieManager())
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+        String form = "username=" + URLEncoder.encode(email, StandardCharsets.UTF_8)
+            + "&password=" + URLEncoder.encode(LoadTestSeeder.PASSWORD, StandardCharsets.UTF_8);
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(uri("/login"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build(),
+            HttpResponse.BodyHandlers.discarding());
+        assertThat(response.headers().firstValue("Location")).hasValueSatisfying(
+            location -> assertThat(location).endsWith("/dashboard"));
+        return client;
+    }
+
+    private boolean get(HttpClient client, String path) {
+        try {
+            HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(uri(path)).GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+            return response.statusCode() == 200;
+        } catch (Exception ex) {
+            if (ex instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+}
@@ -1,5 +1,6 @@
 package com.invest.management.portfolio;
 
+import com.invest.management.support.QueryBudget;
 import com.invest.management.user.AppUser;
 import com.invest.management.user.AppUserRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -42,6 +43,12 @@ class BrokerReportServiceIntegrationTest {
     @Autowired
     private PortfolioCashMovementRepository cashMovementRepository;
 
+    @Autowired
+    private PortfolioCashBalanceRepository cashBalanceRepository;
+
+    @Autowired
+    private PortfolioCashBalanceService cashBalanceService;
+
     @Autowired
     private BrokerReportRepository brokerReportRepository;
 
@@ -60,6 +67,7 @@ class BrokerReportServiceIntegrationTest {
         positionRepository.deleteAll();
         transactionRepository.deleteAll();
         cashMovementRepository.deleteAll();
+        cashBalanceRepository.deleteAll();
         brokerReportRepository.deleteAll();
         portfolioRepository.deleteAll();
         appUserRepository.deleteAll();
@@ -88,7 +96,9 @@ class BrokerReportServiceIntegrationTest {
     void testLoadMonthlyReportFirst_ThenDailyReport_ShouldRejectDaily() throws Exception {
         // Загрузка месячного отчета
         MockMultipartFile monthlyReport = loadReportFile("61804403ID1V42UUY_01012020_31012020.html");
-        brokerReportService.processReport(testPortfolio, monthlyReport, testUser);
+        // Запросы на каждую сделку или движение средств выводят обработку отчета за бюджет
+        QueryBudget.assertAtMost("processReport", 60, () ->
+            brokerReportService.processReport(testPortfolio, monthlyReport, testUser));
 
         // Проверка данных после месячного отчета
         assertThat(positionRepository.findByPortfolio(testPortfolio)).hasSize(4);
@@ -139,6 +149,10 @@ class BrokerReportServiceIntegrationTest {
         // Проверка движений денежных средств
         assertThat(cashMovementRepository.findByPortfolio(testPortfolio)).hasSize(8);
         assertThat(brokerReportRepository.findByPortfolioOrderByReportPeriodStartDesc(testPortfolio)).hasSize(2);
+
+        // Журнал остатков совпадает с суммой движений
+        assertThat(cashBalanceService.getBalance(testPortfolio, "RUB"))
+            .isEqualByComparingTo(cashMovementRepository.calculateBalance(testPortfolio, "RUB"));
     }
 
     @Test
@@ -0,0 +1,98 @@
+package com.invest.management.portfolio;
+
+import com.invest.management.moex.bond.Bond;
+import com.invest.management.moex.bond.BondCashFlow;
+import com.invest.management.user.AppUser;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Календарь выплат по облигации с загруженным графиком купонов и амортизаций
+ */
+@SpringBootTest(properties = {
+        "moex.price-updater.enabled=false",
+        "alor.price-updater.enabled=false",
+        "alor.transaction-sync.enabled=false",
+        "moex.bondization.enabled=false"
+})
+@ActiveProfiles("test")
+@Transactional
+class CashFlowCalendarServiceIntegrationTest {
+
+    @Autowired
+    private CashFlowCalendarService calendarService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void bondPosition_ScheduledAndEstimatedPayments() {
+        LocalDate today = LocalDate.now();
+
+        AppUser user = new AppUser();
+        user.setEmail("calendar@example.com");
+        user.setPasswordHash("not-used");
+        user.setRole("USER");
+        entityManager.persist(user);
+
+        Portfolio portfolio = new Portfolio();
+        portfolio.setUser(user);
+        portfolio.setName("Облигации");
+        entityManager.persist(portfolio);
+
+        Bond bond = new Bond();
+        bond.setSecid("SU26238RMFS4");
+        bond.setIsin("RU000A1038V6");
+        bond.setShortname("ОФЗ 26238");
+        bond.setFaceunit("SUR");
+        bond.setFacevalue(new BigDecimal("1000"));
+        bond.setCouponvalue(new BigDecimal("35.40"));
+        entityManager.persist(bond);
+
+        entityManager.persist(flow(bond, BondCashFlow.TYPE_COUPON, today.plusMonths(1), "35.40"));
+        // Следующий купон еще не объявлен - оценивается по текущему
+        entityManager.persist(flow(bond, BondCashFlow.TYPE_COUPON, today.plusMonths(7), null));
+        entityManager.persist(flow(bond, BondCashFlow.TYPE_AMORTIZATION, today.plusMonths(7), "500"));
+        // За горизонтом календаря
+        entityManager.persist(flow(bond, BondCashFlow.TYPE_COUPON, today.plusMonths(13), "35.40"));
+
+        PortfolioPosition position = new PortfolioPosition();
+        position.setPortfolio(portfolio);
+        position.setIsin(bond.getIsin());
+        position.setSecurityType("BOND");
+        position.setMoexBond(bond);
+        position.setQuantity(new BigDecimal("10"));
+        entityManager.persist(position);
+        entityManager.flush();
+        entityManager.clear();
+
+        CashFlowCalendar calendar = calendarService.getCalendar(portfolio);
+
+        assertThat(calendar.events()).hasSize(3);
+        assertThat(calendar.events()).extracting(CashFlowEvent::type, CashFlowEvent::estimated)
+            .containsExactlyInAnyOrder(
+                tuple(CashFlowEvent.TYPE_COUPON, false),
+                tuple(CashFlowEvent.TYPE_COUPON, true),
+                tuple(CashFlowEvent.TYPE_REDEMPTION, false));
+        assertThat(calendar.totals().get("RUB")).isEqualByComparingTo("5708.00");
+    }
+
+    private static BondCashFlow flow(Bond bond, String type, LocalDate date, String value) {
+        BondCashFlow flow = new BondCashFlow();
+        flow.setBond(bond);
+        flow.setFlowType(type);
+        flow.setFlowDate(date);
+        flow.setValue(value != null ? new BigDecimal(value) : null);
+        return flow;
+    }
+}
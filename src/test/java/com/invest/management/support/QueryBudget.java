@@ -0,0 +1,93 @@
+package com.invest.management.support;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Бюджет SQL-запросов для ключевых сценариев
+ * Сценарий выполняется в текущем потоке, запросы считает {@link QueryCountInspector}.
+ * При превышении бюджета тест падает с перечнем запросов, сгруппированных по тексту:
+ * повторяющийся запрос с большим счетчиком указывает на N+1.
+ * Перед измерением стоит очистить EntityManager, иначе ленивые связи могут прийти из кэша
+ * первого уровня; изменения должны сбрасываться (flush) внутри сценария.
+ */
+public final class QueryBudget {
+
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\?(,\\s*\\?)*\\)");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    private QueryBudget() {
+    }
+
+    @FunctionalInterface
+    public interface Scenario<T> {
+        T run() throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface VoidScenario {
+        void run() throws Exception;
+    }
+
+    /**
+     * Выполняет сценарий и проверяет, что он сделал не больше maxQueries запросов
+     */
+    public static <T> T assertAtMost(String flow, int maxQueries, Scenario<T> scenario) throws Exception {
+        QueryCountInspector.start();
+        T result;
+        List<String> statements;
+        try {
+            result = scenario.run();
+        } finally {
+            statements = QueryCountInspector.stop();
+        }
+        if (statements.size() > maxQueries) {
+            throw new AssertionError(String.format("%s: %d SQL-запросов при бюджете %d%n%s",
+                flow, statements.size(), maxQueries, describe(statements)));
+        }
+        return result;
+    }
+
+    public static void assertAtMost(String flow, int maxQueries, VoidScenario scenario) throws Exception {
+        assertAtMost(flow, maxQueries, () -> {
+            scenario.run();
+            return null;
+        });
+    }
+
+    /**
+     * @return количество запросов сценария (для проверок, что оно не растет с объемом данных)
+     */
+    public static int count(VoidScenario scenario) throws Exception {
+        QueryCountInspector.start();
+        try {
+            scenario.run();
+        } catch (Exception ex) {
+            QueryCountInspector.stop();
+            throw ex;
+        }
+        return QueryCountInspector.stop().size();
+    }
+
+    private static String describe(List<String> statements) {
+        Map<String, Long> grouped = statements.stream()
+            .map(QueryBudget::normalize)
+            .collect(Collectors.groupingBy(sql -> sql, LinkedHashMap::new, Collectors.counting()));
+        return grouped.entrySet().stream()
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+            .map(entry -> String.format("%5d × %s", entry.getValue(), entry.getKey()))
+            .collect(Collectors.joining(System.lineSeparator()));
+    }
+
+    /**
+     * Приводит запрос к виду без различий в списках IN и пробелах
+     */
+    private static String normalize(String sql) {
+        String compact = SPACES.matcher(sql.trim()).replaceAll(" ");
+        return IN_LIST.matcher(compact).replaceAll("(?...)").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,36 @@
+package com.invest.management.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Счетчик SQL-запросов Hibernate для тестов
+ * Подключается в application-test.properties (hibernate.session_factory.statement_inspector)
+ * и считает только запросы текущего потока внутри {@link QueryBudget}, поэтому фоновые задачи
+ * приложения не влияют на результат.
+ */
+public class QueryCountInspector implements StatementInspector {
+
+    private static final ThreadLocal<List<String>> RECORDED = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        List<String> statements = RECORDED.get();
+        if (statements != null) {
+            statements.add(sql);
+        }
+        return sql;
+    }
+
+    static void start() {
+        RECORDED.set(new ArrayList<>());
+    }
+
+    static List<String> stop() {
+        List<String> statements = RECORDED.get();
+        RECORDED.remove();
+        return statements != null ? statements : List.of();
+    }
+}
@@ -0,0 +1,99 @@
+package com.invest.management.user;
+
+import com.invest.management.support.QueryBudget;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
+import static org.springframework.security.test.web.servlet.response.SecurityMockMvcResultMatchers.authenticated;
+
+/**
+ * Кэш текущего пользователя и пересчет хеша пароля при входе
+ */
+@SpringBootTest(properties = {
+        "moex.price-updater.enabled=false",
+        "alor.price-updater.enabled=false",
+        "alor.transaction-sync.enabled=false"
+})
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+@Transactional
+class CurrentUserServiceIntegrationTest {
+
+    @Autowired
+    private CurrentUserService currentUserService;
+
+    @Autowired
+    private AppUserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void repeatedLookup_IsServedFromCache() throws Exception {
+        AppUser user = userRepository.saveAndFlush(user("cached@example.com", "not-used"));
+        Authentication authentication = authentication(user);
+
+        assertThat(currentUserService.getCurrentUser(authentication).getId()).isEqualTo(user.getId());
+
+        int queries = QueryBudget.count(() -> currentUserService.getCurrentUser(authentication));
+        assertThat(queries).isZero();
+    }
+
+    @Test
+    void recreatedUser_EvictsEntryWithOtherId() {
+        AppUser removed = userRepository.saveAndFlush(user("recreated@example.com", "not-used"));
+        currentUserService.getCurrentUser(authentication(removed));
+        userRepository.delete(removed);
+        userRepository.flush();
+
+        // Тот же email, новый id: запись кэша от удаленного пользователя не используется
+        AppUser recreated = userRepository.saveAndFlush(user("recreated@example.com", "not-used"));
+
+        assertThat(currentUserService.getCurrentUser(authentication(recreated)).getId()).isEqualTo(recreated.getId());
+    }
+
+    @Test
+    void login_RehashesWeakBcryptHash() throws Exception {
+        String email = "rehash@example.com";
+        String weakHash = new BCryptPasswordEncoder(4).encode("secret");
+        userRepository.saveAndFlush(user(email, weakHash));
+
+        mockMvc.perform(formLogin("/login").user(email).password("secret"))
+            .andExpect(authenticated().withUsername(email));
+
+        AppUser stored = userRepository.findByEmailIgnoreCase(email).orElseThrow();
+        assertThat(stored.getPasswordHash()).isNotEqualTo(weakHash).startsWith("$2a$10$");
+        assertThat(passwordEncoder.matches("secret", stored.getPasswordHash())).isTrue();
+
+        // Кэш обновлен новым хешем: следующий вход не читает пользователя из БД
+        int queries = QueryBudget.count(() -> assertThat(currentUserService.findByEmail(email))
+            .get().extracting(AppUser::getPasswordHash).isEqualTo(stored.getPasswordHash()));
+        assertThat(queries).isZero();
+    }
+
+    private static AppUser user(String email, String passwordHash) {
+        AppUser user = new AppUser();
+        user.setEmail(email);
+        user.setPasswordHash(passwordHash);
+        user.setRole("USER");
+        return user;
+    }
+
+    private static Authentication authentication(AppUser user) {
+        return new UsernamePasswordAuthenticationToken(new AppUserPrincipal(user), null, user.getAuthorities());
+    }
+}